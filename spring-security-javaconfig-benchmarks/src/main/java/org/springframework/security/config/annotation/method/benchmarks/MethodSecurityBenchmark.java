@@ -0,0 +1,199 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.config.annotation.method.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AdviceMode;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.security.access.intercept.aspectj.MethodSecurityAspect;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
+import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
+import org.springframework.security.config.annotation.method.configuration.GlobalMethodSecurityConfiguration;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * <p>
+ * Compares the per invocation cost of method security using
+ * {@link AdviceMode#PROXY} and {@link AdviceMode#ASPECTJ} for secured and
+ * unsecured methods.
+ * </p>
+ *
+ * <p>
+ * The ASPECTJ results are only meaningful when the {@link MethodSecurityAspect}
+ * and this class have been woven by the AspectJ compiler, which the
+ * benchmarks task of this project does. The PROXY mode secures a JDK dynamic
+ * proxy of a class whose annotations are on its interface, so it is not
+ * affected by the weaving.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class MethodSecurityBenchmark {
+
+    @Param({"PROXY", "ASPECTJ"})
+    public AdviceMode mode;
+
+    private AnnotationConfigApplicationContext context;
+
+    private SecuredService service;
+
+    @Setup
+    public void setup() {
+        // the benchmark may be run by a different thread than the setup
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("user", "password",
+                AuthorityUtils.createAuthorityList("ROLE_USER")));
+        context = new AnnotationConfigApplicationContext(mode == AdviceMode.ASPECTJ ? AspectJConfig.class : ProxyConfig.class);
+        service = context.getBean(SecuredService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if(context != null) {
+            context.close();
+        }
+        SecurityContextHolder.clearContext();
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_THREADLOCAL);
+    }
+
+    /**
+     * A method secured with {@link PreAuthorize}.
+     */
+    @Benchmark
+    public String preAuthorize() {
+        return service.preAuthorize();
+    }
+
+    /**
+     * A method secured with {@link Secured}.
+     */
+    @Benchmark
+    public String secured() {
+        return service.secured();
+    }
+
+    /**
+     * A method without any security annotations on a secured object.
+     */
+    @Benchmark
+    public String unsecured() {
+        return service.unsecured();
+    }
+
+    public interface SecuredService {
+        @PreAuthorize("hasRole('ROLE_USER')")
+        String preAuthorize();
+
+        @Secured("ROLE_USER")
+        String secured();
+
+        String unsecured();
+    }
+
+    /**
+     * Is secured using a proxy since the annotations are on the interface.
+     */
+    static class ProxiedSecuredService implements SecuredService {
+        public String preAuthorize() {
+            return "preAuthorize";
+        }
+
+        public String secured() {
+            return "secured";
+        }
+
+        public String unsecured() {
+            return "unsecured";
+        }
+    }
+
+    /**
+     * Is secured by the woven {@link MethodSecurityAspect}.
+     */
+    static class WovenSecuredService implements SecuredService {
+        @PreAuthorize("hasRole('ROLE_USER')")
+        public String preAuthorize() {
+            return "preAuthorize";
+        }
+
+        @Secured("ROLE_USER")
+        public String secured() {
+            return "secured";
+        }
+
+        public String unsecured() {
+            return "unsecured";
+        }
+    }
+
+    @Configuration
+    @EnableGlobalMethodSecurity(prePostEnabled = true, securedEnabled = true)
+    static class ProxyConfig extends GlobalMethodSecurityConfiguration {
+        @Bean
+        public SecuredService securedService() {
+            return new ProxiedSecuredService();
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .inMemoryAuthentication()
+                    .withUser("user").password("password").roles("USER");
+        }
+    }
+
+    @Configuration
+    @EnableGlobalMethodSecurity(mode = AdviceMode.ASPECTJ, prePostEnabled = true, securedEnabled = true)
+    static class AspectJConfig extends GlobalMethodSecurityConfiguration {
+        @Bean
+        public SecuredService securedService() {
+            return new WovenSecuredService();
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .inMemoryAuthentication()
+                    .withUser("user").password("password").roles("USER");
+        }
+    }
+}
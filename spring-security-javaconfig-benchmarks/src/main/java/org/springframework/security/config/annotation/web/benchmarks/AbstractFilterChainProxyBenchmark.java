@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.config.annotation.web.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.Filter;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * <p>
+ * The base class for benchmarks that measure the per request cost of the
+ * springSecurityFilterChain {@link Filter} produced by a
+ * {@link WebSecurityConfigurerAdapter}.
+ * </p>
+ *
+ * <p>
+ * Subclasses provide the {@link WebSecurityConfigurerAdapter} to load by
+ * implementing {@link #getConfig()} and invoke
+ * {@link #doFilter(MockHttpServletRequest)} from their benchmark methods. Any
+ * parameters of the benchmark should be added as properties in
+ * {@link #addProperties(Map)}. They are registered as a
+ * {@link MapPropertySource} of each trial's {@link ApplicationContext}, so
+ * the configuration reads them from the {@link Environment}.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public abstract class AbstractFilterChainProxyBenchmark {
+    private AnnotationConfigApplicationContext context;
+
+    private Filter springSecurityFilterChain;
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String,Object> properties = new HashMap<String,Object>();
+        addProperties(properties);
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        context.register(getConfig());
+        context.refresh();
+        springSecurityFilterChain = context.getBean("springSecurityFilterChain", Filter.class);
+        afterRefresh();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if(context != null) {
+            context.close();
+        }
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * Gets the {@link WebSecurityConfigurerAdapter} to load.
+     * @return the {@link WebSecurityConfigurerAdapter} to load
+     */
+    protected abstract Class<? extends WebSecurityConfigurerAdapter> getConfig();
+
+    /**
+     * Adds the properties that are available from the {@link Environment}
+     * while the configuration is loaded. The default implementation adds
+     * nothing.
+     *
+     * @param properties the properties to add to
+     */
+    protected void addProperties(Map<String,Object> properties) {
+    }
+
+    /**
+     * Invoked after the configuration is loaded. The default implementation
+     * does nothing.
+     */
+    protected void afterRefresh() throws Exception {
+    }
+
+    /**
+     * Gets a bean from the loaded configuration.
+     */
+    protected final <T> T getBean(Class<T> beanClass) {
+        return context.getBean(beanClass);
+    }
+
+    /**
+     * Creates a GET request for the provided servlet path.
+     */
+    protected static MockHttpServletRequest request(String servletPath) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", servletPath);
+        request.setServletPath(servletPath);
+        return request;
+    }
+
+    /**
+     * Submits the {@link MockHttpServletRequest} to the springSecurityFilterChain.
+     *
+     * @param request the {@link MockHttpServletRequest} to submit
+     * @return the {@link MockHttpServletResponse} which should be returned
+     *         from the benchmark method to ensure the work is not eliminated
+     */
+    protected final MockHttpServletResponse doFilter(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        springSecurityFilterChain.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
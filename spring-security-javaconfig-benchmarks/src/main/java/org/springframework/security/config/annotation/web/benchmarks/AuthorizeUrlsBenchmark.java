@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.config.annotation.web.benchmarks;
+
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.annotation.web.configurers.ExpressionUrlAuthorizationConfigurer;
+
+/**
+ * Measures how the cost of a request grows with the number of
+ * {@link ExpressionUrlAuthorizationConfigurer.AuthorizedUrl} mappings. Each
+ * mapping is an antMatchers entry of the form "/resource{n}/**".
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class AuthorizeUrlsBenchmark extends AbstractFilterChainProxyBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int antMatchers;
+
+    @Param({"false", "true"})
+    public boolean compileAntMatchers;
+
+    @Param({"false", "true"})
+    public boolean indexUrlMappings;
+
+    @Param({"false", "true"})
+    public boolean compileExpressions;
+
+    @Override
+    protected Class<? extends WebSecurityConfigurerAdapter> getConfig() {
+        return AuthorizeUrlsConfig.class;
+    }
+
+    @Override
+    protected void addProperties(Map<String,Object> properties) {
+        properties.put("antMatchers", antMatchers);
+        properties.put("compileAntMatchers", compileAntMatchers);
+        properties.put("indexUrlMappings", indexUrlMappings);
+        properties.put("compileExpressions", compileExpressions);
+    }
+
+    /**
+     * A request that is matched by the first mapping.
+     */
+    @Benchmark
+    public MockHttpServletResponse firstAntMatcher() throws Exception {
+        return doFilter(request("/resource0/messages"));
+    }
+
+    /**
+     * A request that is matched by the last mapping.
+     */
+    @Benchmark
+    public MockHttpServletResponse lastAntMatcher() throws Exception {
+        return doFilter(request("/resource" + (antMatchers - 1) + "/messages"));
+    }
+
+    /**
+     * A request that is not matched by any of the mappings.
+     */
+    @Benchmark
+    public MockHttpServletResponse anyRequest() throws Exception {
+        return doFilter(request("/other/messages"));
+    }
+
+    @Configuration
+    @EnableWebSecurity
+    static class AuthorizeUrlsConfig extends WebSecurityConfigurerAdapter {
+        @Autowired
+        private Environment environment;
+
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+            ExpressionUrlAuthorizationConfigurer<HttpSecurity> authorizeUrls = http.authorizeUrls()
+                    .compileAntMatchers(environment.getProperty("compileAntMatchers", Boolean.class))
+                    .indexUrlMappings(environment.getProperty("indexUrlMappings", Boolean.class))
+                    .compileExpressions(environment.getProperty("compileExpressions", Boolean.class));
+            int antMatchers = environment.getProperty("antMatchers", Integer.class);
+            for(int i = 0; i < antMatchers; i++) {
+                authorizeUrls.antMatchers("/resource" + i + "/**").permitAll();
+            }
+            authorizeUrls.anyRequest().hasRole("USER");
+        }
+    }
+}
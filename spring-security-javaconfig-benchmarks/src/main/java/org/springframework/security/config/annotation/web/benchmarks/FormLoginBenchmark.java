@@ -0,0 +1,93 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.config.annotation.web.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+
+/**
+ * Measures the cost of a request to an application that uses form based
+ * log in.
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class FormLoginBenchmark extends AbstractFilterChainProxyBenchmark {
+    private MockHttpSession session;
+
+    @Override
+    protected Class<? extends WebSecurityConfigurerAdapter> getConfig() {
+        return FormLoginConfig.class;
+    }
+
+    @Override
+    protected void afterRefresh() throws Exception {
+        SecurityContextImpl context = new SecurityContextImpl();
+        context.setAuthentication(new UsernamePasswordAuthenticationToken("user", null,
+                AuthorityUtils.createAuthorityList("ROLE_USER")));
+        session = new MockHttpSession();
+        session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, context);
+    }
+
+    /**
+     * An anonymous request to a protected URL that is redirected to the log in page.
+     */
+    @Benchmark
+    public MockHttpServletResponse unauthenticated() throws Exception {
+        return doFilter(request("/messages"));
+    }
+
+    /**
+     * A request to a protected URL by a user that has already logged in.
+     */
+    @Benchmark
+    public MockHttpServletResponse authenticated() throws Exception {
+        MockHttpServletRequest request = request("/messages");
+        request.setSession(session);
+        return doFilter(request);
+    }
+
+    @Configuration
+    @EnableWebSecurity
+    static class FormLoginConfig extends WebSecurityConfigurerAdapter {
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .authorizeUrls()
+                    .anyRequest().hasRole("USER")
+                    .and()
+                .formLogin();
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .inMemoryAuthentication()
+                    .withUser("user").password("password").roles("USER");
+        }
+    }
+}
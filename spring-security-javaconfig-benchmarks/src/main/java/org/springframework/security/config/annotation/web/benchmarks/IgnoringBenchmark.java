@@ -0,0 +1,83 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.config.annotation.web.benchmarks;
+
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.builders.WebSecurity;
+import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+
+/**
+ * Measures the cost of a request for a static resource that is ignored
+ * using {@link WebSecurity#ignoring()}.
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class IgnoringBenchmark extends AbstractFilterChainProxyBenchmark {
+
+    @Param({"false", "true"})
+    public boolean bypassIgnoredRequests;
+
+    @Override
+    protected Class<? extends WebSecurityConfigurerAdapter> getConfig() {
+        return IgnoringConfig.class;
+    }
+
+    @Override
+    protected void addProperties(Map<String,Object> properties) {
+        properties.put("bypassIgnoredRequests", bypassIgnoredRequests);
+    }
+
+    /**
+     * A request for a static resource that is ignored.
+     */
+    @Benchmark
+    public MockHttpServletResponse ignored() throws Exception {
+        return doFilter(request("/resources/css/app.css"));
+    }
+
+    @Configuration
+    @EnableWebSecurity
+    static class IgnoringConfig extends WebSecurityConfigurerAdapter {
+        @Autowired
+        private Environment environment;
+
+        @Override
+        public void configure(WebSecurity web) throws Exception {
+            web
+                .bypassIgnoredRequests(environment.getProperty("bypassIgnoredRequests", Boolean.class))
+                .ignoring()
+                    .antMatchers("/resources/**")
+                    .antMatchers("/favicon.ico");
+        }
+
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .authorizeUrls()
+                    .anyRequest().hasRole("USER");
+        }
+    }
+}
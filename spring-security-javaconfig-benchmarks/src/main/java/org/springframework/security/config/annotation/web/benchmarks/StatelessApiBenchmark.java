@@ -0,0 +1,83 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.config.annotation.web.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.annotation.web.configurers.SessionCreationPolicy;
+
+/**
+ * Measures the cost of a request to a stateless API that authenticates every
+ * request with HTTP Basic.
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class StatelessApiBenchmark extends AbstractFilterChainProxyBenchmark {
+
+    @Override
+    protected Class<? extends WebSecurityConfigurerAdapter> getConfig() {
+        return StatelessApiConfig.class;
+    }
+
+    /**
+     * An anonymous request that is rejected.
+     */
+    @Benchmark
+    public MockHttpServletResponse unauthenticated() throws Exception {
+        return doFilter(request("/api/messages"));
+    }
+
+    /**
+     * A request that provides valid HTTP Basic credentials.
+     */
+    @Benchmark
+    public MockHttpServletResponse authenticated() throws Exception {
+        MockHttpServletRequest request = request("/api/messages");
+        request.addHeader("Authorization", HttpBasicBenchmark.AUTHORIZATION);
+        return doFilter(request);
+    }
+
+    @Configuration
+    @EnableWebSecurity
+    static class StatelessApiConfig extends WebSecurityConfigurerAdapter {
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .antMatcher("/api/**")
+                .authorizeUrls()
+                    .anyRequest().hasRole("USER")
+                    .and()
+                .sessionManagement()
+                    .sessionCreationPolicy(SessionCreationPolicy.stateless)
+                    .and()
+                .httpBasic();
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .inMemoryAuthentication()
+                    .withUser("user").password("password").roles("USER");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.springframework.security.core.Authentication;
+
+/**
+ * A {@link PermissionEvaluator} that is able to evaluate a permission for
+ * many domain objects at once (i.e. with a single query). It is used by
+ * {@link org.springframework.security.access.expression.method.BulkPermissionMethodSecurityExpressionHandler}
+ * to evaluate filter expressions of the form
+ * {@code hasPermission(filterObject, 'read')} and
+ * {@code hasPermission(filterObject, 'Contact', 'read')} with a single
+ * invocation rather than one invocation per element.
+ *
+ * @author agent
+ * @since 3.2
+ */
+public interface BulkPermissionEvaluator extends PermissionEvaluator {
+
+    /**
+     * Determines if the {@link Authentication} has the permission for each
+     * domain object.
+     *
+     * @param authentication represents the user in question. Should not be null.
+     * @param targetDomainObjects the domain objects for which permissions should be
+     *            checked. May contain null elements.
+     * @param permission a representation of the permission object as supplied by the
+     *            expression system. Not null.
+     * @return an array with the same length as targetDomainObjects where each
+     *         value is true if the permission is granted for the domain object at
+     *         the same index, false otherwise
+     */
+    boolean[] hasPermissions(Authentication authentication, List<?> targetDomainObjects, Object permission);
+
+    /**
+     * Alternative method for evaluating a permission for many domain objects
+     * where only the identifiers of the target objects are available.
+     *
+     * @param authentication represents the user in question. Should not be null.
+     * @param targetIds the identifiers for the object instances (usually Longs)
+     * @param targetType a String representing the target's type (usually a Java
+     *            classname). Not null.
+     * @param permission a representation of the permission object as supplied by the
+     *            expression system. Not null.
+     * @return an array with the same length as targetIds where each value is
+     *         true if the permission is granted for the identifier at the same
+     *         index, false otherwise
+     */
+    boolean[] hasPermissions(Authentication authentication, List<? extends Serializable> targetIds, String targetType, Object permission);
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.expression;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.BooleanLiteral;
+import org.springframework.expression.spel.ast.MethodReference;
+import org.springframework.expression.spel.ast.OpAnd;
+import org.springframework.expression.spel.ast.OpOr;
+import org.springframework.expression.spel.ast.OperatorNot;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.StringLiteral;
+import org.springframework.expression.spel.standard.SpelExpression;
+
+/**
+ * <p>
+ * Recognizes the nodes of a SpEL AST that are evaluated by a
+ * {@link SecurityExpressionRoot} using only the
+ * {@link org.springframework.security.core.Authentication}. This is the single
+ * whitelist of expressions that may be cached or evaluated without SpEL.
+ * </p>
+ *
+ * <p>
+ * The supported nodes are "and", "or", "not", boolean literals, permitAll,
+ * denyAll, anonymous, authenticated, rememberMe, fullyAuthenticated (as a
+ * property or an "is" method) and hasRole, hasAuthority, hasAnyRole and
+ * hasAnyAuthority with String literal arguments.
+ * </p>
+ *
+ * <p>
+ * This class is intended for internal use by the Spring Security
+ * infrastructure.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public final class SecurityExpressionAstUtils {
+
+    /**
+     * Gets the AST of an {@link Expression}
+     *
+     * @param expression the {@link Expression} to inspect. May be null.
+     * @return the AST or null if the {@link Expression} is not a {@link SpelExpression}
+     */
+    public static SpelNode getAst(Expression expression) {
+        return expression instanceof SpelExpression ? ((SpelExpression) expression).getAST() : null;
+    }
+
+    /**
+     * Determines if the node is "and", "or" or "not".
+     *
+     * @param node the node to inspect
+     * @return true if the value of the node is computed from its children
+     */
+    public static boolean isOperator(SpelNode node) {
+        return node instanceof OpAnd || node instanceof OpOr || node instanceof OperatorNot;
+    }
+
+    /**
+     * Gets the value of a boolean literal, permitAll or denyAll (as a property
+     * or a method).
+     *
+     * @param node the node to inspect
+     * @return the value of the node or null if the node is not a constant
+     */
+    public static Boolean getConstant(SpelNode node) {
+        if(node instanceof BooleanLiteral) {
+            return (Boolean) ((BooleanLiteral) node).getLiteralValue().getValue();
+        }
+        String name = getName(node);
+        if("permitAll".equals(name)) {
+            return Boolean.TRUE;
+        }
+        if("denyAll".equals(name)) {
+            return Boolean.FALSE;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the property that is resolved by the
+     * {@link org.springframework.security.authentication.AuthenticationTrustResolver}.
+     *
+     * @param node the node to inspect
+     * @return "anonymous", "authenticated", "rememberMe",
+     *         "fullyAuthenticated" or null if the node is not one of these
+     *         properties or the corresponding "is" method
+     */
+    public static String getTrustProperty(SpelNode node) {
+        String name = getName(node);
+        if(node instanceof MethodReference) {
+            if(name == null || !name.startsWith("is") || name.length() < 3) {
+                return null;
+            }
+            name = Character.toLowerCase(name.charAt(2)) + name.substring(3);
+        }
+        if("anonymous".equals(name) || "authenticated".equals(name) || "rememberMe".equals(name) || "fullyAuthenticated".equals(name)) {
+            return name;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the literal arguments of hasRole, hasAuthority, hasAnyRole and
+     * hasAnyAuthority.
+     *
+     * @param node the node to inspect
+     * @return the arguments or null if the node is not one of these methods
+     *         with only String literal arguments
+     */
+    public static String[] getAuthorities(SpelNode node) {
+        if(!(node instanceof MethodReference)) {
+            return null;
+        }
+        String name = ((MethodReference) node).getName();
+        int argCount = node.getChildCount();
+        boolean any = "hasAnyRole".equals(name) || "hasAnyAuthority".equals(name);
+        if(!(any && argCount > 0) && !(("hasRole".equals(name) || "hasAuthority".equals(name)) && argCount == 1)) {
+            return null;
+        }
+        String[] authorities = new String[argCount];
+        for(int i = 0; i < argCount; i++) {
+            if(!(node.getChild(i) instanceof StringLiteral)) {
+                return null;
+            }
+            authorities[i] = (String) ((StringLiteral) node.getChild(i)).getLiteralValue().getValue();
+        }
+        return authorities;
+    }
+
+    /**
+     * Determines if the expression is a function of the authorities alone.
+     *
+     * @param node the AST to inspect. May be null.
+     * @return true if the result of the expression only depends on the authorities
+     */
+    public static boolean isAuthoritiesOnly(SpelNode node) {
+        return isSupported(node, false);
+    }
+
+    /**
+     * Determines if the expression is a function of the
+     * {@link org.springframework.security.core.Authentication} alone.
+     *
+     * @param node the AST to inspect. May be null.
+     * @return true if the result of the expression only depends on the
+     *         {@link org.springframework.security.core.Authentication}
+     */
+    public static boolean isAuthenticationOnly(SpelNode node) {
+        return isSupported(node, true);
+    }
+
+    private static boolean isSupported(SpelNode node, boolean trust) {
+        if(node == null) {
+            return false;
+        }
+        if(isOperator(node)) {
+            for(int i = 0; i < node.getChildCount(); i++) {
+                if(!isSupported(node.getChild(i), trust)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return getConstant(node) != null
+                || getAuthorities(node) != null
+                || (trust && getTrustProperty(node) != null);
+    }
+
+    /**
+     * Gets the name of a property or of a method without arguments.
+     */
+    private static String getName(SpelNode node) {
+        if(node instanceof PropertyOrFieldReference) {
+            return ((PropertyOrFieldReference) node).getName();
+        }
+        if(node instanceof MethodReference && node.getChildCount() == 0) {
+            return ((MethodReference) node).getName();
+        }
+        return null;
+    }
+
+    private SecurityExpressionAstUtils() {}
+}
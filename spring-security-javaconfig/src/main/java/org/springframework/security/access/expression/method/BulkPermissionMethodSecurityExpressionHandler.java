@@ -0,0 +1,211 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.expression.method;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.Literal;
+import org.springframework.expression.spel.ast.MethodReference;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.StringLiteral;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.security.access.BulkPermissionEvaluator;
+import org.springframework.security.access.PermissionEvaluator;
+import org.springframework.security.access.expression.SecurityExpressionRoot;
+import org.springframework.security.core.Authentication;
+
+/**
+ * <p>
+ * A {@link DefaultMethodSecurityExpressionHandler} that evaluates filter
+ * expressions of the form {@code hasPermission(filterObject, 'read')} and
+ * {@code hasPermission(filterObject, 'Contact', 'read')} with a single
+ * invocation of a {@link BulkPermissionEvaluator} for the whole
+ * {@link Collection} or array rather than one invocation of the
+ * {@link PermissionEvaluator} per element. The permission may be a literal or
+ * a method argument (i.e. {@code hasPermission(filterObject, #permission)}).
+ * </p>
+ *
+ * <p>
+ * If the {@link PermissionEvaluator} is not a {@link BulkPermissionEvaluator}
+ * or the filter expression has any other form, the filter expression is
+ * evaluated for each element as it is by
+ * {@link DefaultMethodSecurityExpressionHandler}. For example:
+ * </p>
+ *
+ * <pre>
+ * &#064;Configuration
+ * &#064;EnableGlobalMethodSecurity(prePostEnabled = true)
+ * public class MethodSecurityConfig extends GlobalMethodSecurityConfiguration {
+ *     &#064;Override
+ *     protected MethodSecurityExpressionHandler expressionHandler() {
+ *         BulkPermissionMethodSecurityExpressionHandler expressionHandler = new BulkPermissionMethodSecurityExpressionHandler();
+ *         expressionHandler.setPermissionEvaluator(new AclBulkPermissionEvaluator(...));
+ *         return expressionHandler;
+ *     }
+ * }
+ * </pre>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class BulkPermissionMethodSecurityExpressionHandler extends DefaultMethodSecurityExpressionHandler {
+    private static final BulkPermission NOT_BULK = new BulkPermission(null, null, null);
+
+    private final Map<Expression, BulkPermission> bulkPermissions = new ConcurrentHashMap<Expression, BulkPermission>();
+
+    @Override
+    public Object filter(Object filterTarget, Expression filterExpression, EvaluationContext ctx) {
+        PermissionEvaluator permissionEvaluator = getPermissionEvaluator();
+        if(!(permissionEvaluator instanceof BulkPermissionEvaluator)
+                || !(filterTarget instanceof Collection || filterTarget instanceof Object[])) {
+            return super.filter(filterTarget, filterExpression, ctx);
+        }
+        BulkPermission bulkPermission = getBulkPermission(filterExpression);
+        Object rootObject = ctx.getRootObject().getValue();
+        if(bulkPermission == NOT_BULK || !(rootObject instanceof SecurityExpressionRoot)) {
+            return super.filter(filterTarget, filterExpression, ctx);
+        }
+        List<Object> elements = filterTarget instanceof Collection ?
+                new ArrayList<Object>((Collection<?>) filterTarget) : Arrays.asList((Object[]) filterTarget);
+        if(bulkPermission.targetType != null && !isSerializable(elements)) {
+            return super.filter(filterTarget, filterExpression, ctx);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Filtering with bulk permission expression: " + filterExpression.getExpressionString());
+        }
+
+        boolean[] granted = bulkPermission.hasPermissions((BulkPermissionEvaluator) permissionEvaluator,
+                ((SecurityExpressionRoot) rootObject).getAuthentication(), elements, ctx);
+        if(granted == null || granted.length != elements.size()) {
+            throw new IllegalStateException(permissionEvaluator + " returned " + (granted == null ? "null" : granted.length + " results")
+                    + " for " + elements.size() + " domain objects");
+        }
+        List<Object> retainList = new ArrayList<Object>(elements.size());
+        for(int i = 0; i < granted.length; i++) {
+            if(granted[i]) {
+                retainList.add(elements.get(i));
+            }
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Retaining elements: " + retainList);
+        }
+
+        if(filterTarget instanceof Collection) {
+            @SuppressWarnings("unchecked")
+            Collection<Object> collection = (Collection<Object>) filterTarget;
+            collection.clear();
+            collection.addAll(retainList);
+            return filterTarget;
+        }
+        Object[] filtered = (Object[]) Array.newInstance(filterTarget.getClass().getComponentType(), retainList.size());
+        return retainList.toArray(filtered);
+    }
+
+    private BulkPermission getBulkPermission(Expression filterExpression) {
+        BulkPermission bulkPermission = bulkPermissions.get(filterExpression);
+        if(bulkPermission == null) {
+            bulkPermission = createBulkPermission(filterExpression);
+            bulkPermissions.put(filterExpression, bulkPermission);
+        }
+        return bulkPermission;
+    }
+
+    /**
+     * Determines if the filter expression is hasPermission(filterObject, permission) or
+     * hasPermission(filterObject, 'targetType', permission).
+     */
+    private static BulkPermission createBulkPermission(Expression filterExpression) {
+        if(!(filterExpression instanceof SpelExpression)) {
+            return NOT_BULK;
+        }
+        SpelNode ast = ((SpelExpression) filterExpression).getAST();
+        if(!(ast instanceof MethodReference) || !"hasPermission".equals(((MethodReference) ast).getName())) {
+            return NOT_BULK;
+        }
+        int argCount = ast.getChildCount();
+        if(argCount != 2 && argCount != 3) {
+            return NOT_BULK;
+        }
+        SpelNode target = ast.getChild(0);
+        if(!(target instanceof PropertyOrFieldReference) || !"filterObject".equals(((PropertyOrFieldReference) target).getName())) {
+            return NOT_BULK;
+        }
+        String targetType = null;
+        if(argCount == 3) {
+            if(!(ast.getChild(1) instanceof StringLiteral)) {
+                return NOT_BULK;
+            }
+            targetType = (String) ((StringLiteral) ast.getChild(1)).getLiteralValue().getValue();
+        }
+        SpelNode permission = ast.getChild(argCount - 1);
+        if(permission instanceof Literal) {
+            return new BulkPermission(targetType, ((Literal) permission).getLiteralValue().getValue(), null);
+        }
+        if(permission instanceof VariableReference) {
+            String variable = permission.toStringAST().substring(1);
+            if("this".equals(variable) || "root".equals(variable)) {
+                return NOT_BULK;
+            }
+            return new BulkPermission(targetType, null, variable);
+        }
+        return NOT_BULK;
+    }
+
+    private static boolean isSerializable(List<Object> elements) {
+        for(Object element : elements) {
+            if(element != null && !(element instanceof Serializable)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class BulkPermission {
+        private final String targetType;
+        private final Object permission;
+        private final String permissionVariable;
+
+        private BulkPermission(String targetType, Object permission, String permissionVariable) {
+            this.targetType = targetType;
+            this.permission = permission;
+            this.permissionVariable = permissionVariable;
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean[] hasPermissions(BulkPermissionEvaluator permissionEvaluator, Authentication authentication,
+                List<Object> elements, EvaluationContext ctx) {
+            Object permissionValue = permissionVariable == null ? permission : ctx.lookupVariable(permissionVariable);
+            if(targetType == null) {
+                return permissionEvaluator.hasPermissions(authentication, elements, permissionValue);
+            }
+            List<? extends Serializable> targetIds = (List<? extends Serializable>) (List<?>) elements;
+            return permissionEvaluator.hasPermissions(authentication, targetIds, targetType, permissionValue);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.expression.method;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.ParseException;
+import org.springframework.security.access.prepost.PostInvocationAttribute;
+import org.springframework.security.access.prepost.PreInvocationAttribute;
+import org.springframework.security.access.prepost.PrePostInvocationAttributeFactory;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link PrePostInvocationAttributeFactory} that parses the pre post
+ * annotation values in the same manner as
+ * {@link ExpressionBasedAnnotationAttributeFactory} and compiles the
+ * authorize expressions into a {@link CompiledMethodSecurityExpression} when
+ * possible. The attributes are intended to be used with
+ * {@link CompiledExpressionPreInvocationAdvice} and
+ * {@link CompiledExpressionPostInvocationAdvice}.
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class CompiledExpressionAttributeFactory implements PrePostInvocationAttributeFactory {
+    private final ExpressionParser parser;
+
+    /**
+     * Creates a new instance
+     * @param handler the {@link MethodSecurityExpressionHandler} used to obtain the {@link ExpressionParser}. Cannot be null.
+     */
+    public CompiledExpressionAttributeFactory(MethodSecurityExpressionHandler handler) {
+        Assert.notNull(handler, "handler cannot be null");
+        this.parser = handler.getExpressionParser();
+    }
+
+    public PreInvocationAttribute createPreInvocationAttribute(String preFilterAttribute, String filterObject, String preAuthorizeAttribute) {
+        try {
+            Expression preAuthorizeExpression = preAuthorizeAttribute == null ? parser.parseExpression("permitAll") : parser.parseExpression(preAuthorizeAttribute);
+            Expression preFilterExpression = preFilterAttribute == null ? null : parser.parseExpression(preFilterAttribute);
+            return new CompiledPreInvocationAttribute(preFilterExpression, filterObject, preAuthorizeExpression);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Failed to parse expression '" + e.getExpressionString() + "'", e);
+        }
+    }
+
+    public PostInvocationAttribute createPostInvocationAttribute(String postFilterAttribute, String postAuthorizeAttribute) {
+        try {
+            Expression postAuthorizeExpression = postAuthorizeAttribute == null ? null : parser.parseExpression(postAuthorizeAttribute);
+            Expression postFilterExpression = postFilterAttribute == null ? null : parser.parseExpression(postFilterAttribute);
+            if (postFilterExpression != null || postAuthorizeExpression != null) {
+                return new CompiledPostInvocationAttribute(postFilterExpression, postAuthorizeExpression);
+            }
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Failed to parse expression '" + e.getExpressionString() + "'", e);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.expression.method;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.expression.ExpressionUtils;
+import org.springframework.security.access.prepost.PostInvocationAttribute;
+import org.springframework.security.access.prepost.PostInvocationAuthorizationAdvice;
+import org.springframework.security.core.Authentication;
+
+/**
+ * A {@link PostInvocationAuthorizationAdvice} that behaves the same as
+ * {@link ExpressionBasedPostInvocationAdvice}, but evaluates the
+ * {@link CompiledMethodSecurityExpression} of the attributes created by
+ * {@link CompiledExpressionAttributeFactory} instead of interpreting the
+ * authorize {@link Expression}. Any other {@link PostInvocationAttribute} is
+ * delegated to an {@link ExpressionBasedPostInvocationAdvice}.
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class CompiledExpressionPostInvocationAdvice implements PostInvocationAuthorizationAdvice {
+    protected final Log logger = LogFactory.getLog(getClass());
+
+    private final MethodSecurityExpressionHandler expressionHandler;
+
+    private final ExpressionBasedPostInvocationAdvice delegate;
+
+    /**
+     * Creates a new instance
+     * @param expressionHandler the {@link MethodSecurityExpressionHandler} to use
+     */
+    public CompiledExpressionPostInvocationAdvice(MethodSecurityExpressionHandler expressionHandler) {
+        this.expressionHandler = expressionHandler;
+        this.delegate = new ExpressionBasedPostInvocationAdvice(expressionHandler);
+    }
+
+    public Object after(Authentication authentication, MethodInvocation mi,
+            PostInvocationAttribute postAttr, Object returnedObject) throws AccessDeniedException {
+        if(!(postAttr instanceof CompiledPostInvocationAttribute)) {
+            return delegate.after(authentication, mi, postAttr, returnedObject);
+        }
+        CompiledPostInvocationAttribute pia = (CompiledPostInvocationAttribute) postAttr;
+        EvaluationContext ctx = expressionHandler.createEvaluationContext(authentication, mi);
+        Expression postFilter = pia.getFilterExpression();
+        Expression postAuthorize = pia.getAuthorizeExpression();
+
+        if (postFilter != null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Applying PostFilter expression " + postFilter);
+            }
+
+            if (returnedObject != null) {
+                returnedObject = expressionHandler.filter(returnedObject, postFilter, ctx);
+            } else {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Return object is null, filtering will be skipped");
+                }
+            }
+        }
+
+        if (postAuthorize != null) {
+            expressionHandler.setReturnObject(returnedObject, ctx);
+            CompiledMethodSecurityExpression compiledPostAuthorize = pia.getCompiledAuthorizeExpression();
+            boolean granted = compiledPostAuthorize == null ? ExpressionUtils.evaluateAsBoolean(postAuthorize, ctx)
+                    : compiledPostAuthorize.evaluate(ctx, mi);
+            if (!granted) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("PostAuthorize expression rejected access");
+                }
+                throw new AccessDeniedException("Access is denied");
+            }
+        }
+
+        return returnedObject;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.expression.method;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.security.access.prepost.PreInvocationAttribute;
+import org.springframework.security.access.prepost.PreInvocationAuthorizationAdvice;
+import org.springframework.security.core.Authentication;
+
+/**
+ * A {@link PreInvocationAuthorizationAdvice} that behaves the same as
+ * {@link ExpressionBasedPreInvocationAdvice}, but evaluates the
+ * {@link CompiledMethodSecurityExpression} of the attributes created by
+ * {@link CompiledExpressionAttributeFactory} instead of interpreting the
+ * authorize {@link Expression}. Pre-filtering, authorize expressions that
+ * could not be compiled and any other {@link PreInvocationAttribute} are
+ * delegated to an {@link ExpressionBasedPreInvocationAdvice}.
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class CompiledExpressionPreInvocationAdvice implements PreInvocationAuthorizationAdvice {
+    private final ExpressionBasedPreInvocationAdvice delegate = new ExpressionBasedPreInvocationAdvice();
+
+    private MethodSecurityExpressionHandler expressionHandler = new DefaultMethodSecurityExpressionHandler();
+
+    public boolean before(Authentication authentication, MethodInvocation mi, PreInvocationAttribute attr) {
+        if(!(attr instanceof CompiledPreInvocationAttribute)) {
+            return delegate.before(authentication, mi, attr);
+        }
+        CompiledPreInvocationAttribute preAttr = (CompiledPreInvocationAttribute) attr;
+        PreInvocationAttribute expressionAttr = preAttr.getExpressionAttribute();
+        if(expressionAttr != null && !delegate.before(authentication, mi, expressionAttr)) {
+            return false;
+        }
+
+        CompiledMethodSecurityExpression compiledPreAuthorize = preAttr.getCompiledAuthorizeExpression();
+        if (compiledPreAuthorize == null) {
+            return true;
+        }
+
+        EvaluationContext ctx = expressionHandler.createEvaluationContext(authentication, mi);
+        return compiledPreAuthorize.evaluate(ctx, mi);
+    }
+
+    /**
+     * Sets the {@link MethodSecurityExpressionHandler} to use. The default is
+     * {@link DefaultMethodSecurityExpressionHandler}.
+     *
+     * @param expressionHandler the {@link MethodSecurityExpressionHandler} to use
+     */
+    public void setExpressionHandler(MethodSecurityExpressionHandler expressionHandler) {
+        this.expressionHandler = expressionHandler;
+        this.delegate.setExpressionHandler(expressionHandler);
+    }
+}
@@ -0,0 +1,558 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.expression.method;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.LocalVariableTableParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.CompoundExpression;
+import org.springframework.expression.spel.ast.IntLiteral;
+import org.springframework.expression.spel.ast.Literal;
+import org.springframework.expression.spel.ast.LongLiteral;
+import org.springframework.expression.spel.ast.MethodReference;
+import org.springframework.expression.spel.ast.NullLiteral;
+import org.springframework.expression.spel.ast.OpAnd;
+import org.springframework.expression.spel.ast.OpEQ;
+import org.springframework.expression.spel.ast.OpNE;
+import org.springframework.expression.spel.ast.OpOr;
+import org.springframework.expression.spel.ast.OperatorNot;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.StringLiteral;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.security.access.expression.ExpressionUtils;
+import org.springframework.security.access.expression.SecurityExpressionAstUtils;
+import org.springframework.security.access.expression.SecurityExpressionRoot;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * <p>
+ * A method security {@link Expression} that has been compiled into a tree of
+ * Java predicates. The following shapes (combined with "and", "or" and "not")
+ * are supported:
+ * </p>
+ *
+ * <ul>
+ * <li>hasRole, hasAnyRole, hasAuthority and hasAnyAuthority with literal
+ * arguments</li>
+ * <li>permitAll, denyAll, isAnonymous(), isAuthenticated(), isRememberMe()
+ * and isFullyAuthenticated()</li>
+ * <li>hasPermission with arguments that are method arguments (i.e.
+ * "#contact"), returnObject, principal or literals</li>
+ * <li>principal.username compared with "==" or "!=" to a {@link String}
+ * method argument or a literal</li>
+ * </ul>
+ *
+ * <p>
+ * Method arguments are bound by position. The parameter names of each method
+ * are resolved once and cached, rather than on every invocation. The
+ * {@link SecurityExpressionRoot} created by the
+ * {@link MethodSecurityExpressionHandler} is used to evaluate the
+ * predicates, so the role hierarchy, permission evaluator and trust resolver
+ * that are configured are still honored. If an invocation cannot be evaluated
+ * by the compiled form (i.e. the parameter names of the method are not
+ * available or the principal is not a {@link UserDetails}), the original
+ * {@link Expression} is evaluated instead.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public final class CompiledMethodSecurityExpression {
+    private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new LocalVariableTableParameterNameDiscoverer();
+
+    private static final int[] NO_VARIABLES = new int[0];
+
+    private static final int[] UNBOUND = new int[0];
+
+    private final Expression expression;
+
+    private final Node root;
+
+    private final String[] variables;
+
+    private final boolean[] stringVariables;
+
+    private final boolean usesUsername;
+
+    private final boolean usesReturnObject;
+
+    private final Map<MethodClassKey, int[]> bindings = new ConcurrentHashMap<MethodClassKey, int[]>();
+
+    /**
+     * Compiles the {@link Expression} if it has a supported shape.
+     *
+     * @param expression the {@link Expression} to compile. Cannot be null.
+     * @return the {@link CompiledMethodSecurityExpression} or null if the
+     *         {@link Expression} is not supported
+     */
+    public static CompiledMethodSecurityExpression compile(Expression expression) {
+        if(!(expression instanceof SpelExpression)) {
+            return null;
+        }
+        Compiler compiler = new Compiler();
+        Node root = compiler.compile(((SpelExpression) expression).getAST());
+        if(root == null) {
+            return null;
+        }
+        return new CompiledMethodSecurityExpression(expression, root, compiler);
+    }
+
+    private CompiledMethodSecurityExpression(Expression expression, Node root, Compiler compiler) {
+        this.expression = expression;
+        this.root = root;
+        this.variables = compiler.variables.toArray(new String[compiler.variables.size()]);
+        this.stringVariables = new boolean[variables.length];
+        for(int i = 0; i < variables.length; i++) {
+            this.stringVariables[i] = compiler.stringVariables.contains(variables[i]);
+        }
+        this.usesUsername = compiler.usesUsername;
+        this.usesReturnObject = compiler.usesReturnObject;
+    }
+
+    /**
+     * Evaluates the expression for the {@link MethodInvocation}.
+     *
+     * @param ctx the {@link EvaluationContext} created by the
+     *            {@link MethodSecurityExpressionHandler} for the
+     *            {@link MethodInvocation}
+     * @param mi the {@link MethodInvocation} that is being secured
+     * @return the result of the expression
+     */
+    public boolean evaluate(EvaluationContext ctx, MethodInvocation mi) {
+        Object rootObject = ctx.getRootObject().getValue();
+        if(!(rootObject instanceof SecurityExpressionRoot)
+                || (usesReturnObject && !(rootObject instanceof MethodSecurityExpressionOperations))) {
+            return ExpressionUtils.evaluateAsBoolean(expression, ctx);
+        }
+        SecurityExpressionRoot securityRoot = (SecurityExpressionRoot) rootObject;
+        if(usesUsername && !(securityRoot.getPrincipal() instanceof UserDetails)) {
+            return ExpressionUtils.evaluateAsBoolean(expression, ctx);
+        }
+        int[] binding = NO_VARIABLES;
+        if(variables.length > 0) {
+            binding = getBinding(mi);
+            if(binding == UNBOUND) {
+                return ExpressionUtils.evaluateAsBoolean(expression, ctx);
+            }
+        }
+        return root.matches(securityRoot, mi.getArguments(), binding);
+    }
+
+    /**
+     * Gets the {@link Expression} that was compiled
+     * @return the {@link Expression} that was compiled
+     */
+    public Expression getExpression() {
+        return expression;
+    }
+
+    @Override
+    public String toString() {
+        return expression.getExpressionString();
+    }
+
+    private int[] getBinding(MethodInvocation mi) {
+        Object target = mi.getThis();
+        Class<?> targetClass = target == null ? null : AopProxyUtils.ultimateTargetClass(target);
+        MethodClassKey key = new MethodClassKey(mi.getMethod(), targetClass);
+        int[] binding = bindings.get(key);
+        if(binding == null) {
+            binding = bind(mi.getMethod(), targetClass);
+            bindings.put(key, binding);
+        }
+        return binding;
+    }
+
+    /**
+     * Determines the position of the argument of each variable in the same
+     * manner as {@link DefaultMethodSecurityExpressionHandler}.
+     */
+    private int[] bind(Method method, Class<?> targetClass) {
+        Method specificMethod = targetClass == null ? method : AopUtils.getMostSpecificMethod(method, targetClass);
+        String[] parameterNames = PARAMETER_NAME_DISCOVERER.getParameterNames(specificMethod);
+        if(parameterNames == null) {
+            return UNBOUND;
+        }
+        Class<?>[] parameterTypes = specificMethod.getParameterTypes();
+        int[] binding = new int[variables.length];
+        for(int i = 0; i < variables.length; i++) {
+            int position = indexOf(parameterNames, variables[i]);
+            if(position < 0 || (stringVariables[i] && parameterTypes[position] != String.class)) {
+                return UNBOUND;
+            }
+            binding[i] = position;
+        }
+        return binding;
+    }
+
+    private static int indexOf(String[] values, String value) {
+        for(int i = 0; i < values.length; i++) {
+            if(value.equals(values[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Translates the SpEL AST into a {@link Node} and records the variables
+     * that are referenced. The nodes that only depend on the
+     * {@link org.springframework.security.core.Authentication} are
+     * recognized by {@link SecurityExpressionAstUtils}.
+     */
+    private static final class Compiler {
+        private final List<String> variables = new ArrayList<String>();
+        private final Set<String> stringVariables = new HashSet<String>();
+        private boolean usesUsername;
+        private boolean usesReturnObject;
+
+        private Node compile(SpelNode node) {
+            if(node instanceof OpAnd || node instanceof OpOr) {
+                Node left = compile(node.getChild(0));
+                Node right = compile(node.getChild(1));
+                if(left == null || right == null) {
+                    return null;
+                }
+                return node instanceof OpAnd ? new AndNode(left, right) : new OrNode(left, right);
+            }
+            if(node instanceof OperatorNot) {
+                Node operand = compile(node.getChild(0));
+                return operand == null ? null : new NotNode(operand);
+            }
+            Boolean constant = SecurityExpressionAstUtils.getConstant(node);
+            if(constant != null) {
+                return new ConstantNode(constant);
+            }
+            String trustProperty = SecurityExpressionAstUtils.getTrustProperty(node);
+            if(trustProperty != null) {
+                return new TrustNode(trustProperty);
+            }
+            String[] authorities = SecurityExpressionAstUtils.getAuthorities(node);
+            if(authorities != null) {
+                return new AuthorityNode(authorities, ((MethodReference) node).getName().endsWith("Role"));
+            }
+            if(node instanceof MethodReference) {
+                return permission((MethodReference) node);
+            }
+            if(node instanceof OpEQ || node instanceof OpNE) {
+                Value left = stringValue(node.getChild(0));
+                Value right = stringValue(node.getChild(1));
+                if(left == null || right == null) {
+                    return null;
+                }
+                return new EqualsNode(left, right, node instanceof OpNE);
+            }
+            return null;
+        }
+
+        private Node permission(MethodReference node) {
+            int argCount = node.getChildCount();
+            if(!"hasPermission".equals(node.getName()) || (argCount != 2 && argCount != 3)) {
+                return null;
+            }
+            Value target = value(node.getChild(0));
+            Value permission = value(node.getChild(argCount - 1));
+            if(target == null || permission == null) {
+                return null;
+            }
+            if(argCount == 2) {
+                return new PermissionNode(target, null, permission);
+            }
+            if(!(node.getChild(1) instanceof StringLiteral)) {
+                return null;
+            }
+            String targetType = (String) ((StringLiteral) node.getChild(1)).getLiteralValue().getValue();
+            return new PermissionNode(target, targetType, permission);
+        }
+
+        /**
+         * A {@link Value} that may be passed to hasPermission.
+         */
+        private Value value(SpelNode node) {
+            if(node instanceof StringLiteral || node instanceof IntLiteral || node instanceof LongLiteral || node instanceof NullLiteral) {
+                return new LiteralValue(((Literal) node).getLiteralValue().getValue());
+            }
+            if(node instanceof VariableReference) {
+                return variable((VariableReference) node, false);
+            }
+            if(node instanceof PropertyOrFieldReference) {
+                String name = ((PropertyOrFieldReference) node).getName();
+                if("returnObject".equals(name)) {
+                    usesReturnObject = true;
+                    return new ReturnObjectValue();
+                }
+                if("principal".equals(name)) {
+                    return new PrincipalValue();
+                }
+                return null;
+            }
+            return stringValue(node);
+        }
+
+        /**
+         * A {@link Value} that is known to be a {@link String} (or null), so
+         * that "==" can be evaluated with {@link ObjectUtils#nullSafeEquals(Object, Object)}.
+         */
+        private Value stringValue(SpelNode node) {
+            if(node instanceof StringLiteral || node instanceof NullLiteral) {
+                return new LiteralValue(((Literal) node).getLiteralValue().getValue());
+            }
+            if(node instanceof VariableReference) {
+                return variable((VariableReference) node, true);
+            }
+            if(node instanceof CompoundExpression && node.getChildCount() == 2
+                    && isProperty(node.getChild(0), "principal") && isProperty(node.getChild(1), "username")) {
+                usesUsername = true;
+                return new UsernameValue();
+            }
+            return null;
+        }
+
+        private Value variable(VariableReference node, boolean string) {
+            String name = node.toStringAST().substring(1);
+            if("this".equals(name) || "root".equals(name)) {
+                return null;
+            }
+            if(!variables.contains(name)) {
+                variables.add(name);
+            }
+            if(string) {
+                stringVariables.add(name);
+            }
+            return new VariableValue(variables.indexOf(name));
+        }
+
+        private static boolean isProperty(SpelNode node, String name) {
+            return node instanceof PropertyOrFieldReference && name.equals(((PropertyOrFieldReference) node).getName());
+        }
+    }
+
+    private static abstract class Node {
+        abstract boolean matches(SecurityExpressionRoot root, Object[] args, int[] binding);
+    }
+
+    private static final class AndNode extends Node {
+        private final Node left;
+        private final Node right;
+
+        private AndNode(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        boolean matches(SecurityExpressionRoot root, Object[] args, int[] binding) {
+            return left.matches(root, args, binding) && right.matches(root, args, binding);
+        }
+    }
+
+    private static final class OrNode extends Node {
+        private final Node left;
+        private final Node right;
+
+        private OrNode(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        boolean matches(SecurityExpressionRoot root, Object[] args, int[] binding) {
+            return left.matches(root, args, binding) || right.matches(root, args, binding);
+        }
+    }
+
+    private static final class NotNode extends Node {
+        private final Node operand;
+
+        private NotNode(Node operand) {
+            this.operand = operand;
+        }
+
+        boolean matches(SecurityExpressionRoot root, Object[] args, int[] binding) {
+            return !operand.matches(root, args, binding);
+        }
+    }
+
+    private static final class ConstantNode extends Node {
+        private final boolean value;
+
+        private ConstantNode(boolean value) {
+            this.value = value;
+        }
+
+        boolean matches(SecurityExpressionRoot root, Object[] args, int[] binding) {
+            return value;
+        }
+    }
+
+    private static final class AuthorityNode extends Node {
+        private final String[] authorities;
+        private final boolean role;
+
+        private AuthorityNode(String[] authorities, boolean role) {
+            this.authorities = authorities;
+            this.role = role;
+        }
+
+        boolean matches(SecurityExpressionRoot root, Object[] args, int[] binding) {
+            return role ? root.hasAnyRole(authorities) : root.hasAnyAuthority(authorities);
+        }
+    }
+
+    private static final class TrustNode extends Node {
+        private final String property;
+
+        private TrustNode(String property) {
+            this.property = property;
+        }
+
+        boolean matches(SecurityExpressionRoot root, Object[] args, int[] binding) {
+            if("anonymous".equals(property)) {
+                return root.isAnonymous();
+            }
+            if("authenticated".equals(property)) {
+                return root.isAuthenticated();
+            }
+            if("rememberMe".equals(property)) {
+                return root.isRememberMe();
+            }
+            return root.isFullyAuthenticated();
+        }
+    }
+
+    private static final class PermissionNode extends Node {
+        private final Value target;
+        private final String targetType;
+        private final Value permission;
+
+        private PermissionNode(Value target, String targetType, Value permission) {
+            this.target = target;
+            this.targetType = targetType;
+            this.permission = permission;
+        }
+
+        boolean matches(SecurityExpressionRoot root, Object[] args, int[] binding) {
+            Object targetValue = target.get(root, args, binding);
+            Object permissionValue = permission.get(root, args, binding);
+            if(targetType == null) {
+                return root.hasPermission(targetValue, permissionValue);
+            }
+            return root.hasPermission(targetValue, targetType, permissionValue);
+        }
+    }
+
+    private static final class EqualsNode extends Node {
+        private final Value left;
+        private final Value right;
+        private final boolean negate;
+
+        private EqualsNode(Value left, Value right, boolean negate) {
+            this.left = left;
+            this.right = right;
+            this.negate = negate;
+        }
+
+        boolean matches(SecurityExpressionRoot root, Object[] args, int[] binding) {
+            return ObjectUtils.nullSafeEquals(left.get(root, args, binding), right.get(root, args, binding)) != negate;
+        }
+    }
+
+    private static abstract class Value {
+        abstract Object get(SecurityExpressionRoot root, Object[] args, int[] binding);
+    }
+
+    private static final class LiteralValue extends Value {
+        private final Object value;
+
+        private LiteralValue(Object value) {
+            this.value = value;
+        }
+
+        Object get(SecurityExpressionRoot root, Object[] args, int[] binding) {
+            return value;
+        }
+    }
+
+    private static final class VariableValue extends Value {
+        private final int variable;
+
+        private VariableValue(int variable) {
+            this.variable = variable;
+        }
+
+        Object get(SecurityExpressionRoot root, Object[] args, int[] binding) {
+            return args[binding[variable]];
+        }
+    }
+
+    private static final class ReturnObjectValue extends Value {
+        Object get(SecurityExpressionRoot root, Object[] args, int[] binding) {
+            return ((MethodSecurityExpressionOperations) root).getReturnObject();
+        }
+    }
+
+    private static final class PrincipalValue extends Value {
+        Object get(SecurityExpressionRoot root, Object[] args, int[] binding) {
+            return root.getPrincipal();
+        }
+    }
+
+    private static final class UsernameValue extends Value {
+        Object get(SecurityExpressionRoot root, Object[] args, int[] binding) {
+            return ((UserDetails) root.getPrincipal()).getUsername();
+        }
+    }
+
+    private static final class MethodClassKey {
+        private final Method method;
+        private final Class<?> targetClass;
+
+        private MethodClassKey(Method method, Class<?> targetClass) {
+            this.method = method;
+            this.targetClass = targetClass;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(this == other) {
+                return true;
+            }
+            if(!(other instanceof MethodClassKey)) {
+                return false;
+            }
+            MethodClassKey otherKey = (MethodClassKey) other;
+            return method.equals(otherKey.method) && ObjectUtils.nullSafeEquals(targetClass, otherKey.targetClass);
+        }
+
+        @Override
+        public int hashCode() {
+            return method.hashCode() * 21 + (targetClass == null ? 0 : targetClass.hashCode());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.expression.method;
+
+import org.springframework.expression.Expression;
+import org.springframework.security.access.prepost.PostInvocationAttribute;
+
+/**
+ * A {@link PostInvocationAttribute} created by
+ * {@link CompiledExpressionAttributeFactory} that holds the
+ * {@link CompiledMethodSecurityExpression} of its authorize
+ * {@link Expression}.
+ *
+ * @author agent
+ * @since 3.2
+ */
+final class CompiledPostInvocationAttribute implements PostInvocationAttribute {
+    private final Expression filterExpression;
+    private final Expression authorizeExpression;
+    private final CompiledMethodSecurityExpression compiledAuthorizeExpression;
+
+    CompiledPostInvocationAttribute(Expression filterExpression, Expression authorizeExpression) {
+        this.filterExpression = filterExpression;
+        this.authorizeExpression = authorizeExpression;
+        this.compiledAuthorizeExpression = authorizeExpression == null ? null : CompiledMethodSecurityExpression.compile(authorizeExpression);
+    }
+
+    public String getAttribute() {
+        return null;
+    }
+
+    Expression getFilterExpression() {
+        return filterExpression;
+    }
+
+    Expression getAuthorizeExpression() {
+        return authorizeExpression;
+    }
+
+    /**
+     * Gets the compiled form of the authorize {@link Expression}
+     * @return the compiled form of the authorize {@link Expression} or null if it could not be compiled
+     */
+    CompiledMethodSecurityExpression getCompiledAuthorizeExpression() {
+        return compiledAuthorizeExpression;
+    }
+
+    @Override
+    public String toString() {
+        return "[authorize: '" + (authorizeExpression == null ? "null" : authorizeExpression.getExpressionString())
+                + "', filter: '" + (filterExpression == null ? "null" : filterExpression.getExpressionString()) + "']";
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.expression.method;
+
+import org.springframework.expression.Expression;
+import org.springframework.security.access.prepost.PreInvocationAttribute;
+
+/**
+ * A {@link PreInvocationAttribute} created by
+ * {@link CompiledExpressionAttributeFactory} that holds the
+ * {@link CompiledMethodSecurityExpression} of its authorize
+ * {@link Expression}. The rest of the attribute is held as a
+ * {@link PreInvocationExpressionAttribute} for the
+ * {@link ExpressionBasedPreInvocationAdvice}.
+ *
+ * @author agent
+ * @since 3.2
+ */
+final class CompiledPreInvocationAttribute implements PreInvocationAttribute {
+    private final Expression filterExpression;
+    private final String filterTarget;
+    private final Expression authorizeExpression;
+    private final CompiledMethodSecurityExpression compiledAuthorizeExpression;
+    private final PreInvocationExpressionAttribute expressionAttribute;
+
+    CompiledPreInvocationAttribute(Expression filterExpression, String filterTarget, Expression authorizeExpression) {
+        this.filterExpression = filterExpression;
+        this.filterTarget = filterTarget;
+        this.authorizeExpression = authorizeExpression;
+        this.compiledAuthorizeExpression = authorizeExpression == null ? null : CompiledMethodSecurityExpression.compile(authorizeExpression);
+        if(compiledAuthorizeExpression == null) {
+            this.expressionAttribute = new PreInvocationExpressionAttribute(filterExpression, filterTarget, authorizeExpression);
+        } else {
+            this.expressionAttribute = filterExpression == null ? null : new PreInvocationExpressionAttribute(filterExpression, filterTarget, null);
+        }
+    }
+
+    public String getAttribute() {
+        return null;
+    }
+
+    Expression getFilterExpression() {
+        return filterExpression;
+    }
+
+    String getFilterTarget() {
+        return filterTarget;
+    }
+
+    Expression getAuthorizeExpression() {
+        return authorizeExpression;
+    }
+
+    /**
+     * Gets the compiled form of the authorize {@link Expression}
+     * @return the compiled form of the authorize {@link Expression} or null if it could not be compiled
+     */
+    CompiledMethodSecurityExpression getCompiledAuthorizeExpression() {
+        return compiledAuthorizeExpression;
+    }
+
+    /**
+     * Gets the part of this attribute that is evaluated by the
+     * {@link ExpressionBasedPreInvocationAdvice}. This is the pre-filter
+     * {@link Expression} if the authorize {@link Expression} was compiled,
+     * else both {@link Expression} instances.
+     *
+     * @return the {@link PreInvocationExpressionAttribute} or null if there is nothing to evaluate
+     */
+    PreInvocationAttribute getExpressionAttribute() {
+        return expressionAttribute;
+    }
+
+    @Override
+    public String toString() {
+        return "[authorize: '" + (authorizeExpression == null ? "null" : authorizeExpression.getExpressionString())
+                + "', filter: '" + (filterExpression == null ? "null" : filterExpression.getExpressionString())
+                + "', filterTarget: '" + filterTarget + "']";
+    }
+}
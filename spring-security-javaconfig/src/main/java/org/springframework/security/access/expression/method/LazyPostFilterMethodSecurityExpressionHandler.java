@@ -0,0 +1,336 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.expression.method;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.expression.BeanResolver;
+import org.springframework.expression.ConstructorResolver;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.MethodResolver;
+import org.springframework.expression.OperatorOverloader;
+import org.springframework.expression.PropertyAccessor;
+import org.springframework.expression.TypeComparator;
+import org.springframework.expression.TypeConverter;
+import org.springframework.expression.TypeLocator;
+import org.springframework.expression.TypedValue;
+import org.springframework.security.access.expression.ExpressionUtils;
+import org.springframework.security.core.Authentication;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * A {@link MethodSecurityExpressionHandler} that delegates to another
+ * {@link MethodSecurityExpressionHandler}, but filters the objects returned
+ * by secured methods without copying them when possible:
+ * </p>
+ *
+ * <ul>
+ * <li>If the method is declared to return an {@link Iterable} (i.e.
+ * {@code Iterable<Message> findAll()}) a view is returned that evaluates the
+ * filter expression for each element as the caller iterates over it.</li>
+ * <li>If the method is declared to return an {@link Iterator} an
+ * {@link Iterator} is returned that evaluates the filter expression for each
+ * element as the caller consumes it.</li>
+ * <li>If an {@link ExecutorService} is provided and an array with at least
+ * {@link #setParallelThreshold(int)} elements is returned, the filter
+ * expression is evaluated by multiple threads, each with its own
+ * {@link EvaluationContext}.</li>
+ * </ul>
+ *
+ * <p>
+ * Any other object is filtered by the delegate. Since the lazy views do not
+ * modify the object they wrap, this {@link MethodSecurityExpressionHandler}
+ * must only be used to filter the objects returned by methods (i.e. by the
+ * {@link ExpressionBasedPostInvocationAdvice}) and not the arguments of
+ * methods. Note that any error evaluating the filter expression of a lazy
+ * view occurs while the caller iterates over it.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public final class LazyPostFilterMethodSecurityExpressionHandler implements MethodSecurityExpressionHandler {
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 1000;
+
+    private final MethodSecurityExpressionHandler delegate;
+
+    private ExecutorService executorService;
+
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * Creates a new instance
+     *
+     * @param delegate the {@link MethodSecurityExpressionHandler} to delegate
+     *            to. Cannot be null.
+     */
+    public LazyPostFilterMethodSecurityExpressionHandler(MethodSecurityExpressionHandler delegate) {
+        Assert.notNull(delegate, "delegate cannot be null");
+        this.delegate = delegate;
+    }
+
+    public ExpressionParser getExpressionParser() {
+        return delegate.getExpressionParser();
+    }
+
+    public EvaluationContext createEvaluationContext(Authentication authentication, MethodInvocation mi) {
+        return new MethodInvocationEvaluationContext(delegate.createEvaluationContext(authentication, mi), authentication, mi);
+    }
+
+    public Object filter(Object filterTarget, Expression filterExpression, EvaluationContext ctx) {
+        if(!(ctx instanceof MethodInvocationEvaluationContext)) {
+            return delegate.filter(filterTarget, filterExpression, ctx);
+        }
+        MethodInvocationEvaluationContext invocationCtx = (MethodInvocationEvaluationContext) ctx;
+        Class<?> returnType = invocationCtx.mi.getMethod().getReturnType();
+        if(returnType == Iterable.class && filterTarget instanceof Iterable) {
+            return new FilteringIterable((Iterable<?>) filterTarget, filterExpression, invocationCtx);
+        }
+        if(returnType == Iterator.class && filterTarget instanceof Iterator) {
+            return new FilteringIterator((Iterator<?>) filterTarget, filterExpression, invocationCtx.delegate);
+        }
+        if(executorService != null && filterTarget instanceof Object[] && ((Object[]) filterTarget).length >= parallelThreshold) {
+            return parallelFilter((Object[]) filterTarget, filterExpression, invocationCtx);
+        }
+        return delegate.filter(filterTarget, filterExpression, invocationCtx.delegate);
+    }
+
+    public void setReturnObject(Object returnObject, EvaluationContext ctx) {
+        delegate.setReturnObject(returnObject, unwrap(ctx));
+    }
+
+    /**
+     * Sets the {@link ExecutorService} used to filter large arrays. The
+     * default is null, which means arrays are filtered by the delegate.
+     *
+     * @param executorService the {@link ExecutorService} to use
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Sets the minimum number of elements an array must have to be filtered
+     * in parallel. The default is 1000.
+     *
+     * @param parallelThreshold the minimum number of elements. Must be greater than 0.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        Assert.isTrue(parallelThreshold > 0, "parallelThreshold must be greater than 0");
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Gets the {@link MethodSecurityExpressionHandler} that is delegated to
+     * @return the {@link MethodSecurityExpressionHandler} that is delegated to
+     */
+    public MethodSecurityExpressionHandler getDelegate() {
+        return delegate;
+    }
+
+    private Object[] parallelFilter(final Object[] filterTarget, final Expression filterExpression, final MethodInvocationEvaluationContext ctx) {
+        final boolean[] retain = new boolean[filterTarget.length];
+        int taskCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), filterTarget.length / parallelThreshold + 1));
+        int chunkSize = (filterTarget.length + taskCount - 1) / taskCount;
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(taskCount);
+        for(int start = 0; start < filterTarget.length; start += chunkSize) {
+            final int from = start;
+            final int to = Math.min(start + chunkSize, filterTarget.length);
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    EvaluationContext taskCtx = delegate.createEvaluationContext(ctx.authentication, ctx.mi);
+                    MethodSecurityExpressionOperations rootObject = (MethodSecurityExpressionOperations) taskCtx.getRootObject().getValue();
+                    for(int i = from; i < to; i++) {
+                        rootObject.setFilterObject(filterTarget[i]);
+                        retain[i] = ExpressionUtils.evaluateAsBoolean(filterExpression, taskCtx);
+                    }
+                    return null;
+                }
+            });
+        }
+        try {
+            for(Future<Void> result : executorService.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while filtering", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Failed to filter", cause);
+        }
+        int retainCount = 0;
+        for(boolean retained : retain) {
+            if(retained) {
+                retainCount++;
+            }
+        }
+        Object[] filtered = (Object[]) Array.newInstance(filterTarget.getClass().getComponentType(), retainCount);
+        int index = 0;
+        for(int i = 0; i < filterTarget.length; i++) {
+            if(retain[i]) {
+                filtered[index++] = filterTarget[i];
+            }
+        }
+        return filtered;
+    }
+
+    private static EvaluationContext unwrap(EvaluationContext ctx) {
+        return ctx instanceof MethodInvocationEvaluationContext ? ((MethodInvocationEvaluationContext) ctx).delegate : ctx;
+    }
+
+    /**
+     * An {@link Iterable} that creates a {@link FilteringIterator} with a new
+     * {@link EvaluationContext} for each {@link Iterator}, so that it may be
+     * iterated over by multiple threads.
+     */
+    private final class FilteringIterable implements Iterable<Object> {
+        private final Iterable<?> source;
+        private final Expression filterExpression;
+        private final MethodInvocationEvaluationContext ctx;
+
+        private FilteringIterable(Iterable<?> source, Expression filterExpression, MethodInvocationEvaluationContext ctx) {
+            this.source = source;
+            this.filterExpression = filterExpression;
+            this.ctx = ctx;
+        }
+
+        public Iterator<Object> iterator() {
+            EvaluationContext iteratorCtx = delegate.createEvaluationContext(ctx.authentication, ctx.mi);
+            return new FilteringIterator(source.iterator(), filterExpression, iteratorCtx);
+        }
+    }
+
+    private static final class FilteringIterator implements Iterator<Object> {
+        private final Iterator<?> source;
+        private final Expression filterExpression;
+        private final EvaluationContext ctx;
+        private final MethodSecurityExpressionOperations rootObject;
+        private Object next;
+        private boolean hasNext;
+
+        private FilteringIterator(Iterator<?> source, Expression filterExpression, EvaluationContext ctx) {
+            this.source = source;
+            this.filterExpression = filterExpression;
+            this.ctx = ctx;
+            this.rootObject = (MethodSecurityExpressionOperations) ctx.getRootObject().getValue();
+        }
+
+        public boolean hasNext() {
+            while(!hasNext && source.hasNext()) {
+                Object candidate = source.next();
+                rootObject.setFilterObject(candidate);
+                if(ExpressionUtils.evaluateAsBoolean(filterExpression, ctx)) {
+                    next = candidate;
+                    hasNext = true;
+                }
+            }
+            return hasNext;
+        }
+
+        public Object next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object result = next;
+            next = null;
+            hasNext = false;
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("remove is not supported");
+        }
+    }
+
+    /**
+     * An {@link EvaluationContext} that remembers the {@link Authentication}
+     * and {@link MethodInvocation} it was created for.
+     */
+    private static final class MethodInvocationEvaluationContext implements EvaluationContext {
+        private final EvaluationContext delegate;
+        private final Authentication authentication;
+        private final MethodInvocation mi;
+
+        private MethodInvocationEvaluationContext(EvaluationContext delegate, Authentication authentication, MethodInvocation mi) {
+            this.delegate = delegate;
+            this.authentication = authentication;
+            this.mi = mi;
+        }
+
+        public TypedValue getRootObject() {
+            return delegate.getRootObject();
+        }
+
+        public List<ConstructorResolver> getConstructorResolvers() {
+            return delegate.getConstructorResolvers();
+        }
+
+        public List<MethodResolver> getMethodResolvers() {
+            return delegate.getMethodResolvers();
+        }
+
+        public List<PropertyAccessor> getPropertyAccessors() {
+            return delegate.getPropertyAccessors();
+        }
+
+        public TypeLocator getTypeLocator() {
+            return delegate.getTypeLocator();
+        }
+
+        public TypeConverter getTypeConverter() {
+            return delegate.getTypeConverter();
+        }
+
+        public TypeComparator getTypeComparator() {
+            return delegate.getTypeComparator();
+        }
+
+        public OperatorOverloader getOperatorOverloader() {
+            return delegate.getOperatorOverloader();
+        }
+
+        public BeanResolver getBeanResolver() {
+            return delegate.getBeanResolver();
+        }
+
+        public void setVariable(String name, Object value) {
+            delegate.setVariable(name, value);
+        }
+
+        public Object lookupVariable(String name) {
+            return delegate.lookupVariable(name);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.intercept.aspectj;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.util.Collection;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.access.SecurityMetadataSource;
+import org.springframework.security.access.event.PublicInvocationEvent;
+import org.springframework.security.access.intercept.aopalliance.MethodSecurityInterceptor;
+
+/**
+ * <p>
+ * A {@link MethodSecurityInterceptor} that may also be invoked by an AspectJ
+ * aspect (i.e. {@link MethodSecurityAspect}) with the
+ * {@link ProceedingJoinPoint} of a woven method execution. Compared to
+ * {@link AspectJMethodSecurityInterceptor}:
+ * </p>
+ *
+ * <ul>
+ * <li>The {@link Method} is obtained from the {@link MethodSignature} of the
+ * join point (which AspectJ caches) rather than found using reflection on
+ * every invocation.</li>
+ * <li>If the method has no {@link ConfigAttribute} instances and public
+ * invocations are not rejected, the join point proceeds without creating a
+ * {@link MethodInvocation}. Otherwise the {@link ConfigAttribute} instances
+ * are reused by {@link #beforeInvocation(Object)} rather than looked up
+ * again.</li>
+ * </ul>
+ *
+ * <p>
+ * Since it is a {@link MethodSecurityInterceptor}, it can still be used to
+ * secure proxies.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class JoinPointMethodSecurityInterceptor extends MethodSecurityInterceptor {
+    private final SecurityMetadataSource joinPointMetadataSource = new JoinPointSecurityMetadataSource();
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Secures the execution of a method that was woven by AspectJ.
+     *
+     * @param jp the {@link ProceedingJoinPoint} of a method execution
+     * @return the result of the method (which may be modified by the
+     *         {@link org.springframework.security.access.intercept.AfterInvocationManager})
+     * @throws Throwable if the method or the security checks throw an exception
+     */
+    public Object invoke(ProceedingJoinPoint jp) throws Throwable {
+        Method method = ((MethodSignature) jp.getSignature()).getMethod();
+        Object target = jp.getTarget();
+        Collection<ConfigAttribute> attributes = null;
+        if(!isRejectPublicInvocations()) {
+            Class<?> targetClass = target == null ? null : AopProxyUtils.ultimateTargetClass(target);
+            attributes = getSecurityMetadataSource().getAttributes(method, targetClass);
+            if(attributes == null || attributes.isEmpty()) {
+                if(eventPublisher != null) {
+                    eventPublisher.publishEvent(new PublicInvocationEvent(jp));
+                }
+                return jp.proceed();
+            }
+        }
+        return invoke(new JoinPointMethodInvocation(jp, method, target, attributes));
+    }
+
+    @Override
+    public SecurityMetadataSource obtainSecurityMetadataSource() {
+        return joinPointMetadataSource;
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+        super.setApplicationEventPublisher(eventPublisher);
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * A {@link MethodInvocation} that proceeds with the {@link ProceedingJoinPoint}.
+     */
+    private static final class JoinPointMethodInvocation implements MethodInvocation {
+        private final ProceedingJoinPoint jp;
+        private final Method method;
+        private final Object target;
+        private final Collection<ConfigAttribute> attributes;
+
+        private JoinPointMethodInvocation(ProceedingJoinPoint jp, Method method, Object target,
+                Collection<ConfigAttribute> attributes) {
+            this.jp = jp;
+            this.method = method;
+            this.target = target;
+            this.attributes = attributes;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        public Object[] getArguments() {
+            return jp.getArgs();
+        }
+
+        public AccessibleObject getStaticPart() {
+            return method;
+        }
+
+        public Object getThis() {
+            return target;
+        }
+
+        public Object proceed() throws Throwable {
+            return jp.proceed();
+        }
+
+        @Override
+        public String toString() {
+            return jp.toString();
+        }
+    }
+
+    /**
+     * Returns the {@link ConfigAttribute} instances that were already found
+     * for a {@link JoinPointMethodInvocation} and otherwise delegates to
+     * {@link #getSecurityMetadataSource()}.
+     */
+    private final class JoinPointSecurityMetadataSource implements SecurityMetadataSource {
+
+        public Collection<ConfigAttribute> getAttributes(Object object) {
+            if(object instanceof JoinPointMethodInvocation) {
+                Collection<ConfigAttribute> attributes = ((JoinPointMethodInvocation) object).attributes;
+                if(attributes != null) {
+                    return attributes;
+                }
+            }
+            return getSecurityMetadataSource().getAttributes(object);
+        }
+
+        public Collection<ConfigAttribute> getAllConfigAttributes() {
+            return getSecurityMetadataSource().getAllConfigAttributes();
+        }
+
+        public boolean supports(Class<?> clazz) {
+            return getSecurityMetadataSource().supports(clazz);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.intercept.aspectj;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+
+/**
+ * <p>
+ * An AspectJ aspect that secures the execution of methods that have Spring
+ * Security's {@code @Secured}, {@code @PreAuthorize}, {@code @PreFilter},
+ * {@code @PostAuthorize} or {@code @PostFilter} annotations or the JSR-250
+ * {@code @RolesAllowed}, {@code @PermitAll} or {@code @DenyAll} annotations.
+ * Public methods of classes that have one of the type level annotations are
+ * also secured. Note that, as with any AspectJ aspect, annotations on
+ * interfaces are not considered.
+ * </p>
+ *
+ * <p>
+ * The aspect is written in the {@code @AspectJ} style, so it must be woven
+ * with the application classes by the AspectJ compiler (ajc) or load time
+ * weaving. When it has been woven, using
+ * {@code @EnableGlobalMethodSecurity(mode = AdviceMode.ASPECTJ)} configures the
+ * singleton aspect with a {@link JoinPointMethodSecurityInterceptor} and no
+ * proxies are created. Until it is configured the aspect allows every
+ * invocation.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+@Aspect
+public class MethodSecurityAspect {
+    private JoinPointMethodSecurityInterceptor securityInterceptor;
+
+    @Pointcut("execution(* *(..)) && ("
+            + "@annotation(org.springframework.security.access.annotation.Secured) || "
+            + "@annotation(org.springframework.security.access.prepost.PreAuthorize) || "
+            + "@annotation(org.springframework.security.access.prepost.PreFilter) || "
+            + "@annotation(org.springframework.security.access.prepost.PostAuthorize) || "
+            + "@annotation(org.springframework.security.access.prepost.PostFilter) || "
+            + "@annotation(javax.annotation.security.RolesAllowed) || "
+            + "@annotation(javax.annotation.security.PermitAll) || "
+            + "@annotation(javax.annotation.security.DenyAll))")
+    public void executionOfAnnotatedMethod() {}
+
+    @Pointcut("execution(public * *(..)) && ("
+            + "within(@org.springframework.security.access.annotation.Secured *) || "
+            + "within(@org.springframework.security.access.prepost.PreAuthorize *) || "
+            + "within(@org.springframework.security.access.prepost.PostAuthorize *) || "
+            + "within(@javax.annotation.security.RolesAllowed *) || "
+            + "within(@javax.annotation.security.PermitAll *) || "
+            + "within(@javax.annotation.security.DenyAll *))")
+    public void executionOfPublicMethodInAnnotatedType() {}
+
+    /**
+     * Secures the method execution using the
+     * {@link JoinPointMethodSecurityInterceptor} (if it has been set).
+     *
+     * @param jp the method execution
+     * @return the result of the method
+     * @throws Throwable if the method or the security checks throw an exception
+     */
+    @Around("executionOfAnnotatedMethod() || executionOfPublicMethodInAnnotatedType()")
+    public Object secure(ProceedingJoinPoint jp) throws Throwable {
+        JoinPointMethodSecurityInterceptor securityInterceptor = this.securityInterceptor;
+        if(securityInterceptor == null) {
+            return jp.proceed();
+        }
+        return securityInterceptor.invoke(jp);
+    }
+
+    /**
+     * Sets the {@link JoinPointMethodSecurityInterceptor} used to secure method executions
+     * @param securityInterceptor the {@link JoinPointMethodSecurityInterceptor} to use
+     */
+    public void setSecurityInterceptor(JoinPointMethodSecurityInterceptor securityInterceptor) {
+        this.securityInterceptor = securityInterceptor;
+    }
+}
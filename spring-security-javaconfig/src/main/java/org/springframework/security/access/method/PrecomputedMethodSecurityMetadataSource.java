@@ -0,0 +1,160 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.method;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * <p>
+ * A {@link MethodSecurityMetadataSource} that resolves the
+ * {@link ConfigAttribute} instances of every method of a set of classes up
+ * front using another {@link MethodSecurityMetadataSource} (i.e.
+ * {@link DelegatingMethodSecurityMetadataSource}). The results are stored in
+ * an immutable lookup table, so looking up the {@link ConfigAttribute}
+ * instances of a precomputed method requires no synchronization and no
+ * annotation reflection.
+ * </p>
+ *
+ * <p>
+ * Methods that were not precomputed (i.e. of a class created after
+ * {@link #precompute(Collection)} was invoked) are resolved by the delegate.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public final class PrecomputedMethodSecurityMetadataSource extends AbstractMethodSecurityMetadataSource {
+    private static final List<ConfigAttribute> NULL_CONFIG_ATTRIBUTE = Collections.unmodifiableList(new ArrayList<ConfigAttribute>(0));
+
+    private final MethodSecurityMetadataSource delegate;
+
+    private volatile Map<MethodClassKey, Collection<ConfigAttribute>> attributeTable = Collections.emptyMap();
+
+    /**
+     * Creates a new instance
+     *
+     * @param delegate the {@link MethodSecurityMetadataSource} used to
+     *            resolve the {@link ConfigAttribute} instances. Cannot be
+     *            null.
+     */
+    public PrecomputedMethodSecurityMetadataSource(MethodSecurityMetadataSource delegate) {
+        Assert.notNull(delegate, "delegate cannot be null");
+        this.delegate = delegate;
+    }
+
+    public Collection<ConfigAttribute> getAttributes(Method method, Class<?> targetClass) {
+        Collection<ConfigAttribute> attributes = attributeTable.get(new MethodClassKey(method, targetClass));
+        if(attributes == null) {
+            return delegate.getAttributes(method, targetClass);
+        }
+        return attributes == NULL_CONFIG_ATTRIBUTE ? null : attributes;
+    }
+
+    public Collection<ConfigAttribute> getAllConfigAttributes() {
+        return delegate.getAllConfigAttributes();
+    }
+
+    /**
+     * Resolves the {@link ConfigAttribute} instances of every method that
+     * may be invoked on the target classes (i.e. the methods of the class,
+     * its superclasses and its interfaces) and adds them to the lookup table.
+     *
+     * @param targetClasses the classes to precompute the
+     *            {@link ConfigAttribute} instances for. Cannot be null.
+     */
+    public void precompute(Collection<Class<?>> targetClasses) {
+        Assert.notNull(targetClasses, "targetClasses cannot be null");
+        Map<MethodClassKey, Collection<ConfigAttribute>> table = new HashMap<MethodClassKey, Collection<ConfigAttribute>>(attributeTable);
+        for(Class<?> targetClass : targetClasses) {
+            for(Method method : ReflectionUtils.getAllDeclaredMethods(targetClass)) {
+                add(table, method, targetClass);
+            }
+            for(Class<?> ifc : ClassUtils.getAllInterfacesForClassAsSet(targetClass)) {
+                for(Method method : ifc.getMethods()) {
+                    add(table, method, targetClass);
+                }
+            }
+        }
+        attributeTable = Collections.unmodifiableMap(table);
+    }
+
+    /**
+     * Gets the number of methods that have been precomputed
+     * @return the number of methods that have been precomputed
+     */
+    public int size() {
+        return attributeTable.size();
+    }
+
+    /**
+     * Gets the {@link MethodSecurityMetadataSource} that is used to resolve the {@link ConfigAttribute} instances
+     * @return the {@link MethodSecurityMetadataSource} that is used to resolve the {@link ConfigAttribute} instances
+     */
+    public MethodSecurityMetadataSource getDelegate() {
+        return delegate;
+    }
+
+    private void add(Map<MethodClassKey, Collection<ConfigAttribute>> table, Method method, Class<?> targetClass) {
+        if(method.getDeclaringClass() == Object.class || method.isSynthetic()) {
+            return;
+        }
+        MethodClassKey key = new MethodClassKey(method, targetClass);
+        if(table.containsKey(key)) {
+            return;
+        }
+        Collection<ConfigAttribute> attributes = delegate.getAttributes(method, targetClass);
+        table.put(key, attributes == null ? NULL_CONFIG_ATTRIBUTE : attributes);
+    }
+
+    private static final class MethodClassKey {
+        private final Method method;
+        private final Class<?> targetClass;
+
+        private MethodClassKey(Method method, Class<?> targetClass) {
+            this.method = method;
+            this.targetClass = targetClass;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(this == other) {
+                return true;
+            }
+            if(!(other instanceof MethodClassKey)) {
+                return false;
+            }
+            MethodClassKey otherKey = (MethodClassKey) other;
+            return method.equals(otherKey.method) && ObjectUtils.nullSafeEquals(targetClass, otherKey.targetClass);
+        }
+
+        @Override
+        public int hashCode() {
+            return method.hashCode() * 21 + (targetClass == null ? 0 : targetClass.hashCode());
+        }
+    }
+}
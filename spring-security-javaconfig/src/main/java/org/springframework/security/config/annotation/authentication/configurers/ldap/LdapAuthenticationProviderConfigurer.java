@@ -15,6 +15,8 @@
  */
 package org.springframework.security.config.annotation.authentication.configurers.ldap;
 
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.ldap.core.support.BaseLdapPathContextSource;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
@@ -24,6 +26,7 @@ import org.springframework.security.config.annotation.SecurityConfigurerAdapter;
 import org.springframework.security.config.annotation.authentication.ProviderManagerBuilder;
 import org.springframework.security.core.authority.mapping.SimpleAuthorityMapper;
 import org.springframework.security.ldap.DefaultSpringSecurityContextSource;
+import org.springframework.security.ldap.PoolingSpringSecurityContextSource;
 import org.springframework.security.ldap.authentication.AbstractLdapAuthenticator;
 import org.springframework.security.ldap.authentication.BindAuthenticator;
 import org.springframework.security.ldap.authentication.LdapAuthenticationProvider;
@@ -322,7 +325,10 @@ public class LdapAuthenticationProviderConfigurer<B extends ProviderManagerBuild
 
     /**
      * Allows building a {@link BaseLdapPathContextSource} and optionally
-     * creating an embedded LDAP instance.
+     * creating an embedded LDAP instance. By default the read only contexts
+     * used for searches are pooled (see
+     * {@link PoolingSpringSecurityContextSource}) while the binds of the
+     * users that authenticate are never pooled.
      *
      * @author Rob Winch
      * @since 3.2
@@ -334,6 +340,12 @@ public class LdapAuthenticationProviderConfigurer<B extends ProviderManagerBuild
         private int port = 33389;
         private String root = "dc=springframework,dc=org";
         private String url;
+        private boolean pooled = true;
+        private int maxIdle = 8;
+        private int minIdle;
+        private long maxIdleTime = 300;
+        private TimeUnit maxIdleTimeUnit = TimeUnit.SECONDS;
+        private boolean validateOnBorrow;
 
         /**
          * Specifies an ldif to load at startup for an embedded LDAP server.
@@ -411,6 +423,79 @@ public class LdapAuthenticationProviderConfigurer<B extends ProviderManagerBuild
             return this;
         }
 
+        /**
+         * Specifies if the read only contexts that are used to search for
+         * users and groups (authenticated as the manager DN or anonymous)
+         * should be pooled. The binds of the users that authenticate are
+         * never pooled. The default is true.
+         *
+         * @param pooled
+         *            true if the read only contexts should be pooled, else
+         *            false
+         * @return the {@link ContextSourceBuilder} for further customization
+         * @see PoolingSpringSecurityContextSource
+         */
+        public ContextSourceBuilder pooled(boolean pooled) {
+            this.pooled = pooled;
+            return this;
+        }
+
+        /**
+         * The maximum number of idle read only contexts to keep in the pool
+         * (the default is 8).
+         *
+         * @param maxIdle the maximum number of idle contexts
+         * @return the {@link ContextSourceBuilder} for further customization
+         * @see PoolingSpringSecurityContextSource#setMaxIdle(int)
+         */
+        public ContextSourceBuilder maxIdle(int maxIdle) {
+            this.maxIdle = maxIdle;
+            return this;
+        }
+
+        /**
+         * The number of idle read only contexts to keep even if they are
+         * idle longer than {@link #maxIdleTime(long, TimeUnit)} (the default
+         * is 0).
+         *
+         * @param minIdle the minimum number of idle contexts
+         * @return the {@link ContextSourceBuilder} for further customization
+         * @see PoolingSpringSecurityContextSource#setMinIdle(int)
+         */
+        public ContextSourceBuilder minIdle(int minIdle) {
+            this.minIdle = minIdle;
+            return this;
+        }
+
+        /**
+         * How long a read only context may be idle in the pool before it is
+         * closed rather than reused (the default is 5 minutes).
+         *
+         * @param maxIdleTime the maximum idle time
+         * @param unit the {@link TimeUnit} of maxIdleTime
+         * @return the {@link ContextSourceBuilder} for further customization
+         * @see PoolingSpringSecurityContextSource#setMaxIdleTime(long, TimeUnit)
+         */
+        public ContextSourceBuilder maxIdleTime(long maxIdleTime, TimeUnit unit) {
+            this.maxIdleTime = maxIdleTime;
+            this.maxIdleTimeUnit = unit;
+            return this;
+        }
+
+        /**
+         * Specifies if an idle read only context should be validated with a
+         * search before it is taken from the pool (the default is false).
+         *
+         * @param validateOnBorrow
+         *            true if idle contexts should be validated, else false
+         * @return the {@link ContextSourceBuilder} for further customization
+         * @see PoolingSpringSecurityContextSource#setValidateOnBorrow(boolean)
+         */
+        public ContextSourceBuilder validateOnBorrow(boolean validateOnBorrow) {
+            this.validateOnBorrow = validateOnBorrow;
+            return this;
+        }
+
         /**
          * Gets the {@link LdapAuthenticationProviderConfigurer} for further
          * customizations
@@ -423,7 +508,7 @@ public class LdapAuthenticationProviderConfigurer<B extends ProviderManagerBuild
         }
 
         private DefaultSpringSecurityContextSource build() throws Exception {
-            DefaultSpringSecurityContextSource contextSource = new DefaultSpringSecurityContextSource(getProviderUrl());
+            DefaultSpringSecurityContextSource contextSource = createContextSource();
             if(managerDn != null) {
                 contextSource.setUserDn(managerDn);
                 if(managerPassword == null) {
@@ -441,6 +526,18 @@ public class LdapAuthenticationProviderConfigurer<B extends ProviderManagerBuild
             return contextSource;
         }
 
+        private DefaultSpringSecurityContextSource createContextSource() {
+            if(!pooled) {
+                return new DefaultSpringSecurityContextSource(getProviderUrl());
+            }
+            PoolingSpringSecurityContextSource contextSource = new PoolingSpringSecurityContextSource(getProviderUrl());
+            contextSource.setMaxIdle(maxIdle);
+            contextSource.setMinIdle(minIdle);
+            contextSource.setMaxIdleTime(maxIdleTime, maxIdleTimeUnit);
+            contextSource.setValidateOnBorrow(validateOnBorrow);
+            return contextSource;
+        }
+
         private String getProviderUrl() {
             if(url == null) {
                 return "ldap://127.0.0.1:" + port + "/" + root;
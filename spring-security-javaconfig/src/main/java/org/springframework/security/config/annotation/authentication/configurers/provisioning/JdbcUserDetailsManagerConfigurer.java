@@ -15,8 +15,14 @@
  */
 package org.springframework.security.config.annotation.authentication.configurers.provisioning;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
@@ -26,8 +32,15 @@ import org.springframework.jdbc.datasource.init.DataSourceInitializer;
 import org.springframework.jdbc.datasource.init.DatabasePopulator;
 import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
 import org.springframework.security.config.annotation.authentication.ProviderManagerBuilder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.cache.ConcurrentMapUserCache;
+import org.springframework.security.core.userdetails.memory.UserAttribute;
+import org.springframework.security.core.userdetails.memory.UserAttributeEditor;
+import org.springframework.security.provisioning.CachingJdbcUserDetailsManager;
 import org.springframework.security.provisioning.JdbcUserDetailsManager;
+import org.springframework.util.Assert;
 
 /**
  * Configures an {@link org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder} to
@@ -50,12 +63,42 @@ public class JdbcUserDetailsManagerConfigurer<B extends ProviderManagerBuilder<B
 
     private List<Resource> initScripts = new ArrayList<Resource>();
 
+    private List<Iterator<? extends UserDetails>> userIterators = new ArrayList<Iterator<? extends UserDetails>>();
+
+    private List<Resource> userResources = new ArrayList<Resource>();
+
+    private boolean batchUsers;
+
+    private boolean defaultUserDetailsService;
+
+    private String usersByUsernameQuery;
+
+    private String authoritiesByUsernameQuery;
+
+    private String groupAuthoritiesByUsernameQuery;
+
+    private String rolePrefix;
+
+    private UserCache userCache;
+
     public JdbcUserDetailsManagerConfigurer(JdbcUserDetailsManager manager) {
         super(manager);
     }
 
+    /**
+     * Creates a new instance that uses a {@link JdbcUserDetailsManager}. The
+     * {@link JdbcUserDetailsManager} is replaced by a
+     * {@link CachingJdbcUserDetailsManager} if
+     * {@link #cacheUsers(int, long, TimeUnit)},
+     * {@link #usersWithAuthoritiesByUsernameQuery(String)},
+     * {@link #batchSize(int)}, {@link #withUsers(Iterator)} or
+     * {@link #withUsers(Resource)} is used. The options of this configurer
+     * are carried over, but customizations made directly to
+     * {@link #getUserDetailsService()} before then are not.
+     */
     public JdbcUserDetailsManagerConfigurer() {
         this(new JdbcUserDetailsManager());
+        this.defaultUserDetailsService = true;
     }
 
 
@@ -84,6 +127,7 @@ public class JdbcUserDetailsManagerConfigurer<B extends ProviderManagerBuilder<B
     * @throws Exception
     */
     public JdbcUserDetailsManagerConfigurer<B> usersByUsernameQuery(String query) throws Exception {
+        this.usersByUsernameQuery = query;
         getUserDetailsService().setUsersByUsernameQuery(query);
         return this;
     }
@@ -101,6 +145,7 @@ public class JdbcUserDetailsManagerConfigurer<B extends ProviderManagerBuilder<B
      * @throws Exception
      */
     public JdbcUserDetailsManagerConfigurer<B> authoritiesByUsernameQuery(String query) throws Exception {
+        this.authoritiesByUsernameQuery = query;
         getUserDetailsService().setAuthoritiesByUsernameQuery(query);
         return this;
     }
@@ -123,12 +168,38 @@ public class JdbcUserDetailsManagerConfigurer<B extends ProviderManagerBuilder<B
      * @throws Exception
      */
     public JdbcUserDetailsManagerConfigurer<B> groupAuthoritiesByUsername(String query) throws Exception {
+        this.groupAuthoritiesByUsernameQuery = query;
         JdbcUserDetailsManager userDetailsService = getUserDetailsService();
         userDetailsService.setEnableGroups(true);
         userDetailsService.setGroupAuthoritiesByUsernameQuery(query);
         return this;
     }
 
+    /**
+     * Sets a query that loads a user, its authorities and its group authorities
+     * with a single statement instead of using the separate
+     * {@link #usersByUsernameQuery(String)},
+     * {@link #authoritiesByUsernameQuery(String)} and
+     * {@link #groupAuthoritiesByUsername(String)} queries. For example:
+     *
+     * <code>
+     *     select u.username,u.password,u.enabled,a.authority
+     *     from users u left outer join authorities a on u.username = a.username
+     *     where u.username = ?
+     * </code>
+     *
+     * @param query The query to use for selecting the username, password, if the user is enabled, and authority
+     *              by username. Must contain a single parameter for the username.
+     * @return the {@link JdbcUserDetailsManagerConfigurer} for further customizations
+     * @throws Exception
+     * @see #JdbcUserDetailsManagerConfigurer()
+     * @see CachingJdbcUserDetailsManager#setUsersWithAuthoritiesByUsernameQuery(String)
+     */
+    public JdbcUserDetailsManagerConfigurer<B> usersWithAuthoritiesByUsernameQuery(String query) throws Exception {
+        getCachingUserDetailsService().setUsersWithAuthoritiesByUsernameQuery(query);
+        return this;
+    }
+
     /**
      * A non-empty string prefix that will be added to role strings loaded from persistent storage (default is "").
      *
@@ -137,29 +208,127 @@ public class JdbcUserDetailsManagerConfigurer<B extends ProviderManagerBuilder<B
      * @throws Exception
      */
     public JdbcUserDetailsManagerConfigurer<B> rolePrefix(String rolePrefix) throws Exception {
+        this.rolePrefix = rolePrefix;
         getUserDetailsService().setRolePrefix(rolePrefix);
         return this;
     }
 
 
     /**
-     * Defines the {@link UserCache} to use
+     * Caches up to maxSize users (and unknown usernames) in memory for the
+     * provided amount of time, so that repeated authentication does not query
+     * the database. Changes made to the database by other means are visible
+     * once the cached entries expire.
+     *
+     * @param maxSize the maximum number of cached usernames. Must be positive.
+     * @param ttl how long a user is cached. Must be positive.
+     * @param unit the {@link TimeUnit} of the ttl
+     * @return the {@link JdbcUserDetailsManagerConfigurer} for further customizations
+     * @throws Exception
+     * @see #JdbcUserDetailsManagerConfigurer()
+     * @see ConcurrentMapUserCache
+     */
+    public JdbcUserDetailsManagerConfigurer<B> cacheUsers(int maxSize, long ttl, TimeUnit unit) throws Exception {
+        getCachingUserDetailsService();
+        return userCache(new ConcurrentMapUserCache(maxSize, ttl, unit));
+    }
+
+    /**
+     * Defines the {@link UserCache} to use. The {@link JdbcUserDetailsManager}
+     * only removes the users it modifies from the {@link UserCache}. The
+     * {@link UserCache} is only used to load users if the
+     * {@link JdbcUserDetailsManager} is a {@link CachingJdbcUserDetailsManager}
+     * (i.e. {@link #cacheUsers(int, long, TimeUnit)} is used).
      *
      * @param userCache the {@link UserCache} to use
      * @return the {@link JdbcUserDetailsManagerConfigurer} for further customizations
      * @throws Exception
      */
     public JdbcUserDetailsManagerConfigurer<B> userCache(UserCache userCache) throws Exception {
+        this.userCache = userCache;
         getUserDetailsService().setUserCache(userCache);
         return this;
     }
 
+    /**
+     * Creates the users added with {@link #withUser(String)},
+     * {@link #withUsers(Iterator)} and {@link #withUsers(Resource)} using JDBC
+     * batches of the provided size within a single transaction rather than
+     * one statement per user and authority. The default is to create the
+     * users added with {@link #withUser(String)} one at a time and the
+     * remaining users in batches of 1000.
+     *
+     * @param batchSize the number of users per JDBC batch. Must be positive.
+     * @return the {@link JdbcUserDetailsManagerConfigurer} for further customizations
+     * @throws Exception
+     * @see CachingJdbcUserDetailsManager#createUsers(Iterator)
+     */
+    public JdbcUserDetailsManagerConfigurer<B> batchSize(int batchSize) throws Exception {
+        getCachingUserDetailsService().setBatchSize(batchSize);
+        this.batchUsers = true;
+        return this;
+    }
+
+    /**
+     * Adds the users of the {@link Iterator} using JDBC batches (see
+     * {@link #batchSize(int)}). The users are consumed as they are written,
+     * so they do not need to be held in memory at once.
+     *
+     * @param users the users to add. Cannot be null.
+     * @return the {@link JdbcUserDetailsManagerConfigurer} for further customizations
+     * @throws Exception
+     */
+    public JdbcUserDetailsManagerConfigurer<B> withUsers(Iterator<? extends UserDetails> users) throws Exception {
+        Assert.notNull(users, "users cannot be null");
+        getCachingUserDetailsService();
+        this.userIterators.add(users);
+        return this;
+    }
+
+    /**
+     * Adds the users of a UTF-8 encoded {@link Resource} using JDBC batches (see
+     * {@link #batchSize(int)}). The {@link Resource} is read as the users are
+     * written. Each line is a user in the same format as the properties used by
+     * {@link org.springframework.security.provisioning.InMemoryUserDetailsManager}:
+     *
+     * <code>
+     *     username=password,grantedAuthority[,grantedAuthority][,enabled|disabled]
+     * </code>
+     *
+     * Empty lines and lines starting with # are ignored.
+     *
+     * @param users the {@link Resource} containing the users to add. Cannot be null.
+     * @return the {@link JdbcUserDetailsManagerConfigurer} for further customizations
+     * @throws Exception
+     */
+    public JdbcUserDetailsManagerConfigurer<B> withUsers(Resource users) throws Exception {
+        Assert.notNull(users, "users cannot be null");
+        getCachingUserDetailsService();
+        this.userResources.add(users);
+        return this;
+    }
+
     @Override
     protected void initUserDetailsService() throws Exception {
         if(!initScripts.isEmpty()) {
             getDataSourceInit().afterPropertiesSet();
         }
-        super.initUserDetailsService();
+        if(batchUsers) {
+            getCachingUserDetailsService().createUsers(buildUsers().iterator());
+        } else {
+            super.initUserDetailsService();
+        }
+        for(Iterator<? extends UserDetails> users : userIterators) {
+            getCachingUserDetailsService().createUsers(users);
+        }
+        for(Resource users : userResources) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(users.getInputStream(), "UTF-8"));
+            try {
+                getCachingUserDetailsService().createUsers(new ResourceUserIterator(users, reader));
+            } finally {
+                reader.close();
+            }
+        }
     }
 
     @Override
@@ -167,6 +336,46 @@ public class JdbcUserDetailsManagerConfigurer<B extends ProviderManagerBuilder<B
         return (JdbcUserDetailsManager) super.getUserDetailsService();
     }
 
+    /**
+     * Gets the {@link CachingJdbcUserDetailsManager}, replacing the default
+     * {@link JdbcUserDetailsManager} if necessary, or throws an
+     * {@link IllegalStateException} if a different {@link JdbcUserDetailsManager} was provided.
+     *
+     * @return the {@link CachingJdbcUserDetailsManager}
+     */
+    private CachingJdbcUserDetailsManager getCachingUserDetailsService() {
+        JdbcUserDetailsManager userDetailsService = getUserDetailsService();
+        if(defaultUserDetailsService && !(userDetailsService instanceof CachingJdbcUserDetailsManager)) {
+            CachingJdbcUserDetailsManager cachingUserDetailsService = new CachingJdbcUserDetailsManager();
+            if(dataSource != null) {
+                cachingUserDetailsService.setDataSource(dataSource);
+            }
+            if(usersByUsernameQuery != null) {
+                cachingUserDetailsService.setUsersByUsernameQuery(usersByUsernameQuery);
+            }
+            if(authoritiesByUsernameQuery != null) {
+                cachingUserDetailsService.setAuthoritiesByUsernameQuery(authoritiesByUsernameQuery);
+            }
+            if(groupAuthoritiesByUsernameQuery != null) {
+                cachingUserDetailsService.setEnableGroups(true);
+                cachingUserDetailsService.setGroupAuthoritiesByUsernameQuery(groupAuthoritiesByUsernameQuery);
+            }
+            if(rolePrefix != null) {
+                cachingUserDetailsService.setRolePrefix(rolePrefix);
+            }
+            if(userCache != null) {
+                cachingUserDetailsService.setUserCache(userCache);
+            }
+            setUserDetailsService(cachingUserDetailsService);
+            return cachingUserDetailsService;
+        }
+        if(!(userDetailsService instanceof CachingJdbcUserDetailsManager)) {
+            throw new IllegalStateException("This option requires a " + CachingJdbcUserDetailsManager.class.getSimpleName()
+                    + " but got " + userDetailsService.getClass().getName());
+        }
+        return (CachingJdbcUserDetailsManager) userDetailsService;
+    }
+
     /**
      * Populates the default schema that allows users and authorities to be stored.
      *
@@ -183,6 +392,69 @@ public class JdbcUserDetailsManagerConfigurer<B extends ProviderManagerBuilder<B
         return dbp;
     }
 
+    /**
+     * Reads a user per line of a {@link Resource}
+     */
+    private static final class ResourceUserIterator implements Iterator<UserDetails> {
+        private final Resource resource;
+        private final BufferedReader reader;
+        private final UserAttributeEditor editor = new UserAttributeEditor();
+        private int lineNumber;
+        private UserDetails next;
+
+        private ResourceUserIterator(Resource resource, BufferedReader reader) {
+            this.resource = resource;
+            this.reader = reader;
+        }
+
+        public boolean hasNext() {
+            if(next == null) {
+                next = readUser();
+            }
+            return next != null;
+        }
+
+        public UserDetails next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            UserDetails result = next;
+            next = null;
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private UserDetails readUser() {
+            String line;
+            try {
+                do {
+                    line = reader.readLine();
+                    lineNumber++;
+                    if(line == null) {
+                        return null;
+                    }
+                    line = line.trim();
+                } while(line.length() == 0 || line.startsWith("#"));
+            } catch(IOException e) {
+                throw new IllegalStateException("Unable to read users from " + resource, e);
+            }
+            int separator = line.indexOf('=');
+            UserAttribute attribute = null;
+            if(separator > 0) {
+                editor.setAsText(line.substring(separator + 1));
+                attribute = (UserAttribute) editor.getValue();
+            }
+            if(attribute == null) {
+                throw new IllegalArgumentException("Invalid user on line " + lineNumber + " of " + resource);
+            }
+            return new User(line.substring(0, separator).trim(), attribute.getPassword(), attribute.isEnabled(),
+                    true, true, true, attribute.getAuthorities());
+        }
+    }
+
     private DataSourceInitializer getDataSourceInit() {
         DataSourceInitializer dsi = new DataSourceInitializer();
         dsi.setDatabasePopulator(getDatabasePopulator());
@@ -57,9 +57,22 @@ public class UserDetailsManagerConfigurer<B extends ProviderManagerBuilder<B>, C
      */
     @Override
     protected void initUserDetailsService() throws Exception {
+        for(UserDetails user : buildUsers()) {
+            getUserDetailsService().createUser(user);
+        }
+    }
+
+    /**
+     * Builds the users that have been added with {@link #withUser(String)}.
+     *
+     * @return the users that have been added
+     */
+    protected final List<UserDetails> buildUsers() {
+        List<UserDetails> users = new ArrayList<UserDetails>(userBuilders.size());
         for(UserDetailsBuilder userBuilder : userBuilders) {
-            getUserDetailsService().createUser(userBuilder.build());
+            users.add(userBuilder.build());
         }
+        return users;
     }
 
     /**
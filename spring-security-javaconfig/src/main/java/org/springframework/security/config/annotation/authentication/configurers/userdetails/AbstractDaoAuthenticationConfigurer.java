@@ -35,7 +35,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
  */
 abstract class AbstractDaoAuthenticationConfigurer<B extends ProviderManagerBuilder<B>, C extends AbstractDaoAuthenticationConfigurer<B,C,U>,U extends UserDetailsService> extends UserDetailsAwareConfigurer<B,U> {
     private DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
-    private final U userDetailsService;
+    private U userDetailsService;
 
     /**
      * Creates a new instance
@@ -84,6 +84,17 @@ abstract class AbstractDaoAuthenticationConfigurer<B extends ProviderManagerBuil
         builder.authenticationProvider(provider);
     }
 
+    /**
+     * Replaces the {@link UserDetailsService} that is used with the {@link DaoAuthenticationProvider}. This allows
+     * subclasses to switch to a different implementation when an option requires it.
+     *
+     * @param userDetailsService the {@link UserDetailsService} to use
+     */
+    protected void setUserDetailsService(U userDetailsService) {
+        this.userDetailsService = userDetailsService;
+        provider.setUserDetailsService(userDetailsService);
+    }
+
     /**
      * Gets the {@link UserDetailsService} that is used with the {@link DaoAuthenticationProvider}
      *
@@ -83,7 +83,9 @@ public @interface EnableGlobalMethodSecurity {
 
     /**
      * Indicate how security advice should be applied. The default is
-     * {@link AdviceMode#PROXY}.
+     * {@link AdviceMode#PROXY}. If {@link AdviceMode#ASPECTJ} is used and the
+     * {@link org.springframework.security.access.intercept.aspectj.MethodSecurityAspect}
+     * has been woven by AspectJ, the woven methods are secured without proxies.
      * @see AdviceMode
      *
      * @return the {@link AdviceMode} to use
@@ -98,4 +100,40 @@ public @interface EnableGlobalMethodSecurity {
      * @return the order the security advisor should be applied
      */
     int order() default Ordered.LOWEST_PRECEDENCE;
+
+    /**
+     * Determines if the security metadata of the methods of the proxied beans
+     * should be resolved when the context is refreshed and stored in an
+     * immutable lookup table. This avoids synchronization and annotation
+     * reflection when the methods are invoked. The default is false.
+     *
+     * @return true if the security metadata should be precomputed, else false
+     * @see org.springframework.security.access.method.PrecomputedMethodSecurityMetadataSource
+     */
+    boolean precomputeMetadata() default false;
+
+    /**
+     * Determines if the pre post authorize expressions should be compiled
+     * into Java predicates when the security metadata is resolved. Expressions
+     * (or invocations) that cannot be compiled are evaluated using SpEL. Only
+     * applicable if {@link #prePostEnabled()} is true. The default is false.
+     *
+     * @return true if the pre post authorize expressions should be compiled, else false
+     * @see org.springframework.security.access.expression.method.CompiledMethodSecurityExpression
+     */
+    boolean compileExpressions() default false;
+
+    /**
+     * Determines if the objects returned by methods that are declared to
+     * return an {@link Iterable} or {@link java.util.Iterator} should be
+     * filtered lazily (as the caller consumes them) by {@code @PostFilter}
+     * rather than copied. Large arrays are filtered in parallel if
+     * {@link GlobalMethodSecurityConfiguration#postFilterExecutorService()}
+     * is overridden. Only applicable if {@link #prePostEnabled()} is true. The
+     * default is false.
+     *
+     * @return true if {@code @PostFilter} should be lazy, else false
+     * @see org.springframework.security.access.expression.method.LazyPostFilterMethodSecurityExpressionHandler
+     */
+    boolean lazyPostFilter() default false;
 }
@@ -18,10 +18,14 @@ package org.springframework.security.config.annotation.method.configuration;
 import java.util.Map;
 
 import org.springframework.aop.config.AopConfigUtils;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
 import org.springframework.core.annotation.AnnotationAttributes;
 import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.security.access.intercept.aspectj.MethodSecurityAspect;
+import org.springframework.util.ClassUtils;
 
 /**
  * Registers an
@@ -31,6 +35,13 @@ import org.springframework.core.type.AnnotationMetadata;
  * {@link EnableGlobalMethodSecurity} annotation.
  *
  * <p>
+ * If the {@link MethodSecurityAspect} has been woven by AspectJ, the auto proxy
+ * creator is not registered. Instead the singleton {@link MethodSecurityAspect}
+ * is registered with the "methodSecurityInterceptor" bean so that secured
+ * methods are not proxied.
+ * </p>
+ *
+ * <p>
  * Note: This class is necessary because AspectJAutoProxyRegistrar only supports
  * EnableAspectJAutoProxy.
  * </p>
@@ -40,6 +51,7 @@ import org.springframework.core.type.AnnotationMetadata;
  */
 class GlobalMethodSecurityAspectJAutoProxyRegistrar implements
         ImportBeanDefinitionRegistrar {
+    private static final String METHOD_SECURITY_ASPECT_BEAN_NAME = "org.springframework.security.access.intercept.aspectj.internalMethodSecurityAspect";
 
     /**
      * Register, escalate, and configure the AspectJ auto proxy creator based on
@@ -51,6 +63,11 @@ class GlobalMethodSecurityAspectJAutoProxyRegistrar implements
             AnnotationMetadata importingClassMetadata,
             BeanDefinitionRegistry registry) {
 
+        if (isMethodSecurityAspectWoven()) {
+            registerMethodSecurityAspect(registry);
+            return;
+        }
+
         AopConfigUtils
                 .registerAspectJAnnotationAutoProxyCreatorIfNecessary(registry);
 
@@ -65,4 +82,24 @@ class GlobalMethodSecurityAspectJAutoProxyRegistrar implements
         }
     }
 
-}
\ No newline at end of file
+    private void registerMethodSecurityAspect(BeanDefinitionRegistry registry) {
+        if (registry.containsBeanDefinition(METHOD_SECURITY_ASPECT_BEAN_NAME)) {
+            return;
+        }
+        BeanDefinitionBuilder aspect = BeanDefinitionBuilder
+                .rootBeanDefinition(MethodSecurityAspect.class);
+        aspect.setFactoryMethod("aspectOf");
+        aspect.addPropertyReference("securityInterceptor", "methodSecurityInterceptor");
+        aspect.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+        registry.registerBeanDefinition(METHOD_SECURITY_ASPECT_BEAN_NAME,
+                aspect.getBeanDefinition());
+    }
+
+    /**
+     * The AspectJ compiler (or load time weaver) adds a static aspectOf method
+     * to the aspects that it weaves.
+     */
+    static boolean isMethodSecurityAspectWoven() {
+        return ClassUtils.hasAtLeastOneMethodWithName(MethodSecurityAspect.class, "aspectOf");
+    }
+}
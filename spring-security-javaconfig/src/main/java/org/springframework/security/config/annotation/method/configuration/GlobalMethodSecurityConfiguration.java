@@ -19,13 +19,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import org.aopalliance.intercept.MethodInterceptor;
-import org.springframework.aop.framework.ProxyFactoryBean;
-import org.springframework.aop.target.LazyInitTargetSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.AdviceMode;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.ImportAware;
@@ -38,22 +38,30 @@ import org.springframework.security.access.AccessDecisionVoter;
 import org.springframework.security.access.AfterInvocationProvider;
 import org.springframework.security.access.annotation.Jsr250MethodSecurityMetadataSource;
 import org.springframework.security.access.annotation.SecuredAnnotationSecurityMetadataSource;
+import org.springframework.security.access.expression.method.CompiledExpressionAttributeFactory;
+import org.springframework.security.access.expression.method.CompiledExpressionPostInvocationAdvice;
+import org.springframework.security.access.expression.method.CompiledExpressionPreInvocationAdvice;
 import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
 import org.springframework.security.access.expression.method.ExpressionBasedAnnotationAttributeFactory;
 import org.springframework.security.access.expression.method.ExpressionBasedPostInvocationAdvice;
 import org.springframework.security.access.expression.method.ExpressionBasedPreInvocationAdvice;
+import org.springframework.security.access.expression.method.LazyPostFilterMethodSecurityExpressionHandler;
 import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.access.intercept.AfterInvocationManager;
 import org.springframework.security.access.intercept.AfterInvocationProviderManager;
 import org.springframework.security.access.intercept.RunAsManager;
 import org.springframework.security.access.intercept.aopalliance.MethodSecurityInterceptor;
 import org.springframework.security.access.intercept.aopalliance.MethodSecurityMetadataSourceAdvisor;
+import org.springframework.security.access.intercept.aspectj.JoinPointMethodSecurityInterceptor;
 import org.springframework.security.access.method.DelegatingMethodSecurityMetadataSource;
 import org.springframework.security.access.method.MethodSecurityMetadataSource;
+import org.springframework.security.access.method.PrecomputedMethodSecurityMetadataSource;
 import org.springframework.security.access.prepost.PostInvocationAdviceProvider;
+import org.springframework.security.access.prepost.PostInvocationAuthorizationAdvice;
 import org.springframework.security.access.prepost.PreInvocationAuthorizationAdvice;
 import org.springframework.security.access.prepost.PreInvocationAuthorizationAdviceVoter;
 import org.springframework.security.access.prepost.PrePostAnnotationSecurityMetadataSource;
+import org.springframework.security.access.prepost.PrePostInvocationAttributeFactory;
 import org.springframework.security.access.vote.AffirmativeBased;
 import org.springframework.security.access.vote.AuthenticatedVoter;
 import org.springframework.security.access.vote.RoleVoter;
@@ -88,8 +96,9 @@ public class GlobalMethodSecurityConfiguration implements ImportAware {
     private MethodSecurityExpressionHandler expressionHandler;
 
     /**
-     * Creates the default MethodInterceptor which is a MethodSecurityInterceptor using the following methods to
-     * construct it.
+     * Creates the default MethodInterceptor which is a MethodSecurityInterceptor (or a
+     * {@link JoinPointMethodSecurityInterceptor} if {@link EnableGlobalMethodSecurity#mode()} is
+     * {@link AdviceMode#ASPECTJ}) using the following methods to construct it.
      * <ul>
      *     <li>{@link #accessDecisionManager()}</li>
      *     <li>{@link #afterInvocationManager()}</li>
@@ -108,7 +117,8 @@ public class GlobalMethodSecurityConfiguration implements ImportAware {
      */
     @Bean
     public MethodInterceptor methodSecurityInterceptor() throws Exception {
-        MethodSecurityInterceptor methodSecurityInterceptor = new MethodSecurityInterceptor();
+        MethodSecurityInterceptor methodSecurityInterceptor = isAspectJ() ? new JoinPointMethodSecurityInterceptor()
+                : new MethodSecurityInterceptor();
         methodSecurityInterceptor
                 .setAccessDecisionManager(accessDecisionManager());
         methodSecurityInterceptor
@@ -128,6 +138,9 @@ public class GlobalMethodSecurityConfiguration implements ImportAware {
      * Provide a custom {@link AfterInvocationManager} for the default
      * implementation of {@link #methodSecurityInterceptor()}. The default is
      * null if pre post is not enabled. Otherwise, it returns a {@link AfterInvocationProviderManager}.
+     * If {@link EnableGlobalMethodSecurity#lazyPostFilter()} is true, the
+     * {@link MethodSecurityExpressionHandler} is wrapped in a
+     * {@link LazyPostFilterMethodSecurityExpressionHandler}.
      *
      * <p>
      * Subclasses should override this method to provide a custom {@link AfterInvocationManager}
@@ -138,7 +151,15 @@ public class GlobalMethodSecurityConfiguration implements ImportAware {
     protected AfterInvocationManager afterInvocationManager() {
         if(prePostEnabled()) {
             AfterInvocationProviderManager invocationProviderManager = new AfterInvocationProviderManager();
-            ExpressionBasedPostInvocationAdvice postAdvice = new ExpressionBasedPostInvocationAdvice(getExpressionHandler());
+            MethodSecurityExpressionHandler postExpressionHandler = getExpressionHandler();
+            if(lazyPostFilter()) {
+                LazyPostFilterMethodSecurityExpressionHandler lazyExpressionHandler = new LazyPostFilterMethodSecurityExpressionHandler(postExpressionHandler);
+                lazyExpressionHandler.setExecutorService(postFilterExecutorService());
+                postExpressionHandler = lazyExpressionHandler;
+            }
+            PostInvocationAuthorizationAdvice postAdvice = compileExpressions() ?
+                    new CompiledExpressionPostInvocationAdvice(postExpressionHandler) :
+                    new ExpressionBasedPostInvocationAdvice(postExpressionHandler);
             PostInvocationAdviceProvider postInvocationAdviceProvider = new PostInvocationAdviceProvider(postAdvice);
             List<AfterInvocationProvider> afterInvocationProviders = new ArrayList<AfterInvocationProvider>();
             afterInvocationProviders.add(postInvocationAdviceProvider);
@@ -148,6 +169,18 @@ public class GlobalMethodSecurityConfiguration implements ImportAware {
         return null;
     }
 
+    /**
+     * Provide an {@link ExecutorService} used to evaluate {@code @PostFilter}
+     * on large arrays in parallel when
+     * {@link EnableGlobalMethodSecurity#lazyPostFilter()} is true. The default
+     * is null, which means arrays are filtered by the calling thread.
+     *
+     * @return the {@link ExecutorService} to use or null
+     */
+    protected ExecutorService postFilterExecutorService() {
+        return null;
+    }
+
     /**
      * Provide a custom {@link RunAsManager} for the default implementation of
      * {@link #methodSecurityInterceptor()}. The default is null.
@@ -173,8 +206,7 @@ public class GlobalMethodSecurityConfiguration implements ImportAware {
     @SuppressWarnings("rawtypes")
     protected AccessDecisionManager accessDecisionManager() {
         List<AccessDecisionVoter> decisionVoters = new ArrayList<AccessDecisionVoter>();
-        ExpressionBasedPreInvocationAdvice expressionAdvice = new ExpressionBasedPreInvocationAdvice();
-        expressionAdvice.setExpressionHandler(getExpressionHandler());
+        PreInvocationAuthorizationAdvice expressionAdvice = createPreInvocationAdvice(getExpressionHandler());
 
         decisionVoters.add(new PreInvocationAuthorizationAdviceVoter(
                 expressionAdvice));
@@ -190,6 +222,14 @@ public class GlobalMethodSecurityConfiguration implements ImportAware {
      *
      * <p>Subclasses may override this method to provide a custom {@link MethodSecurityExpressionHandler}</p>
      *
+     * <p>
+     * To evaluate {@code hasPermission(filterObject, ...)} filter expressions
+     * with a single invocation of a
+     * {@link org.springframework.security.access.BulkPermissionEvaluator}, subclasses
+     * may return a
+     * {@link org.springframework.security.access.expression.method.BulkPermissionMethodSecurityExpressionHandler}.
+     * </p>
+     *
      * @return
      */
     protected MethodSecurityExpressionHandler expressionHandler() {
@@ -237,7 +277,7 @@ public class GlobalMethodSecurityConfiguration implements ImportAware {
                 authenticationManager = auth.build();
             }
             if(authenticationManager == null) {
-                authenticationManager = lazyBean(AuthenticationManager.class);
+                authenticationManager = lazyAuthenticationManager();
             }
         }
         return authenticationManager;
@@ -259,15 +299,22 @@ public class GlobalMethodSecurityConfiguration implements ImportAware {
      * Provides the default {@link MethodSecurityMetadataSource} that will be
      * used. It creates a {@link DelegatingMethodSecurityMetadataSource} based
      * upon {@link #customMethodSecurityMetadataSource()} and the attributes on
-     * {@link EnableGlobalMethodSecurity}.
+     * {@link EnableGlobalMethodSecurity}. If
+     * {@link EnableGlobalMethodSecurity#precomputeMetadata()} is true, the
+     * {@link DelegatingMethodSecurityMetadataSource} is wrapped in a
+     * {@link PrecomputedMethodSecurityMetadataSource}. If
+     * {@link EnableGlobalMethodSecurity#compileExpressions()} is true, the pre
+     * post annotations are parsed with a
+     * {@link CompiledExpressionAttributeFactory}.
      *
      * @return
      */
     @Bean
     public MethodSecurityMetadataSource methodSecurityMetadataSource() {
         List<MethodSecurityMetadataSource> sources = new ArrayList<MethodSecurityMetadataSource>();
-        ExpressionBasedAnnotationAttributeFactory attributeFactory = new ExpressionBasedAnnotationAttributeFactory(
-                methodExpressionHandler());
+        PrePostInvocationAttributeFactory attributeFactory = compileExpressions() ?
+                new CompiledExpressionAttributeFactory(methodExpressionHandler()) :
+                new ExpressionBasedAnnotationAttributeFactory(methodExpressionHandler());
         MethodSecurityMetadataSource customMethodSecurityMetadataSource = customMethodSecurityMetadataSource();
         if (customMethodSecurityMetadataSource != null) {
             sources.add(customMethodSecurityMetadataSource);
@@ -282,7 +329,11 @@ public class GlobalMethodSecurityConfiguration implements ImportAware {
         if (jsr250Enabled()) {
             sources.add(new Jsr250MethodSecurityMetadataSource());
         }
-        return new DelegatingMethodSecurityMetadataSource(sources);
+        DelegatingMethodSecurityMetadataSource delegatingSource = new DelegatingMethodSecurityMetadataSource(sources);
+        if(precomputeMetadata()) {
+            return new PrecomputedMethodSecurityMetadataSource(delegatingSource);
+        }
+        return delegatingSource;
     }
 
     /**
@@ -297,14 +348,25 @@ public class GlobalMethodSecurityConfiguration implements ImportAware {
 
     /**
      * Creates the {@link PreInvocationAuthorizationAdvice} to be used. The
-     * default is {@link ExpressionBasedPreInvocationAdvice}.
+     * default is {@link ExpressionBasedPreInvocationAdvice}. If
+     * {@link EnableGlobalMethodSecurity#compileExpressions()} is true, a
+     * {@link CompiledExpressionPreInvocationAdvice} is used.
      *
      * @return
      */
     @Bean
     public PreInvocationAuthorizationAdvice preInvocationAuthorizationAdvice() {
+        return createPreInvocationAdvice(methodExpressionHandler());
+    }
+
+    private PreInvocationAuthorizationAdvice createPreInvocationAdvice(MethodSecurityExpressionHandler expressionHandler) {
+        if(compileExpressions()) {
+            CompiledExpressionPreInvocationAdvice preInvocationAdvice = new CompiledExpressionPreInvocationAdvice();
+            preInvocationAdvice.setExpressionHandler(expressionHandler);
+            return preInvocationAdvice;
+        }
         ExpressionBasedPreInvocationAdvice preInvocationAdvice = new ExpressionBasedPreInvocationAdvice();
-        preInvocationAdvice.setExpressionHandler(methodExpressionHandler());
+        preInvocationAdvice.setExpressionHandler(expressionHandler);
         return preInvocationAdvice;
     }
 
@@ -345,17 +407,10 @@ public class GlobalMethodSecurityConfiguration implements ImportAware {
         this.objectPostProcessor = objectPostProcessor;
     }
 
-    @SuppressWarnings("unchecked")
-    private <T> T lazyBean(Class<T> interfaceName) {
-        LazyInitTargetSource lazyTargetSource = new LazyInitTargetSource();
-        String[] beanNamesForType = context.getBeanNamesForType(interfaceName);
-        Assert.isTrue(beanNamesForType.length == 1 , "Expecting to only find a single bean for type " + interfaceName + ", but found " + Arrays.asList(beanNamesForType));
-        lazyTargetSource.setTargetBeanName(beanNamesForType[0]);
-        lazyTargetSource.setBeanFactory(context);
-        ProxyFactoryBean proxyFactory = new ProxyFactoryBean();
-        proxyFactory.setTargetSource(lazyTargetSource);
-        proxyFactory.setInterfaces(new Class[] { interfaceName });
-        return (T) proxyFactory.getObject();
+    private AuthenticationManager lazyAuthenticationManager() {
+        String[] beanNamesForType = context.getBeanNamesForType(AuthenticationManager.class);
+        Assert.isTrue(beanNamesForType.length == 1 , "Expecting to only find a single bean for type " + AuthenticationManager.class + ", but found " + Arrays.asList(beanNamesForType));
+        return new LazyAuthenticationManager(context, beanNamesForType[0]);
     }
 
     private boolean prePostEnabled() {
@@ -370,6 +425,22 @@ public class GlobalMethodSecurityConfiguration implements ImportAware {
         return enableMethodSecurity().getBoolean("jsr250Enabled");
     }
 
+    private boolean precomputeMetadata() {
+        return enableMethodSecurity().getBoolean("precomputeMetadata");
+    }
+
+    private boolean compileExpressions() {
+        return enableMethodSecurity().getBoolean("compileExpressions");
+    }
+
+    private boolean lazyPostFilter() {
+        return enableMethodSecurity().getBoolean("lazyPostFilter");
+    }
+
+    private boolean isAspectJ() {
+        return enableMethodSecurity().getEnum("mode") == AdviceMode.ASPECTJ;
+    }
+
     private int order() {
         return (Integer) enableMethodSecurity().get("order");
     }
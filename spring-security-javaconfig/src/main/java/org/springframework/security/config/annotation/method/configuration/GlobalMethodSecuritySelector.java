@@ -15,6 +15,8 @@
  */
 package org.springframework.security.config.annotation.method.configuration;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.context.annotation.AdviceMode;
@@ -50,10 +52,14 @@ final class GlobalMethodSecuritySelector implements ImportSelector {
         AdviceMode mode = attributes.getEnum("mode");
         String autoProxyClassName = AdviceMode.PROXY == mode ? AutoProxyRegistrar.class.getName()
                 : GlobalMethodSecurityAspectJAutoProxyRegistrar.class.getName();
-        if(skipMethodSecurityConfiguration) {
-            return new String[] { autoProxyClassName };
+        List<String> imports = new ArrayList<String>();
+        imports.add(autoProxyClassName);
+        if(!skipMethodSecurityConfiguration) {
+            imports.add(GlobalMethodSecurityConfiguration.class.getName());
         }
-        return new String[] { autoProxyClassName,
-                GlobalMethodSecurityConfiguration.class.getName()};
+        if(attributes.getBoolean("precomputeMetadata")) {
+            imports.add(PrecomputeMethodSecurityMetadataConfiguration.class.getName());
+        }
+        return imports.toArray(new String[imports.size()]);
     }
 }
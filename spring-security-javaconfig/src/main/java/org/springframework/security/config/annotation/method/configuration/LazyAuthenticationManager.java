@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.config.annotation.method.configuration;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * <p>
+ * An internal use only {@link AuthenticationManager} that looks up the
+ * {@link AuthenticationManager} bean the first time it is used, so that the
+ * bean is not created while the method security infrastructure is created.
+ * </p>
+ *
+ * <p>
+ * Unlike a proxy over a
+ * {@link org.springframework.aop.target.LazyInitTargetSource}, once the bean
+ * has been resolved each invocation is a single read of a volatile field
+ * followed by a direct invocation of the bean. No reflection or
+ * synchronization is performed.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ * @see GlobalMethodSecurityConfiguration#authenticationManager()
+ */
+final class LazyAuthenticationManager implements AuthenticationManager {
+    private final BeanFactory beanFactory;
+
+    private final String beanName;
+
+    private volatile AuthenticationManager delegate;
+
+    /**
+     * Creates a new instance
+     *
+     * @param beanFactory the {@link BeanFactory} to look up the {@link AuthenticationManager} in
+     * @param beanName the name of the {@link AuthenticationManager} bean
+     */
+    LazyAuthenticationManager(BeanFactory beanFactory, String beanName) {
+        this.beanFactory = beanFactory;
+        this.beanName = beanName;
+    }
+
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        return getDelegate().authenticate(authentication);
+    }
+
+    /**
+     * Gets the {@link AuthenticationManager} bean, resolving it if necessary.
+     *
+     * @return the {@link AuthenticationManager} bean
+     */
+    AuthenticationManager getDelegate() {
+        AuthenticationManager result = delegate;
+        if(result == null) {
+            synchronized(this) {
+                result = delegate;
+                if(result == null) {
+                    result = beanFactory.getBean(beanName, AuthenticationManager.class);
+                    delegate = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "LazyAuthenticationManager[beanName=" + beanName + ", delegate=" + delegate + "]";
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.config.annotation.method.configuration;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.security.access.method.PrecomputedMethodSecurityMetadataSource;
+
+/**
+ * Precomputes the security metadata of the methods of the proxied singleton
+ * beans when the {@link ApplicationContext} is refreshed. Imported when
+ * {@link EnableGlobalMethodSecurity#precomputeMetadata()} is true.
+ *
+ * @author agent
+ * @since 3.2
+ * @see PrecomputedMethodSecurityMetadataSource
+ */
+@Configuration
+class PrecomputeMethodSecurityMetadataConfiguration implements ApplicationListener<ContextRefreshedEvent>, ApplicationContextAware {
+    private ApplicationContext context;
+
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if(event.getApplicationContext() != context || !(context instanceof ConfigurableApplicationContext)) {
+            return;
+        }
+        ConfigurableListableBeanFactory beanFactory = ((ConfigurableApplicationContext) context).getBeanFactory();
+        Set<Class<?>> targetClasses = new LinkedHashSet<Class<?>>();
+        for(String beanName : beanFactory.getSingletonNames()) {
+            Object bean = beanFactory.getSingleton(beanName);
+            if(bean instanceof Advised) {
+                targetClasses.add(AopProxyUtils.ultimateTargetClass(bean));
+            }
+        }
+        for(PrecomputedMethodSecurityMetadataSource source : context.getBeansOfType(PrecomputedMethodSecurityMetadataSource.class).values()) {
+            source.precompute(targetClasses);
+        }
+    }
+
+    public void setApplicationContext(ApplicationContext context) {
+        this.context = context;
+    }
+}
@@ -25,6 +25,7 @@ import org.springframework.security.config.annotation.SecurityConfigurerAdapter;
 import org.springframework.security.config.annotation.web.configurers.AbstractRequestMatcherMappingConfigurer;
 import org.springframework.security.web.util.AntPathRequestMatcher;
 import org.springframework.security.web.util.AnyRequestMatcher;
+import org.springframework.security.web.util.CompiledAntPathRequestMatcher;
 import org.springframework.security.web.util.RegexRequestMatcher;
 import org.springframework.security.web.util.RequestMatcher;
 
@@ -42,6 +43,9 @@ import org.springframework.security.web.util.RequestMatcher;
  */
 public abstract class AbstractRequestMatcherConfigurer<B extends SecurityBuilder<O>,C,O> extends SecurityConfigurerAdapter<O,B> {
     private static final RequestMatcher ANY_REQUEST = new AnyRequestMatcher();
+
+    private boolean compileAntMatchers;
+
     /**
      * Maps any request.
      *
@@ -65,7 +69,7 @@ public abstract class AbstractRequestMatcherConfigurer<B extends SecurityBuilder
      * @return the object that is chained after creating the {@link RequestMatcher}
      */
     public C antMatchers(HttpMethod method, String... antPatterns) {
-        return chainRequestMatchers(RequestMatchers.antMatchers(method, antPatterns));
+        return chainRequestMatchers(RequestMatchers.antMatchers(compileAntMatchers, method, antPatterns));
     }
 
     /**
@@ -78,7 +82,7 @@ public abstract class AbstractRequestMatcherConfigurer<B extends SecurityBuilder
      * @return the object that is chained after creating the {@link RequestMatcher}
      */
     public C antMatchers(String... antPatterns) {
-        return chainRequestMatchers(RequestMatchers.antMatchers(antPatterns));
+        return chainRequestMatchers(RequestMatchers.antMatchers(compileAntMatchers, antPatterns));
     }
 
     /**
@@ -119,6 +123,19 @@ public abstract class AbstractRequestMatcherConfigurer<B extends SecurityBuilder
         return chainRequestMatchers(Arrays.asList(requestMatchers));
     }
 
+    /**
+     * Determines if the ant patterns used for {@link #antMatchers(String...)} and
+     * {@link #antMatchers(HttpMethod, String...)} are compiled into
+     * {@link CompiledAntPathRequestMatcher} instances rather than
+     * {@link AntPathRequestMatcher} instances. Only ant patterns that are
+     * mapped after this is invoked are impacted. The default is false.
+     *
+     * @param compileAntMatchers true if the ant patterns should be compiled, else false
+     */
+    protected final void setCompileAntMatchers(boolean compileAntMatchers) {
+        this.compileAntMatchers = compileAntMatchers;
+    }
+
     /**
      * Subclasses should implement this method for returning the object that is chained to the creation of the
      * {@link RequestMatcher} instances.
@@ -138,22 +155,48 @@ public abstract class AbstractRequestMatcherConfigurer<B extends SecurityBuilder
     private static final class RequestMatchers {
 
         /**
-         * Create a {@link List} of {@link AntPathRequestMatcher} instances.
+         * Create a {@link List} of {@link AntPathRequestMatcher} (or {@link CompiledAntPathRequestMatcher}) instances.
          *
+         * @param compile true if {@link CompiledAntPathRequestMatcher} instances should be created
          * @param httpMethod the {@link HttpMethod} to use or {@code null} for any {@link HttpMethod}.
          * @param antPatterns the ant patterns to create {@link AntPathRequestMatcher} from
          *
-         * @return a {@link List} of {@link AntPathRequestMatcher} instances
+         * @return a {@link List} of {@link AntPathRequestMatcher} (or {@link CompiledAntPathRequestMatcher}) instances
          */
-        public static List<RequestMatcher> antMatchers(HttpMethod httpMethod, String...antPatterns) {
+        public static List<RequestMatcher> antMatchers(boolean compile, HttpMethod httpMethod, String...antPatterns) {
             String method = httpMethod == null ? null : httpMethod.toString();
             List<RequestMatcher> matchers = new ArrayList<RequestMatcher>();
             for(String pattern : antPatterns) {
-                matchers.add(new AntPathRequestMatcher(pattern, method));
+                matchers.add(compile ? new CompiledAntPathRequestMatcher(pattern, method) : new AntPathRequestMatcher(pattern, method));
             }
             return matchers;
         }
 
+        /**
+         * Create a {@link List} of {@link AntPathRequestMatcher} (or {@link CompiledAntPathRequestMatcher}) instances
+         * that do not specify an {@link HttpMethod}.
+         *
+         * @param compile true if {@link CompiledAntPathRequestMatcher} instances should be created
+         * @param antPatterns the ant patterns to create {@link AntPathRequestMatcher} from
+         *
+         * @return a {@link List} of {@link AntPathRequestMatcher} (or {@link CompiledAntPathRequestMatcher}) instances
+         */
+        public static List<RequestMatcher> antMatchers(boolean compile, String...antPatterns) {
+            return antMatchers(compile, null, antPatterns);
+        }
+
+        /**
+         * Create a {@link List} of {@link AntPathRequestMatcher} instances.
+         *
+         * @param httpMethod the {@link HttpMethod} to use or {@code null} for any {@link HttpMethod}.
+         * @param antPatterns the ant patterns to create {@link AntPathRequestMatcher} from
+         *
+         * @return a {@link List} of {@link AntPathRequestMatcher} instances
+         */
+        public static List<RequestMatcher> antMatchers(HttpMethod httpMethod, String...antPatterns) {
+            return antMatchers(false, httpMethod, antPatterns);
+        }
+
         /**
          * Create a {@link List} of {@link AntPathRequestMatcher} instances that do not specify an {@link HttpMethod}.
          *
@@ -162,7 +205,7 @@ public abstract class AbstractRequestMatcherConfigurer<B extends SecurityBuilder
          * @return a {@link List} of {@link AntPathRequestMatcher} instances
          */
         public static List<RequestMatcher> antMatchers(String...antPatterns) {
-            return antMatchers(null, antPatterns);
+            return antMatchers(false, null, antPatterns);
         }
 
         /**
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.config.annotation.web.builders;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.DefaultSecurityFilterChain;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.firewall.DefaultHttpFirewall;
+import org.springframework.security.web.firewall.FirewalledRequest;
+import org.springframework.security.web.firewall.HttpFirewall;
+import org.springframework.security.web.util.RequestMatcher;
+import org.springframework.security.web.util.RequestMatcherIndex;
+import org.springframework.security.web.util.UrlUtils;
+
+/**
+ * <p>
+ * An internal use only {@link FilterChainProxy} that allows the way a request
+ * is dispatched to be optimized when it is built. The first
+ * {@link SecurityFilterChain} that matches is still the one that is used, so
+ * the behavior is the same as {@link FilterChainProxy}.
+ * </p>
+ *
+ * <ul>
+ * <li>If a {@link RequestMatcherIndex} is provided, the
+ * {@link SecurityFilterChain} is selected using the {@link RequestMatcherIndex}
+ * rather than testing every {@link SecurityFilterChain} in order.</li>
+ * <li>If a bypass {@link RequestMatcher} is provided, requests that it matches
+ * are passed directly to the {@link FilterChain} without being wrapped by the
+ * {@link HttpFirewall} or consulting any {@link SecurityFilterChain}. It must
+ * only match requests that would otherwise select a
+ * {@link SecurityFilterChain} with no {@link Filter} instances.</li>
+ * </ul>
+ *
+ * <p>
+ * If the {@link SecurityFilterChain} instances are replaced with
+ * {@link #setFilterChainMap(Map)}, the {@link RequestMatcherIndex} is rebuilt
+ * from the new {@link SecurityFilterChain} instances and the bypass
+ * {@link RequestMatcher} is no longer used, since it was derived from the
+ * original {@link SecurityFilterChain} instances.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ * @see WebSecurity#indexSecurityFilterChains(boolean)
+ * @see WebSecurity#bypassIgnoredRequests(boolean)
+ */
+final class CompiledFilterChainProxy extends FilterChainProxy {
+    private static final Log logger = LogFactory.getLog(CompiledFilterChainProxy.class);
+
+    private static final String FILTER_APPLIED = FilterChainProxy.class.getName().concat(".APPLIED");
+
+    private final boolean index;
+
+    private volatile List<SecurityFilterChain> filterChains;
+
+    private volatile RequestMatcherIndex<SecurityFilterChain> filterChainIndex;
+
+    private volatile RequestMatcher bypassRequestMatcher;
+
+    private HttpFirewall firewall = new DefaultHttpFirewall();
+
+    /**
+     * Creates a new instance
+     *
+     * @param filterChains the {@link SecurityFilterChain} instances to use
+     * @param index if true, the {@link SecurityFilterChain} instances are
+     *            selected with a {@link RequestMatcherIndex}
+     * @param bypassRequestMatcher the {@link RequestMatcher} of requests that
+     *            do not need any {@link Filter} instances applied or null if
+     *            all requests should be processed
+     */
+    CompiledFilterChainProxy(List<SecurityFilterChain> filterChains, boolean index, RequestMatcher bypassRequestMatcher) {
+        super(filterChains);
+        this.index = index;
+        this.bypassRequestMatcher = bypassRequestMatcher;
+        compile(filterChains);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        RequestMatcher bypassRequestMatcher = this.bypassRequestMatcher;
+        if(bypassRequestMatcher != null && bypassRequestMatcher.matches((HttpServletRequest) request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        boolean clearContext = request.getAttribute(FILTER_APPLIED) == null;
+        if (clearContext) {
+            try {
+                request.setAttribute(FILTER_APPLIED, Boolean.TRUE);
+                doFilterInternal(request, response, chain);
+            } finally {
+                SecurityContextHolder.clearContext();
+                request.removeAttribute(FILTER_APPLIED);
+            }
+        } else {
+            doFilterInternal(request, response, chain);
+        }
+    }
+
+    private void doFilterInternal(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        FirewalledRequest fwRequest = firewall.getFirewalledRequest((HttpServletRequest) request);
+        HttpServletResponse fwResponse = firewall.getFirewalledResponse((HttpServletResponse) response);
+
+        List<Filter> filters = getFilters(fwRequest);
+
+        if (filters == null || filters.size() == 0) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(UrlUtils.buildRequestUrl(fwRequest)
+                        + (filters == null ? " has no matching filters" : " has an empty filter list"));
+            }
+            fwRequest.reset();
+            chain.doFilter(fwRequest, fwResponse);
+            return;
+        }
+
+        VirtualFilterChain vfc = new VirtualFilterChain(fwRequest, chain, filters);
+        vfc.doFilter(fwRequest, fwResponse);
+    }
+
+    private List<Filter> getFilters(HttpServletRequest request) {
+        RequestMatcherIndex<SecurityFilterChain> filterChainIndex = this.filterChainIndex;
+        if(filterChainIndex != null) {
+            SecurityFilterChain filterChain = filterChainIndex.getFirstMatch(request);
+            return filterChain == null ? null : filterChain.getFilters();
+        }
+        for (SecurityFilterChain filterChain : filterChains) {
+            if (filterChain.matches(request)) {
+                return filterChain.getFilters();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void setFirewall(HttpFirewall firewall) {
+        super.setFirewall(firewall);
+        this.firewall = firewall;
+    }
+
+    /**
+     * Replaces the {@link SecurityFilterChain} instances and compiles them
+     * again. The bypass {@link RequestMatcher} is no longer used afterwards.
+     */
+    @Override
+    @Deprecated
+    public void setFilterChainMap(Map<RequestMatcher, List<Filter>> filterChainMap) {
+        super.setFilterChainMap(filterChainMap);
+        this.bypassRequestMatcher = null;
+        compile(getFilterChains());
+    }
+
+    private void compile(List<SecurityFilterChain> filterChains) {
+        RequestMatcherIndex<SecurityFilterChain> filterChainIndex = null;
+        if(index) {
+            filterChainIndex = new RequestMatcherIndex<SecurityFilterChain>();
+            for(SecurityFilterChain filterChain : filterChains) {
+                filterChainIndex.add(getRequestMatcher(filterChain), filterChain);
+            }
+        }
+        this.filterChains = new ArrayList<SecurityFilterChain>(filterChains);
+        this.filterChainIndex = filterChainIndex;
+    }
+
+    /**
+     * Gets the {@link RequestMatcher} of a {@link DefaultSecurityFilterChain}
+     * so it can be indexed or adapts any other {@link SecurityFilterChain}.
+     */
+    private static RequestMatcher getRequestMatcher(final SecurityFilterChain filterChain) {
+        if(filterChain instanceof DefaultSecurityFilterChain) {
+            return ((DefaultSecurityFilterChain) filterChain).getRequestMatcher();
+        }
+        return new RequestMatcher() {
+            public boolean matches(HttpServletRequest request) {
+                return filterChain.matches(request);
+            }
+        };
+    }
+
+    /**
+     * Internal {@code FilterChain} implementation that is used to pass a
+     * request through the additional internal list of filters which match the
+     * request. This is the same as the {@link FilterChain} used by
+     * {@link FilterChainProxy}.
+     */
+    private static final class VirtualFilterChain implements FilterChain {
+        private final FilterChain originalChain;
+        private final List<Filter> additionalFilters;
+        private final FirewalledRequest firewalledRequest;
+        private final int size;
+        private int currentPosition = 0;
+
+        private VirtualFilterChain(FirewalledRequest firewalledRequest, FilterChain chain, List<Filter> additionalFilters) {
+            this.originalChain = chain;
+            this.additionalFilters = additionalFilters;
+            this.size = additionalFilters.size();
+            this.firewalledRequest = firewalledRequest;
+        }
+
+        public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+            if (currentPosition == size) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug(UrlUtils.buildRequestUrl(firewalledRequest)
+                            + " reached end of additional filter chain; proceeding with original chain");
+                }
+
+                // Deactivate path stripping as we exit the security filter chain
+                this.firewalledRequest.reset();
+
+                originalChain.doFilter(request, response);
+            } else {
+                currentPosition++;
+
+                Filter nextFilter = additionalFilters.get(currentPosition - 1);
+
+                if (logger.isDebugEnabled()) {
+                    logger.debug(UrlUtils.buildRequestUrl(firewalledRequest) + " at position " + currentPosition + " of "
+                        + size + " in additional filter chain; firing Filter: '"
+                        + nextFilter.getClass().getSimpleName() + "'");
+                }
+
+                nextFilter.doFilter(request, response, this);
+            }
+        }
+    }
+}
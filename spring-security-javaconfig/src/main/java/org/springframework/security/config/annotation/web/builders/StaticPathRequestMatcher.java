@@ -0,0 +1,201 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.config.annotation.web.builders;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.security.web.firewall.DefaultHttpFirewall;
+import org.springframework.security.web.util.AntPathRequestMatcher;
+import org.springframework.security.web.util.CompiledAntPathRequestMatcher;
+import org.springframework.security.web.util.RequestMatcher;
+
+/**
+ * <p>
+ * An internal use only {@link RequestMatcher} that is compiled from the
+ * {@link AntPathRequestMatcher} (or {@link CompiledAntPathRequestMatcher})
+ * instances that do not specify an HTTP method
+ * and have one of the following shapes:
+ * </p>
+ *
+ * <ul>
+ * <li>A literal path (i.e. "/favicon.ico")</li>
+ * <li>A literal directory (i.e. "/resources/**")</li>
+ * <li>A literal extension (i.e. "/**&#47;*.css")</li>
+ * <li>Any path (i.e. "/**")</li>
+ * </ul>
+ *
+ * <p>
+ * Matching a request is a few hash lookups regardless of the number of
+ * patterns. It never matches a request that none of the original
+ * {@link AntPathRequestMatcher} instances match. To ensure it is safe to
+ * use without an {@link DefaultHttpFirewall}, requests with path parameters,
+ * empty path segments or "." and ".." path segments are never matched.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ * @see WebSecurity#bypassIgnoredRequests(boolean)
+ */
+final class StaticPathRequestMatcher implements RequestMatcher {
+    private static final String MATCH_ALL = "/**";
+    private static final String ANY_PATH_EXTENSION = "/**/*.";
+
+    private final Set<String> paths = new HashSet<String>();
+    private final Set<String> directories = new HashSet<String>();
+    private final Set<String> extensions = new HashSet<String>();
+    private boolean matchAll;
+
+    /**
+     * Compiles the {@link RequestMatcher} instances that can be represented.
+     *
+     * @param requestMatchers the {@link RequestMatcher} instances to compile
+     * @return the {@link StaticPathRequestMatcher} or null if none of the
+     *         {@link RequestMatcher} instances can be represented
+     */
+    static StaticPathRequestMatcher compile(List<RequestMatcher> requestMatchers) {
+        StaticPathRequestMatcher result = new StaticPathRequestMatcher();
+        boolean compiled = false;
+        for(RequestMatcher requestMatcher : requestMatchers) {
+            compiled |= result.add(requestMatcher);
+        }
+        return compiled ? result : null;
+    }
+
+    private StaticPathRequestMatcher() {}
+
+    public boolean matches(HttpServletRequest request) {
+        String path = request.getServletPath();
+        String pathInfo = request.getPathInfo();
+        if(pathInfo != null) {
+            path = path == null ? pathInfo : path + pathInfo;
+        }
+        if(path == null || !isNormalized(path)) {
+            return false;
+        }
+        if(matchAll) {
+            return true;
+        }
+        path = path.toLowerCase();
+        if(paths.contains(path) || directories.contains(path)) {
+            return true;
+        }
+        int lastSlash = 0;
+        for(int i = 1; i < path.length(); i++) {
+            if(path.charAt(i) == '/') {
+                if(directories.contains(path.substring(0, i))) {
+                    return true;
+                }
+                lastSlash = i;
+            }
+        }
+        if(extensions.isEmpty() || path.length() == 0 || path.charAt(0) != '/' || lastSlash == path.length() - 1) {
+            return false;
+        }
+        for(int dot = path.indexOf('.', lastSlash); dot >= 0; dot = path.indexOf('.', dot + 1)) {
+            if(extensions.contains(path.substring(dot + 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the {@link RequestMatcher} if it can be represented.
+     *
+     * @return true if the {@link RequestMatcher} was added
+     */
+    private boolean add(RequestMatcher requestMatcher) {
+        String pattern;
+        if(requestMatcher instanceof AntPathRequestMatcher) {
+            AntPathRequestMatcher antMatcher = (AntPathRequestMatcher) requestMatcher;
+            pattern = antMatcher.getPattern();
+            // AntPathRequestMatcher does not expose the HTTP method, but it is considered by equals
+            if(!antMatcher.equals(new AntPathRequestMatcher(pattern))) {
+                return false;
+            }
+        }
+        else if(requestMatcher instanceof CompiledAntPathRequestMatcher) {
+            CompiledAntPathRequestMatcher antMatcher = (CompiledAntPathRequestMatcher) requestMatcher;
+            if(antMatcher.getHttpMethod() != null) {
+                return false;
+            }
+            pattern = antMatcher.getPattern();
+        }
+        else {
+            return false;
+        }
+        if(MATCH_ALL.equals(pattern)) {
+            matchAll = true;
+            return true;
+        }
+        if(!pattern.startsWith("/") || !isNormalized(pattern)) {
+            return false;
+        }
+        if(pattern.startsWith(ANY_PATH_EXTENSION)) {
+            String extension = pattern.substring(ANY_PATH_EXTENSION.length());
+            if(extension.length() == 0 || extension.indexOf('/') >= 0 || !isLiteral(extension)) {
+                return false;
+            }
+            extensions.add(extension);
+            return true;
+        }
+        if(pattern.endsWith(MATCH_ALL)) {
+            String directory = pattern.substring(0, pattern.length() - MATCH_ALL.length());
+            if(directory.length() == 0 || !isLiteral(directory)) {
+                return false;
+            }
+            directories.add(directory);
+            return true;
+        }
+        if(!isLiteral(pattern)) {
+            return false;
+        }
+        paths.add(pattern);
+        return true;
+    }
+
+    private static boolean isLiteral(String pattern) {
+        return pattern.indexOf('*') < 0 && pattern.indexOf('?') < 0 && pattern.indexOf('{') < 0;
+    }
+
+    /**
+     * Checks that the path has no path parameters, no empty segments and no
+     * "." or ".." segments.
+     */
+    private static boolean isNormalized(String path) {
+        if(path.indexOf(';') >= 0 || path.indexOf("//") >= 0) {
+            return false;
+        }
+        for (int j = path.length(); j > 0;) {
+            int i = path.lastIndexOf('/', j - 1);
+            int gap = j - i;
+
+            if (gap == 2 && path.charAt(i+1) == '.') {
+                // ".", "/./" or "/."
+                return false;
+            } else if (gap == 3 && path.charAt(i+1) == '.'&& path.charAt(i+2) == '.') {
+                return false;
+            }
+
+            j = i;
+        }
+        return true;
+    }
+}
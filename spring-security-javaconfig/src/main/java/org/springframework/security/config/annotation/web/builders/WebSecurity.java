@@ -84,6 +84,10 @@ public final class WebSecurity extends
 
     private boolean debugEnabled;
 
+    private boolean indexSecurityFilterChains;
+
+    private boolean bypassIgnoredRequests;
+
     private WebInvocationPrivilegeEvaluator privilegeEvaluator;
 
     private SecurityExpressionHandler<FilterInvocation> expressionHandler = new DefaultWebSecurityExpressionHandler();
@@ -179,6 +183,59 @@ public final class WebSecurity extends
         return this;
     }
 
+    /**
+     * <p>
+     * Controls how the {@link SecurityFilterChain} that is used for a request
+     * is selected. By default each {@link SecurityFilterChain} (starting with
+     * those that are {@link #ignoring() ignored}) is tested in order. When
+     * enabled, the {@link SecurityFilterChain} instances are indexed by the
+     * literal path segments of their ant patterns when they are built. This
+     * means only the {@link SecurityFilterChain} instances that could match
+     * the path of the request are tested, which is useful when there are many
+     * {@link SecurityFilterChain} instances. In either case the first
+     * {@link SecurityFilterChain} that matches is used.
+     * </p>
+     *
+     * @param indexSecurityFilterChains
+     *            if true, the {@link SecurityFilterChain} instances are
+     *            indexed. Default is false.
+     * @return the {@link WebSecurity} for further customization.
+     */
+    public WebSecurity indexSecurityFilterChains(boolean indexSecurityFilterChains) {
+        this.indexSecurityFilterChains = indexSecurityFilterChains;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Controls if requests that are {@link #ignoring() ignored} can bypass
+     * Spring Security entirely. By default an ignored request is still wrapped
+     * by the {@link HttpFirewall} and matched against each ignored
+     * {@link RequestMatcher} in order. When enabled, the ignored ant patterns
+     * that do not specify an HTTP method and are a literal path (i.e.
+     * "/favicon.ico"), a literal directory (i.e. "/resources/**") or a literal
+     * extension (i.e. "/**&#47;*.css") are compiled into a set of paths that is
+     * consulted with a few hash lookups before anything else is done. This is
+     * useful when static resources make up a large portion of the requests.
+     * </p>
+     *
+     * <p>
+     * Requests with path parameters or paths that are not normalized are
+     * never bypassed, so they are still processed by the {@link HttpFirewall}.
+     * Any other ignored {@link RequestMatcher} is processed as though this
+     * were disabled.
+     * </p>
+     *
+     * @param bypassIgnoredRequests
+     *            if true, ignored requests can bypass Spring Security. Default
+     *            is false.
+     * @return the {@link WebSecurity} for further customization.
+     */
+    public WebSecurity bypassIgnoredRequests(boolean bypassIgnoredRequests) {
+        this.bypassIgnoredRequests = bypassIgnoredRequests;
+        return this;
+    }
+
     /**
      * <p>
      * Adds builders to create {@link SecurityFilterChain} instances.
@@ -279,7 +336,10 @@ public final class WebSecurity extends
         for(SecurityBuilder<? extends SecurityFilterChain> securityFilterChainBuilder : securityFilterChainBuilders) {
             securityFilterChains.add(securityFilterChainBuilder.build());
         }
-        FilterChainProxy filterChainProxy = new FilterChainProxy(securityFilterChains);
+        RequestMatcher bypassRequestMatcher = bypassIgnoredRequests ? StaticPathRequestMatcher.compile(ignoredRequests) : null;
+        FilterChainProxy filterChainProxy = indexSecurityFilterChains || bypassRequestMatcher != null ?
+                new CompiledFilterChainProxy(securityFilterChains, indexSecurityFilterChains, bypassRequestMatcher) :
+                new FilterChainProxy(securityFilterChains);
         if(httpFirewall != null) {
             filterChainProxy.setFirewall(httpFirewall);
         }
@@ -26,6 +26,9 @@ import org.springframework.security.config.annotation.web.HttpSecurityBuilder;
 import org.springframework.security.web.DefaultSecurityFilterChain;
 import org.springframework.security.web.access.intercept.FilterInvocationSecurityMetadataSource;
 import org.springframework.security.web.access.intercept.FilterSecurityInterceptor;
+import org.springframework.security.web.access.intercept.IndexedFilterInvocationSecurityMetadataSource;
+import org.springframework.security.web.access.intercept.RequestCachingAccessDecisionManager;
+import org.springframework.security.web.util.CompiledAntPathRequestMatcher;
 
 /**
  * A base class for configuring the {@link FilterSecurityInterceptor}.
@@ -67,8 +70,12 @@ abstract class AbstractInterceptUrlConfigurer<H extends HttpSecurityBuilder<H>,C
         SecurityConfigurer<DefaultSecurityFilterChain,H> {
     private Boolean filterSecurityInterceptorOncePerRequest;
 
+    private boolean filterSecurityInterceptorCacheDecisions;
+
     private AccessDecisionManager accessDecisionManager;
 
+    private boolean indexUrlMappings;
+
     /**
      * Allows setting the {@link AccessDecisionManager}. If none is provided, a default {@l AccessDecisionManager} is
      * created.
@@ -96,6 +103,67 @@ abstract class AbstractInterceptUrlConfigurer<H extends HttpSecurityBuilder<H>,C
         return getSelf();
     }
 
+    /**
+     * Allows setting if the {@link FilterSecurityInterceptor} should remember the access it granted for the
+     * lifetime of a request (i.e. if the filter intercepts an include, forward, error or async dispatch that
+     * matches the same mapping for the same user, access is granted without consulting the
+     * {@link AccessDecisionManager} again). This is only useful if
+     * {@link #filterSecurityInterceptorOncePerRequest(boolean)} is false. The default is false.
+     *
+     * @param filterSecurityInterceptorCacheDecisions if the {@link FilterSecurityInterceptor} should remember the
+     *                                                access it granted for the lifetime of a request
+     * @return  the {@link AbstractInterceptUrlConfigurer} for further customization
+     * @see RequestCachingAccessDecisionManager
+     */
+    public C filterSecurityInterceptorCacheDecisions(
+            boolean filterSecurityInterceptorCacheDecisions) {
+        this.filterSecurityInterceptorCacheDecisions = filterSecurityInterceptorCacheDecisions;
+        return getSelf();
+    }
+
+    /**
+     * Allows compiling the ant patterns that are mapped after this method is
+     * invoked into {@link CompiledAntPathRequestMatcher} instances. All
+     * {@link CompiledAntPathRequestMatcher} instances share the request path
+     * that is calculated the first time one of them is consulted for a
+     * request, so this is beneficial when there are many antMatchers. The
+     * default is false.
+     *
+     * @param compileAntMatchers true if the ant patterns should be compiled, else false
+     * @return  the {@link AbstractInterceptUrlConfigurer} for further customization
+     */
+    public C compileAntMatchers(boolean compileAntMatchers) {
+        setCompileAntMatchers(compileAntMatchers);
+        return getSelf();
+    }
+
+    /**
+     * Allows indexing the URL mappings by HTTP method and the literal path
+     * segments of their ant patterns using an
+     * {@link IndexedFilterInvocationSecurityMetadataSource}. This means the
+     * cost of finding the first mapping that matches a request depends on the
+     * depth of the request path rather than the number of mappings. The
+     * mappings are still consulted in the order they were declared. The
+     * default is false.
+     *
+     * @param indexUrlMappings true if the URL mappings should be indexed, else false
+     * @return  the {@link AbstractInterceptUrlConfigurer} for further customization
+     */
+    public C indexUrlMappings(boolean indexUrlMappings) {
+        this.indexUrlMappings = indexUrlMappings;
+        return getSelf();
+    }
+
+    /**
+     * Determines if the URL mappings should be indexed.
+     *
+     * @return true if the URL mappings should be indexed, else false
+     * @see #indexUrlMappings(boolean)
+     */
+    final boolean isIndexUrlMappings() {
+        return indexUrlMappings;
+    }
+
     @Override
     public void configure(H http) throws Exception {
         FilterInvocationSecurityMetadataSource metadataSource = createMetadataSource();
@@ -146,11 +214,22 @@ abstract class AbstractInterceptUrlConfigurer<H extends HttpSecurityBuilder<H>,C
      */
     private AccessDecisionManager getAccessDecisionManager() {
         if (accessDecisionManager == null) {
-            accessDecisionManager = createDefaultAccessDecisionManager();
+            return createDefaultAccessDecisionManager();
         }
         return accessDecisionManager;
     }
 
+    /**
+     * Determines if an {@link AccessDecisionManager} was specified using
+     * {@link #accessDecisionManager(AccessDecisionManager)} rather than created
+     * from {@link #getDecisionVoters()}.
+     *
+     * @return true if a custom {@link AccessDecisionManager} is used, else false
+     */
+    final boolean isCustomAccessDecisionManager() {
+        return accessDecisionManager != null;
+    }
+
     /**
      * Creates the {@link FilterSecurityInterceptor}
      *
@@ -163,7 +242,11 @@ abstract class AbstractInterceptUrlConfigurer<H extends HttpSecurityBuilder<H>,C
                                                                       AuthenticationManager authenticationManager) throws Exception {
         FilterSecurityInterceptor securityInterceptor = new FilterSecurityInterceptor();
         securityInterceptor.setSecurityMetadataSource(metadataSource);
-        securityInterceptor.setAccessDecisionManager(getAccessDecisionManager());
+        AccessDecisionManager accessDecisionManager = getAccessDecisionManager();
+        if(filterSecurityInterceptorCacheDecisions) {
+            accessDecisionManager = new RequestCachingAccessDecisionManager(accessDecisionManager);
+        }
+        securityInterceptor.setAccessDecisionManager(accessDecisionManager);
         securityInterceptor.setAuthenticationManager(authenticationManager);
         securityInterceptor.afterPropertiesSet();
         return securityInterceptor;
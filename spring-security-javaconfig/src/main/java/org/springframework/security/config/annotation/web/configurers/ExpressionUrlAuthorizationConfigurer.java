@@ -17,9 +17,13 @@ package org.springframework.security.config.annotation.web.configurers;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.springframework.expression.ExpressionParser;
 import org.springframework.security.access.AccessDecisionVoter;
 import org.springframework.security.access.ConfigAttribute;
 import org.springframework.security.access.SecurityConfig;
@@ -27,9 +31,16 @@ import org.springframework.security.access.expression.SecurityExpressionHandler;
 import org.springframework.security.config.annotation.web.HttpSecurityBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.FilterInvocation;
+import org.springframework.security.web.access.expression.CachingWebExpressionVoter;
+import org.springframework.security.web.access.expression.CompiledWebExpressionConfigAttribute;
+import org.springframework.security.web.access.expression.CompiledWebExpressionVoter;
 import org.springframework.security.web.access.expression.DefaultWebSecurityExpressionHandler;
 import org.springframework.security.web.access.expression.ExpressionBasedFilterInvocationSecurityMetadataSource;
+import org.springframework.security.web.access.expression.WebExpressionDecisionCache;
 import org.springframework.security.web.access.expression.WebExpressionVoter;
+import org.springframework.security.web.access.intercept.DefaultFilterInvocationSecurityMetadataSource;
+import org.springframework.security.web.access.intercept.FilterInvocationSecurityMetadataSource;
+import org.springframework.security.web.access.intercept.IndexedFilterInvocationSecurityMetadataSource;
 import org.springframework.security.web.util.RequestMatcher;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
@@ -77,6 +88,12 @@ public final class ExpressionUrlAuthorizationConfigurer<H extends HttpSecurityBu
 
     private SecurityExpressionHandler<FilterInvocation> expressionHandler = new DefaultWebSecurityExpressionHandler();
 
+    private boolean customExpressionHandler;
+
+    private boolean compileExpressions;
+
+    private WebExpressionDecisionCache decisionCache;
+
     /**
      * Creates a new instance
      * @see HttpSecurity#authorizeUrls()
@@ -92,6 +109,45 @@ public final class ExpressionUrlAuthorizationConfigurer<H extends HttpSecurityBu
      */
     public ExpressionUrlAuthorizationConfigurer<H> expressionHandler(SecurityExpressionHandler<FilterInvocation> expressionHandler) {
         this.expressionHandler = expressionHandler;
+        this.customExpressionHandler = true;
+        return this;
+    }
+
+    /**
+     * Allows compiling the expressions of the mappings into
+     * {@link CompiledWebExpressionConfigAttribute} instances that are
+     * evaluated by a {@link CompiledWebExpressionVoter}. Identical expressions
+     * are only parsed once and share the same
+     * {@link CompiledWebExpressionConfigAttribute}. Unless a custom
+     * {@link SecurityExpressionHandler} is provided, the built in expressions
+     * (i.e. permitAll, authenticated, hasRole, hasAnyAuthority, hasIpAddress)
+     * are evaluated without SpEL. The default is false.
+     *
+     * @param compileExpressions true if the expressions should be compiled, else false
+     * @return the {@link ExpressionUrlAuthorizationConfigurer} for further customization.
+     */
+    public ExpressionUrlAuthorizationConfigurer<H> compileExpressions(boolean compileExpressions) {
+        this.compileExpressions = compileExpressions;
+        return this;
+    }
+
+    /**
+     * Allows caching the votes on the expressions that only depend on the
+     * authorities of the user (i.e. hasRole, hasAnyAuthority, permitAll)
+     * across requests. A vote is cached for the mapping and the authorities
+     * of the user, so a user with the same authorities requesting a URL of
+     * the same mapping reuses the vote. Other expressions (i.e.
+     * hasIpAddress, authenticated or references to beans) are always
+     * evaluated. The default is not to cache votes.
+     *
+     * @param decisionCache the {@link WebExpressionDecisionCache} to use
+     *            which also provides the hit and miss counts. Cannot be null.
+     * @return the {@link ExpressionUrlAuthorizationConfigurer} for further customization.
+     * @see CachingWebExpressionVoter
+     */
+    public ExpressionUrlAuthorizationConfigurer<H> decisionCache(WebExpressionDecisionCache decisionCache) {
+        Assert.notNull(decisionCache, "decisionCache cannot be null");
+        this.decisionCache = decisionCache;
         return this;
     }
 
@@ -104,21 +160,112 @@ public final class ExpressionUrlAuthorizationConfigurer<H extends HttpSecurityBu
     @SuppressWarnings("rawtypes")
     final List<AccessDecisionVoter> getDecisionVoters() {
         List<AccessDecisionVoter> decisionVoters = new ArrayList<AccessDecisionVoter>();
-        WebExpressionVoter expressionVoter = new WebExpressionVoter();
-        expressionVoter.setExpressionHandler(expressionHandler);
-        decisionVoters.add(expressionVoter);
+        decisionVoters.add(createExpressionVoter());
         return decisionVoters;
     }
 
+    /**
+     * Creates the {@link AccessDecisionVoter} that votes on the expressions,
+     * caching its votes if a {@link WebExpressionDecisionCache} was provided.
+     */
+    private AccessDecisionVoter<FilterInvocation> createExpressionVoter() {
+        AccessDecisionVoter<FilterInvocation> expressionVoter;
+        if(compileExpressions) {
+            CompiledWebExpressionVoter compiledVoter = new CompiledWebExpressionVoter();
+            compiledVoter.setExpressionHandler(expressionHandler);
+            expressionVoter = compiledVoter;
+        }
+        else {
+            WebExpressionVoter webVoter = new WebExpressionVoter();
+            webVoter.setExpressionHandler(expressionHandler);
+            expressionVoter = webVoter;
+        }
+        if(decisionCache != null) {
+            return new CachingWebExpressionVoter(expressionVoter, decisionCache);
+        }
+        return expressionVoter;
+    }
+
     @Override
-    final ExpressionBasedFilterInvocationSecurityMetadataSource createMetadataSource() {
+    final FilterInvocationSecurityMetadataSource createMetadataSource() {
         LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> requestMap = createRequestMap();
         if(requestMap.isEmpty()) {
             throw new IllegalStateException("At least one mapping is required (i.e. authorizeUrls().anyRequest.authenticated())");
         }
+        if(compileExpressions) {
+            LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> compiledMap = compileMap(requestMap);
+            if(isIndexUrlMappings()) {
+                return new IndexedFilterInvocationSecurityMetadataSource(compiledMap);
+            }
+            return new DefaultFilterInvocationSecurityMetadataSource(compiledMap);
+        }
+        if(isIndexUrlMappings()) {
+            return new IndexedFilterInvocationSecurityMetadataSource(processMap(requestMap));
+        }
         return new ExpressionBasedFilterInvocationSecurityMetadataSource(requestMap, expressionHandler);
     }
 
+    /**
+     * Compiles the expression of each mapping into a
+     * {@link CompiledWebExpressionConfigAttribute}. Identical expressions
+     * share the same {@link CompiledWebExpressionConfigAttribute}.
+     *
+     * @param requestMap the mappings to compile
+     * @return the compiled mappings in the same order
+     */
+    private LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> compileMap(LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> requestMap) {
+        ExpressionParser parser = expressionHandler.getExpressionParser();
+        Map<String,Collection<ConfigAttribute>> expressions = new HashMap<String,Collection<ConfigAttribute>>();
+        LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> result = new LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>>();
+        for(Map.Entry<RequestMatcher, Collection<ConfigAttribute>> entry : requestMap.entrySet()) {
+            String expression = getExpression(entry);
+            Collection<ConfigAttribute> attributes = expressions.get(expression);
+            if(attributes == null) {
+                CompiledWebExpressionConfigAttribute attribute = customExpressionHandler ?
+                        CompiledWebExpressionConfigAttribute.parse(expression, parser) :
+                        CompiledWebExpressionConfigAttribute.compile(expression, parser);
+                attributes = Collections.<ConfigAttribute>singletonList(attribute);
+                expressions.put(expression, attributes);
+            }
+            result.put(entry.getKey(), attributes);
+        }
+        return result;
+    }
+
+    private static String getExpression(Map.Entry<RequestMatcher, Collection<ConfigAttribute>> mapping) {
+        Collection<ConfigAttribute> attributes = mapping.getValue();
+        Assert.isTrue(attributes.size() == 1, "Expected a single expression attribute for " + mapping.getKey());
+        return attributes.iterator().next().getAttribute();
+    }
+
+    /**
+     * Converts the expressions of each mapping into the {@link ConfigAttribute}
+     * instances that are understood by the {@link WebExpressionVoter}. The
+     * conversion is delegated to
+     * {@link ExpressionBasedFilterInvocationSecurityMetadataSource} to ensure
+     * the expressions are parsed in the same manner. Identical expressions
+     * are only parsed once.
+     *
+     * @param requestMap the mappings to convert
+     * @return the converted mappings in the same order
+     */
+    private LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> processMap(LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> requestMap) {
+        Map<String,Collection<ConfigAttribute>> expressions = new HashMap<String,Collection<ConfigAttribute>>();
+        LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> result = new LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>>();
+        for(Map.Entry<RequestMatcher, Collection<ConfigAttribute>> entry : requestMap.entrySet()) {
+            String expression = getExpression(entry);
+            Collection<ConfigAttribute> expressionAttributes = expressions.get(expression);
+            if(expressionAttributes == null) {
+                LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> mapping = new LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>>();
+                mapping.put(entry.getKey(), entry.getValue());
+                expressionAttributes = new ArrayList<ConfigAttribute>(new ExpressionBasedFilterInvocationSecurityMetadataSource(mapping, expressionHandler).getAllConfigAttributes());
+                expressions.put(expression, expressionAttributes);
+            }
+            result.put(entry.getKey(), expressionAttributes);
+        }
+        return result;
+    }
+
     /**
      * Allows registering multiple {@link RequestMatcher} instances to a collection of {@link ConfigAttribute} instances
      *
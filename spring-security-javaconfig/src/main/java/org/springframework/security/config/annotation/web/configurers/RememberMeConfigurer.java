@@ -16,6 +16,10 @@
 package org.springframework.security.config.annotation.web.configurers;
 
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.security.authentication.RememberMeAuthenticationProvider;
 import org.springframework.security.config.annotation.web.HttpSecurityBuilder;
@@ -27,11 +31,14 @@ import org.springframework.security.web.authentication.AuthenticationSuccessHand
 import org.springframework.security.web.authentication.RememberMeServices;
 import org.springframework.security.web.authentication.logout.LogoutHandler;
 import org.springframework.security.web.authentication.rememberme.AbstractRememberMeServices;
+import org.springframework.security.web.authentication.rememberme.HmacTokenBasedRememberMeServices;
 import org.springframework.security.web.authentication.rememberme.PersistentTokenBasedRememberMeServices;
 import org.springframework.security.web.authentication.rememberme.PersistentTokenRepository;
 import org.springframework.security.web.authentication.rememberme.RememberMeAuthenticationFilter;
 import org.springframework.security.web.authentication.rememberme.TokenBasedRememberMeServices;
+import org.springframework.security.web.authentication.rememberme.WriteBehindPersistentTokenRepository;
 import org.springframework.security.web.authentication.ui.DefaultLoginPageViewFilter;
+import org.springframework.util.Assert;
 
 /**
  * Configures Remember Me authentication. This typically involves the user
@@ -83,6 +90,9 @@ public final class RememberMeConfigurer<H extends HttpSecurityBuilder<H>> extend
     private UserDetailsService userDetailsService;
     private Integer tokenValiditySeconds;
     private Boolean useSecureCookie;
+    private boolean hmacTokens;
+    private long writeBehindFlushInterval = -1;
+    private TimeUnit writeBehindFlushUnit;
 
     /**
      * Creates a new instance
@@ -149,6 +159,45 @@ public final class RememberMeConfigurer<H extends HttpSecurityBuilder<H>> extend
         return this;
     }
 
+    /**
+     * Uses {@link HmacTokenBasedRememberMeServices} instead of
+     * {@link TokenBasedRememberMeServices}. The authorities of the user are
+     * embedded in a HMAC-SHA256 signed cookie, so that remember me
+     * authentication does not use the {@link UserDetailsService}. Not
+     * applicable if {@link #tokenRepository(PersistentTokenRepository)} is
+     * specified.
+     *
+     * @return the {@link RememberMeConfigurer} for further customization
+     */
+    public RememberMeConfigurer<H> hmacTokens() {
+        this.hmacTokens = true;
+        return this;
+    }
+
+    /**
+     * Caches the tokens of the {@link #tokenRepository(PersistentTokenRepository)}
+     * and writes the token updates behind, so that remember me authentication
+     * does not read and write the {@link PersistentTokenRepository} on every
+     * request. Updates that are younger than the flushInterval are lost if the
+     * application is not shut down gracefully. A cached token whose value
+     * differs from the presented remember me cookie is read again before the
+     * cookie is considered stolen, so the cache can be used by several nodes.
+     * Only applicable if
+     * {@link #tokenRepository(PersistentTokenRepository)} is specified.
+     *
+     * @param flushInterval the maximum amount of time a token update is pending. Cannot be negative.
+     * @param unit the {@link TimeUnit} of the flushInterval
+     * @return the {@link RememberMeConfigurer} for further customization
+     * @see WriteBehindPersistentTokenRepository
+     */
+    public RememberMeConfigurer<H> writeBehindTokenRepository(long flushInterval, TimeUnit unit) {
+        Assert.isTrue(flushInterval >= 0, "flushInterval cannot be negative");
+        Assert.notNull(unit, "unit cannot be null");
+        this.writeBehindFlushInterval = flushInterval;
+        this.writeBehindFlushUnit = unit;
+        return this;
+    }
+
     /**
      * Sets the key to identify tokens created for remember me authentication. Default is a secure randomly generated
      * key.
@@ -275,8 +324,9 @@ public final class RememberMeConfigurer<H extends HttpSecurityBuilder<H>> extend
     /**
      * Creates the {@link RememberMeServices} to use when none is provided. The
      * result is either {@link PersistentTokenRepository} (if a
-     * {@link PersistentTokenRepository} is specified, else
-     * {@link TokenBasedRememberMeServices}.
+     * {@link PersistentTokenRepository} is specified),
+     * {@link HmacTokenBasedRememberMeServices} (if {@link #hmacTokens()} is
+     * specified), else {@link TokenBasedRememberMeServices}.
      *
      * @param http the {@link HttpSecurity} to lookup shared objects
      * @param key the {@link #key(String)}
@@ -285,8 +335,13 @@ public final class RememberMeConfigurer<H extends HttpSecurityBuilder<H>> extend
      */
     private AbstractRememberMeServices createRememberMeServices(
             H http, String key) throws Exception {
-        return tokenRepository == null ? createTokenBasedRememberMeServices(
-                http, key) : createPersistentRememberMeServices(http, key);
+        if (tokenRepository != null) {
+            return createPersistentRememberMeServices(http, key);
+        }
+        if (hmacTokens) {
+            return new HmacTokenBasedRememberMeServices(key);
+        }
+        return createTokenBasedRememberMeServices(http, key);
     }
 
     /**
@@ -312,10 +367,34 @@ public final class RememberMeConfigurer<H extends HttpSecurityBuilder<H>> extend
     private AbstractRememberMeServices createPersistentRememberMeServices(
             H http, String key) {
         UserDetailsService userDetailsService = getUserDetailsService(http);
+        PersistentTokenRepository tokenRepository = getTokenRepository();
+        if (tokenRepository instanceof WriteBehindPersistentTokenRepository) {
+            return new WriteBehindRememberMeServices(key, userDetailsService,
+                    (WriteBehindPersistentTokenRepository) tokenRepository);
+        }
         return new PersistentTokenBasedRememberMeServices(key,
                 userDetailsService, tokenRepository);
     }
 
+    /**
+     * Gets the {@link PersistentTokenRepository} to use. Either the
+     * {@link #tokenRepository(PersistentTokenRepository)} or, if
+     * {@link #writeBehindTokenRepository(long, TimeUnit)} was specified, a
+     * {@link WriteBehindPersistentTokenRepository} that is flushed when the
+     * application is shut down.
+     *
+     * @return the {@link PersistentTokenRepository} to use
+     */
+    private PersistentTokenRepository getTokenRepository() {
+        if (writeBehindFlushInterval < 0) {
+            return tokenRepository;
+        }
+        WriteBehindPersistentTokenRepository writeBehindTokenRepository = new WriteBehindPersistentTokenRepository(
+                tokenRepository);
+        writeBehindTokenRepository.setFlushInterval(writeBehindFlushInterval, writeBehindFlushUnit);
+        return postProcess(writeBehindTokenRepository);
+    }
+
     /**
      * Gets the {@link UserDetailsService} to use. Either the explicitly
      * configure {@link UserDetailsService} from
@@ -349,4 +428,29 @@ public final class RememberMeConfigurer<H extends HttpSecurityBuilder<H>> extend
         }
         return key;
     }
-}
\ No newline at end of file
+
+    /**
+     * Looks up the token of the presented remember me cookie with
+     * {@link WriteBehindPersistentTokenRepository#getTokenForSeries(String, String)},
+     * so that a token that is stale in its cache is read again rather than
+     * treated as a {@link org.springframework.security.web.authentication.rememberme.CookieTheftException}.
+     */
+    private static final class WriteBehindRememberMeServices extends PersistentTokenBasedRememberMeServices {
+        private final WriteBehindPersistentTokenRepository tokenRepository;
+
+        private WriteBehindRememberMeServices(String key, UserDetailsService userDetailsService,
+                WriteBehindPersistentTokenRepository tokenRepository) {
+            super(key, userDetailsService, tokenRepository);
+            this.tokenRepository = tokenRepository;
+        }
+
+        @Override
+        protected UserDetails processAutoLoginCookie(String[] cookieTokens, HttpServletRequest request,
+                HttpServletResponse response) {
+            if (cookieTokens.length == 2) {
+                tokenRepository.getTokenForSeries(cookieTokens[0], cookieTokens[1]);
+            }
+            return super.processAutoLoginCookie(cookieTokens, request, response);
+        }
+    }
+}
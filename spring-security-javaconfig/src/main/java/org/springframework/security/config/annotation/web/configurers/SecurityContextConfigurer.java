@@ -20,7 +20,9 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.context.SecurityContextPersistenceFilter;
+import org.springframework.security.web.context.WriteAvoidingHttpSessionSecurityContextRepository;
 import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.security.web.context.SignedCookieSecurityContextRepository;
 
 /**
  * Allows persisting and restoring of the {@link SecurityContext} found on the
@@ -54,10 +56,16 @@ import org.springframework.security.web.context.SecurityContextRepository;
  * {@link SecurityContextPersistenceFilter}.</li>
  * </ul>
  *
+ * If {@link #skipUnchangedSessionWrites(boolean)} is true and
+ * {@link SessionManagementConfigurer} creates the
+ * {@link SecurityContextRepository}, a
+ * {@link WriteAvoidingHttpSessionSecurityContextRepository} is used.
+ *
  * @author Rob Winch
  * @since 3.2
  */
 public final class SecurityContextConfigurer<H extends HttpSecurityBuilder<H>> extends AbstractHttpConfigurer<H> {
+    private boolean skipUnchangedSessionWrites;
 
     /**
      * Creates a new instance
@@ -76,6 +84,46 @@ public final class SecurityContextConfigurer<H extends HttpSecurityBuilder<H>> e
         return this;
     }
 
+    /**
+     * Stores the {@link SecurityContext} in a signed cookie rather than in the
+     * {@link javax.servlet.http.HttpSession} (see
+     * {@link SignedCookieSecurityContextRepository}). This allows any node
+     * configured with the same keys to restore the {@link SecurityContext}.
+     * Use {@link #securityContextRepository(SecurityContextRepository)} to
+     * customize the {@link SignedCookieSecurityContextRepository}.
+     *
+     * @param keys the keys used to sign (the first key) and verify (all keys) the cookie
+     * @return the {@link SecurityContextConfigurer} for further customizations
+     */
+    public SecurityContextConfigurer<H> signedCookie(String... keys) {
+        return securityContextRepository(new SignedCookieSecurityContextRepository(keys));
+    }
+
+    /**
+     * If true, the {@link SecurityContext} is not written to the
+     * {@link javax.servlet.http.HttpSession} when it is unchanged (see
+     * {@link WriteAvoidingHttpSessionSecurityContextRepository}). This reduces
+     * session replication in clustered containers. Only applicable if the
+     * {@link SecurityContextRepository} is not explicitly specified. The
+     * default is false.
+     *
+     * @param skipUnchangedSessionWrites true if unchanged {@link SecurityContext} should not be written, else false
+     * @return the {@link SecurityContextConfigurer} for further customizations
+     */
+    public SecurityContextConfigurer<H> skipUnchangedSessionWrites(boolean skipUnchangedSessionWrites) {
+        this.skipUnchangedSessionWrites = skipUnchangedSessionWrites;
+        return this;
+    }
+
+    /**
+     * Determines if an unchanged {@link SecurityContext} should not be written
+     * to the {@link javax.servlet.http.HttpSession}.
+     * @return true if unchanged {@link SecurityContext} should not be written, else false
+     */
+    boolean isSkipUnchangedSessionWrites() {
+        return skipUnchangedSessionWrites;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public void configure(H http) throws Exception {
@@ -15,12 +15,25 @@
  */
 package org.springframework.security.config.annotation.web.configurers;
 
+import java.util.concurrent.TimeUnit;
+
 import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.security.config.annotation.web.HttpSecurityBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.core.session.JdbcSessionRegistry;
+import org.springframework.security.core.session.RefreshThrottlingSessionRegistry;
+import org.springframework.security.core.session.SessionDestroyedEvent;
 import org.springframework.security.core.session.SessionRegistry;
 import org.springframework.security.core.session.SessionRegistryImpl;
+import org.springframework.security.core.session.StripedSessionRegistry;
 import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
 import org.springframework.security.web.authentication.session.ConcurrentSessionControlStrategy;
 import org.springframework.security.web.authentication.session.SessionAuthenticationStrategy;
@@ -28,9 +41,11 @@ import org.springframework.security.web.authentication.session.SessionFixationPr
 import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
 import org.springframework.security.web.context.NullSecurityContextRepository;
 import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.security.web.context.WriteAvoidingHttpSessionSecurityContextRepository;
 import org.springframework.security.web.savedrequest.NullRequestCache;
 import org.springframework.security.web.savedrequest.RequestCache;
 import org.springframework.security.web.session.ConcurrentSessionFilter;
+import org.springframework.security.web.session.HttpSessionEventPublisher;
 import org.springframework.security.web.session.SessionManagementFilter;
 import org.springframework.security.web.session.SimpleRedirectInvalidSessionStrategy;
 import org.springframework.util.Assert;
@@ -71,9 +86,13 @@ import org.springframework.util.Assert;
 public final class SessionManagementConfigurer<H extends HttpSecurityBuilder<H>> extends AbstractHttpConfigurer<H> {
     private SessionAuthenticationStrategy sessionAuthenticationStrategy = new SessionFixationProtectionStrategy();
     private SessionRegistry sessionRegistry = new SessionRegistryImpl();
+    private boolean sessionRegistryCreated = true;
+    private boolean sessionRegistryInitialized;
     private Integer maximumSessions;
     private String expiredUrl;
     private boolean maxSessionsPreventsLogin;
+    private long refreshLastRequestInterval;
+    private TimeUnit refreshLastRequestUnit;
     private SessionCreationPolicy sessionPolicy = SessionCreationPolicy.ifRequired;
     private boolean enableSessionUrlRewriting;
     private String invalidSessionUrl;
@@ -210,12 +229,87 @@ public final class SessionManagementConfigurer<H extends HttpSecurityBuilder<H>>
         /**
          * Controls the {@link SessionRegistry} implementation used. The default
          * is {@link SessionRegistryImpl} which is an in memory implementation.
+         * A {@link SessionRegistry} that is created by this configurer is
+         * added as an {@link ApplicationListener} of the
+         * {@link ApplicationContext}, so that it receives the
+         * {@link SessionDestroyedEvent} published by the
+         * {@link HttpSessionEventPublisher}. A {@link SessionRegistry} that is
+         * provided with this method must be a bean to receive it.
          *
          * @param sessionRegistry the {@link SessionRegistry} to use
          * @return the {@link ConcurrencyControlConfigurer} for further customizations
          */
         public ConcurrencyControlConfigurer sessionRegistry(SessionRegistry sessionRegistry) {
             SessionManagementConfigurer.this.sessionRegistry = sessionRegistry;
+            SessionManagementConfigurer.this.sessionRegistryCreated = false;
+            return this;
+        }
+
+        /**
+         * Uses a {@link StripedSessionRegistry} rather than
+         * {@link SessionRegistryImpl}. It does not lock when sessions are
+         * registered or removed. Use
+         * {@link #refreshLastRequestEvery(long, TimeUnit)} to only update the
+         * last request time of a session when it is older than the interval.
+         *
+         * @return the {@link ConcurrencyControlConfigurer} for further customizations
+         */
+        public ConcurrencyControlConfigurer stripedSessionRegistry() {
+            return createdSessionRegistry(new StripedSessionRegistry());
+        }
+
+        /**
+         * Uses a {@link JdbcSessionRegistry} so that the maximum sessions are
+         * enforced across every node that shares the {@link DataSource}. The
+         * table must already exist (see {@link JdbcSessionRegistry#CREATE_TABLE_SQL}).
+         * The {@link JdbcSessionRegistry} is initialized and destroyed (which
+         * writes the pending refreshes) with the {@link ApplicationContext}
+         * and receives the {@link SessionDestroyedEvent}, so the
+         * {@link HttpSessionEventPublisher} must be registered. To customize
+         * the {@link JdbcSessionRegistry} (i.e. its batching and caching),
+         * create it as a bean and use {@link #sessionRegistry(SessionRegistry)}.
+         *
+         * @param dataSource the {@link DataSource} to use. Cannot be null.
+         * @return the {@link ConcurrencyControlConfigurer} for further customizations
+         */
+        public ConcurrencyControlConfigurer jdbcSessionRegistry(DataSource dataSource) {
+            Assert.notNull(dataSource, "dataSource cannot be null");
+            JdbcSessionRegistry jdbcSessionRegistry = new JdbcSessionRegistry();
+            jdbcSessionRegistry.setDataSource(dataSource);
+            return createdSessionRegistry(jdbcSessionRegistry);
+        }
+
+        /**
+         * Only refreshes the last request time of a session in the
+         * {@link SessionRegistry} if it was not already refreshed within the
+         * provided interval, so that most requests perform no writes. The
+         * last request time (and therefore the accuracy of idle expiration) may
+         * be behind by up to the interval. The default is to refresh the last
+         * request time on every request.
+         *
+         * If the {@link SessionRegistry} is a {@link StripedSessionRegistry},
+         * this sets its
+         * {@link StripedSessionRegistry#setLastRequestGranularity(long, TimeUnit)
+         * last request granularity}. Otherwise the {@link SessionRegistry} is
+         * wrapped with a {@link RefreshThrottlingSessionRegistry}.
+         *
+         * @param refreshInterval the minimum amount of time between refreshing
+         *            the last request time of a session. Must be positive.
+         * @param unit the {@link TimeUnit} of the refreshInterval
+         * @return the {@link ConcurrencyControlConfigurer} for further customizations
+         * @see RefreshThrottlingSessionRegistry
+         */
+        public ConcurrencyControlConfigurer refreshLastRequestEvery(long refreshInterval, TimeUnit unit) {
+            Assert.isTrue(refreshInterval > 0, "refreshInterval must be positive");
+            Assert.notNull(unit, "unit cannot be null");
+            SessionManagementConfigurer.this.refreshLastRequestInterval = refreshInterval;
+            SessionManagementConfigurer.this.refreshLastRequestUnit = unit;
+            return this;
+        }
+
+        private ConcurrencyControlConfigurer createdSessionRegistry(SessionRegistry sessionRegistry) {
+            SessionManagementConfigurer.this.sessionRegistry = sessionRegistry;
+            SessionManagementConfigurer.this.sessionRegistryCreated = true;
             return this;
         }
 
@@ -232,6 +326,7 @@ public final class SessionManagementConfigurer<H extends HttpSecurityBuilder<H>>
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void init(H builder) throws Exception {
         SecurityContextRepository securityContextRepository = builder.getSharedObject(SecurityContextRepository.class);
         boolean stateless = isStateless();
@@ -240,7 +335,10 @@ public final class SessionManagementConfigurer<H extends HttpSecurityBuilder<H>>
             if(stateless) {
                 builder.setSharedObject(SecurityContextRepository.class, new NullSecurityContextRepository());
             } else {
-                HttpSessionSecurityContextRepository httpSecurityRepository = new HttpSessionSecurityContextRepository();
+                SecurityContextConfigurer<?> securityContext = builder.getConfigurer(SecurityContextConfigurer.class);
+                HttpSessionSecurityContextRepository httpSecurityRepository = securityContext != null
+                        && securityContext.isSkipUnchangedSessionWrites() ? new WriteAvoidingHttpSessionSecurityContextRepository()
+                        : new HttpSessionSecurityContextRepository();
                 httpSecurityRepository.setDisableUrlRewriting(!enableSessionUrlRewriting);
                 httpSecurityRepository.setAllowSessionCreation(isAllowSessionCreation());
                 builder.setSharedObject(SecurityContextRepository.class, httpSecurityRepository);
@@ -270,7 +368,7 @@ public final class SessionManagementConfigurer<H extends HttpSecurityBuilder<H>>
 
         http.addFilter(sessionManagementFilter);
         if(isConcurrentSessionControlEnabled()) {
-            ConcurrentSessionFilter concurrentSessionFilter = new ConcurrentSessionFilter(sessionRegistry, expiredUrl);
+            ConcurrentSessionFilter concurrentSessionFilter = new ConcurrentSessionFilter(getSessionRegistry(), expiredUrl);
             concurrentSessionFilter = postProcess(concurrentSessionFilter);
             http.addFilter(concurrentSessionFilter);
         }
@@ -313,7 +411,7 @@ public final class SessionManagementConfigurer<H extends HttpSecurityBuilder<H>>
             return sessionAuthenticationStrategy;
         }
         if(isConcurrentSessionControlEnabled()) {
-            ConcurrentSessionControlStrategy concurrentSessionControlStrategy = new ConcurrentSessionControlStrategy(sessionRegistry);
+            ConcurrentSessionControlStrategy concurrentSessionControlStrategy = new ConcurrentSessionControlStrategy(getSessionRegistry());
             concurrentSessionControlStrategy.setMaximumSessions(maximumSessions);
             concurrentSessionControlStrategy.setExceptionIfMaximumExceeded(maxSessionsPreventsLogin);
             sessionAuthenticationStrategy = concurrentSessionControlStrategy;
@@ -321,6 +419,43 @@ public final class SessionManagementConfigurer<H extends HttpSecurityBuilder<H>>
         return sessionAuthenticationStrategy;
     }
 
+    /**
+     * Gets the {@link SessionRegistry} to use. If
+     * {@link ConcurrencyControlConfigurer#refreshLastRequestEvery(long, TimeUnit)}
+     * was specified, the last request granularity of a
+     * {@link StripedSessionRegistry} is set or any other
+     * {@link SessionRegistry} is wrapped with a
+     * {@link RefreshThrottlingSessionRegistry}.
+     *
+     * A {@link SessionRegistry} that was created by this configurer is
+     * initialized and destroyed with the {@link ApplicationContext}. The
+     * {@link RefreshThrottlingSessionRegistry} (which removes the sessions
+     * from the {@link SessionRegistry} it wraps) or else a
+     * {@link SessionRegistry} that was created by this configurer is added as
+     * an {@link ApplicationListener} so that it receives the
+     * {@link SessionDestroyedEvent}.
+     *
+     * @return the {@link SessionRegistry} to use
+     */
+    private SessionRegistry getSessionRegistry() {
+        if(sessionRegistryInitialized) {
+            return sessionRegistry;
+        }
+        sessionRegistryInitialized = true;
+        SessionRegistry createdSessionRegistry = sessionRegistryCreated ? sessionRegistry : null;
+        if(refreshLastRequestUnit != null && sessionRegistry instanceof StripedSessionRegistry) {
+            ((StripedSessionRegistry) sessionRegistry).setLastRequestGranularity(refreshLastRequestInterval, refreshLastRequestUnit);
+        } else if(refreshLastRequestUnit != null && !(sessionRegistry instanceof RefreshThrottlingSessionRegistry)) {
+            sessionRegistry = new RefreshThrottlingSessionRegistry(sessionRegistry, refreshLastRequestInterval, refreshLastRequestUnit);
+            postProcess(new SessionRegistryLifecycle(createdSessionRegistry, sessionRegistry));
+            return sessionRegistry;
+        }
+        if(createdSessionRegistry != null) {
+            postProcess(new SessionRegistryLifecycle(createdSessionRegistry, createdSessionRegistry));
+        }
+        return sessionRegistry;
+    }
+
     /**
      * Returns true if the number of concurrent sessions per user should be restricted.
      * @return
@@ -328,4 +463,44 @@ public final class SessionManagementConfigurer<H extends HttpSecurityBuilder<H>>
     private boolean isConcurrentSessionControlEnabled() {
         return maximumSessions != null;
     }
-}
\ No newline at end of file
+
+    /**
+     * Post processed in place of a {@link SessionRegistry} that was created by
+     * this configurer, since an {@link ApplicationListener} that is not a bean
+     * cannot be post processed.
+     */
+    private static final class SessionRegistryLifecycle implements ApplicationContextAware, InitializingBean, DisposableBean {
+        private final SessionRegistry sessionRegistry;
+        private final SessionRegistry sessionDestroyedListener;
+
+        /**
+         * Creates a new instance
+         * @param sessionRegistry the {@link SessionRegistry} to initialize
+         *            and destroy. Can be null.
+         * @param sessionDestroyedListener the {@link SessionRegistry} to add
+         *            as an {@link ApplicationListener} if it is one
+         */
+        private SessionRegistryLifecycle(SessionRegistry sessionRegistry, SessionRegistry sessionDestroyedListener) {
+            this.sessionRegistry = sessionRegistry;
+            this.sessionDestroyedListener = sessionDestroyedListener;
+        }
+
+        public void setApplicationContext(ApplicationContext context) {
+            if(sessionDestroyedListener instanceof ApplicationListener && context instanceof ConfigurableApplicationContext) {
+                ((ConfigurableApplicationContext) context).addApplicationListener((ApplicationListener<?>) sessionDestroyedListener);
+            }
+        }
+
+        public void afterPropertiesSet() throws Exception {
+            if(sessionRegistry instanceof InitializingBean) {
+                ((InitializingBean) sessionRegistry).afterPropertiesSet();
+            }
+        }
+
+        public void destroy() throws Exception {
+            if(sessionRegistry instanceof DisposableBean) {
+                ((DisposableBean) sessionRegistry).destroy();
+            }
+        }
+    }
+}
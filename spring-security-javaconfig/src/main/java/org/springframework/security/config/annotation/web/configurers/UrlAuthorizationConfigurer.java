@@ -17,7 +17,12 @@ package org.springframework.security.config.annotation.web.configurers;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.springframework.security.access.AccessDecisionManager;
 import org.springframework.security.access.AccessDecisionVoter;
@@ -28,6 +33,10 @@ import org.springframework.security.access.vote.RoleVoter;
 import org.springframework.security.config.annotation.web.HttpSecurityBuilder;
 import org.springframework.security.web.access.intercept.DefaultFilterInvocationSecurityMetadataSource;
 import org.springframework.security.web.access.intercept.FilterInvocationSecurityMetadataSource;
+import org.springframework.security.web.access.intercept.IndexedFilterInvocationSecurityMetadataSource;
+import org.springframework.security.web.access.vote.GrantedAuthorityIndex;
+import org.springframework.security.web.access.vote.RoleBitSetConfigAttribute;
+import org.springframework.security.web.access.vote.RoleBitSetVoter;
 import org.springframework.security.web.util.RequestMatcher;
 import org.springframework.util.Assert;
 
@@ -67,6 +76,40 @@ import org.springframework.util.Assert;
  * @see ExpressionUrlAuthorizationConfigurer
  */
 public final class UrlAuthorizationConfigurer<H extends HttpSecurityBuilder<H>, C> extends AbstractInterceptUrlConfigurer<H,C,UrlAuthorizationConfigurer<H,C>.AuthorizedUrl> {
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private boolean compileRoles;
+
+    /**
+     * Allows compiling the roles (i.e. the attributes starting with ROLE_
+     * that are supported by the {@link RoleVoter}) of the mappings. Each role
+     * is assigned an id by a {@link GrantedAuthorityIndex} and the roles of
+     * each mapping are replaced by a {@link RoleBitSetConfigAttribute} that
+     * is voted on by a {@link RoleBitSetVoter} instead of the
+     * {@link RoleVoter}. Each vote compares {@link java.util.BitSet} instances
+     * rather than each {@link org.springframework.security.core.GrantedAuthority}
+     * with each role. The default is false.
+     *
+     * <p>
+     * The authorization decisions are only the same because the default
+     * {@link AccessDecisionManager} is an
+     * {@link org.springframework.security.access.vote.AffirmativeBased} that
+     * grants access if the user has any of the roles of a mapping. An
+     * {@link AccessDecisionManager} that requires every role (i.e.
+     * {@link org.springframework.security.access.vote.UnanimousBased}) would
+     * only require one of them once they are merged, and a custom
+     * {@link AccessDecisionManager} may not have a {@link RoleBitSetVoter}.
+     * For this reason, compiling the roles cannot be combined with
+     * {@link #accessDecisionManager(AccessDecisionManager)}.
+     * </p>
+     *
+     * @param compileRoles true if the roles should be compiled, else false
+     * @return the {@link UrlAuthorizationConfigurer} for further customization
+     */
+    public UrlAuthorizationConfigurer<H,C> compileRoles(boolean compileRoles) {
+        this.compileRoles = compileRoles;
+        return this;
+    }
 
     /**
      * Creates the default {@link AccessDecisionVoter} instances used if an
@@ -77,7 +120,7 @@ public final class UrlAuthorizationConfigurer<H extends HttpSecurityBuilder<H>,
     @SuppressWarnings("rawtypes")
     final List<AccessDecisionVoter> getDecisionVoters() {
         List<AccessDecisionVoter> decisionVoters = new ArrayList<AccessDecisionVoter>();
-        decisionVoters.add(new RoleVoter());
+        decisionVoters.add(compileRoles ? new RoleBitSetVoter() : new RoleVoter());
         decisionVoters.add(new AuthenticatedVoter());
         return decisionVoters;
     }
@@ -89,7 +132,76 @@ public final class UrlAuthorizationConfigurer<H extends HttpSecurityBuilder<H>,
      */
     @Override
     FilterInvocationSecurityMetadataSource createMetadataSource() {
-        return new DefaultFilterInvocationSecurityMetadataSource(createRequestMap());
+        LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> requestMap = createRequestMap();
+        if(compileRoles) {
+            if(isCustomAccessDecisionManager()) {
+                throw new IllegalStateException("compileRoles(true) cannot be used with a custom AccessDecisionManager since it requires the RoleBitSetVoter of the default AccessDecisionManager");
+            }
+            requestMap = compileRoles(requestMap);
+        }
+        if(isIndexUrlMappings()) {
+            return new IndexedFilterInvocationSecurityMetadataSource(requestMap);
+        }
+        return new DefaultFilterInvocationSecurityMetadataSource(requestMap);
+    }
+
+    /**
+     * Replaces the roles of each mapping with a
+     * {@link RoleBitSetConfigAttribute}. Every role of every mapping is
+     * assigned an id by the same {@link GrantedAuthorityIndex}. Mappings that
+     * share the same {@link ConfigAttribute} instances (i.e. created by a
+     * single {@link AuthorizedUrl}) continue to share them.
+     */
+    private static LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> compileRoles(LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> requestMap) {
+        Set<String> allRoles = new LinkedHashSet<String>();
+        for(Collection<ConfigAttribute> attributes : requestMap.values()) {
+            allRoles.addAll(getRoles(attributes));
+        }
+        GrantedAuthorityIndex authorityIndex = new GrantedAuthorityIndex(allRoles);
+        Map<Collection<ConfigAttribute>,Collection<ConfigAttribute>> compiled = new IdentityHashMap<Collection<ConfigAttribute>,Collection<ConfigAttribute>>();
+        LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> result = new LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>>();
+        for(Map.Entry<RequestMatcher, Collection<ConfigAttribute>> entry : requestMap.entrySet()) {
+            Collection<ConfigAttribute> attributes = entry.getValue();
+            Collection<ConfigAttribute> compiledAttributes = compiled.get(attributes);
+            if(compiledAttributes == null) {
+                compiledAttributes = compileRoles(authorityIndex, attributes);
+                compiled.put(attributes, compiledAttributes);
+            }
+            result.put(entry.getKey(), compiledAttributes);
+        }
+        return result;
+    }
+
+    private static Collection<ConfigAttribute> compileRoles(GrantedAuthorityIndex authorityIndex, Collection<ConfigAttribute> attributes) {
+        List<String> roles = getRoles(attributes);
+        if(roles.isEmpty()) {
+            return attributes;
+        }
+        List<ConfigAttribute> result = new ArrayList<ConfigAttribute>(attributes.size());
+        result.add(new RoleBitSetConfigAttribute(authorityIndex, roles));
+        for(ConfigAttribute attribute : attributes) {
+            if(!isRole(attribute)) {
+                result.add(attribute);
+            }
+        }
+        return result;
+    }
+
+    private static List<String> getRoles(Collection<ConfigAttribute> attributes) {
+        List<String> roles = new ArrayList<String>();
+        for(ConfigAttribute attribute : attributes) {
+            if(isRole(attribute)) {
+                roles.add(attribute.getAttribute());
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * Determines if the {@link ConfigAttribute} is supported by the {@link RoleVoter}.
+     */
+    private static boolean isRole(ConfigAttribute attribute) {
+        return attribute.getAttribute() != null && attribute.getAttribute().startsWith(ROLE_PREFIX);
     }
 
     /**
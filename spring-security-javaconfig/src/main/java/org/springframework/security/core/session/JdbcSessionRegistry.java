@@ -0,0 +1,560 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.core.session;
+
+import java.security.Principal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.support.JdbcDaoSupport;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * A {@link SessionRegistry} that stores the sessions in a database table that
+ * can be shared by every node of a cluster, so that
+ * {@link org.springframework.security.web.authentication.session.ConcurrentSessionControlStrategy}
+ * restricts the number of sessions of a user across the cluster without
+ * sticky sessions.
+ * </p>
+ *
+ * <ul>
+ * <li>Registering, removing and expiring a session are written immediately.</li>
+ * <li>{@link #refreshLastRequest(String)} is coalesced per session and written
+ * using a JDBC batch once {@link #setBatchSize(int)} sessions are pending or the
+ * oldest pending refresh is older than {@link #setFlushInterval(long, TimeUnit)}.
+ * The batch is written by the {@link #setFlushExecutor(Executor)} (by default
+ * a single daemon thread that is created when the {@link JdbcSessionRegistry}
+ * is initialized), so requests do not wait for it. Pending refreshes are also
+ * written by {@link #flush()} and {@link #destroy()}.</li>
+ * <li>Reads are served from a near cache for {@link #setCacheTtl(long, TimeUnit)}.
+ * This means a session that is expired or removed by another node may be
+ * considered active for up to the TTL. When the cache holds more than
+ * {@link #setMaxCacheSize(int)} entries, a single thread evicts the expired
+ * entries and then the oldest entries until three quarters of the maximum
+ * size remain, so new entries are always cached and the cost of eviction is
+ * spread over the entries that are cached afterwards.</li>
+ * </ul>
+ *
+ * <p>
+ * Principals are stored by name (i.e. {@link UserDetails#getUsername()},
+ * {@link Principal#getName()} or {@link Object#toString()}), so the
+ * {@link SessionInformation#getPrincipal()} of the sessions and the result of
+ * {@link #getAllPrincipals()} are the names. The table can be created with
+ * {@link #CREATE_TABLE_SQL}.
+ * </p>
+ *
+ * <p>
+ * A row is only deleted when its session is removed, so this
+ * {@link SessionRegistry} must be a bean (or otherwise be an
+ * {@link ApplicationListener} of the ApplicationContext that the
+ * HttpSessionEventPublisher publishes to) that receives the
+ * {@link SessionDestroyedEvent}. Otherwise the rows of sessions that time out
+ * remain, and count towards the maximum sessions of the user, until the
+ * session id is registered again. It must also be destroyed with the
+ * ApplicationContext so that the pending refreshes are written.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class JdbcSessionRegistry extends JdbcDaoSupport implements SessionRegistry,
+        ApplicationListener<SessionDestroyedEvent>, DisposableBean {
+    public static final String CREATE_TABLE_SQL = "create table session_registry (session_id varchar(100) not null primary key, " +
+            "principal varchar(100) not null, last_request timestamp not null, expired boolean not null)";
+    public static final String DEF_INSERT_SESSION_SQL = "insert into session_registry (session_id, principal, last_request, expired) values (?,?,?,?)";
+    public static final String DEF_REMOVE_SESSION_SQL = "delete from session_registry where session_id = ?";
+    public static final String DEF_SESSION_BY_ID_SQL = "select session_id, principal, last_request, expired from session_registry where session_id = ?";
+    public static final String DEF_SESSIONS_BY_PRINCIPAL_SQL = "select session_id, principal, last_request, expired from session_registry where principal = ?";
+    public static final String DEF_ALL_PRINCIPALS_SQL = "select distinct principal from session_registry";
+    public static final String DEF_UPDATE_LAST_REQUEST_SQL = "update session_registry set last_request = ? where session_id = ?";
+    public static final String DEF_EXPIRE_SESSION_SQL = "update session_registry set expired = ? where session_id = ?";
+
+    private final RowMapper<SessionInformation> sessionMapper = new SessionInformationRowMapper();
+
+    /** &lt;sessionId:String,lastRequest:Long&gt; of the refreshes that are not written yet */
+    private final ConcurrentMap<String,Long> pendingRefreshes = new ConcurrentHashMap<String,Long>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile long firstPendingRefresh;
+
+    private final NearCache<SessionInformation> sessionCache = new NearCache<SessionInformation>();
+    private final NearCache<List<SessionInformation>> principalCache = new NearCache<List<SessionInformation>>();
+
+    private final Runnable flushTask = new Runnable() {
+        public void run() {
+            flushScheduled.set(false);
+            flush();
+        }
+    };
+
+    private volatile Executor flushExecutor;
+    private ExecutorService createdFlushExecutor;
+
+    private boolean createTableOnStartup;
+    private int batchSize = 100;
+    private long flushIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+    private long cacheTtlNanos = TimeUnit.SECONDS.toNanos(1);
+    private int maxCacheSize = 10000;
+
+    @Override
+    protected void initDao() {
+        if (createTableOnStartup) {
+            getJdbcTemplate().execute(CREATE_TABLE_SQL);
+        }
+        if (flushExecutor == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("JdbcSessionRegistry-");
+            threadFactory.setDaemon(true);
+            createdFlushExecutor = Executors.newSingleThreadExecutor(threadFactory);
+            flushExecutor = createdFlushExecutor;
+        }
+    }
+
+    public void registerNewSession(String sessionId, Object principal) {
+        Assert.hasText(sessionId, "SessionId required as per interface contract");
+        Assert.notNull(principal, "Principal required as per interface contract");
+        String name = getName(principal);
+        pendingRefreshes.remove(sessionId);
+        removeSession(sessionId);
+        getJdbcTemplate().update(DEF_INSERT_SESSION_SQL, sessionId, name, new Timestamp(System.currentTimeMillis()), false);
+        principalCache.remove(name);
+    }
+
+    public void removeSessionInformation(String sessionId) {
+        Assert.hasText(sessionId, "SessionId required as per interface contract");
+        pendingRefreshes.remove(sessionId);
+        removeSession(sessionId);
+    }
+
+    public void onApplicationEvent(SessionDestroyedEvent event) {
+        removeSessionInformation(event.getId());
+    }
+
+    public void refreshLastRequest(String sessionId) {
+        Assert.hasText(sessionId, "SessionId required as per interface contract");
+        long now = System.currentTimeMillis();
+        CacheEntry<SessionInformation> cached = sessionCache.get(sessionId);
+        if (cached != null && cached.value != null) {
+            cached.value.refreshLastRequest();
+        }
+        if (pendingRefreshes.isEmpty()) {
+            firstPendingRefresh = System.nanoTime();
+        }
+        pendingRefreshes.put(sessionId, now);
+        flushIfNecessary();
+    }
+
+    public SessionInformation getSessionInformation(String sessionId) {
+        Assert.hasText(sessionId, "SessionId required as per interface contract");
+        flushIfNecessary();
+        long now = System.nanoTime();
+        CacheEntry<SessionInformation> cached = sessionCache.get(sessionId);
+        if (cached != null && cached.isValid(now)) {
+            return cached.value;
+        }
+        List<SessionInformation> sessions = getJdbcTemplate().query(DEF_SESSION_BY_ID_SQL, sessionMapper, sessionId);
+        SessionInformation result = sessions.isEmpty() ? null : sessions.get(0);
+        sessionCache.put(sessionId, result, now);
+        return result;
+    }
+
+    public List<SessionInformation> getAllSessions(Object principal, boolean includeExpiredSessions) {
+        flushIfNecessary();
+        String name = getName(principal);
+        long now = System.nanoTime();
+        CacheEntry<List<SessionInformation>> cached = principalCache.get(name);
+        List<SessionInformation> sessions;
+        if (cached != null && cached.isValid(now)) {
+            sessions = cached.value;
+        } else {
+            sessions = getJdbcTemplate().query(DEF_SESSIONS_BY_PRINCIPAL_SQL, sessionMapper, name);
+            for (SessionInformation session : sessions) {
+                sessionCache.put(session.getSessionId(), session, now);
+            }
+            principalCache.put(name, sessions, now);
+        }
+        List<SessionInformation> result = new ArrayList<SessionInformation>(sessions.size());
+        for (SessionInformation session : sessions) {
+            if (includeExpiredSessions || !session.isExpired()) {
+                result.add(session);
+            }
+        }
+        return result;
+    }
+
+    public List<Object> getAllPrincipals() {
+        flushIfNecessary();
+        return getJdbcTemplate().query(DEF_ALL_PRINCIPALS_SQL, new RowMapper<Object>() {
+            public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+                return rs.getString(1);
+            }
+        });
+    }
+
+    /**
+     * Writes the pending {@link #refreshLastRequest(String)} invocations using
+     * a JDBC batch.
+     */
+    public void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final List<Map.Entry<String,Long>> refreshes = new ArrayList<Map.Entry<String,Long>>(pendingRefreshes.size());
+            for (Iterator<Map.Entry<String,Long>> i = pendingRefreshes.entrySet().iterator(); i.hasNext();) {
+                Map.Entry<String,Long> refresh = i.next();
+                refreshes.add(new SimpleEntry(refresh.getKey(), refresh.getValue()));
+                i.remove();
+            }
+            firstPendingRefresh = System.nanoTime();
+            if (refreshes.isEmpty()) {
+                return;
+            }
+            getJdbcTemplate().batchUpdate(DEF_UPDATE_LAST_REQUEST_SQL, new BatchPreparedStatementSetter() {
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    Map.Entry<String,Long> refresh = refreshes.get(i);
+                    ps.setTimestamp(1, new Timestamp(refresh.getValue()));
+                    ps.setString(2, refresh.getKey());
+                }
+
+                public int getBatchSize() {
+                    return refreshes.size();
+                }
+            });
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * Stops the flush thread that was created by this {@link JdbcSessionRegistry}
+     * (if any) and writes the pending {@link #refreshLastRequest(String)}
+     * invocations.
+     */
+    public void destroy() {
+        if (createdFlushExecutor != null) {
+            createdFlushExecutor.shutdown();
+            try {
+                createdFlushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    /**
+     * If true, {@link #CREATE_TABLE_SQL} is executed on startup. The default is false.
+     * @param createTableOnStartup true to create the table on startup
+     */
+    public void setCreateTableOnStartup(boolean createTableOnStartup) {
+        this.createTableOnStartup = createTableOnStartup;
+    }
+
+    /**
+     * Sets the number of pending refreshes that causes them to be written. The default is 100.
+     * @param batchSize the number of pending refreshes. Must be positive.
+     */
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the {@link Executor} that writes the pending refreshes once the
+     * batch size or the flush interval is reached. The default is a single
+     * daemon thread that is created when the {@link JdbcSessionRegistry} is
+     * initialized and stopped when it is destroyed. An {@link Executor} that is
+     * provided is not stopped.
+     * @param flushExecutor the {@link Executor} to use. Cannot be null.
+     */
+    public void setFlushExecutor(Executor flushExecutor) {
+        Assert.notNull(flushExecutor, "flushExecutor cannot be null");
+        this.flushExecutor = flushExecutor;
+    }
+
+    /**
+     * Sets the maximum amount of time a refresh is pending (as long as the
+     * {@link SessionRegistry} continues to be used). The default is 1 second.
+     * @param flushInterval the maximum amount of time a refresh is pending. Cannot be negative.
+     * @param unit the {@link TimeUnit} of the flushInterval. Cannot be null.
+     */
+    public void setFlushInterval(long flushInterval, TimeUnit unit) {
+        Assert.isTrue(flushInterval >= 0, "flushInterval cannot be negative");
+        Assert.notNull(unit, "unit cannot be null");
+        this.flushIntervalNanos = unit.toNanos(flushInterval);
+    }
+
+    /**
+     * Sets how long the results of reads are cached. The default is 1 second.
+     * 0 disables the cache.
+     * @param cacheTtl how long the results of reads are cached. Cannot be negative.
+     * @param unit the {@link TimeUnit} of the cacheTtl. Cannot be null.
+     */
+    public void setCacheTtl(long cacheTtl, TimeUnit unit) {
+        Assert.isTrue(cacheTtl >= 0, "cacheTtl cannot be negative");
+        Assert.notNull(unit, "unit cannot be null");
+        this.cacheTtlNanos = unit.toNanos(cacheTtl);
+    }
+
+    /**
+     * Sets the number of sessions (and principals) that are cached before
+     * entries are evicted. The default is 10000. Since entries are only
+     * cached for {@link #setCacheTtl(long, TimeUnit)}, this only needs to
+     * hold the sessions that make requests within the TTL.
+     * @param maxCacheSize the number of cache entries. Must be positive.
+     */
+    public void setMaxCacheSize(int maxCacheSize) {
+        Assert.isTrue(maxCacheSize > 0, "maxCacheSize must be positive");
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * Gets the name that is stored for a principal.
+     * @param principal the principal
+     * @return the name to store for the principal
+     */
+    protected String getName(Object principal) {
+        if (principal instanceof UserDetails) {
+            return ((UserDetails) principal).getUsername();
+        }
+        if (principal instanceof Principal) {
+            return ((Principal) principal).getName();
+        }
+        return principal.toString();
+    }
+
+    private void removeSession(String sessionId) {
+        CacheEntry<SessionInformation> cached = sessionCache.remove(sessionId);
+        if (cached != null && cached.value != null) {
+            principalCache.remove(getName(cached.value.getPrincipal()));
+        } else {
+            // the principal is unknown so all sessions of principals are read again
+            principalCache.clear();
+        }
+        getJdbcTemplate().update(DEF_REMOVE_SESSION_SQL, sessionId);
+    }
+
+    private void expire(JdbcSessionInformation session) {
+        getJdbcTemplate().update(DEF_EXPIRE_SESSION_SQL, true, session.getSessionId());
+        principalCache.remove(getName(session.getPrincipal()));
+    }
+
+    private void flushIfNecessary() {
+        if (pendingRefreshes.isEmpty()) {
+            return;
+        }
+        if (pendingRefreshes.size() >= batchSize || System.nanoTime() - firstPendingRefresh >= flushIntervalNanos) {
+            scheduleFlush();
+        }
+    }
+
+    private void scheduleFlush() {
+        Executor executor = flushExecutor;
+        if (executor == null) {
+            flush();
+            return;
+        }
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(flushTask);
+        } catch (RejectedExecutionException e) {
+            flushScheduled.set(false);
+            flush();
+        }
+    }
+
+    /**
+     * A near cache of the reads that holds approximately
+     * {@link JdbcSessionRegistry#maxCacheSize} entries.
+     */
+    private final class NearCache<T> {
+        private final ConcurrentMap<String,CacheEntry<T>> entries = new ConcurrentHashMap<String,CacheEntry<T>>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean evicting = new AtomicBoolean();
+
+        private CacheEntry<T> get(String key) {
+            return entries.get(key);
+        }
+
+        private void put(String key, T value, long now) {
+            if (cacheTtlNanos == 0) {
+                return;
+            }
+            if (entries.put(key, new CacheEntry<T>(value, now + cacheTtlNanos)) == null
+                    && size.incrementAndGet() > maxCacheSize) {
+                evict(now);
+            }
+        }
+
+        private CacheEntry<T> remove(String key) {
+            CacheEntry<T> removed = entries.remove(key);
+            if (removed != null) {
+                size.decrementAndGet();
+            }
+            return removed;
+        }
+
+        private void clear() {
+            for (String key : entries.keySet()) {
+                remove(key);
+            }
+        }
+
+        /**
+         * Removes the expired entries and then the entries that expire first
+         * until three quarters of maxCacheSize remain. Only a single thread
+         * evicts at a time and the other threads do not wait for it.
+         */
+        private void evict(long now) {
+            if (!evicting.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                int evictToSize = maxCacheSize - Math.max(1, maxCacheSize / 4);
+                long[] expires = new long[size.get() + 16];
+                int count = 0;
+                for (Iterator<Map.Entry<String,CacheEntry<T>>> i = entries.entrySet().iterator(); i.hasNext();) {
+                    Map.Entry<String,CacheEntry<T>> entry = i.next();
+                    if (!entry.getValue().isValid(now)) {
+                        removeEntry(entry);
+                    } else if (count < expires.length) {
+                        expires[count++] = entry.getValue().expires - now;
+                    }
+                }
+                int evictCount = size.get() - evictToSize;
+                if (evictCount <= 0 || count == 0) {
+                    return;
+                }
+                Arrays.sort(expires, 0, count);
+                long threshold = expires[Math.min(evictCount, count) - 1];
+                for (Iterator<Map.Entry<String,CacheEntry<T>>> i = entries.entrySet().iterator(); size.get() > evictToSize && i.hasNext();) {
+                    Map.Entry<String,CacheEntry<T>> entry = i.next();
+                    if (entry.getValue().expires - now <= threshold) {
+                        removeEntry(entry);
+                    }
+                }
+            } finally {
+                evicting.set(false);
+            }
+        }
+
+        private void removeEntry(Map.Entry<String,CacheEntry<T>> entry) {
+            if (entries.remove(entry.getKey(), entry.getValue())) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class CacheEntry<T> {
+        private final T value;
+        private final long expires;
+
+        private CacheEntry(T value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+
+        private boolean isValid(long now) {
+            return now - expires < 0;
+        }
+    }
+
+    private static final class SimpleEntry implements Map.Entry<String,Long> {
+        private final String key;
+        private final Long value;
+
+        private SimpleEntry(String key, Long value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Long getValue() {
+            return value;
+        }
+
+        public Long setValue(Long value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final class SessionInformationRowMapper implements RowMapper<SessionInformation> {
+        public SessionInformation mapRow(ResultSet rs, int rowNum) throws SQLException {
+            JdbcSessionInformation session = new JdbcSessionInformation(JdbcSessionRegistry.this, rs.getString(2),
+                    rs.getString(1), rs.getTimestamp(3));
+            if (rs.getBoolean(4)) {
+                session.expireLocally();
+            }
+            return session;
+        }
+    }
+
+    /**
+     * A {@link SessionInformation} that writes {@link #expireNow()} to the
+     * database so that it is visible to every node.
+     */
+    private static final class JdbcSessionInformation extends SessionInformation {
+        private static final long serialVersionUID = 1L;
+
+        private final transient JdbcSessionRegistry registry;
+
+        private JdbcSessionInformation(JdbcSessionRegistry registry, String principal, String sessionId, Date lastRequest) {
+            super(principal, sessionId, new Date(lastRequest.getTime()));
+            this.registry = registry;
+        }
+
+        @Override
+        public void expireNow() {
+            super.expireNow();
+            if (registry != null) {
+                registry.expire(this);
+            }
+        }
+
+        private void expireLocally() {
+            super.expireNow();
+        }
+    }
+}
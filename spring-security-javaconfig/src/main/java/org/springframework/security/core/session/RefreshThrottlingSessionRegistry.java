@@ -0,0 +1,130 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.core.session;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.ApplicationListener;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * A {@link SessionRegistry} that delegates to another {@link SessionRegistry},
+ * but only delegates {@link #refreshLastRequest(String)} if the last request
+ * of the session was not already refreshed within the refresh interval.
+ * Requests within the refresh interval perform no writes. This means the
+ * last request time of a session (and therefore the accuracy of idle
+ * expiration) may be behind by up to the refresh interval.
+ * </p>
+ *
+ * <p>
+ * The time of the last refresh is measured using {@link System#nanoTime()},
+ * so it is not affected by changes to the system clock. It is forgotten when
+ * the session is removed using this {@link SessionRegistry} (i.e. when it
+ * receives the {@link SessionDestroyedEvent}) or when the refresh interval
+ * has passed and the delegate no longer knows the session (i.e. the delegate
+ * received the {@link SessionDestroyedEvent} instead).
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public final class RefreshThrottlingSessionRegistry implements SessionRegistry, ApplicationListener<SessionDestroyedEvent> {
+    private final SessionRegistry delegate;
+    private final long refreshIntervalNanos;
+    private final ConcurrentMap<String,LastRefresh> lastRefreshes = new ConcurrentHashMap<String,LastRefresh>();
+
+    /**
+     * Creates a new instance
+     * @param delegate the {@link SessionRegistry} to delegate to. Cannot be null.
+     * @param refreshInterval the minimum amount of time between delegating
+     *            {@link #refreshLastRequest(String)} for the same session. Must be positive.
+     * @param unit the {@link TimeUnit} of the refreshInterval. Cannot be null.
+     */
+    public RefreshThrottlingSessionRegistry(SessionRegistry delegate, long refreshInterval, TimeUnit unit) {
+        Assert.notNull(delegate, "delegate cannot be null");
+        Assert.isTrue(refreshInterval > 0, "refreshInterval must be positive");
+        Assert.notNull(unit, "unit cannot be null");
+        this.delegate = delegate;
+        this.refreshIntervalNanos = unit.toNanos(refreshInterval);
+    }
+
+    public void refreshLastRequest(String sessionId) {
+        long now = System.nanoTime();
+        LastRefresh lastRefresh = lastRefreshes.get(sessionId);
+        if(lastRefresh != null) {
+            if(now - lastRefresh.time < refreshIntervalNanos) {
+                return;
+            }
+            lastRefresh.time = now;
+            delegate.refreshLastRequest(sessionId);
+            if(delegate.getSessionInformation(sessionId) == null) {
+                lastRefreshes.remove(sessionId, lastRefresh);
+            }
+            return;
+        }
+        delegate.refreshLastRequest(sessionId);
+        // only remember sessions that are known so that unknown session ids cannot fill the map
+        if(delegate.getSessionInformation(sessionId) != null) {
+            lastRefreshes.putIfAbsent(sessionId, new LastRefresh(now));
+        }
+    }
+
+    public void registerNewSession(String sessionId, Object principal) {
+        lastRefreshes.remove(sessionId);
+        delegate.registerNewSession(sessionId, principal);
+    }
+
+    public void removeSessionInformation(String sessionId) {
+        lastRefreshes.remove(sessionId);
+        delegate.removeSessionInformation(sessionId);
+    }
+
+    public void onApplicationEvent(SessionDestroyedEvent event) {
+        removeSessionInformation(event.getId());
+    }
+
+    public List<Object> getAllPrincipals() {
+        return delegate.getAllPrincipals();
+    }
+
+    public List<SessionInformation> getAllSessions(Object principal, boolean includeExpiredSessions) {
+        return delegate.getAllSessions(principal, includeExpiredSessions);
+    }
+
+    public SessionInformation getSessionInformation(String sessionId) {
+        return delegate.getSessionInformation(sessionId);
+    }
+
+    /**
+     * Gets the {@link SessionRegistry} that is delegated to
+     * @return the {@link SessionRegistry} that is delegated to
+     */
+    public SessionRegistry getDelegate() {
+        return delegate;
+    }
+
+    private static final class LastRefresh {
+        private volatile long time;
+
+        private LastRefresh(long time) {
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.core.session;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.ApplicationListener;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * An in memory {@link SessionRegistry} that behaves like
+ * {@link SessionRegistryImpl}, but is intended for a large number of
+ * concurrent sessions:
+ * </p>
+ *
+ * <ul>
+ * <li>Reads do not lock. The session ids of each principal are kept in a
+ * compact array that is replaced (rather than modified) using compare and
+ * set operations of a {@link ConcurrentHashMap} that is striped by the
+ * concurrency level.</li>
+ * <li>Registering and removing a session only locks the stripe of its session
+ * id, so that both steps of registering (or removing) a session are atomic
+ * with respect to the same session id.</li>
+ * <li>The last request time is kept as a long and
+ * {@link #refreshLastRequest(String)} only writes it when it is older than the
+ * {@link #setLastRequestGranularity(long, TimeUnit) last request granularity}.
+ * This means the value returned by {@link SessionInformation#getLastRequest()}
+ * may be earlier than the actual last request by up to the granularity.</li>
+ * </ul>
+ *
+ * <p>
+ * Like {@link SessionRegistryImpl}, sessions are only removed when this
+ * {@link SessionRegistry} receives a {@link SessionDestroyedEvent}, so it
+ * must be an {@link ApplicationListener} of the ApplicationContext that the
+ * HttpSessionEventPublisher publishes to.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public final class StripedSessionRegistry implements SessionRegistry, ApplicationListener<SessionDestroyedEvent> {
+    /** &lt;principal:Object,sessionIds:String[]&gt; */
+    private final ConcurrentMap<Object,String[]> principals;
+    /** &lt;sessionId:String,SessionInformation&gt; */
+    private final ConcurrentMap<String,StripedSessionInformation> sessionIds;
+    /** the locks used to register and remove a session id */
+    private final Object[] stripes;
+
+    private long lastRequestGranularity;
+
+    /**
+     * Creates a new instance with a concurrency level of 16
+     */
+    public StripedSessionRegistry() {
+        this(16);
+    }
+
+    /**
+     * Creates a new instance
+     * @param concurrencyLevel the estimated number of threads that concurrently
+     *            register and remove sessions. Must be positive.
+     */
+    public StripedSessionRegistry(int concurrencyLevel) {
+        Assert.isTrue(concurrencyLevel > 0, "concurrencyLevel must be positive");
+        this.principals = new ConcurrentHashMap<Object,String[]>(16, 0.75f, concurrencyLevel);
+        this.sessionIds = new ConcurrentHashMap<String,StripedSessionInformation>(16, 0.75f, concurrencyLevel);
+        this.stripes = new Object[concurrencyLevel];
+        for (int i = 0; i < concurrencyLevel; i++) {
+            this.stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Sets the amount of time that the last request time of a session may
+     * be behind the actual last request. The default is 0, which means the last
+     * request time is written on every {@link #refreshLastRequest(String)}.
+     *
+     * @param lastRequestGranularity the granularity. Cannot be negative.
+     * @param unit the {@link TimeUnit} of the lastRequestGranularity. Cannot be null.
+     */
+    public void setLastRequestGranularity(long lastRequestGranularity, TimeUnit unit) {
+        Assert.isTrue(lastRequestGranularity >= 0, "lastRequestGranularity cannot be negative");
+        Assert.notNull(unit, "unit cannot be null");
+        this.lastRequestGranularity = unit.toMillis(lastRequestGranularity);
+    }
+
+    public List<Object> getAllPrincipals() {
+        return new ArrayList<Object>(principals.keySet());
+    }
+
+    public List<SessionInformation> getAllSessions(Object principal, boolean includeExpiredSessions) {
+        String[] sessionIdsUsedByPrincipal = principals.get(principal);
+        if (sessionIdsUsedByPrincipal == null) {
+            return Collections.emptyList();
+        }
+        List<SessionInformation> list = new ArrayList<SessionInformation>(sessionIdsUsedByPrincipal.length);
+        for (String sessionId : sessionIdsUsedByPrincipal) {
+            SessionInformation sessionInformation = sessionIds.get(sessionId);
+            if (sessionInformation == null) {
+                continue;
+            }
+            if (includeExpiredSessions || !sessionInformation.isExpired()) {
+                list.add(sessionInformation);
+            }
+        }
+        return list;
+    }
+
+    public SessionInformation getSessionInformation(String sessionId) {
+        Assert.hasText(sessionId, "SessionId required as per interface contract");
+        return sessionIds.get(sessionId);
+    }
+
+    public void onApplicationEvent(SessionDestroyedEvent event) {
+        removeSessionInformation(event.getId());
+    }
+
+    public void refreshLastRequest(String sessionId) {
+        Assert.hasText(sessionId, "SessionId required as per interface contract");
+        StripedSessionInformation info = sessionIds.get(sessionId);
+        if (info != null) {
+            info.refreshLastRequest(System.currentTimeMillis(), lastRequestGranularity);
+        }
+    }
+
+    public void registerNewSession(String sessionId, Object principal) {
+        Assert.hasText(sessionId, "SessionId required as per interface contract");
+        Assert.notNull(principal, "Principal required as per interface contract");
+        synchronized (stripeOf(sessionId)) {
+            removeSession(sessionId);
+            sessionIds.put(sessionId, new StripedSessionInformation(principal, sessionId, System.currentTimeMillis()));
+            addSessionId(principal, sessionId);
+        }
+    }
+
+    public void removeSessionInformation(String sessionId) {
+        Assert.hasText(sessionId, "SessionId required as per interface contract");
+        synchronized (stripeOf(sessionId)) {
+            removeSession(sessionId);
+        }
+    }
+
+    private void removeSession(String sessionId) {
+        SessionInformation info = sessionIds.remove(sessionId);
+        if (info == null) {
+            return;
+        }
+        removeSessionId(info.getPrincipal(), sessionId);
+    }
+
+    private Object stripeOf(String sessionId) {
+        int hash = sessionId.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[(hash & 0x7fffffff) % stripes.length];
+    }
+
+    private void addSessionId(Object principal, String sessionId) {
+        while (true) {
+            String[] current = principals.get(principal);
+            if (current == null) {
+                if (principals.putIfAbsent(principal, new String[] { sessionId }) == null) {
+                    return;
+                }
+                continue;
+            }
+            if (indexOf(current, sessionId) >= 0) {
+                return;
+            }
+            String[] updated = new String[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = sessionId;
+            if (principals.replace(principal, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    private void removeSessionId(Object principal, String sessionId) {
+        while (true) {
+            String[] current = principals.get(principal);
+            if (current == null) {
+                return;
+            }
+            int index = indexOf(current, sessionId);
+            if (index < 0) {
+                return;
+            }
+            if (current.length == 1) {
+                if (principals.remove(principal, current)) {
+                    return;
+                }
+                continue;
+            }
+            String[] updated = new String[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            if (principals.replace(principal, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    private static int indexOf(String[] sessionIds, String sessionId) {
+        for (int i = 0; i < sessionIds.length; i++) {
+            if (sessionIds[i].equals(sessionId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A {@link SessionInformation} that keeps the last request time as a long.
+     */
+    private static final class StripedSessionInformation extends SessionInformation {
+        private static final long serialVersionUID = 1L;
+
+        private volatile long lastRequest;
+
+        private StripedSessionInformation(Object principal, String sessionId, long lastRequest) {
+            super(principal, sessionId, new Date(lastRequest));
+            this.lastRequest = lastRequest;
+        }
+
+        @Override
+        public Date getLastRequest() {
+            return new Date(lastRequest);
+        }
+
+        @Override
+        public void refreshLastRequest() {
+            this.lastRequest = System.currentTimeMillis();
+        }
+
+        private void refreshLastRequest(long now, long granularity) {
+            if (now - lastRequest >= granularity) {
+                this.lastRequest = now;
+            }
+        }
+    }
+}
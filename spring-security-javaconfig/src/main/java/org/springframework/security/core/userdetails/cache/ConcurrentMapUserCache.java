@@ -0,0 +1,138 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.core.userdetails.cache;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * A {@link UserCache} that caches the {@link UserDetails} in memory for a
+ * fixed amount of time. Once the cache contains the maximum number of entries,
+ * expired entries are evicted and no new entries are cached until there is
+ * room again.
+ * </p>
+ *
+ * <p>
+ * In addition, usernames that do not exist can be cached with
+ * {@link #putUnknownUsername(String)} so that repeated attempts to
+ * authenticate with an unknown username do not query the user store.
+ * {@link #removeUserFromCache(String)} removes both kinds of entries.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public final class ConcurrentMapUserCache implements UserCache {
+    private final ConcurrentMap<String,CacheEntry> cache = new ConcurrentHashMap<String,CacheEntry>();
+
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    /**
+     * Creates a new instance
+     * @param maxSize the maximum number of cached usernames. Must be positive.
+     * @param ttl how long an entry is cached. Must be positive.
+     * @param unit the {@link TimeUnit} of the ttl. Cannot be null.
+     */
+    public ConcurrentMapUserCache(int maxSize, long ttl, TimeUnit unit) {
+        Assert.isTrue(maxSize > 0, "maxSize must be positive");
+        Assert.isTrue(ttl > 0, "ttl must be positive");
+        Assert.notNull(unit, "unit cannot be null");
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    public UserDetails getUserFromCache(String username) {
+        CacheEntry entry = getEntry(username);
+        return entry == null ? null : entry.user;
+    }
+
+    public void putUserInCache(UserDetails user) {
+        put(user.getUsername(), user);
+    }
+
+    public void removeUserFromCache(String username) {
+        cache.remove(username);
+    }
+
+    /**
+     * Caches that a username does not exist.
+     * @param username the username that does not exist
+     */
+    public void putUnknownUsername(String username) {
+        put(username, null);
+    }
+
+    /**
+     * Determines if a username was cached as not existing by
+     * {@link #putUnknownUsername(String)}.
+     * @param username the username to check
+     * @return true if the username is cached as not existing, else false
+     */
+    public boolean isUnknownUsername(String username) {
+        CacheEntry entry = getEntry(username);
+        return entry != null && entry.user == null;
+    }
+
+    private CacheEntry getEntry(String username) {
+        CacheEntry entry = cache.get(username);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.isValid(System.nanoTime())) {
+            cache.remove(username, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    private void put(String username, UserDetails user) {
+        long now = System.nanoTime();
+        if (cache.size() >= maxSize && !cache.containsKey(username)) {
+            for (Iterator<CacheEntry> i = cache.values().iterator(); i.hasNext();) {
+                if (!i.next().isValid(now)) {
+                    i.remove();
+                }
+            }
+            if (cache.size() >= maxSize) {
+                return;
+            }
+        }
+        cache.put(username, new CacheEntry(user, now + ttlNanos));
+    }
+
+    private static final class CacheEntry {
+        private final UserDetails user;
+        private final long expires;
+
+        private CacheEntry(UserDetails user, long expires) {
+            this.user = user;
+            this.expires = expires;
+        }
+
+        private boolean isValid(long now) {
+            return now - expires < 0;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.ldap;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.SearchControls;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+/**
+ * <p>
+ * A {@link DefaultSpringSecurityContextSource} that keeps the read only
+ * contexts (authenticated as the manager DN or anonymous) in a pool, so that
+ * user and group searches reuse an open connection rather than opening a new
+ * TCP (and TLS) connection for every search.
+ * </p>
+ *
+ * <ul>
+ * <li>{@link #getReadOnlyContext()} borrows an idle context from the pool or
+ * creates a new one. Closing the returned context gives it back to the pool.
+ * </li>
+ * <li>At most {@link #setMaxIdle(int)} contexts are kept idle. Contexts that
+ * have been idle longer than {@link #setMaxIdleTime(long, TimeUnit)} are
+ * closed when they are borrowed, unless no more than
+ * {@link #setMinIdle(int)} contexts are idle.</li>
+ * <li>If {@link #setValidateOnBorrow(boolean)} is true, an idle context is
+ * validated with a base object search on the base DN before it is handed out.
+ * A context that failed with a {@link CommunicationException} or
+ * {@link ServiceUnavailableException}, or whose environment or request
+ * controls were changed, is never returned to the pool.</li>
+ * <li>{@link #getContext(String, String)} (i.e. the bind of a user that is
+ * authenticating) and {@link #getReadWriteContext()} are never pooled. The
+ * JNDI connection pooling that {@link DefaultSpringSecurityContextSource}
+ * enables for the manager DN is disabled, since it would pool the same
+ * connections a second time.</li>
+ * </ul>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class PoolingSpringSecurityContextSource extends DefaultSpringSecurityContextSource implements DisposableBean {
+    private final Log logger = LogFactory.getLog(getClass());
+
+    private final Queue<PooledContext> idleContexts = new ConcurrentLinkedQueue<PooledContext>();
+    private final AtomicInteger numIdle = new AtomicInteger();
+    private final AtomicInteger numActive = new AtomicInteger();
+    private volatile boolean destroyed;
+
+    private int maxIdle = 8;
+    private int minIdle;
+    private long maxIdleTimeNanos = TimeUnit.SECONDS.toNanos(300);
+    private boolean validateOnBorrow;
+    private int validationTimeLimit = 500;
+
+    /**
+     * Create and initialize an instance which will connect to the supplied
+     * LDAP URL.
+     *
+     * @param providerUrl an LDAP URL of the form
+     *        <code>ldap://localhost:389/base_dn</code>
+     * @see DefaultSpringSecurityContextSource#DefaultSpringSecurityContextSource(String)
+     */
+    public PoolingSpringSecurityContextSource(String providerUrl) {
+        super(providerUrl);
+        setPooled(false);
+    }
+
+    /**
+     * Create and initialize an instance which will connect of the LDAP Spring
+     * Security Context Source.
+     *
+     * @param urls a list of string values which are LDAP server URLs
+     * @param baseDn the common base DN for all provided servers
+     * @see DefaultSpringSecurityContextSource#DefaultSpringSecurityContextSource(List, String)
+     */
+    public PoolingSpringSecurityContextSource(List<String> urls, String baseDn) {
+        super(urls, baseDn);
+        setPooled(false);
+    }
+
+    public DirContext getReadOnlyContext() {
+        if(destroyed) {
+            return super.getReadOnlyContext();
+        }
+        PooledContext pooled;
+        while((pooled = idleContexts.poll()) != null) {
+            int idle = numIdle.decrementAndGet();
+            if(idle >= minIdle && pooled.isIdleLongerThan(maxIdleTimeNanos)) {
+                logger.debug("Closing pooled context that has been idle for too long");
+                closeQuietly(pooled.target);
+                continue;
+            }
+            if(validateOnBorrow && !validate(pooled.target)) {
+                logger.debug("Closing pooled context that failed validation");
+                closeQuietly(pooled.target);
+                continue;
+            }
+            break;
+        }
+        if(pooled == null) {
+            pooled = new PooledContext(super.getReadOnlyContext());
+        }
+        numActive.incrementAndGet();
+        return pooled.borrow();
+    }
+
+    /**
+     * Closes all idle contexts. Contexts that are borrowed at this time are
+     * closed when they are returned.
+     */
+    public void destroy() {
+        destroyed = true;
+        PooledContext pooled;
+        while((pooled = idleContexts.poll()) != null) {
+            numIdle.decrementAndGet();
+            closeQuietly(pooled.target);
+        }
+    }
+
+    /**
+     * Sets the maximum number of idle contexts to keep in the pool. Contexts
+     * that are returned while the pool is full are closed. Default is 8.
+     *
+     * @param maxIdle the maximum number of idle contexts. Must be 0 or
+     *        greater.
+     */
+    public void setMaxIdle(int maxIdle) {
+        Assert.isTrue(maxIdle >= 0, "maxIdle must be 0 or greater. Got " + maxIdle);
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Sets the number of idle contexts that are kept even if they have been
+     * idle longer than {@link #setMaxIdleTime(long, TimeUnit)}. Default is 0.
+     *
+     * @param minIdle the minimum number of idle contexts. Must be 0 or
+     *        greater.
+     */
+    public void setMinIdle(int minIdle) {
+        Assert.isTrue(minIdle >= 0, "minIdle must be 0 or greater. Got " + minIdle);
+        this.minIdle = minIdle;
+    }
+
+    /**
+     * Sets how long a context may be idle before it is closed rather than
+     * reused. This should be shorter than the idle timeout of the LDAP server
+     * and of any firewall in between. Default is 5 minutes.
+     *
+     * @param maxIdleTime the maximum idle time. Must be greater than 0.
+     * @param unit the {@link TimeUnit} of maxIdleTime. Cannot be null.
+     */
+    public void setMaxIdleTime(long maxIdleTime, TimeUnit unit) {
+        Assert.isTrue(maxIdleTime > 0, "maxIdleTime must be greater than 0. Got " + maxIdleTime);
+        Assert.notNull(unit, "unit cannot be null");
+        this.maxIdleTimeNanos = unit.toNanos(maxIdleTime);
+    }
+
+    /**
+     * If true, an idle context is validated with a base object search of the
+     * base DN before it is borrowed. Default is false.
+     *
+     * @param validateOnBorrow true if idle contexts should be validated
+     */
+    public void setValidateOnBorrow(boolean validateOnBorrow) {
+        this.validateOnBorrow = validateOnBorrow;
+    }
+
+    /**
+     * Sets the time limit in milliseconds of the validation search. Default
+     * is 500.
+     *
+     * @param validationTimeLimit the time limit in milliseconds. Must be
+     *        greater than 0.
+     */
+    public void setValidationTimeLimit(int validationTimeLimit) {
+        Assert.isTrue(validationTimeLimit > 0, "validationTimeLimit must be greater than 0. Got " + validationTimeLimit);
+        this.validationTimeLimit = validationTimeLimit;
+    }
+
+    /**
+     * Gets the number of contexts that are idle in the pool.
+     * @return the number of idle contexts
+     */
+    public int getNumIdle() {
+        return numIdle.get();
+    }
+
+    /**
+     * Gets the number of pooled contexts that are currently borrowed.
+     * @return the number of borrowed contexts
+     */
+    public int getNumActive() {
+        return numActive.get();
+    }
+
+    private boolean validate(DirContext context) {
+        SearchControls controls = new SearchControls();
+        controls.setSearchScope(SearchControls.OBJECT_SCOPE);
+        controls.setCountLimit(1);
+        controls.setTimeLimit(validationTimeLimit);
+        controls.setReturningAttributes(new String[] { "objectclass" });
+        try {
+            NamingEnumeration<?> results = context.search("", "(objectclass=*)", controls);
+            try {
+                return results.hasMore();
+            } finally {
+                results.close();
+            }
+        } catch(NamingException e) {
+            logger.debug("Validation of pooled context failed", e);
+            return false;
+        }
+    }
+
+    private void giveBack(PooledContext pooled) {
+        numActive.decrementAndGet();
+        if(destroyed || pooled.invalid) {
+            closeQuietly(pooled.target);
+            return;
+        }
+        if(numIdle.incrementAndGet() > maxIdle) {
+            numIdle.decrementAndGet();
+            closeQuietly(pooled.target);
+            return;
+        }
+        pooled.lastReturned = System.nanoTime();
+        idleContexts.offer(pooled);
+        if(destroyed) {
+            destroy();
+        }
+    }
+
+    private static void closeQuietly(DirContext context) {
+        try {
+            context.close();
+        } catch(NamingException ignore) {}
+    }
+
+    /**
+     * Wraps a {@link DirContext} of the pool. Each call to {@link #borrow()}
+     * creates a proxy that gives the {@link DirContext} back to the pool the
+     * first time it is closed.
+     */
+    private final class PooledContext {
+        private final DirContext target;
+        private volatile boolean invalid;
+        private volatile long lastReturned;
+
+        private PooledContext(DirContext target) {
+            this.target = target;
+        }
+
+        private boolean isIdleLongerThan(long nanos) {
+            return System.nanoTime() - lastReturned > nanos;
+        }
+
+        private DirContext borrow() {
+            ClassLoader classLoader = PoolingSpringSecurityContextSource.class.getClassLoader();
+            Class<?>[] interfaces = ClassUtils.getAllInterfacesForClass(target.getClass(), classLoader);
+            return (DirContext) Proxy.newProxyInstance(classLoader, interfaces, new BorrowedContextHandler(this));
+        }
+    }
+
+    private final class BorrowedContextHandler implements InvocationHandler {
+        private final PooledContext pooled;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private BorrowedContextHandler(PooledContext pooled) {
+            this.pooled = pooled;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if("close".equals(name) && method.getParameterTypes().length == 0) {
+                if(closed.compareAndSet(false, true)) {
+                    giveBack(pooled);
+                }
+                return null;
+            }
+            if("equals".equals(name) && method.getParameterTypes().length == 1) {
+                return proxy == args[0];
+            }
+            if("hashCode".equals(name) && method.getParameterTypes().length == 0) {
+                return System.identityHashCode(proxy);
+            }
+            if(closed.get() && !"toString".equals(name)) {
+                throw new IllegalStateException("The context has already been closed and given back to the pool");
+            }
+            if("addToEnvironment".equals(name) || "removeFromEnvironment".equals(name)
+                    || "setRequestControls".equals(name) || "reconnect".equals(name)) {
+                pooled.invalid = true;
+            }
+            try {
+                return method.invoke(pooled.target, args);
+            } catch(InvocationTargetException e) {
+                Throwable cause = e.getTargetException();
+                if(cause instanceof CommunicationException || cause instanceof ServiceUnavailableException) {
+                    pooled.invalid = true;
+                }
+                throw cause;
+            }
+        }
+    }
+}
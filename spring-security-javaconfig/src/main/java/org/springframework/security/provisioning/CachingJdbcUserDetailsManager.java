@@ -0,0 +1,301 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.provisioning;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.core.userdetails.cache.ConcurrentMapUserCache;
+import org.springframework.security.core.userdetails.cache.NullUserCache;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * A {@link JdbcUserDetailsManager} that reads users through its
+ * {@link UserCache} rather than only evicting from it, and that can load a
+ * user and its authorities with a single query.
+ * </p>
+ *
+ * <ul>
+ * <li>{@link #loadUserByUsername(String)} returns the cached user if
+ * available. If the {@link UserCache} is a {@link ConcurrentMapUserCache},
+ * unknown usernames are cached too. Modifications made through this
+ * instance evict the affected users. Modifications made elsewhere are visible
+ * once the entries expire.</li>
+ * <li>If {@link #setUsersWithAuthoritiesByUsernameQuery(String)} is set, the
+ * user, its authorities and its group authorities are loaded by that query
+ * rather than by the separate users, authorities and group authorities
+ * queries.</li>
+ * <li>{@link #createUsers(Iterator)} creates many users using JDBC batches of
+ * {@link #setBatchSize(int)} users within a single transaction.</li>
+ * </ul>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class CachingJdbcUserDetailsManager extends JdbcUserDetailsManager {
+    /**
+     * Loads a user and its authorities from the default schema with a single query
+     */
+    public static final String DEF_USERS_WITH_AUTHORITIES_BY_USERNAME_QUERY =
+            "select u.username,u.password,u.enabled,a.authority " +
+            "from users u left outer join authorities a on u.username = a.username " +
+            "where u.username = ?";
+
+    private UserCache userCache = new NullUserCache();
+
+    private String usersWithAuthoritiesByUsernameQuery;
+
+    private String createUserSql = DEF_CREATE_USER_SQL;
+
+    private String createAuthoritySql = DEF_INSERT_AUTHORITY_SQL;
+
+    private int batchSize = 1000;
+
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        UserDetails cached = userCache.getUserFromCache(username);
+        if (cached != null) {
+            return copy(cached);
+        }
+        if (userCache instanceof ConcurrentMapUserCache
+                && ((ConcurrentMapUserCache) userCache).isUnknownUsername(username)) {
+            throw notFound(username);
+        }
+        UserDetails user;
+        try {
+            user = usersWithAuthoritiesByUsernameQuery == null ? super.loadUserByUsername(username)
+                    : loadUserWithAuthorities(username);
+        } catch (UsernameNotFoundException e) {
+            if (userCache instanceof ConcurrentMapUserCache) {
+                ((ConcurrentMapUserCache) userCache).putUnknownUsername(username);
+            }
+            throw e;
+        }
+        userCache.putUserInCache(copy(user));
+        return user;
+    }
+
+    @Override
+    public void createUser(UserDetails user) {
+        super.createUser(user);
+        userCache.removeUserFromCache(user.getUsername());
+    }
+
+    /**
+     * Creates the users using JDBC batches of {@link #setBatchSize(int)} users
+     * (and their authorities) within a single transaction. The users are
+     * consumed as they are written, so the {@link Iterator} may stream them
+     * from a large source.
+     *
+     * @param users the users to create. Cannot be null.
+     * @return the number of users that were created
+     */
+    public int createUsers(final Iterator<? extends UserDetails> users) {
+        Assert.notNull(users, "users cannot be null");
+        final int[] created = new int[1];
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(getDataSource()));
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                List<Object[]> userArgs = new ArrayList<Object[]>(batchSize);
+                List<Object[]> authorityArgs = new ArrayList<Object[]>(batchSize);
+                List<String> usernames = new ArrayList<String>(batchSize);
+                while (users.hasNext()) {
+                    UserDetails user = users.next();
+                    Assert.hasText(user.getUsername(), "Username may not be empty or null");
+                    Assert.notNull(user.getAuthorities(), "Authorities list must not be null");
+                    userArgs.add(new Object[] { user.getUsername(), user.getPassword(), user.isEnabled() });
+                    if (getEnableAuthorities()) {
+                        for (GrantedAuthority authority : user.getAuthorities()) {
+                            authorityArgs.add(new Object[] { user.getUsername(), authority.getAuthority() });
+                        }
+                    }
+                    usernames.add(user.getUsername());
+                    if (userArgs.size() == batchSize) {
+                        created[0] += writeUsers(userArgs, authorityArgs, usernames);
+                    }
+                }
+                created[0] += writeUsers(userArgs, authorityArgs, usernames);
+            }
+        });
+        return created[0];
+    }
+
+    @Override
+    public void deleteGroup(String groupName) {
+        List<String> members = findUsersInGroup(groupName);
+        super.deleteGroup(groupName);
+        removeUsersFromCache(members);
+    }
+
+    @Override
+    public void addUserToGroup(String username, String group) {
+        super.addUserToGroup(username, group);
+        userCache.removeUserFromCache(username);
+    }
+
+    @Override
+    public void removeUserFromGroup(String username, String groupName) {
+        super.removeUserFromGroup(username, groupName);
+        userCache.removeUserFromCache(username);
+    }
+
+    @Override
+    public void addGroupAuthority(String groupName, GrantedAuthority authority) {
+        super.addGroupAuthority(groupName, authority);
+        removeUsersFromCache(findUsersInGroup(groupName));
+    }
+
+    @Override
+    public void removeGroupAuthority(String groupName, GrantedAuthority authority) {
+        super.removeGroupAuthority(groupName, authority);
+        removeUsersFromCache(findUsersInGroup(groupName));
+    }
+
+    @Override
+    public void setCreateUserSql(String createUserSql) {
+        super.setCreateUserSql(createUserSql);
+        this.createUserSql = createUserSql;
+    }
+
+    @Override
+    public void setCreateAuthoritySql(String createAuthoritySql) {
+        super.setCreateAuthoritySql(createAuthoritySql);
+        this.createAuthoritySql = createAuthoritySql;
+    }
+
+    /**
+     * Sets the number of users that {@link #createUsers(Iterator)} writes per
+     * JDBC batch. The default is 1000.
+     *
+     * @param batchSize the number of users per JDBC batch. Must be positive.
+     */
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void setUserCache(UserCache userCache) {
+        super.setUserCache(userCache);
+        this.userCache = userCache;
+    }
+
+    /**
+     * Sets a query that loads a user, its authorities and its group
+     * authorities with a single statement. The query must contain a single
+     * parameter for the username and return a row per authority with the
+     * columns username, password, enabled and authority. The authority may
+     * be null for a user without authorities (i.e. when using an outer join).
+     * See {@link #DEF_USERS_WITH_AUTHORITIES_BY_USERNAME_QUERY} for an example.
+     * The default is null, which means the separate queries are used.
+     *
+     * @param usersWithAuthoritiesByUsernameQuery the query to use
+     */
+    public void setUsersWithAuthoritiesByUsernameQuery(String usersWithAuthoritiesByUsernameQuery) {
+        this.usersWithAuthoritiesByUsernameQuery = usersWithAuthoritiesByUsernameQuery;
+    }
+
+    private UserDetails loadUserWithAuthorities(final String username) {
+        final List<UserDetails> users = new ArrayList<UserDetails>(1);
+        final Set<GrantedAuthority> authorities = new LinkedHashSet<GrantedAuthority>();
+        getJdbcTemplate().query(usersWithAuthoritiesByUsernameQuery, new String[] { username }, new RowCallbackHandler() {
+            public void processRow(ResultSet rs) throws SQLException {
+                if (users.isEmpty()) {
+                    users.add(new User(rs.getString(1), rs.getString(2), rs.getBoolean(3), true, true, true,
+                            AuthorityUtils.NO_AUTHORITIES));
+                }
+                String authority = rs.getString(4);
+                if (authority != null) {
+                    authorities.add(new SimpleGrantedAuthority(getRolePrefix() + authority));
+                }
+            }
+        });
+        if (users.isEmpty()) {
+            logger.debug("Query returned no results for user '" + username + "'");
+            throw notFound(username);
+        }
+        UserDetails user = users.get(0);
+        List<GrantedAuthority> dbAuths = new ArrayList<GrantedAuthority>(authorities);
+        addCustomAuthorities(user.getUsername(), dbAuths);
+        if (dbAuths.isEmpty()) {
+            logger.debug("User '" + username + "' has no authorities and will be treated as 'not found'");
+            throw new UsernameNotFoundException(messages.getMessage("JdbcDaoImpl.noAuthority",
+                    new Object[] { username }, "User {0} has no GrantedAuthority"));
+        }
+        return createUserDetails(username, user, dbAuths);
+    }
+
+    /**
+     * Writes and clears the pending users and authorities
+     * @return the number of users that were written
+     */
+    private int writeUsers(List<Object[]> userArgs, List<Object[]> authorityArgs, List<String> usernames) {
+        int written = userArgs.size();
+        if (written > 0) {
+            getJdbcTemplate().batchUpdate(createUserSql, userArgs);
+        }
+        if (!authorityArgs.isEmpty()) {
+            getJdbcTemplate().batchUpdate(createAuthoritySql, authorityArgs);
+        }
+        removeUsersFromCache(usernames);
+        userArgs.clear();
+        authorityArgs.clear();
+        usernames.clear();
+        return written;
+    }
+
+    private UsernameNotFoundException notFound(String username) {
+        return new UsernameNotFoundException(messages.getMessage("JdbcDaoImpl.notFound", new Object[] { username },
+                "Username {0} not found"));
+    }
+
+    private void removeUsersFromCache(List<String> usernames) {
+        for (String username : usernames) {
+            userCache.removeUserFromCache(username);
+        }
+    }
+
+    /**
+     * Copies a {@link User} so that erasing the credentials of the returned
+     * user does not erase the credentials of the cached user.
+     */
+    private static UserDetails copy(UserDetails user) {
+        if (user.getClass() != User.class || user.getPassword() == null) {
+            return user;
+        }
+        return new User(user.getUsername(), user.getPassword(), user.isEnabled(), user.isAccountNonExpired(),
+                user.isCredentialsNonExpired(), user.isAccountNonLocked(), user.getAuthorities());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.expression;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.security.access.AccessDecisionVoter;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.FilterInvocation;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * An {@link AccessDecisionVoter} that caches the votes of another expression
+ * based {@link AccessDecisionVoter} (i.e. {@link WebExpressionVoter}) in a
+ * {@link WebExpressionDecisionCache}. The votes are cached by the
+ * {@link ConfigAttribute} of the URL mapping and the authorities of the user,
+ * so a user that repeatedly requests the same URL mapping does not evaluate
+ * the expression again.
+ * </p>
+ *
+ * <p>
+ * Only the expressions of a {@link WebExpressionConfigAttribute} or a
+ * {@link CompiledWebExpressionConfigAttribute} that are a function of the
+ * authorities alone are cached. These are the expressions composed of permitAll, denyAll, hasRole,
+ * hasAnyRole, hasAuthority and hasAnyAuthority with String arguments
+ * combined with and, or and not. Any other expression (i.e. hasIpAddress,
+ * authenticated or a reference to a bean) is always voted on by the
+ * delegate. If a custom {@link org.springframework.security.access.expression.SecurityExpressionHandler}
+ * is used, it must evaluate these expressions using only the authorities.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ * @see WebExpressionDecisionCache
+ */
+public final class CachingWebExpressionVoter implements AccessDecisionVoter<FilterInvocation> {
+    private final Map<ConfigAttribute,Boolean> cacheable = new ConcurrentHashMap<ConfigAttribute,Boolean>();
+
+    private final AccessDecisionVoter<FilterInvocation> delegate;
+
+    private final WebExpressionDecisionCache decisionCache;
+
+    /**
+     * Creates a new instance
+     *
+     * @param delegate the {@link AccessDecisionVoter} to delegate to. Cannot be null.
+     * @param decisionCache the {@link WebExpressionDecisionCache} to use. Cannot be null.
+     */
+    public CachingWebExpressionVoter(AccessDecisionVoter<FilterInvocation> delegate, WebExpressionDecisionCache decisionCache) {
+        Assert.notNull(delegate, "delegate cannot be null");
+        Assert.notNull(decisionCache, "decisionCache cannot be null");
+        this.delegate = delegate;
+        this.decisionCache = decisionCache;
+    }
+
+    public int vote(Authentication authentication, FilterInvocation fi, Collection<ConfigAttribute> attributes) {
+        ConfigAttribute attribute = attributes.size() == 1 ? attributes.iterator().next() : null;
+        if(attribute == null || !isCacheable(attribute)) {
+            return delegate.vote(authentication, fi, attributes);
+        }
+        Collection<? extends GrantedAuthority> authorities = authentication.getAuthorities();
+        Integer vote = decisionCache.get(attribute, authorities);
+        if(vote != null) {
+            return vote;
+        }
+        int result = delegate.vote(authentication, fi, attributes);
+        decisionCache.put(attribute, authorities, result);
+        return result;
+    }
+
+    public boolean supports(ConfigAttribute attribute) {
+        return delegate.supports(attribute);
+    }
+
+    public boolean supports(Class<?> clazz) {
+        return delegate.supports(clazz);
+    }
+
+    /**
+     * Gets the {@link WebExpressionDecisionCache} that is used
+     * @return the {@link WebExpressionDecisionCache} that is used
+     */
+    public WebExpressionDecisionCache getDecisionCache() {
+        return decisionCache;
+    }
+
+    private boolean isCacheable(ConfigAttribute attribute) {
+        Boolean result = cacheable.get(attribute);
+        if(result == null) {
+            result = delegate.supports(attribute) && WebConfigAttributeUtils.isAuthoritiesOnly(attribute);
+            cacheable.put(attribute, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.expression;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.ParseException;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.access.expression.ExpressionUtils;
+import org.springframework.security.access.expression.SecurityExpressionHandler;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.FilterInvocation;
+import org.springframework.security.web.util.IpAddressMatcher;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * A {@link ConfigAttribute} for a web security expression that is parsed a
+ * single time and evaluated by the {@link CompiledWebExpressionVoter}.
+ * </p>
+ *
+ * <p>
+ * When created with {@link #compile(String, ExpressionParser)}, the
+ * expressions that are provided by {@link WebSecurityExpressionRoot} and are
+ * commonly used for URL authorization are evaluated as Java without creating
+ * an {@link EvaluationContext}. This includes "permitAll", "denyAll",
+ * "anonymous", "authenticated", "rememberMe", "fullyAuthenticated",
+ * "hasRole('ROLE_USER')", "hasAuthority('ROLE_USER')",
+ * "hasAnyRole('ROLE_USER','ROLE_ADMIN')",
+ * "hasAnyAuthority('ROLE_USER','ROLE_ADMIN')" and
+ * "hasIpAddress('192.168.1.0/24')" optionally negated with "!". Any other
+ * expression is evaluated with the {@link SecurityExpressionHandler}.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ * @see CompiledWebExpressionVoter
+ */
+public final class CompiledWebExpressionConfigAttribute implements ConfigAttribute {
+    private static final Pattern SINGLE_ARGUMENT = Pattern.compile("(hasRole|hasAuthority|hasIpAddress)\\(\\s*'([^']*)'\\s*\\)");
+    private static final Pattern ANY_ARGUMENTS = Pattern.compile("(hasAnyRole|hasAnyAuthority)\\(\\s*('[^']*'(?:\\s*,\\s*'[^']*')*)\\s*\\)");
+    private static final Pattern ARGUMENT = Pattern.compile("'([^']*)'");
+
+    private static final AuthenticationTrustResolver trustResolver = new AuthenticationTrustResolverImpl();
+
+    private final String expressionString;
+
+    private final Expression expression;
+
+    private final Operation operation;
+
+    private final boolean negated;
+
+    private CompiledWebExpressionConfigAttribute(String expressionString, Expression expression, Operation operation, boolean negated) {
+        this.expressionString = expressionString;
+        this.expression = expression;
+        this.operation = operation;
+        this.negated = negated;
+    }
+
+    /**
+     * Creates a {@link CompiledWebExpressionConfigAttribute} that evaluates
+     * the expressions provided by {@link WebSecurityExpressionRoot} without
+     * SpEL and any other expression with SpEL. This must only be used if the
+     * {@link SecurityExpressionHandler} used by the
+     * {@link CompiledWebExpressionVoter} produces a
+     * {@link WebSecurityExpressionRoot} without a role hierarchy (i.e. a
+     * {@link DefaultWebSecurityExpressionHandler} with the default settings).
+     *
+     * @param expressionString the expression. Cannot be null.
+     * @param parser the {@link ExpressionParser} used if the expression is
+     *            not evaluated as Java. Cannot be null.
+     * @return the {@link CompiledWebExpressionConfigAttribute}
+     * @throws IllegalArgumentException if the expression cannot be parsed
+     */
+    public static CompiledWebExpressionConfigAttribute compile(String expressionString, ExpressionParser parser) {
+        Assert.notNull(expressionString, "expressionString cannot be null");
+        String operationString = expressionString.trim();
+        boolean negated = operationString.startsWith("!");
+        if(negated) {
+            operationString = operationString.substring(1).trim();
+        }
+        Operation operation = createOperation(operationString);
+        if(operation == null) {
+            return parse(expressionString, parser);
+        }
+        return new CompiledWebExpressionConfigAttribute(expressionString, null, operation, negated);
+    }
+
+    /**
+     * Creates a {@link CompiledWebExpressionConfigAttribute} that always
+     * evaluates the expression with SpEL.
+     *
+     * @param expressionString the expression. Cannot be null.
+     * @param parser the {@link ExpressionParser} to use. Cannot be null.
+     * @return the {@link CompiledWebExpressionConfigAttribute}
+     * @throws IllegalArgumentException if the expression cannot be parsed
+     */
+    public static CompiledWebExpressionConfigAttribute parse(String expressionString, ExpressionParser parser) {
+        Assert.notNull(expressionString, "expressionString cannot be null");
+        Assert.notNull(parser, "parser cannot be null");
+        try {
+            return new CompiledWebExpressionConfigAttribute(expressionString, parser.parseExpression(expressionString), null, false);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Failed to parse expression '" + expressionString + "'", e);
+        }
+    }
+
+    /**
+     * Determines if the expression is evaluated without SpEL.
+     *
+     * @return true if the expression is evaluated without SpEL, else false
+     */
+    public boolean isCompiled() {
+        return operation != null;
+    }
+
+    /**
+     * Gets the parsed expression.
+     *
+     * @return the parsed expression or null if the expression is evaluated
+     *         without SpEL
+     */
+    Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Evaluates the expression.
+     *
+     * @param authentication the {@link Authentication} to evaluate against
+     * @param fi the {@link FilterInvocation} to evaluate against
+     * @param expressionHandler the {@link SecurityExpressionHandler} that is
+     *            used to create the {@link EvaluationContext} if the
+     *            expression is evaluated with SpEL
+     * @return the result of the expression
+     */
+    boolean evaluate(Authentication authentication, FilterInvocation fi, SecurityExpressionHandler<FilterInvocation> expressionHandler) {
+        if(operation == null) {
+            EvaluationContext ctx = expressionHandler.createEvaluationContext(authentication, fi);
+            return ExpressionUtils.evaluateAsBoolean(expression, ctx);
+        }
+        return operation.evaluate(authentication, fi) != negated;
+    }
+
+    /**
+     * Returns null to ensure this is not consumed by other {@link org.springframework.security.access.AccessDecisionVoter}
+     * implementations.
+     */
+    public String getAttribute() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return expressionString;
+    }
+
+    private static Operation createOperation(String operation) {
+        if("permitAll".equals(operation) || "permitAll()".equals(operation)) {
+            return new Constant(true);
+        }
+        if("denyAll".equals(operation) || "denyAll()".equals(operation)) {
+            return new Constant(false);
+        }
+        if("anonymous".equals(operation) || "isAnonymous()".equals(operation)) {
+            return new TrustResolution(true, false);
+        }
+        if("authenticated".equals(operation) || "isAuthenticated()".equals(operation)) {
+            return new TrustResolution(false, true);
+        }
+        if("rememberMe".equals(operation) || "isRememberMe()".equals(operation)) {
+            return new RememberMe();
+        }
+        if("fullyAuthenticated".equals(operation) || "isFullyAuthenticated()".equals(operation)) {
+            return new TrustResolution(false, false);
+        }
+        Matcher matcher = SINGLE_ARGUMENT.matcher(operation);
+        if(matcher.matches()) {
+            String argument = matcher.group(2);
+            if("hasIpAddress".equals(matcher.group(1))) {
+                return new IpAddress(argument);
+            }
+            return new AnyAuthority(new String[] { argument });
+        }
+        matcher = ANY_ARGUMENTS.matcher(operation);
+        if(matcher.matches()) {
+            List<String> arguments = new ArrayList<String>();
+            Matcher argumentMatcher = ARGUMENT.matcher(matcher.group(2));
+            while(argumentMatcher.find()) {
+                arguments.add(argumentMatcher.group(1));
+            }
+            return new AnyAuthority(arguments.toArray(new String[arguments.size()]));
+        }
+        return null;
+    }
+
+    private static abstract class Operation {
+        abstract boolean evaluate(Authentication authentication, FilterInvocation fi);
+    }
+
+    private static final class Constant extends Operation {
+        private final boolean result;
+
+        private Constant(boolean result) {
+            this.result = result;
+        }
+
+        boolean evaluate(Authentication authentication, FilterInvocation fi) {
+            return result;
+        }
+    }
+
+    /**
+     * Evaluates anonymous (anonymous is true), authenticated (rememberMe is
+     * true) and fullyAuthenticated (both are false).
+     */
+    private static final class TrustResolution extends Operation {
+        private final boolean anonymous;
+        private final boolean rememberMe;
+
+        private TrustResolution(boolean anonymous, boolean rememberMe) {
+            this.anonymous = anonymous;
+            this.rememberMe = rememberMe;
+        }
+
+        boolean evaluate(Authentication authentication, FilterInvocation fi) {
+            if(trustResolver.isAnonymous(authentication)) {
+                return anonymous;
+            }
+            if(anonymous) {
+                return false;
+            }
+            return rememberMe || !trustResolver.isRememberMe(authentication);
+        }
+    }
+
+    private static final class RememberMe extends Operation {
+        boolean evaluate(Authentication authentication, FilterInvocation fi) {
+            return trustResolver.isRememberMe(authentication);
+        }
+    }
+
+    private static final class AnyAuthority extends Operation {
+        private final String[] authorities;
+
+        private AnyAuthority(String[] authorities) {
+            this.authorities = authorities;
+        }
+
+        boolean evaluate(Authentication authentication, FilterInvocation fi) {
+            Collection<? extends GrantedAuthority> userAuthorities = authentication.getAuthorities();
+            for(GrantedAuthority userAuthority : userAuthorities) {
+                String authority = userAuthority.getAuthority();
+                for(String required : authorities) {
+                    if(required.equals(authority)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class IpAddress extends Operation {
+        private final IpAddressMatcher matcher;
+
+        private IpAddress(String ipAddress) {
+            this.matcher = new IpAddressMatcher(ipAddress);
+        }
+
+        boolean evaluate(Authentication authentication, FilterInvocation fi) {
+            return matcher.matches(fi.getRequest());
+        }
+    }
+}
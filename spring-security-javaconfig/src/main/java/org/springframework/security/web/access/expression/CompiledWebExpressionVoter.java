@@ -0,0 +1,78 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.expression;
+
+import java.util.Collection;
+
+import org.springframework.security.access.AccessDecisionVoter;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.access.expression.SecurityExpressionHandler;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.FilterInvocation;
+import org.springframework.util.Assert;
+
+/**
+ * Voter which handles web authorisation decisions for
+ * {@link CompiledWebExpressionConfigAttribute} instances. Unlike
+ * {@link WebExpressionVoter}, an {@link org.springframework.expression.EvaluationContext}
+ * is only created if the expression is evaluated with SpEL.
+ *
+ * @author agent
+ * @since 3.2
+ * @see CompiledWebExpressionConfigAttribute
+ */
+public final class CompiledWebExpressionVoter implements AccessDecisionVoter<FilterInvocation> {
+    private SecurityExpressionHandler<FilterInvocation> expressionHandler = new DefaultWebSecurityExpressionHandler();
+
+    public int vote(Authentication authentication, FilterInvocation fi, Collection<ConfigAttribute> attributes) {
+        Assert.notNull(authentication, "authentication cannot be null");
+        Assert.notNull(fi, "fi cannot be null");
+        Assert.notNull(attributes, "attributes cannot be null");
+        CompiledWebExpressionConfigAttribute attribute = findConfigAttribute(attributes);
+        if(attribute == null) {
+            return ACCESS_ABSTAIN;
+        }
+        return attribute.evaluate(authentication, fi, expressionHandler) ? ACCESS_GRANTED : ACCESS_DENIED;
+    }
+
+    private CompiledWebExpressionConfigAttribute findConfigAttribute(Collection<ConfigAttribute> attributes) {
+        for(ConfigAttribute attribute : attributes) {
+            if(attribute instanceof CompiledWebExpressionConfigAttribute) {
+                return (CompiledWebExpressionConfigAttribute) attribute;
+            }
+        }
+        return null;
+    }
+
+    public boolean supports(ConfigAttribute attribute) {
+        return attribute instanceof CompiledWebExpressionConfigAttribute;
+    }
+
+    public boolean supports(Class<?> clazz) {
+        return FilterInvocation.class.isAssignableFrom(clazz);
+    }
+
+    /**
+     * Sets the {@link SecurityExpressionHandler} used to evaluate expressions
+     * with SpEL. The default is {@link DefaultWebSecurityExpressionHandler}.
+     *
+     * @param expressionHandler the {@link SecurityExpressionHandler} to use. Cannot be null.
+     */
+    public void setExpressionHandler(SecurityExpressionHandler<FilterInvocation> expressionHandler) {
+        Assert.notNull(expressionHandler, "expressionHandler cannot be null");
+        this.expressionHandler = expressionHandler;
+    }
+}
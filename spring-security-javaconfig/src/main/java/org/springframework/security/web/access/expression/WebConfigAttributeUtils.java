@@ -0,0 +1,121 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.expression;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.access.SecurityConfig;
+import org.springframework.security.access.expression.SecurityExpressionAstUtils;
+import org.springframework.security.access.vote.AuthenticatedVoter;
+import org.springframework.security.web.access.vote.RoleBitSetConfigAttribute;
+
+/**
+ * <p>
+ * Determines what the vote on a {@link ConfigAttribute} of a URL mapping
+ * depends on. Only the {@link ConfigAttribute} types that are known to be
+ * voted on without the {@link org.springframework.security.web.FilterInvocation}
+ * are recognized:
+ * </p>
+ *
+ * <ul>
+ * <li>a {@link SecurityConfig} with the "ROLE_" prefix of the
+ * {@link org.springframework.security.access.vote.RoleVoter} or one of the
+ * attributes of the {@link AuthenticatedVoter}</li>
+ * <li>a {@link RoleBitSetConfigAttribute}</li>
+ * <li>a {@link WebExpressionConfigAttribute} or a
+ * {@link CompiledWebExpressionConfigAttribute} whose expression is accepted by
+ * {@link SecurityExpressionAstUtils}</li>
+ * </ul>
+ *
+ * <p>
+ * Any other {@link ConfigAttribute} (i.e. one for a custom
+ * {@link org.springframework.security.access.AccessDecisionVoter}) is assumed
+ * to depend on the request. This class is intended for internal use by the
+ * Spring Security infrastructure.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public final class WebConfigAttributeUtils {
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser();
+
+    /**
+     * Determines if the vote on the {@link ConfigAttribute} is a function of
+     * the {@link org.springframework.security.core.Authentication} alone.
+     *
+     * @param attribute the {@link ConfigAttribute} to inspect
+     * @return true if the vote only depends on the
+     *         {@link org.springframework.security.core.Authentication}
+     */
+    public static boolean isAuthenticationOnly(ConfigAttribute attribute) {
+        if(attribute instanceof RoleBitSetConfigAttribute) {
+            return true;
+        }
+        if(attribute instanceof SecurityConfig) {
+            String value = attribute.getAttribute();
+            return value != null && (value.startsWith(ROLE_PREFIX)
+                    || AuthenticatedVoter.IS_AUTHENTICATED_FULLY.equals(value)
+                    || AuthenticatedVoter.IS_AUTHENTICATED_REMEMBERED.equals(value)
+                    || AuthenticatedVoter.IS_AUTHENTICATED_ANONYMOUSLY.equals(value));
+        }
+        return SecurityExpressionAstUtils.isAuthenticationOnly(getAst(attribute));
+    }
+
+    /**
+     * Determines if the vote on the expression of the {@link ConfigAttribute}
+     * is a function of the authorities alone.
+     *
+     * @param attribute the {@link ConfigAttribute} to inspect
+     * @return true if the vote only depends on the authorities
+     */
+    static boolean isAuthoritiesOnly(ConfigAttribute attribute) {
+        return SecurityExpressionAstUtils.isAuthoritiesOnly(getAst(attribute));
+    }
+
+    /**
+     * Gets the AST of a {@link WebExpressionConfigAttribute} or a
+     * {@link CompiledWebExpressionConfigAttribute}.
+     *
+     * @return the AST or null if the {@link ConfigAttribute} is not a SpEL
+     *         expression
+     */
+    private static SpelNode getAst(ConfigAttribute attribute) {
+        if(attribute instanceof WebExpressionConfigAttribute) {
+            return SecurityExpressionAstUtils.getAst(((WebExpressionConfigAttribute) attribute).getAuthorizeExpression());
+        }
+        if(!(attribute instanceof CompiledWebExpressionConfigAttribute)) {
+            return null;
+        }
+        Expression expression = ((CompiledWebExpressionConfigAttribute) attribute).getExpression();
+        if(expression == null) {
+            try {
+                expression = PARSER.parseExpression(attribute.toString());
+            }
+            catch(ParseException e) {
+                return null;
+            }
+        }
+        return SecurityExpressionAstUtils.getAst(expression);
+    }
+
+    private WebConfigAttributeUtils() {}
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.expression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * <p>
+ * A bounded cache of the votes of a {@link CachingWebExpressionVoter}. A vote
+ * is cached for a {@link ConfigAttribute} (i.e. the expression of a URL
+ * mapping) and the authorities of a user, regardless of their order. A vote
+ * is never used after the time to live has elapsed since it was cached.
+ * </p>
+ *
+ * <p>
+ * The votes are kept in a {@link ConcurrentHashMap}, so looking up a vote
+ * does not block other threads. The time a vote was last used is recorded,
+ * so that the least recently used votes are evicted. When more than the
+ * maximum size of votes are cached, a single thread evicts the expired votes
+ * and then the least recently used votes until three quarters of the maximum
+ * size remain. Evicting a quarter of the votes at once means the cost of
+ * scanning the cache is spread over the votes that are cached afterwards.
+ * Other threads continue to look up and cache votes while this happens, so
+ * the size may briefly exceed the maximum size.
+ * </p>
+ *
+ * <p>
+ * The number of hits and misses is recorded so that the effectiveness of the
+ * cache can be monitored.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ * @see CachingWebExpressionVoter
+ */
+public final class WebExpressionDecisionCache {
+    private final int maxSize;
+
+    private final int evictToSize;
+
+    private final long timeToLiveNanos;
+
+    private final ConcurrentMap<Key,Decision> decisions = new ConcurrentHashMap<Key,Decision>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Creates a new instance
+     *
+     * @param maxSize the maximum number of votes to cache. Must be positive.
+     * @param timeToLive the amount of time a vote is cached for. Must be positive.
+     * @param unit the {@link TimeUnit} of the timeToLive. Cannot be null.
+     */
+    public WebExpressionDecisionCache(int maxSize, long timeToLive, TimeUnit unit) {
+        Assert.isTrue(maxSize > 0, "maxSize must be positive");
+        Assert.isTrue(timeToLive > 0, "timeToLive must be positive");
+        Assert.notNull(unit, "unit cannot be null");
+        this.maxSize = maxSize;
+        this.evictToSize = maxSize - Math.max(1, maxSize / 4);
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+    }
+
+    /**
+     * Gets the number of times a cached vote was used
+     * @return the number of times a cached vote was used
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Gets the number of times a vote was not cached (or expired)
+     * @return the number of times a vote was not cached (or expired)
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Gets the number of votes that are currently cached. This may include
+     * votes that have expired but have not yet been evicted.
+     * @return the number of votes that are currently cached
+     */
+    public int size() {
+        return decisions.size();
+    }
+
+    /**
+     * Removes all of the cached votes. The hit and miss counts are retained.
+     */
+    public void clear() {
+        for(Iterator<Map.Entry<Key,Decision>> entries = decisions.entrySet().iterator(); entries.hasNext();) {
+            remove(entries.next());
+        }
+    }
+
+    /**
+     * Gets the cached vote or null if the vote is not cached or has expired.
+     */
+    Integer get(ConfigAttribute attribute, Collection<? extends GrantedAuthority> authorities) {
+        Key key = new Key(attribute, authorities);
+        Decision decision = decisions.get(key);
+        long now = System.nanoTime();
+        if(decision != null && decision.isExpired(now)) {
+            if(decisions.remove(key, decision)) {
+                size.decrementAndGet();
+            }
+            decision = null;
+        }
+        if(decision == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        decision.lastUsed = now;
+        hitCount.incrementAndGet();
+        return decision.vote;
+    }
+
+    void put(ConfigAttribute attribute, Collection<? extends GrantedAuthority> authorities, int vote) {
+        Key key = new Key(attribute, new ArrayList<GrantedAuthority>(authorities));
+        long now = System.nanoTime();
+        Decision decision = new Decision(vote, now, now + timeToLiveNanos);
+        if(decisions.put(key, decision) == null && size.incrementAndGet() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Removes the expired votes and then the least recently used votes until
+     * no more than {@link #evictToSize} votes are cached. Only a single
+     * thread evicts at a time and the other threads do not wait for it.
+     */
+    private void evict() {
+        if(!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            long[] lastUsed = new long[size.get() + 16];
+            int count = 0;
+            for(Iterator<Map.Entry<Key,Decision>> entries = decisions.entrySet().iterator(); entries.hasNext();) {
+                Map.Entry<Key,Decision> entry = entries.next();
+                Decision decision = entry.getValue();
+                if(decision.isExpired(now)) {
+                    remove(entry);
+                } else if(count < lastUsed.length) {
+                    lastUsed[count++] = decision.lastUsed - now;
+                }
+            }
+            int evictCount = size.get() - evictToSize;
+            if(evictCount <= 0 || count == 0) {
+                return;
+            }
+            // the times are relative to now so that they can be ordered even if System.nanoTime() overflows
+            Arrays.sort(lastUsed, 0, count);
+            long threshold = lastUsed[Math.min(evictCount, count) - 1];
+            for(Iterator<Map.Entry<Key,Decision>> entries = decisions.entrySet().iterator(); size.get() > evictToSize && entries.hasNext();) {
+                Map.Entry<Key,Decision> entry = entries.next();
+                if(entry.getValue().lastUsed - now <= threshold) {
+                    remove(entry);
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void remove(Map.Entry<Key,Decision> entry) {
+        if(decisions.remove(entry.getKey(), entry.getValue())) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * The key of a vote. The authorities are not copied when looking up a
+     * vote and are compared by {@link GrantedAuthority#getAuthority()}
+     * without regard to their order.
+     */
+    private static final class Key {
+        private final ConfigAttribute attribute;
+        private final Collection<? extends GrantedAuthority> authorities;
+        private final int hashCode;
+
+        private Key(ConfigAttribute attribute, Collection<? extends GrantedAuthority> authorities) {
+            this.attribute = attribute;
+            this.authorities = authorities;
+            int authoritiesHashCode = 0;
+            for(GrantedAuthority authority : authorities) {
+                authoritiesHashCode += ObjectUtils.nullSafeHashCode(authority.getAuthority());
+            }
+            this.hashCode = 31 * System.identityHashCode(attribute) + authoritiesHashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return attribute == other.attribute && hashCode == other.hashCode
+                    && containsAll(authorities, other.authorities) && containsAll(other.authorities, authorities);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        private static boolean containsAll(Collection<? extends GrantedAuthority> authorities, Collection<? extends GrantedAuthority> required) {
+            for(GrantedAuthority requiredAuthority : required) {
+                if(!contains(authorities, requiredAuthority.getAuthority())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean contains(Collection<? extends GrantedAuthority> authorities, String authority) {
+            for(GrantedAuthority candidate : authorities) {
+                if(ObjectUtils.nullSafeEquals(authority, candidate.getAuthority())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Decision {
+        private final int vote;
+        private final long expires;
+        private volatile long lastUsed;
+
+        private Decision(int vote, long lastUsed, long expires) {
+            this.vote = vote;
+            this.lastUsed = lastUsed;
+            this.expires = expires;
+        }
+
+        private boolean isExpired(long now) {
+            return expires - now <= 0;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.intercept;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.web.FilterInvocation;
+import org.springframework.security.web.util.RequestMatcher;
+import org.springframework.security.web.util.RequestMatcherIndex;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * A {@link FilterInvocationSecurityMetadataSource} that returns the same
+ * {@link ConfigAttribute} instances as
+ * {@link DefaultFilterInvocationSecurityMetadataSource}, but uses a
+ * {@link RequestMatcherIndex} to find the first {@link RequestMatcher} that
+ * matches the request. This means the cost of looking up the
+ * {@link ConfigAttribute} instances depends on the depth of the request path
+ * rather than the number of mappings.
+ * </p>
+ *
+ * <p>
+ * Unlike {@link DefaultFilterInvocationSecurityMetadataSource} the
+ * {@link ConfigAttribute} instances are used as is. For example, expression
+ * based mappings must be processed before they are provided.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ * @see RequestMatcherIndex
+ */
+public final class IndexedFilterInvocationSecurityMetadataSource implements FilterInvocationSecurityMetadataSource {
+    private final RequestMatcherIndex<Collection<ConfigAttribute>> requestMap = new RequestMatcherIndex<Collection<ConfigAttribute>>();
+
+    private final Set<ConfigAttribute> allConfigAttributes = new HashSet<ConfigAttribute>();
+
+    /**
+     * Creates a new instance
+     *
+     * @param requestMap the mapping of {@link RequestMatcher} to
+     *            {@link ConfigAttribute} instances in the order they should
+     *            be consulted. Cannot be null.
+     */
+    public IndexedFilterInvocationSecurityMetadataSource(LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> requestMap) {
+        Assert.notNull(requestMap, "requestMap cannot be null");
+        for(Map.Entry<RequestMatcher, Collection<ConfigAttribute>> entry : requestMap.entrySet()) {
+            this.requestMap.add(entry.getKey(), entry.getValue());
+            this.allConfigAttributes.addAll(entry.getValue());
+        }
+    }
+
+    public Collection<ConfigAttribute> getAttributes(Object object) {
+        return requestMap.getFirstMatch(((FilterInvocation) object).getRequest());
+    }
+
+    public Collection<ConfigAttribute> getAllConfigAttributes() {
+        return allConfigAttributes;
+    }
+
+    public boolean supports(Class<?> clazz) {
+        return FilterInvocation.class.isAssignableFrom(clazz);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.intercept;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.security.access.AccessDecisionManager;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.FilterInvocation;
+import org.springframework.security.web.access.expression.WebConfigAttributeUtils;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * An {@link AccessDecisionManager} that remembers the access that was granted
+ * by the {@link AccessDecisionManager} it delegates to for the lifetime of an
+ * {@link HttpServletRequest}. This means the forward, include, error and async
+ * dispatches of a request are only authorized once for the same
+ * {@link ConfigAttribute} instances and the same {@link Authentication}.
+ * </p>
+ *
+ * <p>
+ * A decision is remembered for the combination of the
+ * {@link RequestCachingAccessDecisionManager} instance (i.e. the
+ * {@link FilterSecurityInterceptor} of a
+ * {@link org.springframework.security.web.SecurityFilterChain}), the
+ * {@link ConfigAttribute} instances of the matching mapping and the
+ * {@link Authentication}. Each is compared by identity, so a dispatch that
+ * matches a different mapping or that is made after the user has
+ * authenticated is always decided by the delegate. Denied access is never
+ * remembered.
+ * </p>
+ *
+ * <p>
+ * The same {@link ConfigAttribute} instances may be shared by mappings with
+ * different {@link org.springframework.security.web.util.RequestMatcher}
+ * instances, so a decision is only remembered if the vote on every
+ * {@link ConfigAttribute} is a function of the {@link Authentication} alone
+ * as determined by {@link WebConfigAttributeUtils#isAuthenticationOnly(ConfigAttribute)}.
+ * These are the roles (i.e. "ROLE_USER") and "IS_AUTHENTICATED_*" attributes
+ * of {@link org.springframework.security.access.SecurityConfig}, the
+ * {@link org.springframework.security.web.access.vote.RoleBitSetConfigAttribute}
+ * and the expressions composed of permitAll, denyAll, anonymous,
+ * authenticated, rememberMe, fullyAuthenticated, hasRole, hasAnyRole,
+ * hasAuthority and hasAnyAuthority with String arguments combined with and,
+ * or and not. A mapping with any other {@link ConfigAttribute} (i.e.
+ * hasIpAddress, a reference to the request or a bean, or an attribute of a
+ * custom {@link org.springframework.security.access.AccessDecisionVoter}) is
+ * decided by the delegate for every dispatch.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ * @see org.springframework.security.config.annotation.web.configurers.AbstractInterceptUrlConfigurer#filterSecurityInterceptorCacheDecisions(boolean)
+ */
+public final class RequestCachingAccessDecisionManager implements AccessDecisionManager {
+    private static final String DECISIONS_ATTR = RequestCachingAccessDecisionManager.class.getName() + ".DECISIONS";
+
+    private final Map<ConfigAttribute,Boolean> cacheable = new ConcurrentHashMap<ConfigAttribute,Boolean>();
+
+    private final AccessDecisionManager delegate;
+
+    /**
+     * Creates a new instance
+     *
+     * @param delegate the {@link AccessDecisionManager} to delegate to. Cannot be null.
+     */
+    public RequestCachingAccessDecisionManager(AccessDecisionManager delegate) {
+        Assert.notNull(delegate, "delegate cannot be null");
+        this.delegate = delegate;
+    }
+
+    public void decide(Authentication authentication, Object object, Collection<ConfigAttribute> configAttributes)
+            throws AccessDeniedException, InsufficientAuthenticationException {
+        if(!(object instanceof FilterInvocation) || !isCacheable(configAttributes)) {
+            delegate.decide(authentication, object, configAttributes);
+            return;
+        }
+        HttpServletRequest request = ((FilterInvocation) object).getRequest();
+        List<Decision> decisions = getDecisions(request);
+        if(decisions != null) {
+            for(Decision decision : decisions) {
+                if(decision.matches(this, configAttributes, authentication)) {
+                    return;
+                }
+            }
+        }
+        delegate.decide(authentication, object, configAttributes);
+        if(decisions == null) {
+            decisions = new ArrayList<Decision>(2);
+            request.setAttribute(DECISIONS_ATTR, decisions);
+        }
+        decisions.add(new Decision(this, configAttributes, authentication));
+    }
+
+    public boolean supports(ConfigAttribute attribute) {
+        return delegate.supports(attribute);
+    }
+
+    public boolean supports(Class<?> clazz) {
+        return delegate.supports(clazz);
+    }
+
+    /**
+     * Gets the {@link AccessDecisionManager} that is delegated to
+     * @return the {@link AccessDecisionManager} that is delegated to
+     */
+    public AccessDecisionManager getDelegate() {
+        return delegate;
+    }
+
+    private boolean isCacheable(Collection<ConfigAttribute> configAttributes) {
+        for(ConfigAttribute attribute : configAttributes) {
+            Boolean result = cacheable.get(attribute);
+            if(result == null) {
+                result = WebConfigAttributeUtils.isAuthenticationOnly(attribute);
+                cacheable.put(attribute, result);
+            }
+            if(!result) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Decision> getDecisions(HttpServletRequest request) {
+        return (List<Decision>) request.getAttribute(DECISIONS_ATTR);
+    }
+
+    private static final class Decision {
+        private final AccessDecisionManager accessDecisionManager;
+        private final Collection<ConfigAttribute> configAttributes;
+        private final Authentication authentication;
+
+        private Decision(AccessDecisionManager accessDecisionManager, Collection<ConfigAttribute> configAttributes, Authentication authentication) {
+            this.accessDecisionManager = accessDecisionManager;
+            this.configAttributes = configAttributes;
+            this.authentication = authentication;
+        }
+
+        private boolean matches(AccessDecisionManager accessDecisionManager, Collection<ConfigAttribute> configAttributes, Authentication authentication) {
+            return this.accessDecisionManager == accessDecisionManager
+                    && this.configAttributes == configAttributes
+                    && this.authentication == authentication;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.vote;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.util.Assert;
+
+/**
+ * Assigns a dense integer id to each of a fixed set of authorities so that a
+ * collection of authorities can be represented as a {@link BitSet}. Testing
+ * whether a user has any of the authorities of a {@link BitSet} is then a
+ * single {@link BitSet#intersects(BitSet)} rather than comparing each
+ * {@link GrantedAuthority} to each authority.
+ *
+ * @author agent
+ * @since 3.2
+ * @see RoleBitSetVoter
+ */
+public final class GrantedAuthorityIndex {
+    private final Map<String,Integer> ids = new HashMap<String,Integer>();
+
+    /**
+     * Creates a new instance
+     *
+     * @param authorities the authorities to assign ids to. Duplicate
+     *            authorities are assigned a single id. Cannot be null.
+     */
+    public GrantedAuthorityIndex(Collection<String> authorities) {
+        Assert.notNull(authorities, "authorities cannot be null");
+        for(String authority : authorities) {
+            Assert.notNull(authority, "authorities cannot contain null values");
+            if(!ids.containsKey(authority)) {
+                ids.put(authority, ids.size());
+            }
+        }
+    }
+
+    /**
+     * Gets the number of authorities that have been assigned an id.
+     * @return the number of authorities that have been assigned an id
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Creates a {@link BitSet} of the authorities. Authorities that were not
+     * assigned an id are ignored.
+     *
+     * @param authorities the authorities to convert. Cannot be null.
+     * @return the {@link BitSet} with the id of each known authority set
+     */
+    public BitSet getBitSet(Collection<String> authorities) {
+        Assert.notNull(authorities, "authorities cannot be null");
+        BitSet result = new BitSet(ids.size());
+        for(String authority : authorities) {
+            Integer id = ids.get(authority);
+            if(id != null) {
+                result.set(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a {@link BitSet} of the {@link GrantedAuthority} instances.
+     * {@link GrantedAuthority} instances that were not assigned an id (or
+     * cannot be represented as a String) are ignored.
+     *
+     * @param authorities the {@link GrantedAuthority} instances to convert. Cannot be null.
+     * @return the {@link BitSet} with the id of each known {@link GrantedAuthority} set
+     */
+    public BitSet getGrantedAuthorityBitSet(Collection<? extends GrantedAuthority> authorities) {
+        Assert.notNull(authorities, "authorities cannot be null");
+        BitSet result = new BitSet(ids.size());
+        for(GrantedAuthority authority : authorities) {
+            String value = authority.getAuthority();
+            if(value == null) {
+                continue;
+            }
+            Integer id = ids.get(value);
+            if(id != null) {
+                result.set(id);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.vote;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link ConfigAttribute} that represents the roles that are accepted by a
+ * {@link org.springframework.security.access.vote.RoleVoter} as a
+ * {@link BitSet} of a {@link GrantedAuthorityIndex}. Since
+ * {@link #getAttribute()} returns null, it is ignored by the
+ * {@link org.springframework.security.access.vote.RoleVoter} and must be
+ * voted on by a {@link RoleBitSetVoter}.
+ *
+ * @author agent
+ * @since 3.2
+ * @see RoleBitSetVoter
+ */
+public final class RoleBitSetConfigAttribute implements ConfigAttribute {
+    private final GrantedAuthorityIndex authorityIndex;
+
+    private final List<String> roles;
+
+    private final BitSet bitSet;
+
+    /**
+     * Creates a new instance
+     *
+     * @param authorityIndex the {@link GrantedAuthorityIndex} that assigned an
+     *            id to each of the roles. Cannot be null.
+     * @param roles the roles a user must have at least one of. Cannot be null
+     *            or empty.
+     */
+    public RoleBitSetConfigAttribute(GrantedAuthorityIndex authorityIndex, Collection<String> roles) {
+        Assert.notNull(authorityIndex, "authorityIndex cannot be null");
+        Assert.notEmpty(roles, "roles cannot be null or empty");
+        this.authorityIndex = authorityIndex;
+        this.roles = Collections.unmodifiableList(new ArrayList<String>(roles));
+        this.bitSet = authorityIndex.getBitSet(roles);
+        Assert.isTrue(bitSet.cardinality() == new HashSet<String>(roles).size(), "authorityIndex must contain all of the roles " + roles);
+    }
+
+    /**
+     * Always returns null since the roles are not represented as a single
+     * String.
+     */
+    public String getAttribute() {
+        return null;
+    }
+
+    /**
+     * Gets the roles a user must have at least one of
+     * @return the roles a user must have at least one of
+     */
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    GrantedAuthorityIndex getAuthorityIndex() {
+        return authorityIndex;
+    }
+
+    /**
+     * Determines if the {@link BitSet} created by the
+     * {@link GrantedAuthorityIndex} of this instance contains any of the roles.
+     */
+    boolean isGranted(BitSet authorities) {
+        return bitSet.intersects(authorities);
+    }
+
+    @Override
+    public String toString() {
+        return roles.toString();
+    }
+}
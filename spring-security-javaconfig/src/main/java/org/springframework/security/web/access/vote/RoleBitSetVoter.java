@@ -0,0 +1,120 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.vote;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.security.access.AccessDecisionVoter;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.FilterInvocation;
+
+/**
+ * <p>
+ * Votes on {@link RoleBitSetConfigAttribute} instances in the same manner that
+ * {@link org.springframework.security.access.vote.RoleVoter} votes on the
+ * roles they represent. The vote is {@link #ACCESS_GRANTED} if the
+ * {@link Authentication} has any of the roles, {@link #ACCESS_DENIED} if it
+ * has none of them, and {@link #ACCESS_ABSTAIN} if there is no
+ * {@link RoleBitSetConfigAttribute}.
+ * </p>
+ *
+ * <p>
+ * The {@link GrantedAuthority} instances of the {@link Authentication} are
+ * converted into a {@link BitSet} of the {@link GrantedAuthorityIndex}, so
+ * each vote is a single {@link BitSet#intersects(BitSet)}. When the secured
+ * object is a {@link FilterInvocation} the {@link BitSet} is retained as an
+ * {@link HttpServletRequest} attribute, so it is only created once per
+ * request (i.e. when the request is forwarded) for the same
+ * {@link Authentication}.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ * @see RoleBitSetConfigAttribute
+ */
+public final class RoleBitSetVoter implements AccessDecisionVoter<Object> {
+    private static final String AUTHORITIES_ATTR = RoleBitSetVoter.class.getName() + ".AUTHORITIES";
+
+    public int vote(Authentication authentication, Object object, Collection<ConfigAttribute> attributes) {
+        int result = ACCESS_ABSTAIN;
+        for(ConfigAttribute attribute : attributes) {
+            if(attribute instanceof RoleBitSetConfigAttribute) {
+                RoleBitSetConfigAttribute roles = (RoleBitSetConfigAttribute) attribute;
+                if(roles.isGranted(getAuthorities(authentication, object, roles.getAuthorityIndex()))) {
+                    return ACCESS_GRANTED;
+                }
+                result = ACCESS_DENIED;
+            }
+        }
+        return result;
+    }
+
+    public boolean supports(ConfigAttribute attribute) {
+        return attribute instanceof RoleBitSetConfigAttribute;
+    }
+
+    /**
+     * This implementation supports any type of class, because it does not
+     * query the presented secure object.
+     *
+     * @param clazz the secure object
+     *
+     * @return always <code>true</code>
+     */
+    public boolean supports(Class<?> clazz) {
+        return true;
+    }
+
+    /**
+     * Gets the {@link BitSet} of the {@link GrantedAuthority} instances of the
+     * {@link Authentication}, reusing the {@link BitSet} of the current
+     * request if it was created for the same {@link Authentication} and
+     * {@link GrantedAuthorityIndex}.
+     */
+    private static BitSet getAuthorities(Authentication authentication, Object object, GrantedAuthorityIndex authorityIndex) {
+        if(!(object instanceof FilterInvocation)) {
+            return authorityIndex.getGrantedAuthorityBitSet(authentication.getAuthorities());
+        }
+        HttpServletRequest request = ((FilterInvocation) object).getRequest();
+        Object cached = request.getAttribute(AUTHORITIES_ATTR);
+        if(cached instanceof AuthorityBitSet) {
+            AuthorityBitSet authorities = (AuthorityBitSet) cached;
+            if(authorities.authentication == authentication && authorities.authorityIndex == authorityIndex) {
+                return authorities.bitSet;
+            }
+        }
+        BitSet bitSet = authorityIndex.getGrantedAuthorityBitSet(authentication.getAuthorities());
+        request.setAttribute(AUTHORITIES_ATTR, new AuthorityBitSet(authentication, authorityIndex, bitSet));
+        return bitSet;
+    }
+
+    private static final class AuthorityBitSet {
+        private final Authentication authentication;
+        private final GrantedAuthorityIndex authorityIndex;
+        private final BitSet bitSet;
+
+        private AuthorityBitSet(Authentication authentication, GrantedAuthorityIndex authorityIndex, BitSet bitSet) {
+            this.authentication = authentication;
+            this.authorityIndex = authorityIndex;
+            this.bitSet = bitSet;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.authentication.rememberme;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.codec.Hex;
+import org.springframework.security.crypto.codec.Utf8;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * <p>
+ * Stateless remember me services that embed the {@link GrantedAuthority}s of
+ * the user in the cookie, so that a valid cookie is authenticated without
+ * using a {@link UserDetailsService}. The cookie is signed with HMAC-SHA256
+ * using the key that is passed to the constructor:
+ * </p>
+ *
+ * <pre>
+ * base64(username + ":" + expiryTime + ":" + authorities + ":" + hmacSha256Hex(username + ":" + expiryTime + ":" + authorities))
+ * </pre>
+ *
+ * <p>
+ * The authorities are URL encoded and separated by commas. Verified cookies
+ * are cached (see {@link #setMaxCacheSize(int)}), so that the signature of a
+ * cookie that is presented repeatedly is only computed once.
+ * </p>
+ *
+ * <p>
+ * Unlike {@link TokenBasedRememberMeServices}, changing the password or the
+ * authorities of a user does not invalidate the cookies that have been
+ * issued. Cookies are only invalidated when they expire or the key changes.
+ * The key used for the signature cannot be changed after the instance is
+ * created, so the verified cookies that are cached always remain valid.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class HmacTokenBasedRememberMeServices extends AbstractRememberMeServices {
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final ConcurrentMap<String,VerifiedCookie> verifiedCookies = new ConcurrentHashMap<String,VerifiedCookie>();
+
+    private final SecretKeySpec secretKey;
+
+    private int maxCacheSize = 1024;
+
+    /**
+     * Creates a new instance
+     * @param key the key used to sign the cookies
+     */
+    public HmacTokenBasedRememberMeServices(String key) {
+        super(key, new UnusedUserDetailsService());
+        Assert.hasLength(key, "key cannot be empty");
+        this.secretKey = new SecretKeySpec(Utf8.encode(key), ALGORITHM);
+    }
+
+    @Override
+    protected UserDetails processAutoLoginCookie(String[] cookieTokens, HttpServletRequest request,
+            HttpServletResponse response) {
+        if (cookieTokens.length != 4) {
+            throw new InvalidCookieException("Cookie token did not contain 4 tokens, but contained '"
+                    + StringUtils.arrayToDelimitedString(cookieTokens, ":") + "'");
+        }
+        String username = cookieTokens[0];
+        long expiryTime;
+        try {
+            expiryTime = Long.parseLong(cookieTokens[1]);
+        } catch (NumberFormatException e) {
+            throw new InvalidCookieException("Cookie token[1] did not contain a valid number (contained '"
+                    + cookieTokens[1] + "')");
+        }
+        if (expiryTime < System.currentTimeMillis()) {
+            throw new InvalidCookieException("Cookie token[1] has expired (expired on '" + expiryTime
+                    + "'; current time is '" + System.currentTimeMillis() + "')");
+        }
+        String content = cookieTokens[0] + ":" + cookieTokens[1] + ":" + cookieTokens[2];
+        String cacheKey = content + ":" + cookieTokens[3];
+        VerifiedCookie cookie = verifiedCookies.get(cacheKey);
+        if (cookie == null) {
+            if (!MessageDigest.isEqual(Utf8.encode(makeTokenSignature(content)), Utf8.encode(cookieTokens[3]))) {
+                throw new InvalidCookieException("Cookie token[3] contained signature '" + cookieTokens[3]
+                        + "' but expected a different signature");
+            }
+            if (!StringUtils.hasLength(username)) {
+                throw new InvalidCookieException("Cookie token[0] did not contain a username");
+            }
+            cookie = new VerifiedCookie(username, decodeAuthorities(cookieTokens[2]));
+            cache(cacheKey, cookie);
+        }
+        return new User(cookie.username, "", cookie.authorities);
+    }
+
+    @Override
+    protected void onLoginSuccess(HttpServletRequest request, HttpServletResponse response,
+            Authentication successfulAuthentication) {
+        String username = successfulAuthentication.getName();
+        if (!StringUtils.hasLength(username)) {
+            logger.debug("Unable to retrieve username");
+            return;
+        }
+        int tokenLifetime = getTokenValiditySeconds();
+        long expiryTime = System.currentTimeMillis();
+        // a session cookie (negative tokenLifetime) expires after two weeks like TokenBasedRememberMeServices
+        expiryTime += 1000L * (tokenLifetime < 0 ? TWO_WEEKS_S : tokenLifetime);
+        String authorities = encodeAuthorities(successfulAuthentication.getAuthorities());
+        String content = username + ":" + expiryTime + ":" + authorities;
+        setCookie(new String[] { username, Long.toString(expiryTime), authorities, makeTokenSignature(content) },
+                tokenLifetime, request, response);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Added remember-me cookie for user '" + username + "', expiry: '" + expiryTime + "'");
+        }
+    }
+
+    /**
+     * Sets the maximum number of verified cookies to cache. 0 disables the
+     * cache. The default is 1024.
+     * @param maxCacheSize the maximum number of verified cookies to cache
+     */
+    public void setMaxCacheSize(int maxCacheSize) {
+        Assert.isTrue(maxCacheSize >= 0, "maxCacheSize cannot be negative");
+        this.maxCacheSize = maxCacheSize;
+        verifiedCookies.clear();
+    }
+
+    /**
+     * Calculates the HMAC-SHA256 signature of the cookie content.
+     * @param content the username, expiry time and authorities separated by ":"
+     * @return the hex encoded signature
+     */
+    protected String makeTokenSignature(String content) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secretKey);
+            return new String(Hex.encode(mac.doFinal(Utf8.encode(content))));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to sign using " + ALGORITHM, e);
+        }
+    }
+
+    private void cache(String cacheKey, VerifiedCookie cookie) {
+        if (maxCacheSize == 0) {
+            return;
+        }
+        if (verifiedCookies.size() >= maxCacheSize) {
+            verifiedCookies.clear();
+        }
+        verifiedCookies.put(cacheKey, cookie);
+    }
+
+    private static String encodeAuthorities(Collection<? extends GrantedAuthority> authorities) {
+        StringBuilder result = new StringBuilder();
+        try {
+            for (GrantedAuthority authority : authorities) {
+                if (result.length() > 0) {
+                    result.append(',');
+                }
+                result.append(URLEncoder.encode(authority.getAuthority(), "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return result.toString();
+    }
+
+    private static List<GrantedAuthority> decodeAuthorities(String authorities) {
+        if (authorities.length() == 0) {
+            return Collections.emptyList();
+        }
+        String[] encodedAuthorities = StringUtils.delimitedListToStringArray(authorities, ",");
+        List<GrantedAuthority> result = new ArrayList<GrantedAuthority>(encodedAuthorities.length);
+        try {
+            for (String encodedAuthority : encodedAuthorities) {
+                result.add(new SimpleGrantedAuthority(URLDecoder.decode(encodedAuthority, "UTF-8")));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCookieException("Cookie token[2] contained invalid authorities '" + authorities + "'");
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static final class VerifiedCookie {
+        private final String username;
+        private final List<GrantedAuthority> authorities;
+
+        private VerifiedCookie(String username, List<GrantedAuthority> authorities) {
+            this.username = username;
+            this.authorities = authorities;
+        }
+    }
+
+    /**
+     * {@link AbstractRememberMeServices} requires a {@link UserDetailsService}
+     * even though it is not used.
+     */
+    private static final class UnusedUserDetailsService implements UserDetailsService {
+        public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+            throw new UsernameNotFoundException("HmacTokenBasedRememberMeServices does not load users");
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.authentication.rememberme;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * A {@link PersistentTokenRepository} that caches the tokens of another
+ * {@link PersistentTokenRepository} and writes the token updates behind. This
+ * avoids reading and writing the delegate on every remember me
+ * authentication, which is useful when many users return at once (i.e. after
+ * a deployment).
+ * </p>
+ *
+ * <ul>
+ * <li>{@link #getTokenForSeries(String)} is served from a cache of up to
+ * {@link #setMaxCacheSize(int)} tokens that are read from the delegate again
+ * after {@link #setCacheTtl(long, TimeUnit)}.</li>
+ * <li>{@link #updateToken(String, String, Date)} is coalesced per series and
+ * written to the delegate once {@link #setBatchSize(int)} series are pending
+ * or the oldest pending update is older than
+ * {@link #setFlushInterval(long, TimeUnit)}. Pending updates are also written
+ * by {@link #flush()} and {@link #destroy()}. This means updates that are
+ * younger than the flush interval are lost if the application is not shut
+ * down gracefully, in which case the affected users must log in again.</li>
+ * <li>{@link #createNewToken(PersistentRememberMeToken)} and
+ * {@link #removeUserTokens(String)} are written immediately.</li>
+ * </ul>
+ *
+ * <p>
+ * When several nodes share the delegate, a node may have cached a token of a
+ * series that another node has since updated. A
+ * {@link PersistentTokenBasedRememberMeServices} would treat the presented
+ * (newer) token value as a {@link CookieTheftException} and remove every
+ * token of the user. To avoid this, the token should be looked up with
+ * {@link #getTokenForSeries(String, String)} first (as
+ * {@code RememberMeConfigurer#writeBehindTokenRepository(long, TimeUnit)}
+ * does), which reads the delegate again when the cached token value differs
+ * from the presented one. An update that another node has not written yet
+ * cannot be seen until it is written, so the flush interval should be
+ * shorter than the time between two remember me authentications of the same
+ * series on different nodes.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public final class WriteBehindPersistentTokenRepository implements PersistentTokenRepository, DisposableBean {
+    private final Log logger = LogFactory.getLog(getClass());
+
+    private final PersistentTokenRepository delegate;
+
+    /** &lt;series:String,token:PersistentRememberMeToken&gt; of the updates that are not written yet */
+    private final ConcurrentMap<String,PersistentRememberMeToken> pendingUpdates = new ConcurrentHashMap<String,PersistentRememberMeToken>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private volatile long firstPendingUpdate;
+
+    private final ConcurrentMap<String,CachedToken> tokenCache = new ConcurrentHashMap<String,CachedToken>();
+
+    private int batchSize = 100;
+    private long flushIntervalNanos = TimeUnit.SECONDS.toNanos(5);
+    private int maxCacheSize = 10000;
+    private long cacheTtlNanos = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * Creates a new instance
+     * @param delegate the {@link PersistentTokenRepository} to cache and write to. Cannot be null.
+     */
+    public WriteBehindPersistentTokenRepository(PersistentTokenRepository delegate) {
+        Assert.notNull(delegate, "delegate cannot be null");
+        this.delegate = delegate;
+    }
+
+    public void createNewToken(PersistentRememberMeToken token) {
+        delegate.createNewToken(token);
+        cache(token);
+        flushIfNecessary();
+    }
+
+    public void updateToken(String series, String tokenValue, Date lastUsed) {
+        PersistentRememberMeToken current = getTokenForSeries(series);
+        if (current == null) {
+            delegate.updateToken(series, tokenValue, lastUsed);
+            return;
+        }
+        PersistentRememberMeToken token = new PersistentRememberMeToken(current.getUsername(), series, tokenValue, lastUsed);
+        if (pendingUpdates.isEmpty()) {
+            firstPendingUpdate = System.nanoTime();
+        }
+        pendingUpdates.put(series, token);
+        cache(token);
+        flushIfNecessary();
+    }
+
+    public PersistentRememberMeToken getTokenForSeries(String seriesId) {
+        PersistentRememberMeToken token = pendingUpdates.get(seriesId);
+        if (token != null) {
+            return token;
+        }
+        CachedToken cached = tokenCache.get(seriesId);
+        if (cached != null && cached.isValid(System.nanoTime())) {
+            return cached.token;
+        }
+        return readTokenForSeries(seriesId);
+    }
+
+    /**
+     * Gets the token of a series like {@link #getTokenForSeries(String)}, but
+     * if the cached token value differs from the presented token value, the
+     * token is read from the delegate again (since another node may have
+     * updated it). The token of a series that has a pending update of this
+     * {@link PersistentTokenRepository} is not read again. Subsequent
+     * invocations of {@link #getTokenForSeries(String)} return the same token.
+     *
+     * @param seriesId the series of the presented remember me cookie
+     * @param presentedTokenValue the token value of the presented remember me cookie
+     * @return the token of the series or null if the series is not found
+     */
+    public PersistentRememberMeToken getTokenForSeries(String seriesId, String presentedTokenValue) {
+        PersistentRememberMeToken token = getTokenForSeries(seriesId);
+        if (token != null && !token.getTokenValue().equals(presentedTokenValue) && !pendingUpdates.containsKey(seriesId)) {
+            token = readTokenForSeries(seriesId);
+        }
+        return token;
+    }
+
+    public void removeUserTokens(String username) {
+        for (Iterator<PersistentRememberMeToken> i = pendingUpdates.values().iterator(); i.hasNext();) {
+            if (username.equals(i.next().getUsername())) {
+                i.remove();
+            }
+        }
+        for (Iterator<CachedToken> i = tokenCache.values().iterator(); i.hasNext();) {
+            if (username.equals(i.next().token.getUsername())) {
+                i.remove();
+            }
+        }
+        delegate.removeUserTokens(username);
+    }
+
+    /**
+     * Writes the pending {@link #updateToken(String, String, Date)}
+     * invocations to the delegate.
+     */
+    public void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<PersistentRememberMeToken> updates = new ArrayList<PersistentRememberMeToken>(pendingUpdates.size());
+            for (Map.Entry<String,PersistentRememberMeToken> update : pendingUpdates.entrySet()) {
+                if (pendingUpdates.remove(update.getKey(), update.getValue())) {
+                    updates.add(update.getValue());
+                }
+            }
+            firstPendingUpdate = System.nanoTime();
+            for (PersistentRememberMeToken update : updates) {
+                try {
+                    delegate.updateToken(update.getSeries(), update.getTokenValue(), update.getDate());
+                } catch (RuntimeException e) {
+                    logger.error("Failed to update the token of series " + update.getSeries(), e);
+                }
+            }
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * Writes the pending {@link #updateToken(String, String, Date)} invocations.
+     */
+    public void destroy() {
+        flush();
+    }
+
+    /**
+     * Sets the number of pending series that causes them to be written. The default is 100.
+     * @param batchSize the number of pending series. Must be positive.
+     */
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the maximum amount of time an update is pending (as long as the
+     * {@link PersistentTokenRepository} continues to be used). This is the
+     * window of updates that are lost if the application is not shut down
+     * gracefully. The default is 5 seconds.
+     * @param flushInterval the maximum amount of time an update is pending. Cannot be negative.
+     * @param unit the {@link TimeUnit} of the flushInterval. Cannot be null.
+     */
+    public void setFlushInterval(long flushInterval, TimeUnit unit) {
+        Assert.isTrue(flushInterval >= 0, "flushInterval cannot be negative");
+        Assert.notNull(unit, "unit cannot be null");
+        this.flushIntervalNanos = unit.toNanos(flushInterval);
+    }
+
+    /**
+     * Sets the number of tokens that are cached. The default is 10000.
+     * @param maxCacheSize the number of cached tokens. Must be positive.
+     */
+    public void setMaxCacheSize(int maxCacheSize) {
+        Assert.isTrue(maxCacheSize > 0, "maxCacheSize must be positive");
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * Sets how long a token that is not pending is cached before it is read
+     * from the delegate again. The default is 30 seconds.
+     * @param cacheTtl how long a token is cached. Must be positive.
+     * @param unit the {@link TimeUnit} of the cacheTtl. Cannot be null.
+     */
+    public void setCacheTtl(long cacheTtl, TimeUnit unit) {
+        Assert.isTrue(cacheTtl > 0, "cacheTtl must be positive");
+        Assert.notNull(unit, "unit cannot be null");
+        this.cacheTtlNanos = unit.toNanos(cacheTtl);
+    }
+
+    /**
+     * Gets the {@link PersistentTokenRepository} that is written to
+     * @return the {@link PersistentTokenRepository} that is written to
+     */
+    public PersistentTokenRepository getDelegate() {
+        return delegate;
+    }
+
+    private void flushIfNecessary() {
+        if (pendingUpdates.isEmpty()) {
+            return;
+        }
+        if (pendingUpdates.size() >= batchSize || System.nanoTime() - firstPendingUpdate >= flushIntervalNanos) {
+            flush();
+        }
+    }
+
+    private PersistentRememberMeToken readTokenForSeries(String seriesId) {
+        PersistentRememberMeToken token = delegate.getTokenForSeries(seriesId);
+        if (token == null) {
+            tokenCache.remove(seriesId);
+        } else {
+            cache(token);
+        }
+        return token;
+    }
+
+    private void cache(PersistentRememberMeToken token) {
+        long now = System.nanoTime();
+        if (tokenCache.size() >= maxCacheSize && !tokenCache.containsKey(token.getSeries())) {
+            for (Iterator<CachedToken> i = tokenCache.values().iterator(); i.hasNext();) {
+                if (!i.next().isValid(now)) {
+                    i.remove();
+                }
+            }
+            if (tokenCache.size() >= maxCacheSize) {
+                // pending updates are kept in pendingUpdates, so clearing the cache loses no updates
+                tokenCache.clear();
+            }
+        }
+        tokenCache.put(token.getSeries(), new CachedToken(token, now + cacheTtlNanos));
+    }
+
+    private static final class CachedToken {
+        private final PersistentRememberMeToken token;
+        private final long expires;
+
+        private CachedToken(PersistentRememberMeToken token, long expires) {
+            this.token = token;
+            this.expires = expires;
+        }
+
+        private boolean isValid(long now) {
+            return now - expires < 0;
+        }
+    }
+}
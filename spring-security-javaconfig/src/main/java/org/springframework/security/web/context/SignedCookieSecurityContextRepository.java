@@ -0,0 +1,473 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.context;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.codec.Base64;
+import org.springframework.security.crypto.codec.Utf8;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * <p>
+ * A {@link SecurityContextRepository} that stores the name and the
+ * {@link GrantedAuthority}s of the {@link Authentication} in a HMAC-SHA256
+ * signed cookie rather than in the {@link javax.servlet.http.HttpSession}.
+ * This allows any node that shares the keys to restore the
+ * {@link SecurityContext} without a session or a shared session store. The
+ * restored {@link Authentication} is a {@link UsernamePasswordAuthenticationToken}
+ * whose principal is the name and whose credentials are null.
+ * </p>
+ *
+ * <ul>
+ * <li>The first key signs the cookie and every key is used to verify it. This
+ * allows rotating the keys with {@link #setKeys(String...)} without
+ * invalidating the cookies that have already been issued.</li>
+ * <li>The cookie expires after {@link #setMaxAge(long, TimeUnit)} and is
+ * reissued when more than half of its age has elapsed.</li>
+ * <li>The cookie is not written if it is larger than
+ * {@link #setMaxCookieSize(int)} and is optionally compressed (see
+ * {@link #setCompress(boolean)}).</li>
+ * <li>The value of the cookie is encoded with the URL and filename safe
+ * Base64 alphabet without padding. The cookie is HttpOnly if the Servlet
+ * container supports it (i.e. Servlet 3.0).</li>
+ * <li>Verified cookies are cached (see {@link #setMaxCacheSize(int)}) so that
+ * repeated requests with the same cookie do not verify the signature again.</li>
+ * </ul>
+ *
+ * <p>
+ * Like {@link HttpSessionSecurityContextRepository}, the cookie can only be
+ * written if the response has not been committed. The response is wrapped so
+ * that the {@link SecurityContext} is saved before a redirect, an error or a
+ * flush commits it.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class SignedCookieSecurityContextRepository implements SecurityContextRepository {
+    public static final String DEFAULT_COOKIE_NAME = "SPRING_SECURITY_CONTEXT";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final byte UNCOMPRESSED = 0;
+
+    private static final byte COMPRESSED = 1;
+
+    private static final Method SET_HTTP_ONLY = ReflectionUtils.findMethod(Cookie.class, "setHttpOnly", boolean.class);
+
+    protected final Log logger = LogFactory.getLog(getClass());
+
+    private final ConcurrentMap<String, VerifiedCookie> verifiedCookies = new ConcurrentHashMap<String, VerifiedCookie>();
+
+    private volatile SecretKeySpec[] keys;
+
+    private AuthenticationTrustResolver trustResolver = new AuthenticationTrustResolverImpl();
+
+    private String cookieName = DEFAULT_COOKIE_NAME;
+
+    private long maxAge = 30 * 60 * 1000L;
+
+    private int maxCookieSize = 4096;
+
+    private int maxCacheSize = 1024;
+
+    private boolean compress;
+
+    private Boolean useSecureCookie;
+
+    /**
+     * Creates a new instance
+     * @param keys the keys used to sign (the first key) and verify (all keys) the cookie
+     */
+    public SignedCookieSecurityContextRepository(String... keys) {
+        setKeys(keys);
+    }
+
+    public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+        HttpServletRequest request = requestResponseHolder.getRequest();
+        VerifiedCookie cookie = readCookie(request);
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        if (cookie != null) {
+            context.setAuthentication(cookie.createAuthentication());
+        }
+        requestResponseHolder.setResponse(new SaveToCookieResponseWrapper(requestResponseHolder.getResponse(),
+                request, cookie, context.getAuthentication()));
+        return context;
+    }
+
+    public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+        SaveToCookieResponseWrapper responseWrapper = (SaveToCookieResponseWrapper) response;
+        if (!responseWrapper.isContextSaved()) {
+            responseWrapper.saveContext(context);
+        }
+    }
+
+    public boolean containsContext(HttpServletRequest request) {
+        return readCookie(request) != null;
+    }
+
+    /**
+     * Sets the keys used to sign and verify the cookie. The first key is used
+     * to sign the cookie and all of the keys are used to verify it, so a new
+     * key can be added in front of the existing keys before the old keys are
+     * removed.
+     *
+     * @param keys the keys to use. Cannot be empty.
+     */
+    public void setKeys(String... keys) {
+        Assert.notEmpty(keys, "keys cannot be empty");
+        SecretKeySpec[] secretKeys = new SecretKeySpec[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            Assert.hasLength(keys[i], "keys cannot contain an empty key");
+            secretKeys[i] = new SecretKeySpec(Utf8.encode(keys[i]), ALGORITHM);
+        }
+        this.keys = secretKeys;
+        verifiedCookies.clear();
+    }
+
+    /**
+     * Sets the name of the cookie. The default is {@link #DEFAULT_COOKIE_NAME}.
+     * @param cookieName the name of the cookie
+     */
+    public void setCookieName(String cookieName) {
+        Assert.hasLength(cookieName, "cookieName cannot be empty");
+        this.cookieName = cookieName;
+    }
+
+    /**
+     * Sets how long the signed cookie is valid. The default is 30 minutes.
+     * @param maxAge how long the cookie is valid. Must be positive.
+     * @param unit the {@link TimeUnit} of maxAge
+     */
+    public void setMaxAge(long maxAge, TimeUnit unit) {
+        Assert.isTrue(maxAge > 0, "maxAge must be positive");
+        Assert.notNull(unit, "unit cannot be null");
+        this.maxAge = unit.toMillis(maxAge);
+    }
+
+    /**
+     * Sets the maximum size of the cookie value. Larger cookies are not
+     * written and are ignored when read. The default is 4096.
+     * @param maxCookieSize the maximum size of the cookie value
+     */
+    public void setMaxCookieSize(int maxCookieSize) {
+        Assert.isTrue(maxCookieSize > 0, "maxCookieSize must be positive");
+        this.maxCookieSize = maxCookieSize;
+    }
+
+    /**
+     * Sets the maximum number of verified cookies to cache. 0 disables the
+     * cache. The default is 1024.
+     * @param maxCacheSize the maximum number of verified cookies to cache
+     */
+    public void setMaxCacheSize(int maxCacheSize) {
+        Assert.isTrue(maxCacheSize >= 0, "maxCacheSize cannot be negative");
+        this.maxCacheSize = maxCacheSize;
+        verifiedCookies.clear();
+    }
+
+    /**
+     * If true, the content of the cookie is deflated. This is useful when
+     * there are many {@link GrantedAuthority}s. The default is false.
+     * @param compress true if the cookie should be compressed, else false
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * Determines if the cookie should be flagged as secure. By default the
+     * cookie is secure if the request is secure.
+     * @param useSecureCookie true if the cookie should be secure, else false
+     */
+    public void setUseSecureCookie(boolean useSecureCookie) {
+        this.useSecureCookie = useSecureCookie;
+    }
+
+    /**
+     * Sets the {@link AuthenticationTrustResolver} used to determine if the
+     * {@link Authentication} is anonymous, in which case no cookie is written.
+     * @param trustResolver the {@link AuthenticationTrustResolver} to use
+     */
+    public void setTrustResolver(AuthenticationTrustResolver trustResolver) {
+        Assert.notNull(trustResolver, "trustResolver cannot be null");
+        this.trustResolver = trustResolver;
+    }
+
+    private VerifiedCookie readCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (cookieName.equals(cookie.getName())) {
+                return verify(cookie.getValue());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the verified content of the cookie value or null if it is invalid
+     * or expired.
+     */
+    private VerifiedCookie verify(String value) {
+        if (value == null || value.length() > maxCookieSize) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        VerifiedCookie cookie = verifiedCookies.get(value);
+        if (cookie != null) {
+            if (cookie.isExpired(now)) {
+                verifiedCookies.remove(value);
+                return null;
+            }
+            return cookie;
+        }
+        int separator = value.indexOf('.');
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            byte[] content = decode(value.substring(0, separator));
+            byte[] signature = decode(value.substring(separator + 1));
+            if (!isSignatureValid(content, signature)) {
+                logger.debug("Ignoring cookie with an invalid signature");
+                return null;
+            }
+            cookie = readContent(content);
+        } catch (IllegalArgumentException e) {
+            logger.debug("Ignoring cookie that is not valid Base64", e);
+            return null;
+        } catch (IOException e) {
+            logger.debug("Ignoring cookie that cannot be read", e);
+            return null;
+        }
+        if (cookie.isExpired(now)) {
+            return null;
+        }
+        if (maxCacheSize > 0) {
+            if (verifiedCookies.size() >= maxCacheSize) {
+                verifiedCookies.clear();
+            }
+            verifiedCookies.put(value, cookie);
+        }
+        return cookie;
+    }
+
+    private boolean isSignatureValid(byte[] content, byte[] signature) {
+        for (SecretKeySpec key : keys) {
+            if (MessageDigest.isEqual(sign(key, content), signature)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String createCookieValue(Authentication authentication, long expires) {
+        byte[] content = writeContent(authentication, expires);
+        byte[] signature = sign(keys[0], content);
+        return encode(content) + "." + encode(signature);
+    }
+
+    /**
+     * Encodes with the URL and filename safe Base64 alphabet and without
+     * padding, so that the value does not need to be quoted in a cookie.
+     */
+    private static String encode(byte[] bytes) {
+        String encoded = Utf8.decode(Base64.encode(bytes)).replace('+', '-').replace('/', '_');
+        int end = encoded.length();
+        while (end > 0 && encoded.charAt(end - 1) == '=') {
+            end--;
+        }
+        return encoded.substring(0, end);
+    }
+
+    private static byte[] decode(String value) {
+        StringBuilder encoded = new StringBuilder(value.length() + 2);
+        encoded.append(value.replace('-', '+').replace('_', '/'));
+        while (encoded.length() % 4 != 0) {
+            encoded.append('=');
+        }
+        return Base64.decode(Utf8.encode(encoded.toString()));
+    }
+
+    private static byte[] sign(SecretKeySpec key, byte[] content) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(content);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to sign using " + ALGORITHM, e);
+        }
+    }
+
+    private byte[] writeContent(Authentication authentication, long expires) {
+        Collection<? extends GrantedAuthority> authorities = authentication.getAuthorities();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(compress ? COMPRESSED : UNCOMPRESSED);
+        try {
+            OutputStream out = compress ? new DeflaterOutputStream(bytes, new Deflater(Deflater.BEST_COMPRESSION)) : bytes;
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeLong(expires);
+            data.writeUTF(authentication.getName());
+            data.writeInt(authorities.size());
+            for (GrantedAuthority authority : authorities) {
+                data.writeUTF(authority.getAuthority());
+            }
+            data.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write " + authentication, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static VerifiedCookie readContent(byte[] content) throws IOException {
+        if (content.length == 0) {
+            throw new IOException("Empty content");
+        }
+        InputStream in = new ByteArrayInputStream(content, 1, content.length - 1);
+        if (content[0] == COMPRESSED) {
+            in = new InflaterInputStream(in);
+        } else if (content[0] != UNCOMPRESSED) {
+            throw new IOException("Unknown format " + content[0]);
+        }
+        DataInputStream data = new DataInputStream(in);
+        long expires = data.readLong();
+        String name = data.readUTF();
+        int size = data.readInt();
+        if (size < 0 || size > content.length) {
+            throw new IOException("Invalid number of authorities " + size);
+        }
+        List<GrantedAuthority> authorities = new ArrayList<GrantedAuthority>(size);
+        for (int i = 0; i < size; i++) {
+            authorities.add(new SimpleGrantedAuthority(data.readUTF()));
+        }
+        return new VerifiedCookie(name, Collections.unmodifiableList(authorities), expires);
+    }
+
+    /**
+     * The verified content of a cookie. It is immutable, so it can be cached
+     * and shared between requests.
+     */
+    private static final class VerifiedCookie {
+        private final String name;
+        private final List<GrantedAuthority> authorities;
+        private final long expires;
+
+        private VerifiedCookie(String name, List<GrantedAuthority> authorities, long expires) {
+            this.name = name;
+            this.authorities = authorities;
+            this.expires = expires;
+        }
+
+        private boolean isExpired(long now) {
+            return expires <= now;
+        }
+
+        private Authentication createAuthentication() {
+            return new UsernamePasswordAuthenticationToken(name, null, authorities);
+        }
+    }
+
+    private final class SaveToCookieResponseWrapper extends SaveContextOnUpdateOrErrorResponseWrapper {
+        private final HttpServletRequest request;
+        private final VerifiedCookie loadedCookie;
+        private final Authentication loadedAuthentication;
+
+        private SaveToCookieResponseWrapper(HttpServletResponse response, HttpServletRequest request,
+                VerifiedCookie loadedCookie, Authentication loadedAuthentication) {
+            super(response, false);
+            this.request = request;
+            this.loadedCookie = loadedCookie;
+            this.loadedAuthentication = loadedAuthentication;
+        }
+
+        @Override
+        protected void saveContext(SecurityContext context) {
+            Authentication authentication = context.getAuthentication();
+            if (authentication == null || trustResolver.isAnonymous(authentication)) {
+                if (loadedCookie != null) {
+                    addCookie("", 0);
+                }
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (authentication == loadedAuthentication && loadedCookie.expires - now > maxAge / 2) {
+                return;
+            }
+            String value = createCookieValue(authentication, now + maxAge);
+            if (value.length() > maxCookieSize) {
+                logger.warn("Not saving the SecurityContext since the cookie size " + value.length()
+                        + " is larger than maxCookieSize " + maxCookieSize);
+                if (loadedCookie != null) {
+                    addCookie("", 0);
+                }
+                return;
+            }
+            addCookie(value, (int) TimeUnit.MILLISECONDS.toSeconds(maxAge));
+        }
+
+        private void addCookie(String value, int maxAgeSeconds) {
+            Cookie cookie = new Cookie(cookieName, value);
+            cookie.setMaxAge(maxAgeSeconds);
+            String contextPath = request.getContextPath();
+            cookie.setPath(contextPath.length() > 0 ? contextPath : "/");
+            cookie.setSecure(useSecureCookie == null ? request.isSecure() : useSecureCookie.booleanValue());
+            if (SET_HTTP_ONLY != null) {
+                ReflectionUtils.invokeMethod(SET_HTTP_ONLY, cookie, Boolean.TRUE);
+            }
+            addCookie(cookie);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.context;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpSession;
+
+import org.springframework.security.core.context.SecurityContext;
+
+/**
+ * <p>
+ * A {@link HttpSessionSecurityContextRepository} that does not invoke
+ * {@link HttpSession#setAttribute(String, Object)} if the
+ * {@link SecurityContext} to save has the same fingerprint as the
+ * {@link SecurityContext} that is already in the {@link HttpSession}. This
+ * avoids session replication traffic on clustered containers when a request
+ * replaces the {@link SecurityContext} with an equivalent one.
+ * </p>
+ *
+ * <p>
+ * The fingerprint is a SHA-1 digest of the serialized {@link SecurityContext}.
+ * A {@link SecurityContext} that cannot be serialized is always written.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ */
+public class WriteAvoidingHttpSessionSecurityContextRepository extends HttpSessionSecurityContextRepository {
+    private final AtomicLong avoidedSessionWrites = new AtomicLong();
+
+    private String springSecurityContextKey = SPRING_SECURITY_CONTEXT_KEY;
+
+    @Override
+    public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+        HttpServletRequest request = requestResponseHolder.getRequest();
+        // the request is only used by HttpSessionSecurityContextRepository to save the SecurityContext
+        requestResponseHolder.setRequest(new WriteAvoidingRequest(request));
+        try {
+            return super.loadContext(requestResponseHolder);
+        } finally {
+            requestResponseHolder.setRequest(request);
+        }
+    }
+
+    @Override
+    public void setSpringSecurityContextKey(String springSecurityContextKey) {
+        super.setSpringSecurityContextKey(springSecurityContextKey);
+        this.springSecurityContextKey = springSecurityContextKey;
+    }
+
+    /**
+     * Gets the number of times the {@link SecurityContext} was not written to
+     * the {@link HttpSession} because it was unchanged.
+     *
+     * @return the number of avoided writes to the {@link HttpSession}
+     */
+    public long getAvoidedSessionWrites() {
+        return avoidedSessionWrites.get();
+    }
+
+    private boolean isUnchanged(Object existing, Object value) {
+        if (existing == null || existing == value) {
+            return false;
+        }
+        byte[] existingFingerprint = fingerprint(existing);
+        return existingFingerprint != null && Arrays.equals(existingFingerprint, fingerprint(value));
+    }
+
+    /**
+     * Computes the fingerprint of an object or null if it cannot be computed
+     */
+    private byte[] fingerprint(Object value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            ObjectOutputStream out = new ObjectOutputStream(new DigestOutputStream(NullOutputStream.INSTANCE, digest));
+            out.writeObject(value);
+            out.close();
+            return digest.digest();
+        } catch (IOException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Unable to fingerprint " + value, e);
+            }
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported", e);
+        }
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        private static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    private final class WriteAvoidingRequest extends HttpServletRequestWrapper {
+
+        private WriteAvoidingRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return getSession(true);
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            HttpSession session = super.getSession(create);
+            return session == null ? null : new WriteAvoidingSession(session);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private final class WriteAvoidingSession implements HttpSession {
+        private final HttpSession delegate;
+
+        private WriteAvoidingSession(HttpSession delegate) {
+            this.delegate = delegate;
+        }
+
+        public void setAttribute(String name, Object value) {
+            if (springSecurityContextKey.equals(name) && isUnchanged(delegate.getAttribute(name), value)) {
+                avoidedSessionWrites.incrementAndGet();
+                if (logger.isDebugEnabled()) {
+                    logger.debug("SecurityContext is unchanged. Not writing it to the HttpSession.");
+                }
+                return;
+            }
+            delegate.setAttribute(name, value);
+        }
+
+        public void putValue(String name, Object value) {
+            setAttribute(name, value);
+        }
+
+        public long getCreationTime() {
+            return delegate.getCreationTime();
+        }
+
+        public String getId() {
+            return delegate.getId();
+        }
+
+        public long getLastAccessedTime() {
+            return delegate.getLastAccessedTime();
+        }
+
+        public ServletContext getServletContext() {
+            return delegate.getServletContext();
+        }
+
+        public void setMaxInactiveInterval(int interval) {
+            delegate.setMaxInactiveInterval(interval);
+        }
+
+        public int getMaxInactiveInterval() {
+            return delegate.getMaxInactiveInterval();
+        }
+
+        public javax.servlet.http.HttpSessionContext getSessionContext() {
+            return delegate.getSessionContext();
+        }
+
+        public Object getAttribute(String name) {
+            return delegate.getAttribute(name);
+        }
+
+        public Object getValue(String name) {
+            return delegate.getValue(name);
+        }
+
+        @SuppressWarnings("rawtypes")
+        public Enumeration getAttributeNames() {
+            return delegate.getAttributeNames();
+        }
+
+        public String[] getValueNames() {
+            return delegate.getValueNames();
+        }
+
+        public void removeAttribute(String name) {
+            delegate.removeAttribute(name);
+        }
+
+        public void removeValue(String name) {
+            delegate.removeValue(name);
+        }
+
+        public void invalidate() {
+            delegate.invalidate();
+        }
+
+        public boolean isNew() {
+            return delegate.isNew();
+        }
+    }
+}
@@ -0,0 +1,444 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.util;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * <p>
+ * A {@link RequestMatcher} that matches the same requests as
+ * {@link AntPathRequestMatcher}, but is optimized for being one of many
+ * {@link RequestMatcher} instances that are consulted for the same request.
+ * </p>
+ *
+ * <p>
+ * The pattern is compiled into its path segments when the
+ * {@link CompiledAntPathRequestMatcher} is created. The lower case request
+ * path and the boundaries of its path segments are calculated the first time
+ * any {@link CompiledAntPathRequestMatcher} is consulted for a request and
+ * stored as a request attribute. All subsequent matches for the request
+ * (regardless of which {@link CompiledAntPathRequestMatcher} is used) compare
+ * the compiled pattern against the stored path without allocating any
+ * objects. If the servlet path or path info of the request changes (i.e. the
+ * request is forwarded) the request path is calculated again.
+ * </p>
+ *
+ * <p>
+ * Patterns that contain URI template variables (i.e. "/users/{id}") are
+ * matched using an {@link AntPathMatcher} against the stored request path.
+ * </p>
+ *
+ * @author agent
+ * @since 3.2
+ * @see AntPathRequestMatcher
+ */
+public final class CompiledAntPathRequestMatcher implements RequestMatcher {
+    private static final String REQUEST_PATH_ATTR = CompiledAntPathRequestMatcher.class.getName() + ".REQUEST_PATH";
+    private static final String MATCH_ALL = "/**";
+    private static final String PATH_SEPARATOR = "/";
+
+    private final String pattern;
+    private final HttpMethod httpMethod;
+
+    private final boolean matchAll;
+    private final String subpath;
+    private final AntPathMatcher templateMatcher;
+    private final boolean patternStartsWithSeparator;
+    private final boolean patternEndsWithSeparator;
+    private final char[][] patternSegments;
+    private final boolean[] literalSegments;
+
+    /**
+     * Creates a matcher with the specific pattern which will match all HTTP
+     * methods.
+     *
+     * @param pattern the ant pattern to use for matching
+     */
+    public CompiledAntPathRequestMatcher(String pattern) {
+        this(pattern, null);
+    }
+
+    /**
+     * Creates a matcher with the supplied pattern which will match all HTTP
+     * methods.
+     *
+     * @param pattern the ant pattern to use for matching
+     * @param httpMethod the HTTP method. The {@code matches} method will return
+     *            false if the incoming request doesn't have the same method.
+     */
+    public CompiledAntPathRequestMatcher(String pattern, String httpMethod) {
+        Assert.hasText(pattern, "Pattern cannot be null or empty");
+        this.httpMethod = StringUtils.hasText(httpMethod) ? HttpMethod.valueOf(httpMethod) : null;
+        if(MATCH_ALL.equals(pattern) || "**".equals(pattern)) {
+            this.pattern = MATCH_ALL;
+            this.matchAll = true;
+            this.subpath = null;
+            this.templateMatcher = null;
+            this.patternStartsWithSeparator = true;
+            this.patternEndsWithSeparator = false;
+            this.patternSegments = null;
+            this.literalSegments = null;
+            return;
+        }
+        this.pattern = pattern.toLowerCase();
+        this.matchAll = false;
+        this.patternStartsWithSeparator = this.pattern.startsWith(PATH_SEPARATOR);
+        this.patternEndsWithSeparator = this.pattern.endsWith(PATH_SEPARATOR);
+        // the same optimization that is performed by AntPathRequestMatcher
+        if(this.pattern.endsWith(MATCH_ALL) && this.pattern.indexOf('?') == -1
+                && this.pattern.indexOf('*') == this.pattern.length() - 2) {
+            this.subpath = this.pattern.substring(0, this.pattern.length() - 3);
+            this.templateMatcher = null;
+            this.patternSegments = null;
+            this.literalSegments = null;
+            return;
+        }
+        this.subpath = null;
+        if(this.pattern.indexOf('{') >= 0) {
+            this.templateMatcher = new AntPathMatcher();
+            this.patternSegments = null;
+            this.literalSegments = null;
+            return;
+        }
+        this.templateMatcher = null;
+        String[] segments = StringUtils.tokenizeToStringArray(this.pattern, PATH_SEPARATOR, true, true);
+        this.patternSegments = new char[segments.length][];
+        this.literalSegments = new boolean[segments.length];
+        for(int i = 0; i < segments.length; i++) {
+            patternSegments[i] = segments[i].toCharArray();
+            literalSegments[i] = segments[i].indexOf('*') < 0 && segments[i].indexOf('?') < 0;
+        }
+    }
+
+    /**
+     * Returns true if the configured pattern (and HTTP-Method) match those of
+     * the supplied request.
+     *
+     * @param request the request to match against. The ant pattern will be
+     *            matched against the {@code servletPath} + {@code pathInfo}
+     *            of the request.
+     */
+    public boolean matches(HttpServletRequest request) {
+        if(httpMethod != null && !httpMethod.name().equals(request.getMethod())) {
+            return false;
+        }
+        if(matchAll) {
+            return true;
+        }
+        RequestPath requestPath = getRequestPath(request);
+        String path = requestPath.path;
+        if(subpath != null) {
+            return path.startsWith(subpath) && (path.length() == subpath.length() || path.charAt(subpath.length()) == '/');
+        }
+        if(templateMatcher != null) {
+            return templateMatcher.match(pattern, path);
+        }
+        if(patternStartsWithSeparator != requestPath.startsWithSeparator) {
+            return false;
+        }
+        return matchSegments(requestPath);
+    }
+
+    /**
+     * Gets the lower case pattern (or "/**" if the pattern matches any path).
+     *
+     * @return the pattern
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Gets the {@link HttpMethod} to match on or null if any {@link HttpMethod} is matched.
+     *
+     * @return the {@link HttpMethod} to match on or null
+     */
+    public HttpMethod getHttpMethod() {
+        return httpMethod;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(!(obj instanceof CompiledAntPathRequestMatcher)) {
+            return false;
+        }
+        CompiledAntPathRequestMatcher other = (CompiledAntPathRequestMatcher) obj;
+        return pattern.equals(other.pattern) && httpMethod == other.httpMethod;
+    }
+
+    @Override
+    public int hashCode() {
+        int code = 31 ^ pattern.hashCode();
+        if(httpMethod != null) {
+            code ^= httpMethod.hashCode();
+        }
+        return code;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("CompiledAnt [pattern='").append(pattern).append("'");
+        if(httpMethod != null) {
+            sb.append(", ").append(httpMethod);
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    /**
+     * Performs the same algorithm as {@link AntPathMatcher#match(String, String)}
+     * using the compiled pattern segments and the segment boundaries of the
+     * {@link RequestPath}.
+     */
+    private boolean matchSegments(RequestPath path) {
+        char[][] pattDirs = patternSegments;
+        int pattIdxStart = 0;
+        int pattIdxEnd = pattDirs.length - 1;
+        int pathIdxStart = 0;
+        int pathIdxEnd = path.segmentCount - 1;
+
+        // Match all elements up to the first **
+        while(pattIdxStart <= pattIdxEnd && pathIdxStart <= pathIdxEnd) {
+            if(isDoubleWildcard(pattIdxStart)) {
+                break;
+            }
+            if(!matchSegment(pattIdxStart, path, pathIdxStart)) {
+                return false;
+            }
+            pattIdxStart++;
+            pathIdxStart++;
+        }
+
+        if(pathIdxStart > pathIdxEnd) {
+            // Path is exhausted, only match if rest of pattern is * or **'s
+            if(pattIdxStart > pattIdxEnd) {
+                return patternEndsWithSeparator ? path.endsWithSeparator : !path.endsWithSeparator;
+            }
+            if(pattIdxStart == pattIdxEnd && pattDirs[pattIdxStart].length == 1
+                    && pattDirs[pattIdxStart][0] == '*' && path.endsWithSeparator) {
+                return true;
+            }
+            return onlyDoubleWildcards(pattIdxStart, pattIdxEnd);
+        }
+        else if(pattIdxStart > pattIdxEnd) {
+            // Path not exhausted, but pattern is. Failure.
+            return false;
+        }
+
+        // up to last '**'
+        while(pattIdxStart <= pattIdxEnd && pathIdxStart <= pathIdxEnd) {
+            if(isDoubleWildcard(pattIdxEnd)) {
+                break;
+            }
+            if(!matchSegment(pattIdxEnd, path, pathIdxEnd)) {
+                return false;
+            }
+            pattIdxEnd--;
+            pathIdxEnd--;
+        }
+        if(pathIdxStart > pathIdxEnd) {
+            // Path is exhausted
+            return onlyDoubleWildcards(pattIdxStart, pattIdxEnd);
+        }
+
+        while(pattIdxStart != pattIdxEnd && pathIdxStart <= pathIdxEnd) {
+            int patIdxTmp = -1;
+            for(int i = pattIdxStart + 1; i <= pattIdxEnd; i++) {
+                if(isDoubleWildcard(i)) {
+                    patIdxTmp = i;
+                    break;
+                }
+            }
+            if(patIdxTmp == pattIdxStart + 1) {
+                // '**/**' situation, so skip one
+                pattIdxStart++;
+                continue;
+            }
+            // Find the pattern between pattIdxStart & patIdxTmp in the path between pathIdxStart & pathIdxEnd
+            int patLength = (patIdxTmp - pattIdxStart - 1);
+            int strLength = (pathIdxEnd - pathIdxStart + 1);
+            int foundIdx = -1;
+
+            strLoop:
+            for(int i = 0; i <= strLength - patLength; i++) {
+                for(int j = 0; j < patLength; j++) {
+                    if(!matchSegment(pattIdxStart + j + 1, path, pathIdxStart + i + j)) {
+                        continue strLoop;
+                    }
+                }
+                foundIdx = pathIdxStart + i;
+                break;
+            }
+
+            if(foundIdx == -1) {
+                return false;
+            }
+
+            pattIdxStart = patIdxTmp;
+            pathIdxStart = foundIdx + patLength;
+        }
+
+        return onlyDoubleWildcards(pattIdxStart, pattIdxEnd);
+    }
+
+    private boolean isDoubleWildcard(int pattIdx) {
+        char[] segment = patternSegments[pattIdx];
+        return segment.length == 2 && segment[0] == '*' && segment[1] == '*';
+    }
+
+    private boolean onlyDoubleWildcards(int pattIdxStart, int pattIdxEnd) {
+        for(int i = pattIdxStart; i <= pattIdxEnd; i++) {
+            if(!isDoubleWildcard(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Matches a single pattern segment against a single path segment. A "*"
+     * matches zero or more characters and a "?" matches exactly one character.
+     * Like the regular expression used by {@link AntPathMatcher}, neither
+     * matches a line terminator.
+     */
+    private boolean matchSegment(int pattIdx, RequestPath requestPath, int pathIdx) {
+        char[] pattern = patternSegments[pattIdx];
+        String path = requestPath.path;
+        int start = requestPath.segmentStarts[pathIdx];
+        int end = requestPath.segmentEnds[pathIdx];
+        if(literalSegments[pattIdx]) {
+            if(end - start != pattern.length) {
+                return false;
+            }
+            for(int i = 0; i < pattern.length; i++) {
+                if(pattern[i] != path.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        int p = 0;
+        int s = start;
+        int wildcardP = -1;
+        int wildcardS = -1;
+        while(s < end) {
+            char c = path.charAt(s);
+            if(p < pattern.length && pattern[p] == '*') {
+                wildcardP = p++;
+                wildcardS = s;
+            }
+            else if(p < pattern.length && (pattern[p] == c || (pattern[p] == '?' && !isLineTerminator(c)))) {
+                p++;
+                s++;
+            }
+            else if(wildcardP >= 0 && !isLineTerminator(path.charAt(wildcardS))) {
+                p = wildcardP + 1;
+                s = ++wildcardS;
+            }
+            else {
+                return false;
+            }
+        }
+        while(p < pattern.length && pattern[p] == '*') {
+            p++;
+        }
+        return p == pattern.length;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Gets the {@link RequestPath} stored on the request or calculates it if
+     * it is not present or the request has been forwarded.
+     */
+    private static RequestPath getRequestPath(HttpServletRequest request) {
+        String servletPath = request.getServletPath();
+        String pathInfo = request.getPathInfo();
+        Object existing = request.getAttribute(REQUEST_PATH_ATTR);
+        if(existing instanceof RequestPath) {
+            RequestPath requestPath = (RequestPath) existing;
+            if(ObjectUtils.nullSafeEquals(servletPath, requestPath.servletPath)
+                    && ObjectUtils.nullSafeEquals(pathInfo, requestPath.pathInfo)) {
+                return requestPath;
+            }
+        }
+        RequestPath requestPath = new RequestPath(servletPath, pathInfo);
+        request.setAttribute(REQUEST_PATH_ATTR, requestPath);
+        return requestPath;
+    }
+
+    /**
+     * The lower case path used by {@link AntPathRequestMatcher} and the
+     * boundaries of its (trimmed and non empty) path segments.
+     */
+    private static final class RequestPath {
+        private final String servletPath;
+        private final String pathInfo;
+        private final String path;
+        private final boolean startsWithSeparator;
+        private final boolean endsWithSeparator;
+        private final int segmentCount;
+        private final int[] segmentStarts;
+        private final int[] segmentEnds;
+
+        private RequestPath(String servletPath, String pathInfo) {
+            this.servletPath = servletPath;
+            this.pathInfo = pathInfo;
+            String url = servletPath;
+            if(pathInfo != null) {
+                url += pathInfo;
+            }
+            this.path = url.toLowerCase();
+            this.startsWithSeparator = path.startsWith(PATH_SEPARATOR);
+            this.endsWithSeparator = path.endsWith(PATH_SEPARATOR);
+            int length = path.length();
+            this.segmentStarts = new int[length / 2 + 1];
+            this.segmentEnds = new int[segmentStarts.length];
+            int count = 0;
+            int start = 0;
+            while(start <= length) {
+                int end = path.indexOf('/', start);
+                if(end < 0) {
+                    end = length;
+                }
+                int segmentStart = start;
+                int segmentEnd = end;
+                while(segmentStart < segmentEnd && path.charAt(segmentStart) <= ' ') {
+                    segmentStart++;
+                }
+                while(segmentEnd > segmentStart && path.charAt(segmentEnd - 1) <= ' ') {
+                    segmentEnd--;
+                }
+                if(segmentStart < segmentEnd) {
+                    segmentStarts[count] = segmentStart;
+                    segmentEnds[count] = segmentEnd;
+                    count++;
+                }
+                start = end + 1;
+            }
+            this.segmentCount = count;
+        }
+    }
+}
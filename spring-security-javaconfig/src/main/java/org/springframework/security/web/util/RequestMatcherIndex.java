@@ -0,0 +1,332 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * An ordered collection of {@link RequestMatcher} to value mappings that
+ * returns the value of the first {@link RequestMatcher} that matches a request.
+ * The result is always the same as testing each {@link RequestMatcher} in the
+ * order it was added, but the number of {@link RequestMatcher} instances that
+ * are consulted no longer grows with the number of mappings.
+ * </p>
+ *
+ * <p>
+ * Each {@link AntPathRequestMatcher} (or {@link CompiledAntPathRequestMatcher})
+ * is placed in a trie keyed on the literal
+ * path segments that precede the first wildcard of its pattern. For example,
+ * "/api/tenant1/**" is placed beneath "api" and "tenant1". An
+ * {@link OrRequestMatcher} is placed beneath each of its
+ * {@link AntPathRequestMatcher} instances. Any other {@link RequestMatcher}
+ * (i.e. {@link RegexRequestMatcher} which does not expose its pattern) is
+ * placed at the root. When a request is matched only the mappings found along
+ * the path of the request are consulted. The mappings of each path segment
+ * are further separated by the HTTP method that the {@link RequestMatcher}
+ * requires, so only the mappings for the HTTP method of the request (or any
+ * HTTP method) are consulted.
+ * </p>
+ *
+ * <p>
+ * The {@link RequestMatcherIndex} must be fully populated before it is used
+ * to match requests.
+ * </p>
+ *
+ * @param <T> the type of the value that is mapped to a {@link RequestMatcher}
+ *
+ * @author agent
+ * @since 3.2
+ */
+public final class RequestMatcherIndex<T> {
+    private static final String MATCH_ALL = "/**";
+
+    private final Node<T> root = new Node<T>();
+
+    private int size;
+
+    /**
+     * Adds a mapping that is consulted after all previously added mappings.
+     *
+     * @param requestMatcher the {@link RequestMatcher} to match on. Cannot be null.
+     * @param value the value to return if the {@link RequestMatcher} is the
+     *            first to match. Cannot be null.
+     * @return the {@link RequestMatcherIndex} for further customizations
+     */
+    public RequestMatcherIndex<T> add(RequestMatcher requestMatcher, T value) {
+        Assert.notNull(requestMatcher, "requestMatcher cannot be null");
+        Assert.notNull(value, "value cannot be null");
+        Entry<T> entry = new Entry<T>(size++, requestMatcher, httpMethod(requestMatcher), value);
+        List<String[]> prefixes = literalPrefixes(requestMatcher);
+        if(prefixes == null) {
+            root.add(entry);
+            return this;
+        }
+        for(String[] prefix : prefixes) {
+            Node<T> node = root;
+            for(String segment : prefix) {
+                node = node.child(segment);
+            }
+            node.add(entry);
+        }
+        return this;
+    }
+
+    /**
+     * Gets the number of mappings that have been added
+     * @return the number of mappings that have been added
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the value of the first {@link RequestMatcher} (in the order it was
+     * added) that matches the {@link HttpServletRequest}.
+     *
+     * @param request the {@link HttpServletRequest} to match
+     * @return the value of the first {@link RequestMatcher} that matches or
+     *         null if no {@link RequestMatcher} matches
+     */
+    public T getFirstMatch(HttpServletRequest request) {
+        if(size == 0) {
+            return null;
+        }
+        Entry<T> best = root.firstMatch(request, null);
+        Node<T> node = root;
+        String path = getRequestPath(request);
+        int length = path.length();
+        int start = 0;
+        while(node.children != null && start < length) {
+            int end = path.indexOf('/', start);
+            if(end < 0) {
+                end = length;
+            }
+            int segmentStart = start;
+            int segmentEnd = end;
+            start = end + 1;
+            while(segmentStart < segmentEnd && path.charAt(segmentStart) <= ' ') {
+                segmentStart++;
+            }
+            while(segmentEnd > segmentStart && path.charAt(segmentEnd - 1) <= ' ') {
+                segmentEnd--;
+            }
+            if(segmentStart == segmentEnd) {
+                continue;
+            }
+            node = node.children.get(path.substring(segmentStart, segmentEnd));
+            if(node == null) {
+                break;
+            }
+            best = node.firstMatch(request, best);
+        }
+        return best == null ? null : best.value;
+    }
+
+    /**
+     * Obtains the path used by {@link AntPathRequestMatcher} to match a request.
+     */
+    private static String getRequestPath(HttpServletRequest request) {
+        String url = request.getServletPath();
+        String pathInfo = request.getPathInfo();
+        if(pathInfo != null) {
+            url += pathInfo;
+        }
+        return url.toLowerCase();
+    }
+
+    /**
+     * Determines the literal path segments that a path must start with in
+     * order for the {@link RequestMatcher} to match. A null result means the
+     * {@link RequestMatcher} may match any path.
+     */
+    private static List<String[]> literalPrefixes(RequestMatcher requestMatcher) {
+        List<String[]> result = new ArrayList<String[]>();
+        String antPattern = null;
+        if(requestMatcher instanceof AntPathRequestMatcher) {
+            antPattern = ((AntPathRequestMatcher) requestMatcher).getPattern();
+        }
+        else if(requestMatcher instanceof CompiledAntPathRequestMatcher) {
+            antPattern = ((CompiledAntPathRequestMatcher) requestMatcher).getPattern();
+        }
+        if(antPattern != null) {
+            String[] prefix = literalPrefix(antPattern);
+            if(prefix == null) {
+                return null;
+            }
+            result.add(prefix);
+            return result;
+        }
+        if(requestMatcher instanceof OrRequestMatcher) {
+            for(RequestMatcher delegate : ((OrRequestMatcher) requestMatcher).getRequestMatchers()) {
+                List<String[]> delegatePrefixes = literalPrefixes(delegate);
+                if(delegatePrefixes == null) {
+                    return null;
+                }
+                result.addAll(delegatePrefixes);
+            }
+            return result.isEmpty() ? null : result;
+        }
+        return null;
+    }
+
+    /**
+     * Determines the {@link HttpMethod} that a request must use in order for
+     * the {@link RequestMatcher} to match. A null result means the
+     * {@link RequestMatcher} may match any {@link HttpMethod}.
+     */
+    private static String httpMethod(RequestMatcher requestMatcher) {
+        if(requestMatcher instanceof CompiledAntPathRequestMatcher) {
+            HttpMethod httpMethod = ((CompiledAntPathRequestMatcher) requestMatcher).getHttpMethod();
+            return httpMethod == null ? null : httpMethod.name();
+        }
+        if(requestMatcher instanceof AntPathRequestMatcher) {
+            // AntPathRequestMatcher does not expose the HTTP method, but it is considered by equals
+            String pattern = ((AntPathRequestMatcher) requestMatcher).getPattern();
+            for(HttpMethod httpMethod : HttpMethod.values()) {
+                if(requestMatcher.equals(new AntPathRequestMatcher(pattern, httpMethod.name()))) {
+                    return httpMethod.name();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Splits an ant pattern in the same manner as the
+     * {@link org.springframework.util.AntPathMatcher} and returns the segments
+     * found before the first segment containing a wildcard.
+     */
+    private static String[] literalPrefix(String antPattern) {
+        if(MATCH_ALL.equals(antPattern) || !antPattern.startsWith("/")) {
+            return null;
+        }
+        List<String> segments = new ArrayList<String>();
+        for(String segment : antPattern.split("/")) {
+            segment = segment.trim();
+            if(segment.length() == 0) {
+                continue;
+            }
+            if(segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.indexOf('{') >= 0) {
+                break;
+            }
+            segments.add(segment);
+        }
+        return segments.isEmpty() ? null : segments.toArray(new String[segments.size()]);
+    }
+
+    private static final class Node<T> {
+        private final List<Entry<T>> anyMethodEntries = new ArrayList<Entry<T>>();
+        private Map<String,List<Entry<T>>> entriesByMethod;
+        private Map<String,Node<T>> children;
+
+        /**
+         * Adds the {@link Entry} to the entries of its HTTP method. An
+         * {@link Entry} that matches any HTTP method is added to the entries
+         * of every HTTP method.
+         */
+        private void add(Entry<T> entry) {
+            if(entry.httpMethod == null) {
+                if(!add(anyMethodEntries, entry)) {
+                    return;
+                }
+                if(entriesByMethod != null) {
+                    for(List<Entry<T>> methodEntries : entriesByMethod.values()) {
+                        add(methodEntries, entry);
+                    }
+                }
+                return;
+            }
+            if(entriesByMethod == null) {
+                entriesByMethod = new HashMap<String,List<Entry<T>>>();
+            }
+            List<Entry<T>> methodEntries = entriesByMethod.get(entry.httpMethod);
+            if(methodEntries == null) {
+                methodEntries = new ArrayList<Entry<T>>(anyMethodEntries);
+                entriesByMethod.put(entry.httpMethod, methodEntries);
+            }
+            add(methodEntries, entry);
+        }
+
+        private static <E> boolean add(List<Entry<E>> entries, Entry<E> entry) {
+            if(!entries.isEmpty() && entries.get(entries.size() - 1) == entry) {
+                return false;
+            }
+            entries.add(entry);
+            return true;
+        }
+
+        private Node<T> child(String segment) {
+            if(children == null) {
+                children = new HashMap<String,Node<T>>();
+            }
+            Node<T> child = children.get(segment);
+            if(child == null) {
+                child = new Node<T>();
+                children.put(segment, child);
+            }
+            return child;
+        }
+
+        /**
+         * Finds the first {@link Entry} of this {@link Node} for the HTTP
+         * method of the request that matches and was added before best. Since
+         * the entries are in the order they were added, no {@link Entry} after
+         * best needs to be consulted.
+         */
+        private Entry<T> firstMatch(HttpServletRequest request, Entry<T> best) {
+            List<Entry<T>> entries = anyMethodEntries;
+            if(entriesByMethod != null) {
+                List<Entry<T>> methodEntries = entriesByMethod.get(request.getMethod());
+                if(methodEntries != null) {
+                    entries = methodEntries;
+                }
+            }
+            for(int i = 0; i < entries.size(); i++) {
+                Entry<T> entry = entries.get(i);
+                if(best != null && entry.order >= best.order) {
+                    return best;
+                }
+                if(entry.requestMatcher.matches(request)) {
+                    return entry;
+                }
+            }
+            return best;
+        }
+    }
+
+    private static final class Entry<T> {
+        private final int order;
+        private final RequestMatcher requestMatcher;
+        private final String httpMethod;
+        private final T value;
+
+        private Entry(int order, RequestMatcher requestMatcher, String httpMethod, T value) {
+            this.order = order;
+            this.requestMatcher = requestMatcher;
+            this.httpMethod = httpMethod;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.expression.method
+
+import org.aopalliance.intercept.MethodInvocation
+import org.springframework.expression.EvaluationContext
+import org.springframework.security.access.BulkPermissionEvaluator
+import org.springframework.security.access.PermissionEvaluator
+import org.springframework.security.authentication.TestingAuthenticationToken
+import org.springframework.security.core.Authentication
+import org.springframework.security.util.SimpleMethodInvocation
+
+import spock.lang.Specification
+
+/**
+ * @author agent
+ *
+ */
+class BulkPermissionMethodSecurityExpressionHandlerTests extends Specification {
+    BulkPermissionEvaluator permissionEvaluator = Mock()
+    BulkPermissionMethodSecurityExpressionHandler handler = new BulkPermissionMethodSecurityExpressionHandler(permissionEvaluator: permissionEvaluator)
+    Authentication user = new TestingAuthenticationToken("user", "password", "ROLE_USER")
+    MethodInvocation mi = new SimpleMethodInvocation(new ContactService(), ContactService.getMethod("delete", List, String), [[], "write"] as Object[])
+
+    def "hasPermission(filterObject, literal) filters Collection with one invocation"() {
+        setup:
+            List<String> contacts = ["a", "b", "c"]
+        when:
+            def result = handler.filter(contacts, expression("hasPermission(filterObject, 'read')"), context())
+        then:
+            1 * permissionEvaluator.hasPermissions(user, ["a", "b", "c"], "read") >> ([true, false, true] as boolean[])
+            0 * permissionEvaluator.hasPermission(*_)
+            result.is(contacts)
+            contacts == ["a", "c"]
+    }
+
+    def "hasPermission(filterObject, type, literal) filters array with one invocation"() {
+        when:
+            Long[] result = handler.filter([1L, 2L, 3L] as Long[], expression("hasPermission(filterObject, 'Contact', 'read')"), context())
+        then:
+            1 * permissionEvaluator.hasPermissions(user, [1L, 2L, 3L], "Contact", "read") >> ([false, true, true] as boolean[])
+            0 * permissionEvaluator.hasPermission(*_)
+            result as List == [2L, 3L]
+    }
+
+    def "permission may be a method argument"() {
+        setup:
+            List<String> contacts = ["a", "b"]
+        when:
+            handler.filter(contacts, expression("hasPermission(filterObject, #permission)"), context())
+        then:
+            1 * permissionEvaluator.hasPermissions(user, ["a", "b"], "write") >> ([false, true] as boolean[])
+            contacts == ["b"]
+    }
+
+    def "other filter expressions are evaluated per element"() {
+        setup:
+            List<String> contacts = ["a", "b"]
+        when:
+            handler.filter(contacts, expression("hasPermission(filterObject, 'read') and filterObject != 'b'"), context())
+        then:
+            0 * permissionEvaluator.hasPermissions(*_)
+            2 * permissionEvaluator.hasPermission(user, _, "read") >> true
+            contacts == ["a"]
+    }
+
+    def "PermissionEvaluator that is not bulk is invoked per element"() {
+        setup:
+            PermissionEvaluator evaluator = Mock()
+            handler.permissionEvaluator = evaluator
+            List<String> contacts = ["a", "b"]
+        when:
+            handler.filter(contacts, expression("hasPermission(filterObject, 'read')"), context())
+        then:
+            1 * evaluator.hasPermission(user, "a", "read") >> false
+            1 * evaluator.hasPermission(user, "b", "read") >> true
+            contacts == ["b"]
+    }
+
+    def "result with wrong length is rejected"() {
+        when:
+            handler.filter(["a", "b"], expression("hasPermission(filterObject, 'read')"), context())
+        then:
+            1 * permissionEvaluator.hasPermissions(*_) >> ([true] as boolean[])
+            thrown(IllegalStateException)
+    }
+
+    private EvaluationContext context() {
+        handler.createEvaluationContext(user, mi)
+    }
+
+    private def expression(String expression) {
+        handler.expressionParser.parseExpression(expression)
+    }
+
+    static class ContactService {
+        public void delete(List<String> contacts, String permission) {}
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.expression.method
+
+import org.aopalliance.intercept.MethodInvocation
+import org.springframework.security.access.prepost.PreInvocationAttribute
+import org.springframework.security.authentication.TestingAuthenticationToken
+import org.springframework.security.core.Authentication
+import org.springframework.security.util.SimpleMethodInvocation
+
+import spock.lang.Specification
+
+/**
+ * @author agent
+ *
+ */
+class CompiledExpressionPreInvocationAdviceTests extends Specification {
+    DefaultMethodSecurityExpressionHandler handler = new DefaultMethodSecurityExpressionHandler()
+    CompiledExpressionAttributeFactory factory = new CompiledExpressionAttributeFactory(handler)
+    CompiledExpressionPreInvocationAdvice advice = new CompiledExpressionPreInvocationAdvice()
+    Authentication user = new TestingAuthenticationToken("rob", "password", "ROLE_USER")
+
+    def "compiled authorize expression"() {
+        setup:
+            PreInvocationAttribute attr = factory.createPreInvocationAttribute(null, null, authorize)
+        expect:
+            ((CompiledPreInvocationAttribute) attr).compiledAuthorizeExpression != null
+            advice.before(user, invocation([]), attr) == expected
+        where:
+            authorize                 | expected
+            "hasRole('ROLE_USER')"    | true
+            "hasRole('ROLE_ADMIN')"   | false
+    }
+
+    def "authorize expression that is not compiled is evaluated with SpEL"() {
+        setup:
+            PreInvocationAttribute attr = factory.createPreInvocationAttribute(null, null, authorize)
+        expect:
+            ((CompiledPreInvocationAttribute) attr).compiledAuthorizeExpression == null
+            advice.before(user, invocation([]), attr) == expected
+        where:
+            authorize                        | expected
+            "authentication.name == 'rob'"   | true
+            "authentication.name == 'joe'"   | false
+    }
+
+    def "pre-filtering with compiled authorize expression"() {
+        setup:
+            List<String> names = ["rob", "joe"]
+            PreInvocationAttribute attr = factory.createPreInvocationAttribute("filterObject == 'rob'", "", "hasRole('ROLE_USER')")
+        when:
+            boolean granted = advice.before(user, invocation(names), attr)
+        then:
+            granted
+            names == ["rob"]
+    }
+
+    def "pre-filtering with unknown filter target"() {
+        setup:
+            PreInvocationAttribute attr = factory.createPreInvocationAttribute("filterObject == 'rob'", "missing", "hasRole('ROLE_USER')")
+        when:
+            advice.before(user, invocation(["rob"]), attr)
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    private MethodInvocation invocation(List<String> names) {
+        new SimpleMethodInvocation(new NameService(), NameService.getMethod("save", List), [names] as Object[])
+    }
+
+    static class NameService {
+        void save(List<String> names) {}
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.expression.method
+
+import org.aopalliance.intercept.MethodInvocation
+import org.springframework.expression.Expression
+import org.springframework.security.access.PermissionEvaluator
+import org.springframework.security.access.hierarchicalroles.RoleHierarchyImpl
+import org.springframework.security.authentication.TestingAuthenticationToken
+import org.springframework.security.core.Authentication
+import org.springframework.security.core.authority.AuthorityUtils
+import org.springframework.security.core.userdetails.User
+import org.springframework.security.util.SimpleMethodInvocation
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * @author agent
+ *
+ */
+class CompiledMethodSecurityExpressionTests extends Specification {
+    DefaultMethodSecurityExpressionHandler handler = new DefaultMethodSecurityExpressionHandler()
+    Authentication user = new TestingAuthenticationToken(new User("rob", "password", AuthorityUtils.createAuthorityList("ROLE_USER")), "password", "ROLE_USER")
+
+    def setup() {
+        handler.permissionEvaluator = new PermissionEvaluator() {
+            boolean hasPermission(Authentication authentication, Object targetDomainObject, Object permission) {
+                "granted" == targetDomainObject && "read" == permission
+            }
+            boolean hasPermission(Authentication authentication, Serializable targetId, String targetType, Object permission) {
+                "granted" == targetId && "Contact" == targetType
+            }
+        }
+    }
+
+    @Unroll
+    def "compile('#expression') is not supported"() {
+        expect:
+            CompiledMethodSecurityExpression.compile(parse(expression)) == null
+        where:
+            expression << [
+                "1 > 0",
+                "hasRole(#username)",
+                "hasIpAddress('127.0.0.1')",
+                "#contact.name == 'rob'",
+                "principal.username.length() == 3",
+                "hasPermission(#contact.name, 'read')",
+                "hasPermission(#contact, #username, 'read')",
+                "principal.username == #this"
+            ]
+    }
+
+    @Unroll
+    def "'#expression' is the same as SpEL for #args"() {
+        setup:
+            Expression parsed = parse(expression)
+            CompiledMethodSecurityExpression compiled = CompiledMethodSecurityExpression.compile(parsed)
+            MethodInvocation mi = invocation(args)
+        expect:
+            compiled != null
+            compiled.evaluate(handler.createEvaluationContext(user, mi), mi) == expected
+            handler.createEvaluationContext(user, mi).with { parsed.getValue(it, Boolean) } == expected
+        where:
+            expression                                            | args                    | expected
+            "permitAll"                                           | ["rob", "granted"]      | true
+            "denyAll"                                             | ["rob", "granted"]      | false
+            "denyAll()"                                           | ["rob", "granted"]      | false
+            "isAuthenticated() and !isAnonymous()"                | ["rob", "granted"]      | true
+            "fullyAuthenticated or rememberMe"                    | ["rob", "granted"]      | true
+            "hasRole('ROLE_USER')"                                | ["rob", "granted"]      | true
+            "hasRole('ROLE_ADMIN')"                               | ["rob", "granted"]      | false
+            "hasAnyRole('ROLE_ADMIN','ROLE_USER')"                | ["rob", "granted"]      | true
+            "hasAuthority('ROLE_ADMIN') or hasAnyAuthority('X')"  | ["rob", "granted"]      | false
+            "hasPermission(#contact, 'read')"                     | ["rob", "granted"]      | true
+            "hasPermission(#contact, 'read')"                     | ["rob", "denied"]       | false
+            "hasPermission(#contact, 'write')"                    | ["rob", "granted"]      | false
+            "hasPermission(#contact, 'Contact', 'read')"          | ["rob", "granted"]      | true
+            "hasPermission(#contact, 'Other', 'read')"            | ["rob", "granted"]      | false
+            "principal.username == #username"                     | ["rob", "granted"]      | true
+            "principal.username == #username"                     | ["joe", "granted"]      | false
+            "principal.username == #username"                     | [null, "granted"]       | false
+            "#username != principal.username"                     | ["joe", "granted"]      | true
+            "principal.username == 'rob' and hasRole('ROLE_USER')"| ["joe", "granted"]      | true
+            "#username == principal.username or hasPermission(#contact, 'read')" | ["joe", "granted"] | true
+            "#username == principal.username or hasPermission(#contact, 'read')" | ["joe", "denied"]  | false
+    }
+
+    def "role hierarchy of the handler is used"() {
+        setup:
+            RoleHierarchyImpl roleHierarchy = new RoleHierarchyImpl()
+            roleHierarchy.hierarchy = "ROLE_USER > ROLE_GUEST"
+            handler.roleHierarchy = roleHierarchy
+            MethodInvocation mi = invocation(["rob", "granted"])
+        expect:
+            CompiledMethodSecurityExpression.compile(parse("hasRole('ROLE_GUEST')")).evaluate(handler.createEvaluationContext(user, mi), mi)
+    }
+
+    def "principal that is not UserDetails falls back to SpEL"() {
+        setup:
+            user = new TestingAuthenticationToken("rob", "password", "ROLE_USER")
+            MethodInvocation mi = invocation(["rob", "granted"])
+            CompiledMethodSecurityExpression compiled = CompiledMethodSecurityExpression.compile(parse("principal.username == #username"))
+        when:
+            compiled.evaluate(handler.createEvaluationContext(user, mi), mi)
+        then: "SpEL is unable to find username on a String"
+            thrown(IllegalArgumentException)
+    }
+
+    def "variable not bound to a String argument falls back to SpEL"() {
+        setup:
+            MethodInvocation mi = invocation(["rob", "rob"])
+            CompiledMethodSecurityExpression compiled = CompiledMethodSecurityExpression.compile(parse("principal.username == #contact"))
+        expect:
+            compiled.evaluate(handler.createEvaluationContext(user, mi), mi)
+    }
+
+    def "returnObject is used"() {
+        setup:
+            MethodInvocation mi = invocation(["rob", "denied"])
+            CompiledMethodSecurityExpression compiled = CompiledMethodSecurityExpression.compile(parse("hasPermission(returnObject, 'read')"))
+        when:
+            def ctx = handler.createEvaluationContext(user, mi)
+            handler.setReturnObject("granted", ctx)
+        then:
+            compiled.evaluate(ctx, mi)
+        when:
+            handler.setReturnObject("denied", ctx)
+        then:
+            !compiled.evaluate(ctx, mi)
+    }
+
+    private Expression parse(String expression) {
+        handler.expressionParser.parseExpression(expression)
+    }
+
+    private MethodInvocation invocation(List<Object> args) {
+        new SimpleMethodInvocation(new ContactService(), ContactService.getMethod("find", String, Object), args as Object[])
+    }
+
+    static class ContactService {
+        public Object find(String username, Object contact) {
+            contact
+        }
+    }
+}
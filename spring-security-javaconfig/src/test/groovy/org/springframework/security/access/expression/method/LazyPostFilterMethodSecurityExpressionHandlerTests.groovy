@@ -0,0 +1,163 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.expression.method
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+import org.aopalliance.intercept.MethodInvocation
+import org.springframework.expression.EvaluationContext
+import org.springframework.expression.Expression
+import org.springframework.security.authentication.TestingAuthenticationToken
+import org.springframework.security.core.Authentication
+import org.springframework.security.util.SimpleMethodInvocation
+
+import spock.lang.Specification
+
+/**
+ * @author agent
+ *
+ */
+class LazyPostFilterMethodSecurityExpressionHandlerTests extends Specification {
+    MethodSecurityExpressionHandler delegate = new DefaultMethodSecurityExpressionHandler()
+    LazyPostFilterMethodSecurityExpressionHandler handler = new LazyPostFilterMethodSecurityExpressionHandler(delegate)
+    Authentication user = new TestingAuthenticationToken("user", "password", "ROLE_USER")
+    Expression expression = delegate.expressionParser.parseExpression("filterObject.startsWith('a')")
+
+    def "null delegate is not allowed"() {
+        when:
+            new LazyPostFilterMethodSecurityExpressionHandler(null)
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    def "Iterable return type is filtered as it is consumed"() {
+        setup:
+            List<String> messages = ["a1", "b1", "a2"]
+            EvaluationContext ctx = handler.createEvaluationContext(user, invocation("findAll"))
+        when:
+            Iterable<String> result = handler.filter(messages, expression, ctx)
+        then: "the original is not modified"
+            !(result instanceof Collection)
+            messages == ["a1", "b1", "a2"]
+        when:
+            messages.add("a3")
+        then: "filtering is performed as the result is iterated over"
+            result.collect { it } == ["a1", "a2", "a3"]
+            result.collect { it } == ["a1", "a2", "a3"]
+    }
+
+    def "Iterator return type is filtered as it is consumed"() {
+        setup:
+            EvaluationContext ctx = handler.createEvaluationContext(user, invocation("iterator"))
+        when:
+            Iterator<String> result = handler.filter(["b1", "a1", "b2", "a2"].iterator(), expression, ctx)
+        then:
+            result.hasNext()
+            result.hasNext()
+            result.next() == "a1"
+            result.next() == "a2"
+            !result.hasNext()
+        when:
+            result.next()
+        then:
+            thrown(NoSuchElementException)
+        when:
+            result.remove()
+        then:
+            thrown(UnsupportedOperationException)
+    }
+
+    def "Collection return type is filtered by delegate"() {
+        setup:
+            List<String> messages = ["a1", "b1", "a2"]
+            EvaluationContext ctx = handler.createEvaluationContext(user, invocation("list"))
+        when:
+            def result = handler.filter(messages, expression, ctx)
+        then:
+            result.is(messages)
+            messages == ["a1", "a2"]
+    }
+
+    def "array filtered in parallel"() {
+        setup:
+            ExecutorService executorService = Executors.newFixedThreadPool(4)
+            handler.executorService = executorService
+            handler.parallelThreshold = 10
+            String[] messages = (1..1000).collect { it % 3 == 0 ? "a$it" : "b$it" } as String[]
+            EvaluationContext ctx = handler.createEvaluationContext(user, invocation("array"))
+        when:
+            String[] result = handler.filter(messages, expression, ctx)
+        then:
+            result as List == messages.findAll { it.startsWith("a") }
+            result.class == String[]
+        cleanup:
+            executorService.shutdown()
+    }
+
+    def "array below parallelThreshold filtered by delegate"() {
+        setup:
+            ExecutorService executorService = Mock()
+            handler.executorService = executorService
+            EvaluationContext ctx = handler.createEvaluationContext(user, invocation("array"))
+        when:
+            String[] result = handler.filter(["a1", "b1"] as String[], expression, ctx)
+        then:
+            result as List == ["a1"]
+            0 * executorService._
+    }
+
+    def "parallel filter errors are propagated"() {
+        setup:
+            ExecutorService executorService = Executors.newFixedThreadPool(2)
+            handler.executorService = executorService
+            handler.parallelThreshold = 1
+            EvaluationContext ctx = handler.createEvaluationContext(user, invocation("array"))
+        when:
+            handler.filter(["a1", "b1"] as String[], delegate.expressionParser.parseExpression("filterObject.missing"), ctx)
+        then:
+            thrown(IllegalArgumentException)
+        cleanup:
+            executorService.shutdown()
+    }
+
+    def "parallelThreshold must be positive"() {
+        when:
+            handler.parallelThreshold = 0
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    def "setReturnObject is delegated"() {
+        setup:
+            EvaluationContext ctx = handler.createEvaluationContext(user, invocation("list"))
+        when:
+            handler.setReturnObject("result", ctx)
+        then:
+            ctx.rootObject.value.returnObject == "result"
+    }
+
+    private MethodInvocation invocation(String methodName) {
+        new SimpleMethodInvocation(new MessageService(), MessageService.getMethod(methodName))
+    }
+
+    static class MessageService {
+        public Iterable<String> findAll() { null }
+        public Iterator<String> iterator() { null }
+        public List<String> list() { null }
+        public String[] array() { null }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.intercept.aspectj
+
+import java.lang.reflect.Method
+
+import org.aspectj.lang.ProceedingJoinPoint
+import org.aspectj.lang.reflect.MethodSignature
+import org.springframework.context.ApplicationEventPublisher
+import org.springframework.security.access.AccessDecisionManager
+import org.springframework.security.access.AccessDeniedException
+import org.springframework.security.access.SecurityConfig
+import org.springframework.security.access.event.PublicInvocationEvent
+import org.springframework.security.access.method.MapBasedMethodSecurityMetadataSource
+import org.springframework.security.access.method.MethodSecurityMetadataSource
+import org.springframework.security.authentication.AuthenticationManager
+import org.springframework.security.authentication.TestingAuthenticationToken
+import org.springframework.security.core.context.SecurityContextHolder
+
+import spock.lang.Specification
+
+/**
+ * @author agent
+ *
+ */
+class JoinPointMethodSecurityInterceptorTests extends Specification {
+    AccessDecisionManager adm = Mock()
+    ApplicationEventPublisher publisher = Mock()
+    ProceedingJoinPoint jp = Mock()
+    MethodSignature signature = Mock()
+    Service target = new Service()
+    JoinPointMethodSecurityInterceptor interceptor = new JoinPointMethodSecurityInterceptor()
+
+    def setup() {
+        MapBasedMethodSecurityMetadataSource metadataSource = new MapBasedMethodSecurityMetadataSource()
+        metadataSource.addSecureMethod(Service, "secured", SecurityConfig.createList("ROLE_USER"))
+        adm.supports(_) >> true
+        interceptor.accessDecisionManager = adm
+        interceptor.authenticationManager = Mock(AuthenticationManager)
+        interceptor.securityMetadataSource = metadataSource
+        interceptor.applicationEventPublisher = publisher
+        interceptor.afterPropertiesSet()
+        SecurityContextHolder.context.authentication = new TestingAuthenticationToken("user", "password", "ROLE_USER")
+        jp.signature >> signature
+        jp.target >> target
+        jp.args >> ([] as Object[])
+    }
+
+    def cleanup() {
+        SecurityContextHolder.clearContext()
+    }
+
+    def "unsecured method proceeds without consulting AccessDecisionManager"() {
+        setup:
+            signature.method >> method("unsecured")
+        when:
+            Object result = interceptor.invoke(jp)
+        then:
+            result == "unsecured"
+            1 * jp.proceed() >> "unsecured"
+            1 * publisher.publishEvent({ it instanceof PublicInvocationEvent && it.source == jp })
+            0 * adm.decide(_, _, _)
+    }
+
+    def "unsecured method with rejectPublicInvocations is denied"() {
+        setup:
+            interceptor.rejectPublicInvocations = true
+            signature.method >> method("unsecured")
+        when:
+            interceptor.invoke(jp)
+        then:
+            thrown(IllegalArgumentException)
+            0 * jp.proceed()
+    }
+
+    def "secured method is authorized before proceeding"() {
+        setup:
+            signature.method >> method("secured")
+        when:
+            Object result = interceptor.invoke(jp)
+        then:
+            1 * adm.decide(_, { it.method == method("secured") && it.this == target }, SecurityConfig.createList("ROLE_USER"))
+        then:
+            1 * jp.proceed() >> "secured"
+            result == "secured"
+    }
+
+    def "secured method attributes are only looked up once"() {
+        setup:
+            MethodSecurityMetadataSource metadataSource = Mock()
+            metadataSource.supports(_) >> true
+            interceptor.securityMetadataSource = metadataSource
+            signature.method >> method("secured")
+        when:
+            interceptor.invoke(jp)
+        then:
+            1 * metadataSource.getAttributes(method("secured"), Service) >> SecurityConfig.createList("ROLE_USER")
+            0 * metadataSource.getAttributes(_)
+            1 * adm.decide(_, _, SecurityConfig.createList("ROLE_USER"))
+            1 * jp.proceed()
+    }
+
+    def "secured method denied does not proceed"() {
+        setup:
+            signature.method >> method("secured")
+            adm.decide(_, _, _) >> { throw new AccessDeniedException("denied") }
+        when:
+            interceptor.invoke(jp)
+        then:
+            thrown(AccessDeniedException)
+            0 * jp.proceed()
+    }
+
+    def "MethodSecurityAspect proceeds until securityInterceptor is set"() {
+        setup:
+            MethodSecurityAspect aspect = new MethodSecurityAspect()
+            signature.method >> method("secured")
+            adm.decide(_, _, _) >> { throw new AccessDeniedException("denied") }
+        when:
+            Object result = aspect.secure(jp)
+        then:
+            result == "secured"
+            1 * jp.proceed() >> "secured"
+        when:
+            aspect.securityInterceptor = interceptor
+            aspect.secure(jp)
+        then:
+            thrown(AccessDeniedException)
+            0 * jp.proceed()
+    }
+
+    private static Method method(String name) {
+        Service.getMethod(name)
+    }
+
+    static class Service {
+        public String secured() {
+            "secured"
+        }
+
+        public String unsecured() {
+            "unsecured"
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.access.method
+
+import java.lang.reflect.Method
+
+import org.springframework.security.access.ConfigAttribute
+import org.springframework.security.access.SecurityConfig
+
+import spock.lang.Specification
+
+/**
+ * @author agent
+ *
+ */
+class PrecomputedMethodSecurityMetadataSourceTests extends Specification {
+    static final List<ConfigAttribute> USER = SecurityConfig.createList("ROLE_USER")
+
+    MethodSecurityMetadataSource delegate = Mock()
+    PrecomputedMethodSecurityMetadataSource source = new PrecomputedMethodSecurityMetadataSource(delegate)
+    Method interfaceMethod = Service.getMethod("secured")
+    Method classMethod = ServiceImpl.getMethod("secured")
+    Method notSecured = ServiceImpl.getMethod("notSecured")
+
+    def "precomputed methods do not use the delegate"() {
+        when:
+            source.precompute([ServiceImpl])
+        then:
+            1 * delegate.getAttributes(interfaceMethod, ServiceImpl) >> USER
+            1 * delegate.getAttributes(classMethod, ServiceImpl) >> USER
+            1 * delegate.getAttributes(notSecured, ServiceImpl) >> null
+            source.size() >= 3
+        when:
+            Collection<ConfigAttribute> interfaceAttributes = source.getAttributes(interfaceMethod, ServiceImpl)
+            Collection<ConfigAttribute> classAttributes = source.getAttributes(classMethod, ServiceImpl)
+            Collection<ConfigAttribute> notSecuredAttributes = source.getAttributes(notSecured, ServiceImpl)
+        then:
+            0 * delegate._
+            interfaceAttributes == USER
+            classAttributes == USER
+            notSecuredAttributes == null
+    }
+
+    def "methods that are not precomputed use the delegate"() {
+        setup:
+            source.precompute([ServiceImpl])
+        when:
+            Collection<ConfigAttribute> attributes = source.getAttributes(interfaceMethod, Service)
+        then:
+            1 * delegate.getAttributes(interfaceMethod, Service) >> USER
+            attributes == USER
+    }
+
+    def "precompute adds to previously precomputed methods"() {
+        setup:
+            source.precompute([ServiceImpl])
+            int size = source.size()
+        when:
+            source.precompute([OtherServiceImpl])
+        then:
+            1 * delegate.getAttributes(interfaceMethod, OtherServiceImpl) >> USER
+            0 * delegate.getAttributes(_, ServiceImpl)
+            source.size() > size
+            source.getAttributes(interfaceMethod, ServiceImpl) == null
+    }
+
+    def "getAllConfigAttributes delegates"() {
+        when:
+            Collection<ConfigAttribute> attributes = source.allConfigAttributes
+        then:
+            1 * delegate.allConfigAttributes >> USER
+            attributes == USER
+    }
+
+    def "null delegate"() {
+        when:
+            new PrecomputedMethodSecurityMetadataSource(null)
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    static interface Service {
+        String secured()
+    }
+
+    static class ServiceImpl implements Service {
+        String secured() { null }
+        String notSecured() { null }
+    }
+
+    static class OtherServiceImpl implements Service {
+        String secured() { null }
+    }
+}
@@ -15,11 +15,14 @@
  */
 package org.springframework.security.config.annotation.authentication
 
+import java.util.concurrent.TimeUnit
+
 import javax.sql.DataSource
 
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.context.annotation.Bean
 import org.springframework.context.annotation.Configuration
+import org.springframework.core.io.ByteArrayResource
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType
 import org.springframework.security.authentication.AuthenticationManager
@@ -31,8 +34,12 @@ import org.springframework.security.config.annotation.authentication.builders.Au
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.core.Authentication
+import org.springframework.security.core.authority.AuthorityUtils
+import org.springframework.security.core.userdetails.User
 import org.springframework.security.core.userdetails.UserCache
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.cache.ConcurrentMapUserCache
+import org.springframework.security.provisioning.CachingJdbcUserDetailsManager
 import org.springframework.security.provisioning.JdbcUserDetailsManager
 
 /**
@@ -45,7 +52,7 @@ class NamespaceJdbcUserServiceTests extends BaseSpringSpec {
         when:
             loadConfig(DataSourceConfig,JdbcUserServiceConfig)
         then:
-            findAuthenticationProvider(DaoAuthenticationProvider).userDetailsService instanceof JdbcUserDetailsManager
+            findAuthenticationProvider(DaoAuthenticationProvider).userDetailsService.class == JdbcUserDetailsManager
     }
 
     @EnableWebSecurity
@@ -118,6 +125,7 @@ class NamespaceJdbcUserServiceTests extends BaseSpringSpec {
         when:
             loadConfig(CustomDataSourceConfig,CustomJdbcUserServiceSampleConfig)
         then:
+            findAuthenticationProvider(DaoAuthenticationProvider).userDetailsService.class == JdbcUserDetailsManager
             findAuthenticationProvider(DaoAuthenticationProvider).userDetailsService.userCache instanceof CustomUserCache
         when:
             Authentication auth = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("user", "password"))
@@ -185,4 +193,129 @@ class NamespaceJdbcUserServiceTests extends BaseSpringSpec {
             return builder.setType(EmbeddedDatabaseType.HSQL).build();
         }
     }
+
+    def "jdbcAuthentication cacheUsers keeps the options that were already configured"() {
+        when:
+            loadConfig(CustomDataSourceConfig,CustomCachingJdbcUserServiceConfig)
+            CachingJdbcUserDetailsManager userDetailsService = findAuthenticationProvider(DaoAuthenticationProvider).userDetailsService
+            Authentication auth = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("user", "password"))
+        then:
+            userDetailsService.userCache instanceof ConcurrentMapUserCache
+            auth.authorities.collect {it.authority}.sort() == ['ROLE_DBA','ROLE_USER']
+            userDetailsService.userCache.getUserFromCache("user") != null
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class CustomCachingJdbcUserServiceConfig extends WebSecurityConfigurerAdapter {
+        @Autowired
+        private DataSource dataSource;
+
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .jdbcAuthentication()
+                    .dataSource(dataSource)
+                    .usersByUsernameQuery("select principal,credentials,true from users where principal = ?")
+                    .authoritiesByUsernameQuery("select principal,role from roles where principal = ?")
+                    .groupAuthoritiesByUsername(JdbcUserDetailsManager.DEF_GROUP_AUTHORITIES_BY_USERNAME_QUERY)
+                    .rolePrefix("ROLE_")
+                    .cacheUsers(100, 5, TimeUnit.MINUTES)
+        }
+
+        // Only necessary to have access to verify the AuthenticationManager
+        @Bean
+        @Override
+        public AuthenticationManager authenticationManagerBean()
+                throws Exception {
+            return super.authenticationManagerBean();
+        }
+    }
+
+    def "jdbcAuthentication cacheUsers and usersWithAuthoritiesByUsernameQuery"() {
+        when:
+            loadConfig(DataSourceConfig,CachingJdbcUserServiceConfig)
+            CachingJdbcUserDetailsManager userDetailsService = findAuthenticationProvider(DaoAuthenticationProvider).userDetailsService
+        then:
+            userDetailsService.userCache instanceof ConcurrentMapUserCache
+            userDetailsService.usersWithAuthoritiesByUsernameQuery == CachingJdbcUserDetailsManager.DEF_USERS_WITH_AUTHORITIES_BY_USERNAME_QUERY
+        when:
+            Authentication auth = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("user", "password"))
+        then:
+            auth.authorities.collect {it.authority} == ['ROLE_USER']
+            userDetailsService.userCache.getUserFromCache("user").password == "password"
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class CachingJdbcUserServiceConfig extends WebSecurityConfigurerAdapter {
+        @Autowired
+        private DataSource dataSource;
+
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .jdbcAuthentication()
+                    .dataSource(dataSource)
+                    .cacheUsers(100, 5, TimeUnit.MINUTES)
+                    .usersWithAuthoritiesByUsernameQuery(CachingJdbcUserDetailsManager.DEF_USERS_WITH_AUTHORITIES_BY_USERNAME_QUERY)
+                    .withDefaultSchema()
+                    .withUser("user")
+                        .password("password")
+                        .roles("USER")
+        }
+
+        // Only necessary to have access to verify the AuthenticationManager
+        @Bean
+        @Override
+        public AuthenticationManager authenticationManagerBean()
+                throws Exception {
+            return super.authenticationManagerBean();
+        }
+    }
+
+    def "jdbcAuthentication batchSize and withUsers"() {
+        when:
+            loadConfig(DataSourceConfig,BatchJdbcUserServiceConfig)
+        then:
+            findAuthenticationProvider(DaoAuthenticationProvider).userDetailsService.batchSize == 2
+            authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("user", "password")).authorities.collect {it.authority} == ['ROLE_USER']
+            authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("iterator5", "password")).authorities.collect {it.authority} == ['ROLE_USER']
+            authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("admin", "secret")).authorities.collect {it.authority}.sort() == ['ROLE_ADMIN','ROLE_USER']
+        when:
+            authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("disabled", "password"))
+        then:
+            thrown(org.springframework.security.authentication.DisabledException)
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class BatchJdbcUserServiceConfig extends WebSecurityConfigurerAdapter {
+        @Autowired
+        private DataSource dataSource;
+
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .jdbcAuthentication()
+                    .dataSource(dataSource)
+                    .withDefaultSchema()
+                    .batchSize(2)
+                    .withUsers((1..5).collect { new User("iterator" + it, "password", AuthorityUtils.createAuthorityList("ROLE_USER")) }.iterator())
+                    .withUsers(new ByteArrayResource("""
+                        # users
+                        admin=secret,ROLE_USER,ROLE_ADMIN
+
+                        disabled=password,ROLE_USER,disabled
+                    """.getBytes("UTF-8")))
+                    .withUser("user")
+                        .password("password")
+                        .roles("USER")
+        }
+
+        // Only necessary to have access to verify the AuthenticationManager
+        @Bean
+        @Override
+        public AuthenticationManager authenticationManagerBean()
+                throws Exception {
+            return super.authenticationManagerBean();
+        }
+    }
 }
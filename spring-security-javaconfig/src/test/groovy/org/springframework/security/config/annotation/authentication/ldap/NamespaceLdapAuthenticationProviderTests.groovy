@@ -17,6 +17,8 @@ package org.springframework.security.config.annotation.authentication.ldap
 
 import static org.springframework.security.config.annotation.authentication.ldap.NamespaceLdapAuthenticationProviderTestsConfigs.*
 
+import java.util.concurrent.TimeUnit
+
 import org.springframework.ldap.core.support.BaseLdapPathContextSource
 import org.springframework.security.authentication.AuthenticationManager
 import org.springframework.security.authentication.AuthenticationProvider
@@ -24,6 +26,8 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.config.annotation.BaseSpringSpec
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.authentication.ldap.NamespaceLdapAuthenticationProviderTestsConfigs.LdapAuthenticationProviderConfig;
+import org.springframework.security.ldap.DefaultSpringSecurityContextSource;
+import org.springframework.security.ldap.PoolingSpringSecurityContextSource;
 import org.springframework.security.ldap.authentication.LdapAuthenticationProvider;
 import org.springframework.security.ldap.authentication.PasswordComparisonAuthenticator;
 import org.springframework.security.ldap.userdetails.PersonContextMapper;
@@ -65,4 +69,34 @@ class NamespaceLdapAuthenticationProviderTests extends BaseSpringSpec {
             provider.authenticator instanceof PasswordComparisonAuthenticator
             authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("user","password")).authorities*.authority.sort() == ['ROLE_USER']
     }
+
+    def "ldap-authentication-provider pools read only contexts by default"() {
+        when:
+            loadConfig(PoolingLdapConfig)
+            LdapAuthenticationProvider provider = findAuthenticationProvider(LdapAuthenticationProvider)
+            PoolingSpringSecurityContextSource contextSource = provider.authenticator.contextSource
+            3.times {
+                authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("user","password"))
+            }
+        then:
+            contextSource.numActive == 0
+            contextSource.numIdle == 1
+            ReflectionTestUtils.getField(contextSource,"maxIdle") == 2
+            ReflectionTestUtils.getField(contextSource,"minIdle") == 1
+            ReflectionTestUtils.getField(contextSource,"maxIdleTimeNanos") == TimeUnit.SECONDS.toNanos(60)
+            ReflectionTestUtils.getField(contextSource,"validateOnBorrow") == true
+        when:
+            context.close()
+        then:
+            contextSource.numIdle == 0
+    }
+
+    def "ldap-authentication-provider pooled false"() {
+        when:
+            loadConfig(NotPooledLdapConfig)
+            LdapAuthenticationProvider provider = findAuthenticationProvider(LdapAuthenticationProvider)
+        then:
+            provider.authenticator.contextSource.class == DefaultSpringSecurityContextSource
+            authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("user","password")).authorities*.authority.sort() == ['ROLE_USER']
+    }
 }
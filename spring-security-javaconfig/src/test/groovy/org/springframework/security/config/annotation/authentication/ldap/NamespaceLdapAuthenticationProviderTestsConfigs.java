@@ -15,6 +15,8 @@
  */
 package org.springframework.security.config.annotation.authentication.ldap;
 
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.encoding.PlaintextPasswordEncoder;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
@@ -81,4 +83,35 @@ public class NamespaceLdapAuthenticationProviderTestsConfigs {
                         .passwordAttribute("userPassword"); // ldap-authentication-provider/password-compare@password-attribute
         }
     }
+
+    @Configuration
+    @EnableWebSecurity
+    static class PoolingLdapConfig extends WebSecurityConfigurerAdapter {
+        protected void registerAuthentication(
+                AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .ldapAuthentication()
+                    .groupSearchBase("ou=groups")
+                    .userSearchFilter("(uid={0})")
+                    .contextSource()
+                        .maxIdle(2)
+                        .minIdle(1)
+                        .maxIdleTime(60, TimeUnit.SECONDS)
+                        .validateOnBorrow(true);
+        }
+    }
+
+    @Configuration
+    @EnableWebSecurity
+    static class NotPooledLdapConfig extends WebSecurityConfigurerAdapter {
+        protected void registerAuthentication(
+                AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .ldapAuthentication()
+                    .groupSearchBase("ou=groups")
+                    .userDnPatterns("uid={0},ou=people")
+                    .contextSource()
+                        .pooled(false);
+        }
+    }
 }
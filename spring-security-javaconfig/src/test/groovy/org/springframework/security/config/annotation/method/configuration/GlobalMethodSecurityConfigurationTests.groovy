@@ -25,8 +25,18 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.security.access.AccessDecisionManager
 import org.springframework.security.access.AccessDeniedException
 import org.springframework.security.access.ConfigAttribute
+import org.springframework.security.access.BulkPermissionEvaluator
+import org.springframework.security.access.PermissionEvaluator
+import org.springframework.security.access.expression.method.BulkPermissionMethodSecurityExpressionHandler
+import org.springframework.security.access.expression.method.CompiledExpressionPreInvocationAdvice
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler
+import org.springframework.security.access.method.MethodSecurityMetadataSource
+import org.springframework.security.access.method.PrecomputedMethodSecurityMetadataSource
+import org.springframework.security.access.prepost.PreInvocationAuthorizationAdvice
 import org.springframework.security.authentication.AuthenticationManager
 import org.springframework.security.authentication.DefaultAuthenticationEventPublisher
+import org.springframework.security.authentication.TestingAuthenticationToken
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
 import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
 import org.springframework.security.config.annotation.BaseSpringSpec
@@ -36,6 +46,7 @@ import org.springframework.security.config.annotation.method.configuration.Globa
 import org.springframework.security.config.annotation.web.WebSecurityConfigurerAdapterTests.InMemoryAuthWithWebSecurityConfigurerAdapter
 import org.springframework.security.core.Authentication
 import org.springframework.security.core.authority.AuthorityUtils
+import org.springframework.security.core.context.SecurityContextHolder
 
 /**
  *
@@ -79,6 +90,129 @@ public class GlobalMethodSecurityConfigurationTests extends BaseSpringSpec {
         }
     }
 
+    def "precomputeMetadata resolves metadata of proxied beans on refresh"() {
+        setup:
+            SecurityContextHolder.context.authentication = new TestingAuthenticationToken("user", "password", "ROLE_USER")
+            loadConfig(PrecomputeMetadataConfig, NamespaceGlobalMethodSecurityTests.BaseMethodConfig)
+            MethodSecurityService service = context.getBean(MethodSecurityService)
+            PrecomputedMethodSecurityMetadataSource source = context.getBean(MethodSecurityMetadataSource)
+        expect:
+            source.size() > 0
+            source.getAttributes(MethodSecurityService.getMethod("secured"), MethodSecurityServiceImpl)*.attribute == ["ROLE_ADMIN"]
+            source.getAttributes(MethodSecurityServiceImpl.getMethod("secured"), MethodSecurityServiceImpl)*.attribute == ["ROLE_ADMIN"]
+            service.preAuthorizePermitAll() == null
+        when:
+            service.preAuthorize()
+        then:
+            thrown(AccessDeniedException)
+        when:
+            service.secured()
+        then:
+            thrown(AccessDeniedException)
+        cleanup:
+            SecurityContextHolder.clearContext()
+    }
+
+    @Configuration
+    @EnableGlobalMethodSecurity(prePostEnabled = true, securedEnabled = true, precomputeMetadata = true)
+    public static class PrecomputeMetadataConfig {
+    }
+
+    def "compileExpressions uses compiled pre post advice"() {
+        setup:
+            SecurityContextHolder.context.authentication = new TestingAuthenticationToken("user", "password", "ROLE_USER")
+            loadConfig(CompileExpressionsConfig, NamespaceGlobalMethodSecurityTests.BaseMethodConfig)
+            MethodSecurityService service = context.getBean(MethodSecurityService)
+        expect:
+            context.getBean(PreInvocationAuthorizationAdvice).class == CompiledExpressionPreInvocationAdvice
+            service.preAuthorizePermitAll() == null
+            service.hasPermission("granted") == null
+            service.postHasPermission("granted") == null
+        when:
+            service.preAuthorize()
+        then:
+            thrown(AccessDeniedException)
+        when:
+            service.hasPermission("denied")
+        then:
+            thrown(AccessDeniedException)
+        when:
+            service.postHasPermission("denied")
+        then:
+            thrown(AccessDeniedException)
+        cleanup:
+            SecurityContextHolder.clearContext()
+    }
+
+    @Configuration
+    @EnableGlobalMethodSecurity(prePostEnabled = true, compileExpressions = true)
+    public static class CompileExpressionsConfig extends GlobalMethodSecurityConfiguration {
+        @Override
+        protected MethodSecurityExpressionHandler expressionHandler() {
+            DefaultMethodSecurityExpressionHandler expressionHandler = new DefaultMethodSecurityExpressionHandler()
+            expressionHandler.permissionEvaluator = new PermissionEvaluator() {
+                boolean hasPermission(Authentication authentication, Object targetDomainObject, Object permission) {
+                    "granted" == targetDomainObject
+                }
+                boolean hasPermission(Authentication authentication, Serializable targetId, String targetType, Object permission) {
+                    throw new UnsupportedOperationException()
+                }
+            }
+            return expressionHandler
+        }
+    }
+
+    def "lazyPostFilter filters Iterable as it is consumed"() {
+        setup:
+            SecurityContextHolder.context.authentication = new TestingAuthenticationToken("user", "password", "ROLE_USER")
+            loadConfig(LazyPostFilterConfig, NamespaceGlobalMethodSecurityTests.BaseMethodConfig)
+            MethodSecurityService service = context.getBean(MethodSecurityService)
+            List<String> objects = ["granted", "denied", "granted"]
+        when:
+            Iterable<String> result = service.postFilterIterable(objects)
+        then:
+            !(result instanceof Collection)
+            objects.size() == 3
+            result.collect { it } == ["granted", "granted"]
+        cleanup:
+            SecurityContextHolder.clearContext()
+    }
+
+    @Configuration
+    @EnableGlobalMethodSecurity(prePostEnabled = true, lazyPostFilter = true)
+    public static class LazyPostFilterConfig {
+    }
+
+    def "BulkPermissionEvaluator used for @PreFilter"() {
+        setup:
+            SecurityContextHolder.context.authentication = new TestingAuthenticationToken("user", "password", "ROLE_USER")
+            BulkPermissionEvaluator permissionEvaluator = Mock()
+            BulkPermissionConfig.PE = permissionEvaluator
+            loadConfig(BulkPermissionConfig, NamespaceGlobalMethodSecurityTests.BaseMethodConfig)
+            MethodSecurityService service = context.getBean(MethodSecurityService)
+        when:
+            List<String> result = service.preFilterHasPermission(["granted", "denied", "granted"])
+        then:
+            1 * permissionEvaluator.hasPermissions(_, ["granted", "denied", "granted"], "read") >> ([true, false, true] as boolean[])
+            0 * permissionEvaluator.hasPermission(*_)
+            result == ["granted", "granted"]
+        cleanup:
+            SecurityContextHolder.clearContext()
+    }
+
+    @Configuration
+    @EnableGlobalMethodSecurity(prePostEnabled = true)
+    public static class BulkPermissionConfig extends GlobalMethodSecurityConfiguration {
+        static BulkPermissionEvaluator PE
+
+        @Override
+        protected MethodSecurityExpressionHandler expressionHandler() {
+            BulkPermissionMethodSecurityExpressionHandler expressionHandler = new BulkPermissionMethodSecurityExpressionHandler()
+            expressionHandler.permissionEvaluator = PE
+            return expressionHandler
+        }
+    }
+
     AuthenticationManager getAuthenticationManager() {
         context.getBean(MethodInterceptor).authenticationManager
     }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.config.annotation.method.configuration
+
+import org.springframework.beans.factory.BeanFactory
+import org.springframework.security.authentication.AuthenticationManager
+import org.springframework.security.authentication.TestingAuthenticationToken
+import org.springframework.security.core.Authentication
+
+import spock.lang.Specification
+
+/**
+ * @author agent
+ *
+ */
+class LazyAuthenticationManagerTests extends Specification {
+    BeanFactory beanFactory = Mock()
+    AuthenticationManager delegate = Mock()
+    LazyAuthenticationManager manager = new LazyAuthenticationManager(beanFactory, "authenticationManager")
+
+    def "bean is not resolved until used"() {
+        when:
+            new LazyAuthenticationManager(beanFactory, "authenticationManager")
+        then:
+            0 * beanFactory._
+    }
+
+    def "bean is resolved once"() {
+        setup:
+            Authentication user = new TestingAuthenticationToken("user", "password", "ROLE_USER")
+        when:
+            manager.authenticate(user)
+            manager.authenticate(user)
+        then:
+            1 * beanFactory.getBean("authenticationManager", AuthenticationManager) >> delegate
+            2 * delegate.authenticate(user) >> user
+            manager.delegate.is(delegate)
+    }
+}
@@ -19,7 +19,9 @@ import javax.annotation.security.DenyAll
 
 import org.springframework.security.access.annotation.Secured
 import org.springframework.security.access.prepost.PostAuthorize;
+import org.springframework.security.access.prepost.PostFilter
 import org.springframework.security.access.prepost.PreAuthorize
+import org.springframework.security.access.prepost.PreFilter
 import org.springframework.security.core.Authentication
 
 
@@ -48,4 +50,10 @@ public interface MethodSecurityService {
 
     @PostAuthorize("hasPermission(#object,'read')")
     public String postHasPermission(String object);
+
+    @PostFilter("filterObject == 'granted'")
+    public Iterable<String> postFilterIterable(List<String> objects);
+
+    @PreFilter("hasPermission(filterObject,'read')")
+    public List<String> preFilterHasPermission(List<String> objects);
 }
@@ -59,4 +59,14 @@ public class MethodSecurityServiceImpl implements MethodSecurityService {
     public String postHasPermission(String object) {
         return null;
     }
+
+    @Override
+    public Iterable<String> postFilterIterable(List<String> objects) {
+        return objects;
+    }
+
+    @Override
+    public List<String> preFilterHasPermission(List<String> objects) {
+        return objects;
+    }
 }
@@ -38,6 +38,8 @@ import org.springframework.security.access.intercept.RunAsManager
 import org.springframework.security.access.intercept.RunAsManagerImpl
 import org.springframework.security.access.intercept.aopalliance.MethodSecurityInterceptor
 import org.springframework.security.access.intercept.aopalliance.MethodSecurityMetadataSourceAdvisor
+import org.springframework.security.access.intercept.aspectj.JoinPointMethodSecurityInterceptor
+import org.springframework.security.access.intercept.aspectj.MethodSecurityAspect
 import org.springframework.security.access.method.AbstractMethodSecurityMetadataSource
 import org.springframework.security.access.method.MethodSecurityMetadataSource
 import org.springframework.security.authentication.AuthenticationManager
@@ -193,6 +195,15 @@ public class NamespaceGlobalMethodSecurityTests extends BaseSpringSpec {
     public static class AspectJModeConfig extends BaseMethodConfig {
     }
 
+    def "aspectj mode uses JoinPointMethodSecurityInterceptor"() {
+        when:
+            context = new AnnotationConfigApplicationContext(AspectJModeConfig)
+        then: "the MethodSecurityAspect is not woven so the auto proxy creator is used"
+            context.getBean("methodSecurityInterceptor") instanceof JoinPointMethodSecurityInterceptor
+            !GlobalMethodSecurityAspectJAutoProxyRegistrar.isMethodSecurityAspectWoven()
+            context.getBeansOfType(MethodSecurityAspect).isEmpty()
+    }
+
     def "aspectj mode works extending GlobalMethodSecurityConfiguration"() {
         when:
             context = new AnnotationConfigApplicationContext(BaseMethodConfig,AspectJModeExtendsGMSCConfig)
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.config.annotation.web.builders
+
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.security.web.util.AntPathRequestMatcher
+import org.springframework.security.web.util.RegexRequestMatcher
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * @author agent
+ *
+ */
+class StaticPathRequestMatcherTests extends Specification {
+
+    def "compile with nothing that can be represented"() {
+        expect:
+            StaticPathRequestMatcher.compile([new AntPathRequestMatcher("/a/*/b"),
+                new AntPathRequestMatcher("/resources/**", "GET"),
+                new RegexRequestMatcher("/a.*", null)]) == null
+    }
+
+    @Unroll
+    def "matches #path is #expected"() {
+        setup:
+            StaticPathRequestMatcher matcher = StaticPathRequestMatcher.compile([
+                new AntPathRequestMatcher("/favicon.ico"),
+                new AntPathRequestMatcher("/resources/**"),
+                new AntPathRequestMatcher("/**/*.css"),
+                new AntPathRequestMatcher("/**/*.min.js"),
+                new AntPathRequestMatcher("/a/*/b")])
+        expect:
+            matcher.matches(request(path)) == expected
+            !expected || new AntPathRequestMatcher(pattern).matches(request(path))
+        where:
+            path                        | pattern          | expected
+            "/favicon.ico"              | "/favicon.ico"   | true
+            "/FAVICON.ICO"              | "/favicon.ico"   | true
+            "/favicon.ico/x"            | "/favicon.ico"   | false
+            "/resources"                | "/resources/**"  | true
+            "/resources/img/logo.png"   | "/resources/**"  | true
+            "/resourcesx"               | "/resources/**"  | false
+            "/a/b/app.css"              | "/**/*.css"      | true
+            "/app.css"                  | "/**/*.css"      | true
+            "/app.css/"                 | "/**/*.css"      | false
+            "/app.js"                   | "/**/*.min.js"   | false
+            "/app.min.js"               | "/**/*.min.js"   | true
+            "/a/x/b"                    | "/a/*/b"         | false
+            "/resources/../admin"       | "/resources/**"  | false
+            "/resources/./a"            | "/resources/**"  | false
+            "/resources//a"             | "/resources/**"  | false
+            "/resources;x=y/a"          | "/resources/**"  | false
+            "/admin/a.css;x=y"          | "/**/*.css"      | false
+    }
+
+    def "matches any path"() {
+        setup:
+            StaticPathRequestMatcher matcher = StaticPathRequestMatcher.compile([new AntPathRequestMatcher("/**")])
+        expect:
+            matcher.matches(request("/a/b"))
+            !matcher.matches(request("/a/../b"))
+    }
+
+    def "servletPath and pathInfo are combined"() {
+        setup:
+            StaticPathRequestMatcher matcher = StaticPathRequestMatcher.compile([new AntPathRequestMatcher("/app/resources/**")])
+            MockHttpServletRequest request = request("/app")
+            request.pathInfo = "/resources/a.png"
+        expect:
+            matcher.matches(request)
+    }
+
+    private static MockHttpServletRequest request(String path) {
+        new MockHttpServletRequest(servletPath:path)
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.config.annotation.web.builders
+
+import javax.servlet.Filter
+
+import org.springframework.context.annotation.Configuration
+import org.springframework.core.annotation.Order
+import org.springframework.http.HttpMethod
+import org.springframework.security.config.annotation.BaseSpringSpec
+import org.springframework.security.config.annotation.web.configuration.BaseWebConfig
+import org.springframework.security.web.FilterChainProxy
+import org.springframework.security.web.firewall.DefaultHttpFirewall
+import org.springframework.security.web.firewall.HttpFirewall
+import org.springframework.security.web.firewall.RequestRejectedException
+import org.springframework.security.web.util.AntPathRequestMatcher
+import org.springframework.security.web.util.RequestMatcher
+
+/**
+ * WebSecurity tests
+ *
+ * @author agent
+ *
+ */
+public class WebSecurityTests extends BaseSpringSpec {
+
+    def "indexSecurityFilterChains defaults to FilterChainProxy"() {
+        when:
+            loadConfig(DefaultIndexSecurityFilterChainsConfig)
+        then:
+            context.getBean(FilterChainProxy).class == FilterChainProxy
+    }
+
+    @Configuration
+    static class DefaultIndexSecurityFilterChainsConfig extends BaseWebConfig {
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .authorizeUrls()
+                    .anyRequest().hasRole("USER")
+        }
+    }
+
+    def "indexSecurityFilterChains(true) uses first matching SecurityFilterChain"() {
+        setup:
+            loadConfig(IndexSecurityFilterChainsConfig)
+        when: "ignored request"
+            request.servletPath = "/resources/app.css"
+            springSecurityFilterChain.doFilter(request, response, chain)
+        then: "no security is applied"
+            context.getBean(FilterChainProxy).class == CompiledFilterChainProxy
+            chain.request
+        when: "secured request"
+            super.setup()
+            request.servletPath = "/tenant2/messages"
+            springSecurityFilterChain.doFilter(request, response, chain)
+        then: "the first matching chain secures the request"
+            !chain.request
+            response.status == 403
+        when: "secured request by a later chain"
+            super.setup()
+            login("user", "ROLE_TENANT2")
+            request.servletPath = "/tenant2/messages"
+            springSecurityFilterChain.doFilter(request, response, chain)
+        then: "the first matching chain authorizes the request"
+            chain.request
+    }
+
+    @Configuration
+    static class IndexSecurityFilterChainsConfig {
+        @Configuration
+        @Order(1)
+        static class Tenant1Config extends BaseWebConfig {
+            public void configure(WebSecurity web) throws Exception {
+                web
+                    .indexSecurityFilterChains(true)
+                    .ignoring()
+                        .antMatchers("/resources/**")
+            }
+
+            protected void configure(HttpSecurity http) throws Exception {
+                http
+                    .antMatcher("/tenant1/**")
+                    .authorizeUrls()
+                        .anyRequest().hasRole("TENANT1")
+            }
+        }
+
+        @Configuration
+        @Order(2)
+        static class Tenant2Config extends BaseWebConfig {
+            protected void configure(HttpSecurity http) throws Exception {
+                http
+                    .antMatcher("/tenant2/**")
+                    .authorizeUrls()
+                        .anyRequest().hasRole("TENANT2")
+            }
+        }
+
+        @Configuration
+        static class DefaultConfig extends BaseWebConfig {
+            protected void configure(HttpSecurity http) throws Exception {
+                http
+                    .authorizeUrls()
+                        .anyRequest().hasRole("ADMIN")
+            }
+        }
+    }
+
+    def "indexSecurityFilterChains(true) setFilterChainMap rebuilds the index"() {
+        setup:
+            loadConfig(IndexSecurityFilterChainsConfig)
+            Filter filter = Mock()
+            Map<RequestMatcher,List<Filter>> filterChainMap = new LinkedHashMap<RequestMatcher,List<Filter>>()
+            filterChainMap.put(new AntPathRequestMatcher("/new/**"), [filter])
+            filterChainMap.put(new AntPathRequestMatcher("/**"), [])
+        when:
+            springSecurityFilterChain.filterChainMap = filterChainMap
+            request.servletPath = "/new/messages"
+            springSecurityFilterChain.doFilter(request, response, chain)
+        then: "the new chain is used"
+            1 * filter.doFilter(_, _, _)
+            !chain.request
+        when: "previously secured request"
+            super.setup()
+            request.servletPath = "/tenant2/messages"
+            springSecurityFilterChain.doFilter(request, response, chain)
+        then: "the new default chain is used"
+            0 * filter._
+            chain.request
+            response.status == 200
+    }
+
+    def "bypassIgnoredRequests(true) skips the FilterChainProxy for static resources"() {
+        setup:
+            HttpFirewall firewall = Mock()
+            BypassIgnoredRequestsConfig.FIREWALL = firewall
+            loadConfig(BypassIgnoredRequestsConfig)
+        when: "static resource"
+            request.servletPath = "/resources/app.css"
+            springSecurityFilterChain.doFilter(request, response, chain)
+        then: "the request is not wrapped"
+            chain.request == request
+            0 * firewall._
+        when: "not normalized"
+            super.setup()
+            request.servletPath = "/resources/../admin"
+            springSecurityFilterChain.doFilter(request, response, chain)
+        then: "the firewall is used"
+            1 * firewall.getFirewalledRequest(_) >> { throw new RequestRejectedException("rejected") }
+            thrown(RequestRejectedException)
+        when: "ignored with an HTTP method"
+            super.setup()
+            request.method = "POST"
+            request.servletPath = "/public/form"
+            springSecurityFilterChain.doFilter(request, response, chain)
+        then: "the firewall is used"
+            1 * firewall.getFirewalledRequest(_) >> { new DefaultHttpFirewall().getFirewalledRequest(request) }
+            1 * firewall.getFirewalledResponse(_) >> response
+            !chain.request
+    }
+
+    @Configuration
+    static class BypassIgnoredRequestsConfig extends BaseWebConfig {
+        static HttpFirewall FIREWALL
+
+        public void configure(WebSecurity web) throws Exception {
+            web
+                .bypassIgnoredRequests(true)
+                .httpFirewall(FIREWALL)
+                .ignoring()
+                    .antMatchers("/resources/**")
+                    .antMatchers(HttpMethod.GET, "/public/**")
+        }
+
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .authorizeUrls()
+                    .anyRequest().hasRole("USER")
+        }
+    }
+}
@@ -17,6 +17,13 @@ package org.springframework.security.config.annotation.web.configurers;
 
 import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.context.annotation.Configuration;
+import java.util.concurrent.TimeUnit
+
+import org.springframework.http.HttpMethod
+import org.springframework.mock.web.MockFilterChain
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.security.access.AccessDecisionManager
+import org.springframework.security.access.ConfigAttribute
 import org.springframework.security.access.vote.AffirmativeBased;
 import org.springframework.security.authentication.RememberMeAuthenticationToken
 import org.springframework.security.config.annotation.BaseSpringSpec
@@ -25,9 +32,20 @@ import org.springframework.security.config.annotation.authentication.builders.Au
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.annotation.web.configuration.BaseWebConfig
 import org.springframework.security.config.annotation.web.configurers.ExpressionUrlAuthorizationConfigurer;
+import org.springframework.security.core.Authentication
 import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.web.access.expression.CachingWebExpressionVoter
+import org.springframework.security.web.access.expression.CompiledWebExpressionVoter
+import org.springframework.security.web.access.expression.WebExpressionDecisionCache
+import org.springframework.security.web.access.expression.WebExpressionVoter
 import org.springframework.security.web.access.intercept.FilterSecurityInterceptor;
+import org.springframework.security.web.access.intercept.IndexedFilterInvocationSecurityMetadataSource
+import org.springframework.security.web.access.intercept.RequestCachingAccessDecisionManager
+import org.springframework.security.web.util.AnyRequestMatcher
+import org.springframework.security.web.util.CompiledAntPathRequestMatcher
+import org.springframework.test.util.ReflectionTestUtils
 
 public class ExpressionUrlAuthorizationConfigurerTests extends BaseSpringSpec {
 
@@ -410,4 +428,254 @@ public class ExpressionUrlAuthorizationConfigurerTests extends BaseSpringSpec {
                     .withUser("user").password("password").roles("USER")
         }
     }
+
+    def "authorizeUrls() compileAntMatchers"() {
+        setup:
+            loadConfig(CompileAntMatchersConfig)
+        when:
+            request.servletPath = "/Admin/users"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then: "the compiled pattern is used"
+            ReflectionTestUtils.getField(findFilter(FilterSecurityInterceptor).securityMetadataSource, "requestMap").keySet()*.class == [CompiledAntPathRequestMatcher, AnyRequestMatcher]
+            response.status == 403
+        when:
+            super.setup()
+            login()
+            request.servletPath = "/admin/users"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then: "Access is denied"
+            response.status == 403
+        when:
+            super.setup()
+            login("admin","ROLE_ADMIN")
+            request.servletPath = "/admin/users"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then: "Access is granted"
+            response.status == 200
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class CompileAntMatchersConfig extends WebSecurityConfigurerAdapter {
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .authorizeUrls()
+                    .compileAntMatchers(true)
+                    .antMatchers("/admin/**").hasRole("ADMIN")
+                    .anyRequest().hasRole("USER")
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth)
+                throws Exception {
+            auth
+                .inMemoryAuthentication()
+                    .withUser("user").password("password").roles("USER")
+        }
+    }
+
+    def "authorizeUrls() indexUrlMappings"() {
+        setup:
+            loadConfig(IndexUrlMappingsConfig)
+        when:
+            login()
+            request.servletPath = "/admin/users"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then: "the first mapping is used"
+            findFilter(FilterSecurityInterceptor).securityMetadataSource.class == IndexedFilterInvocationSecurityMetadataSource
+            response.status == 403
+        when:
+            super.setup()
+            login()
+            request.method = "POST"
+            request.servletPath = "/admin/messages"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then: "the HTTP method is honored"
+            response.status == 200
+        when:
+            super.setup()
+            login()
+            request.servletPath = "/admin/messages"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then: "later mappings are used"
+            response.status == 403
+        when:
+            super.setup()
+            login()
+            request.servletPath = "/messages"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then: "anyRequest is used"
+            response.status == 200
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class IndexUrlMappingsConfig extends WebSecurityConfigurerAdapter {
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .authorizeUrls()
+                    .indexUrlMappings(true)
+                    .antMatchers("/admin/users/**").hasRole("ADMIN")
+                    .antMatchers(HttpMethod.POST, "/admin/messages").hasRole("USER")
+                    .regexMatchers("/admin/.*").hasRole("ADMIN")
+                    .anyRequest().hasRole("USER")
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth)
+                throws Exception {
+            auth
+                .inMemoryAuthentication()
+                    .withUser("user").password("password").roles("USER")
+        }
+    }
+
+    def "authorizeUrls() compileExpressions"() {
+        setup:
+            loadConfig(CompileExpressionsConfig)
+            FilterSecurityInterceptor securityInterceptor = findFilter(FilterSecurityInterceptor)
+            Map requestMap = ReflectionTestUtils.getField(securityInterceptor.securityMetadataSource, "requestMap")
+        when:
+            login()
+            request.servletPath = "/admin/users"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then: "identical expressions are shared"
+            securityInterceptor.accessDecisionManager.decisionVoters*.class == [CompiledWebExpressionVoter]
+            requestMap.values()*.get(0).unique { a, b -> a.is(b) ? 0 : 1 }.size() == 3
+            response.status == 403
+        when:
+            super.setup()
+            login("admin","ROLE_ADMIN")
+            request.servletPath = "/admin/users"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then:
+            response.status == 200
+        when:
+            super.setup()
+            request.servletPath = "/public"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then:
+            response.status == 200
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class CompileExpressionsConfig extends WebSecurityConfigurerAdapter {
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .authorizeUrls()
+                    .compileExpressions(true)
+                    .antMatchers("/admin/users/**").hasRole("ADMIN")
+                    .antMatchers("/admin/groups/**").hasRole("ADMIN")
+                    .antMatchers("/public/**").permitAll()
+                    .antMatchers("/public").permitAll()
+                    .anyRequest().access("hasRole('ROLE_USER') and principal != null")
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth)
+                throws Exception {
+            auth
+                .inMemoryAuthentication()
+                    .withUser("user").password("password").roles("USER")
+        }
+    }
+
+    def "authorizeUrls() filterSecurityInterceptorCacheDecisions"() {
+        setup:
+            loadConfig(CacheDecisionsConfig)
+            FilterSecurityInterceptor fsi = findFilter(FilterSecurityInterceptor)
+            login()
+        when: "the request is dispatched twice"
+            request.servletPath = "/messages"
+            springSecurityFilterChain.doFilter(request,response,chain)
+            springSecurityFilterChain.doFilter(request,new MockHttpServletResponse(),new MockFilterChain())
+        then: "access is decided once"
+            fsi.accessDecisionManager.class == RequestCachingAccessDecisionManager
+            fsi.accessDecisionManager.delegate.class == CountingAccessDecisionManager
+            CountingAccessDecisionManager.DECISIONS == 1
+            response.status == 200
+        when: "the request is dispatched to a different mapping"
+            request.servletPath = "/admin/users"
+            response = new MockHttpServletResponse()
+            springSecurityFilterChain.doFilter(request,response,new MockFilterChain())
+        then: "access is decided for the new mapping"
+            CountingAccessDecisionManager.DECISIONS == 2
+            response.status == 403
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class CacheDecisionsConfig extends BaseWebConfig {
+        protected void configure(HttpSecurity http) throws Exception {
+            CountingAccessDecisionManager.DECISIONS = 0
+            http
+                .authorizeUrls()
+                    .accessDecisionManager(new CountingAccessDecisionManager())
+                    .filterSecurityInterceptorOncePerRequest(false)
+                    .filterSecurityInterceptorCacheDecisions(true)
+                    .antMatchers("/admin/**").hasRole("ADMIN")
+                    .anyRequest().hasRole("USER")
+        }
+    }
+
+    static class CountingAccessDecisionManager implements AccessDecisionManager {
+        static int DECISIONS
+        AccessDecisionManager delegate = new AffirmativeBased([new WebExpressionVoter()])
+
+        void decide(Authentication authentication, Object object, Collection<ConfigAttribute> configAttributes) {
+            DECISIONS++
+            delegate.decide(authentication, object, configAttributes)
+        }
+
+        boolean supports(ConfigAttribute attribute) {
+            delegate.supports(attribute)
+        }
+
+        boolean supports(Class<?> clazz) {
+            delegate.supports(clazz)
+        }
+    }
+
+    def "authorizeUrls() decisionCache"() {
+        setup:
+            loadConfig(DecisionCacheConfig)
+        when:
+            login()
+            request.servletPath = "/messages"
+            springSecurityFilterChain.doFilter(request,response,chain)
+            super.setup()
+            login()
+            request.servletPath = "/messages/1"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then:
+            findFilter(FilterSecurityInterceptor).accessDecisionManager.decisionVoters*.class == [CachingWebExpressionVoter]
+            response.status == 200
+            DecisionCacheConfig.CACHE.missCount == 1
+            DecisionCacheConfig.CACHE.hitCount == 1
+        when: "expression is not cached"
+            super.setup()
+            login()
+            request.servletPath = "/local"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then:
+            response.status == 200
+            DecisionCacheConfig.CACHE.missCount == 1
+            DecisionCacheConfig.CACHE.hitCount == 1
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class DecisionCacheConfig extends BaseWebConfig {
+        static WebExpressionDecisionCache CACHE
+
+        protected void configure(HttpSecurity http) throws Exception {
+            CACHE = new WebExpressionDecisionCache(100, 1, TimeUnit.MINUTES)
+            http
+                .authorizeUrls()
+                    .decisionCache(CACHE)
+                    .antMatchers("/local").hasIpAddress("127.0.0.1")
+                    .anyRequest().hasRole("USER")
+        }
+    }
 }
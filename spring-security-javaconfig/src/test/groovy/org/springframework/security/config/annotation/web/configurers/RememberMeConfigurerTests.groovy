@@ -15,15 +15,28 @@
  */
 package org.springframework.security.config.annotation.web.configurers
 
+import java.util.concurrent.TimeUnit
+
+import javax.servlet.http.Cookie
+
 import org.springframework.context.annotation.Configuration
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
 import org.springframework.security.config.annotation.AnyObjectPostProcessor
 import org.springframework.security.config.annotation.BaseSpringSpec
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.core.Authentication
 import org.springframework.security.core.userdetails.UserDetailsService
+import org.springframework.security.web.authentication.rememberme.HmacTokenBasedRememberMeServices
+import org.springframework.security.web.authentication.rememberme.InMemoryTokenRepositoryImpl
+import org.springframework.security.web.authentication.rememberme.PersistentRememberMeToken
+import org.springframework.security.web.authentication.rememberme.PersistentTokenBasedRememberMeServices
+import org.springframework.security.web.authentication.rememberme.PersistentTokenRepository
 import org.springframework.security.web.authentication.rememberme.RememberMeAuthenticationFilter
+import org.springframework.security.web.authentication.rememberme.WriteBehindPersistentTokenRepository
 
 /**
  * Tests for RememberMeConfigurer that flex edge cases. {@link NamespaceRememberMeTests} demonstrate mapping of the XML namespace to Java Config.
@@ -69,4 +82,84 @@ public class RememberMeConfigurerTests extends BaseSpringSpec {
         then: "RememberMeAuthenticationFilter is registered with LifecycleManager"
             1 * opp.postProcess(_ as RememberMeAuthenticationFilter) >> {RememberMeAuthenticationFilter o -> o}
     }
+
+    def "rememberMe writeBehindTokenRepository flushes on shutdown"() {
+        setup:
+            WriteBehindTokenRepositoryConfig.TOKEN_REPOSITORY = Mock(PersistentTokenRepository)
+        when:
+            loadConfig(WriteBehindTokenRepositoryConfig)
+            WriteBehindPersistentTokenRepository tokenRepository = findFilter(RememberMeAuthenticationFilter).rememberMeServices.tokenRepository
+        then:
+            tokenRepository.delegate == WriteBehindTokenRepositoryConfig.TOKEN_REPOSITORY
+            tokenRepository.flushIntervalNanos == TimeUnit.SECONDS.toNanos(30)
+        when:
+            tokenRepository.createNewToken(new PersistentRememberMeToken("user", "series", "token", new Date(1000)))
+            tokenRepository.updateToken("series", "updated", new Date(2000))
+            context.close()
+        then:
+            1 * WriteBehindTokenRepositoryConfig.TOKEN_REPOSITORY.updateToken("series", "updated", new Date(2000))
+    }
+
+    def "rememberMe writeBehindTokenRepository reads a token that is stale in its cache again"() {
+        setup:
+            InMemoryTokenRepositoryImpl sharedTokenRepository = new InMemoryTokenRepositoryImpl()
+            WriteBehindTokenRepositoryConfig.TOKEN_REPOSITORY = sharedTokenRepository
+            loadConfig(WriteBehindTokenRepositoryConfig)
+            PersistentTokenBasedRememberMeServices rememberMeServices = findFilter(RememberMeAuthenticationFilter).rememberMeServices
+            rememberMeServices.tokenRepository.createNewToken(new PersistentRememberMeToken("user", "series", "token", new Date()))
+        when: 'another node rotates the token'
+            sharedTokenRepository.updateToken("series", "rotated", new Date())
+            MockHttpServletRequest request = new MockHttpServletRequest()
+            request.setCookies(new Cookie(rememberMeServices.cookieName,
+                rememberMeServices.encodeCookie(["series", "rotated"] as String[])))
+            Authentication authentication = rememberMeServices.autoLogin(request, new MockHttpServletResponse())
+        then:
+            authentication.name == "user"
+            sharedTokenRepository.getTokenForSeries("series") != null
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class WriteBehindTokenRepositoryConfig extends WebSecurityConfigurerAdapter {
+        static PersistentTokenRepository TOKEN_REPOSITORY
+
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .formLogin()
+                    .and()
+                .rememberMe()
+                    .tokenRepository(TOKEN_REPOSITORY)
+                    .writeBehindTokenRepository(30, TimeUnit.SECONDS)
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .inMemoryAuthentication()
+                    .withUser("user").password("password").roles("USER")
+        }
+    }
+
+    def "rememberMe hmacTokens uses HmacTokenBasedRememberMeServices"() {
+        when:
+            loadConfig(HmacTokensConfig)
+            HmacTokenBasedRememberMeServices rememberMeServices = findFilter(RememberMeAuthenticationFilter).rememberMeServices
+        then:
+            rememberMeServices.key == "key"
+            rememberMeServices.tokenValiditySeconds == 60
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class HmacTokensConfig extends WebSecurityConfigurerAdapter {
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .formLogin()
+                    .and()
+                .rememberMe()
+                    .key("key")
+                    .tokenValiditySeconds(60)
+                    .hmacTokens()
+        }
+    }
 }
@@ -15,11 +15,17 @@
  */
 package org.springframework.security.config.annotation.web.configurers
 
+import org.springframework.context.annotation.Configuration
 import org.springframework.security.config.annotation.AnyObjectPostProcessor
 import org.springframework.security.config.annotation.BaseSpringSpec
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity
+import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository
 import org.springframework.security.web.context.SecurityContextPersistenceFilter
+import org.springframework.security.web.context.SignedCookieSecurityContextRepository
+import org.springframework.security.web.context.WriteAvoidingHttpSessionSecurityContextRepository
 
 /**
  *
@@ -40,4 +46,73 @@ class SecurityContextConfigurerTests extends BaseSpringSpec {
         then: "SecurityContextPersistenceFilter is registered with LifecycleManager"
             1 * opp.postProcess(_ as SecurityContextPersistenceFilter) >> {SecurityContextPersistenceFilter o -> o}
     }
+
+    def "securityContext defaults to HttpSessionSecurityContextRepository"() {
+        when:
+            loadConfig(DefaultSecurityContextConfig)
+        then:
+            findFilter(SecurityContextPersistenceFilter).repo.class == HttpSessionSecurityContextRepository
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class DefaultSecurityContextConfig extends WebSecurityConfigurerAdapter {
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .inMemoryAuthentication()
+        }
+    }
+
+    def "securityContext skipUnchangedSessionWrites uses WriteAvoidingHttpSessionSecurityContextRepository"() {
+        when:
+            loadConfig(SkipUnchangedSessionWritesConfig)
+        then:
+            findFilter(SecurityContextPersistenceFilter).repo.class == WriteAvoidingHttpSessionSecurityContextRepository
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class SkipUnchangedSessionWritesConfig extends WebSecurityConfigurerAdapter {
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .securityContext()
+                    .skipUnchangedSessionWrites(true)
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .inMemoryAuthentication()
+        }
+    }
+
+    def "securityContext signedCookie uses SignedCookieSecurityContextRepository"() {
+        when:
+            loadConfig(SignedCookieConfig)
+        then:
+            findFilter(SecurityContextPersistenceFilter).repo.class == SignedCookieSecurityContextRepository
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class SignedCookieConfig extends WebSecurityConfigurerAdapter {
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .securityContext()
+                    .signedCookie("key")
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .inMemoryAuthentication()
+        }
+    }
 }
@@ -15,7 +15,18 @@
  */
 package org.springframework.security.config.annotation.web.configurers
 
+import java.util.concurrent.TimeUnit
+
+import java.sql.Timestamp
+
+import javax.sql.DataSource
+
 import org.springframework.context.annotation.Configuration
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType
+import org.springframework.mock.web.MockHttpSession
 import org.springframework.security.config.annotation.AnyObjectPostProcessor
 import org.springframework.security.config.annotation.BaseSpringSpec
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
@@ -23,11 +34,17 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.annotation.web.configurers.SessionCreationPolicy;
+import org.springframework.security.core.session.JdbcSessionRegistry
+import org.springframework.security.core.session.RefreshThrottlingSessionRegistry
+import org.springframework.security.core.session.SessionRegistry
+import org.springframework.security.core.session.SessionRegistryImpl
+import org.springframework.security.core.session.StripedSessionRegistry
 import org.springframework.security.web.access.ExceptionTranslationFilter
 import org.springframework.security.web.context.SecurityContextPersistenceFilter
 import org.springframework.security.web.context.SecurityContextRepository
 import org.springframework.security.web.savedrequest.RequestCache
 import org.springframework.security.web.session.ConcurrentSessionFilter
+import org.springframework.security.web.session.HttpSessionDestroyedEvent
 import org.springframework.security.web.session.SessionManagementFilter
 
 /**
@@ -105,4 +122,168 @@ class SessionManagementConfigurerTests extends BaseSpringSpec {
         and: "ConcurrentSessionFilter is registered with LifecycleManager"
             1 * opp.postProcess(_ as ConcurrentSessionFilter) >> {ConcurrentSessionFilter o -> o}
     }
+
+    def "stripedSessionRegistry is used for concurrency control"() {
+        when:
+            loadConfig(StripedSessionRegistryConfig)
+            StripedSessionRegistry sessionRegistry = findFilter(ConcurrentSessionFilter).sessionRegistry
+        then:
+            sessionRegistry.lastRequestGranularity == 30000L
+            findFilter(SessionManagementFilter).sessionAuthenticationStrategy.sessionRegistry == sessionRegistry
+    }
+
+    def "stripedSessionRegistry receives SessionDestroyedEvent"() {
+        setup:
+            loadConfig(StripedSessionRegistryConfig)
+            StripedSessionRegistry sessionRegistry = findFilter(ConcurrentSessionFilter).sessionRegistry
+            MockHttpSession session = new MockHttpSession()
+            sessionRegistry.registerNewSession(session.id, "user")
+        when:
+            context.publishEvent(new HttpSessionDestroyedEvent(session))
+        then:
+            sessionRegistry.getSessionInformation(session.id) == null
+            sessionRegistry.allPrincipals.empty
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class StripedSessionRegistryConfig extends WebSecurityConfigurerAdapter {
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .sessionManagement()
+                    .maximumSessions(1)
+                        .stripedSessionRegistry()
+                        .refreshLastRequestEvery(30, TimeUnit.SECONDS)
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .inMemoryAuthentication()
+        }
+    }
+
+    def "refreshLastRequestEvery throttles the SessionRegistry"() {
+        when:
+            loadConfig(RefreshLastRequestEveryConfig)
+            RefreshThrottlingSessionRegistry sessionRegistry = findFilter(ConcurrentSessionFilter).sessionRegistry
+        then:
+            sessionRegistry.delegate instanceof SessionRegistryImpl
+            sessionRegistry.refreshIntervalNanos == TimeUnit.SECONDS.toNanos(30)
+            findFilter(SessionManagementFilter).sessionAuthenticationStrategy.sessionRegistry == sessionRegistry
+    }
+
+    def "refreshLastRequestEvery SessionRegistry receives SessionDestroyedEvent"() {
+        setup:
+            RefreshLastRequestEveryCustomRegistryConfig.SESSION_REGISTRY = new SessionRegistryImpl()
+            loadConfig(RefreshLastRequestEveryCustomRegistryConfig)
+            RefreshThrottlingSessionRegistry sessionRegistry = findFilter(ConcurrentSessionFilter).sessionRegistry
+            MockHttpSession session = new MockHttpSession()
+            sessionRegistry.registerNewSession(session.id, "user")
+            sessionRegistry.refreshLastRequest(session.id)
+        when:
+            context.publishEvent(new HttpSessionDestroyedEvent(session))
+        then:
+            sessionRegistry.lastRefreshes.isEmpty()
+            RefreshLastRequestEveryCustomRegistryConfig.SESSION_REGISTRY.getSessionInformation(session.id) == null
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class RefreshLastRequestEveryCustomRegistryConfig extends WebSecurityConfigurerAdapter {
+        static SessionRegistry SESSION_REGISTRY
+
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .sessionManagement()
+                    .maximumSessions(1)
+                        .sessionRegistry(SESSION_REGISTRY)
+                        .refreshLastRequestEvery(30, TimeUnit.SECONDS)
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .inMemoryAuthentication()
+        }
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class RefreshLastRequestEveryConfig extends WebSecurityConfigurerAdapter {
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .sessionManagement()
+                    .maximumSessions(1)
+                        .refreshLastRequestEvery(30, TimeUnit.SECONDS)
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .inMemoryAuthentication()
+        }
+    }
+
+    def "jdbcSessionRegistry is used for concurrency control"() {
+        setup:
+            JdbcSessionRegistryConfig.DATA_SOURCE = Mock(DataSource)
+        when:
+            loadConfig(JdbcSessionRegistryConfig)
+            JdbcSessionRegistry sessionRegistry = findFilter(ConcurrentSessionFilter).sessionRegistry
+        then:
+            sessionRegistry.dataSource == JdbcSessionRegistryConfig.DATA_SOURCE
+            findFilter(SessionManagementFilter).sessionAuthenticationStrategy.sessionRegistry == sessionRegistry
+    }
+
+    def "jdbcSessionRegistry receives SessionDestroyedEvent and is flushed on close"() {
+        setup:
+            EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.HSQL)
+                .setName(getClass().name + System.nanoTime())
+                .build()
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource)
+            jdbcTemplate.execute(JdbcSessionRegistry.CREATE_TABLE_SQL)
+            JdbcSessionRegistryConfig.DATA_SOURCE = dataSource
+            loadConfig(JdbcSessionRegistryConfig)
+            JdbcSessionRegistry sessionRegistry = findFilter(ConcurrentSessionFilter).sessionRegistry
+            MockHttpSession session = new MockHttpSession()
+            sessionRegistry.registerNewSession(session.id, "user")
+            sessionRegistry.registerNewSession("other", "user")
+        when:
+            context.publishEvent(new HttpSessionDestroyedEvent(session))
+        then:
+            jdbcTemplate.queryForList("select session_id from session_registry", String) == ["other"]
+        when:
+            jdbcTemplate.update("update session_registry set last_request = ?", new Timestamp(0))
+            sessionRegistry.refreshLastRequest("other")
+            context.close()
+        then:
+            jdbcTemplate.queryForObject("select last_request from session_registry", Timestamp).time > 0
+        cleanup:
+            dataSource.shutdown()
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class JdbcSessionRegistryConfig extends WebSecurityConfigurerAdapter {
+        static DataSource DATA_SOURCE
+
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .sessionManagement()
+                    .maximumSessions(1)
+                        .jdbcSessionRegistry(DATA_SOURCE)
+        }
+
+        @Override
+        protected void registerAuthentication(AuthenticationManagerBuilder auth) throws Exception {
+            auth
+                .inMemoryAuthentication()
+        }
+    }
 }
@@ -15,15 +15,22 @@
  */
 package org.springframework.security.config.annotation.web.configurers;
 
+import org.springframework.beans.factory.BeanCreationException
 import org.springframework.context.annotation.Configuration
 import org.springframework.security.access.vote.AffirmativeBased
+import org.springframework.security.access.vote.RoleVoter
+import org.springframework.security.access.vote.UnanimousBased
 import org.springframework.security.config.annotation.BaseSpringSpec
 import org.springframework.security.config.annotation.SecurityExpressions.*
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configuration.BaseWebConfig
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.annotation.web.configurers.UrlAuthorizationConfigurer;
 import org.springframework.security.web.access.intercept.FilterSecurityInterceptor
+import org.springframework.security.web.access.intercept.IndexedFilterInvocationSecurityMetadataSource
+import org.springframework.security.web.access.vote.RoleBitSetConfigAttribute
+import org.springframework.security.web.access.vote.RoleBitSetVoter
 
 /**
  *
@@ -76,4 +83,102 @@ public class UrlAuthorizationsTests extends BaseSpringSpec {
                     .anyRequest().hasRole("USER")
         }
     }
+
+    def "indexUrlMappings uses IndexedFilterInvocationSecurityMetadataSource"() {
+        setup:
+            loadConfig(IndexUrlMappingsConfig)
+        when:
+            login()
+            request.servletPath = "/admin/users"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then:
+            findFilter(FilterSecurityInterceptor).securityMetadataSource.class == IndexedFilterInvocationSecurityMetadataSource
+            response.status == 403
+        when:
+            super.setup()
+            login()
+            request.servletPath = "/messages"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then:
+            response.status == 200
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class IndexUrlMappingsConfig extends BaseWebConfig {
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .apply(new UrlAuthorizationConfigurer())
+                    .indexUrlMappings(true)
+                    .antMatchers("/admin/**").hasRole("ADMIN")
+                    .anyRequest().hasRole("USER")
+        }
+    }
+
+    def "compileRoles uses RoleBitSetVoter"() {
+        setup:
+            loadConfig(CompileRolesConfig)
+            FilterSecurityInterceptor fsi = findFilter(FilterSecurityInterceptor)
+        when:
+            login()
+            request.servletPath = "/admin/users"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then:
+            fsi.accessDecisionManager.decisionVoters*.class.contains(RoleBitSetVoter)
+            fsi.securityMetadataSource.allConfigAttributes.findAll { it instanceof RoleBitSetConfigAttribute }*.roles as Set == [["ROLE_ADMIN"],["ROLE_USER","ROLE_ADMIN"]] as Set
+            response.status == 403
+        when:
+            super.setup()
+            login("admin","ROLE_ADMIN")
+            request.servletPath = "/admin/users"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then:
+            response.status == 200
+        when:
+            super.setup()
+            login()
+            request.servletPath = "/messages"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then:
+            response.status == 200
+        when: "anonymous user"
+            super.setup()
+            request.servletPath = "/public/index.html"
+            springSecurityFilterChain.doFilter(request,response,chain)
+        then: "non role attributes are voted on by AuthenticatedVoter"
+            response.status == 200
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class CompileRolesConfig extends BaseWebConfig {
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .apply(new UrlAuthorizationConfigurer())
+                    .compileRoles(true)
+                    .antMatchers("/public/**").access("IS_AUTHENTICATED_ANONYMOUSLY")
+                    .antMatchers("/admin/**").hasRole("ADMIN")
+                    .anyRequest().hasAnyRole("USER","ADMIN")
+        }
+    }
+
+    def "compileRoles with custom AccessDecisionManager fails"() {
+        when:
+            loadConfig(CompileRolesCustomAccessDecisionManagerConfig)
+        then:
+            BeanCreationException e = thrown()
+            e.message.contains "compileRoles(true) cannot be used with a custom AccessDecisionManager"
+    }
+
+    @EnableWebSecurity
+    @Configuration
+    static class CompileRolesCustomAccessDecisionManagerConfig extends BaseWebConfig {
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                .apply(new UrlAuthorizationConfigurer())
+                    .accessDecisionManager(new UnanimousBased([new RoleVoter()]))
+                    .compileRoles(true)
+                    .anyRequest().hasAnyRole("USER","ADMIN")
+        }
+    }
 }
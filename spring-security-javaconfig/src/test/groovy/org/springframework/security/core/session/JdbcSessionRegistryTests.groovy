@@ -0,0 +1,223 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.core.session
+
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType
+import org.springframework.security.core.authority.AuthorityUtils
+import org.springframework.security.core.userdetails.User
+
+import spock.lang.Specification
+
+/**
+ * @author agent
+ *
+ */
+class JdbcSessionRegistryTests extends Specification {
+    EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+        .setType(EmbeddedDatabaseType.HSQL)
+        .setName(getClass().name + System.nanoTime())
+        .build()
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource)
+    JdbcSessionRegistry node1 = registry(true)
+    JdbcSessionRegistry node2 = registry(false)
+
+    def cleanup() {
+        dataSource.shutdown()
+    }
+
+    def "sessions are shared by every node"() {
+        when:
+            node1.registerNewSession("1", new User("rob", "password", AuthorityUtils.NO_AUTHORITIES))
+            node2.registerNewSession("2", "rob")
+        then:
+            node1.getAllSessions("rob", false)*.sessionId as Set == ["1", "2"] as Set
+            node2.getSessionInformation("1").principal == "rob"
+            node2.allPrincipals == ["rob"]
+        when:
+            node2.removeSessionInformation("1")
+        then:
+            node1.getSessionInformation("1") == null
+            node1.getAllSessions("rob", true)*.sessionId == ["2"]
+    }
+
+    def "expireNow is visible to every node"() {
+        setup:
+            node1.registerNewSession("1", "rob")
+            node1.registerNewSession("2", "rob")
+        when:
+            node2.getSessionInformation("1").expireNow()
+        then:
+            node1.getSessionInformation("1").expired
+            node1.getAllSessions("rob", false)*.sessionId == ["2"]
+            node1.getAllSessions("rob", true).size() == 2
+    }
+
+    def "refreshLastRequest is batched"() {
+        setup:
+            node1.registerNewSession("1", "rob")
+            node1.registerNewSession("2", "rob")
+            jdbcTemplate.update("update session_registry set last_request = ?", new Date(0))
+            node1.batchSize = 2
+        when:
+            node1.refreshLastRequest("1")
+        then: "not written"
+            lastRequest("1") == 0
+        when:
+            node1.refreshLastRequest("2")
+        then: "batch size reached"
+            lastRequest("1") > 0
+            lastRequest("2") > 0
+        when:
+            jdbcTemplate.update("update session_registry set last_request = ?", new Date(0))
+            node1.refreshLastRequest("1")
+            node1.flush()
+        then:
+            lastRequest("1") > 0
+            lastRequest("2") == 0
+    }
+
+    def "refreshLastRequest is written after flushInterval"() {
+        setup:
+            node1.registerNewSession("1", "rob")
+            jdbcTemplate.update("update session_registry set last_request = ?", new Date(0))
+            node1.setFlushInterval(0, TimeUnit.SECONDS)
+        when:
+            node1.refreshLastRequest("1")
+        then:
+            lastRequest("1") > 0
+    }
+
+    def "refreshLastRequest is written by the flush thread by default"() {
+        setup:
+            JdbcSessionRegistry registry = new JdbcSessionRegistry(dataSource: dataSource, batchSize: 1)
+            registry.afterPropertiesSet()
+            registry.registerNewSession("1", "rob")
+            jdbcTemplate.update("update session_registry set last_request = ?", new Date(0))
+            Thread requestThread = Thread.currentThread()
+            List<Thread> flushThreads = Collections.synchronizedList([])
+            JdbcTemplate template = new JdbcTemplate(dataSource) {
+                int[] batchUpdate(String sql, org.springframework.jdbc.core.BatchPreparedStatementSetter pss) {
+                    flushThreads.add(Thread.currentThread())
+                    super.batchUpdate(sql, pss)
+                }
+            }
+            registry.jdbcTemplate = template
+        when:
+            registry.refreshLastRequest("1")
+            long deadline = System.currentTimeMillis() + 5000
+            while(lastRequest("1") == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10)
+            }
+        then:
+            lastRequest("1") > 0
+            flushThreads.size() == 1
+            !flushThreads[0].is(requestThread)
+            flushThreads[0].daemon
+        cleanup:
+            registry.destroy()
+    }
+
+    def "destroy writes pending refreshes"() {
+        setup:
+            node1.registerNewSession("1", "rob")
+            jdbcTemplate.update("update session_registry set last_request = ?", new Date(0))
+            node1.refreshLastRequest("1")
+        when:
+            node1.destroy()
+        then:
+            lastRequest("1") > 0
+    }
+
+    def "cache evicts the oldest entries and admits new entries when full"() {
+        setup:
+            node2.setCacheTtl(1, TimeUnit.HOURS)
+            node2.maxCacheSize = 4
+            (1..5).each {
+                node1.registerNewSession(it.toString(), "rob")
+                node2.getSessionInformation(it.toString())
+                Thread.sleep(2)
+            }
+            jdbcTemplate.update("delete from session_registry")
+        expect: "the oldest entries were evicted down to three quarters of maxCacheSize"
+            node2.getSessionInformation("3") != null
+            node2.getSessionInformation("4") != null
+            node2.getSessionInformation("5") != null
+            node2.getSessionInformation("1") == null
+            node2.getSessionInformation("2") == null
+    }
+
+    def "reads are cached for cacheTtl"() {
+        setup:
+            node2.setCacheTtl(1, TimeUnit.HOURS)
+            node1.registerNewSession("1", "rob")
+            SessionInformation session = node2.getSessionInformation("1")
+        when: "another node removes the session"
+            node1.removeSessionInformation("1")
+        then: "the cached value is used"
+            node2.getSessionInformation("1").is(session)
+        when: "this node removes the session"
+            node2.removeSessionInformation("1")
+        then:
+            node2.getSessionInformation("1") == null
+    }
+
+    def "createTableOnStartup"() {
+        when:
+            jdbcTemplate.queryForList("select * from session_registry")
+        then:
+            notThrown(Exception)
+    }
+
+    def "invalid arguments"() {
+        when:
+            node1.registerNewSession("1", null)
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            node1.refreshLastRequest("")
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            node1.batchSize = 0
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            node1.setCacheTtl(-1, TimeUnit.SECONDS)
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    private long lastRequest(String sessionId) {
+        jdbcTemplate.queryForObject("select last_request from session_registry where session_id = ?", Date, sessionId).time
+    }
+
+    private JdbcSessionRegistry registry(boolean createTableOnStartup) {
+        JdbcSessionRegistry registry = new JdbcSessionRegistry()
+        registry.dataSource = dataSource
+        registry.createTableOnStartup = createTableOnStartup
+        registry.setCacheTtl(0, TimeUnit.SECONDS)
+        registry.setFlushInterval(1, TimeUnit.HOURS)
+        registry.flushExecutor = { Runnable task -> task.run() } as Executor
+        registry.afterPropertiesSet()
+        registry
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.core.session
+
+import java.util.concurrent.TimeUnit
+
+import spock.lang.Specification
+
+/**
+ * @author agent
+ *
+ */
+class RefreshThrottlingSessionRegistryTests extends Specification {
+    SessionRegistry delegate = Mock()
+    RefreshThrottlingSessionRegistry registry = new RefreshThrottlingSessionRegistry(delegate, 1, TimeUnit.HOURS)
+    SessionInformation info = new SessionInformation("rob", "1", new Date())
+
+    def "invalid arguments"() {
+        when:
+            new RefreshThrottlingSessionRegistry(null, 1, TimeUnit.HOURS)
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            new RefreshThrottlingSessionRegistry(delegate, 0, TimeUnit.HOURS)
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            new RefreshThrottlingSessionRegistry(delegate, 1, null)
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    def "refreshLastRequest within refresh interval is not delegated"() {
+        setup:
+            delegate.getSessionInformation("1") >> info
+        when:
+            registry.refreshLastRequest("1")
+        then:
+            1 * delegate.refreshLastRequest("1")
+        when:
+            registry.refreshLastRequest("1")
+            registry.refreshLastRequest("1")
+        then:
+            0 * delegate.refreshLastRequest(_)
+    }
+
+    def "refreshLastRequest after refresh interval is delegated"() {
+        setup:
+            registry = new RefreshThrottlingSessionRegistry(delegate, 1, TimeUnit.NANOSECONDS)
+            delegate.getSessionInformation("1") >> info
+        when:
+            registry.refreshLastRequest("1")
+            Thread.sleep(1)
+            registry.refreshLastRequest("1")
+        then:
+            2 * delegate.refreshLastRequest("1")
+    }
+
+    def "refreshLastRequest for unknown session is always delegated"() {
+        when:
+            registry.refreshLastRequest("unknown")
+            registry.refreshLastRequest("unknown")
+        then:
+            2 * delegate.refreshLastRequest("unknown")
+            registry.lastRefreshes.isEmpty()
+    }
+
+    def "removed session is forgotten"() {
+        setup:
+            delegate.getSessionInformation("1") >> info
+            registry.refreshLastRequest("1")
+        when:
+            registry.onApplicationEvent(new StripedSessionRegistryTests.TestSessionDestroyedEvent("1"))
+        then:
+            1 * delegate.removeSessionInformation("1")
+            registry.lastRefreshes.isEmpty()
+        when:
+            registry.refreshLastRequest("1")
+        then:
+            1 * delegate.refreshLastRequest("1")
+    }
+
+    def "session removed from delegate is forgotten after refresh interval"() {
+        setup:
+            registry = new RefreshThrottlingSessionRegistry(delegate, 1, TimeUnit.NANOSECONDS)
+            delegate.getSessionInformation("1") >>> [info, null]
+            registry.refreshLastRequest("1")
+        when:
+            Thread.sleep(1)
+            registry.refreshLastRequest("1")
+        then:
+            registry.lastRefreshes.isEmpty()
+    }
+
+    def "other methods are delegated"() {
+        when:
+            registry.registerNewSession("1", "rob")
+            List<SessionInformation> sessions = registry.getAllSessions("rob", true)
+            List<Object> principals = registry.allPrincipals
+        then:
+            1 * delegate.registerNewSession("1", "rob")
+            1 * delegate.getAllSessions("rob", true) >> [info]
+            1 * delegate.getAllPrincipals() >> ["rob"]
+            sessions == [info]
+            principals == ["rob"]
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.core.session
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+import spock.lang.Specification
+
+/**
+ * @author agent
+ *
+ */
+class StripedSessionRegistryTests extends Specification {
+    StripedSessionRegistry registry = new StripedSessionRegistry()
+
+    def "registerNewSession and removeSessionInformation"() {
+        when:
+            registry.registerNewSession("1", "rob")
+            registry.registerNewSession("2", "rob")
+            registry.registerNewSession("3", "luke")
+        then:
+            registry.allPrincipals as Set == ["rob", "luke"] as Set
+            registry.getAllSessions("rob", false)*.sessionId == ["1", "2"]
+            registry.getSessionInformation("3").principal == "luke"
+        when:
+            registry.removeSessionInformation("1")
+            registry.onApplicationEvent(new TestSessionDestroyedEvent("3"))
+        then:
+            registry.getSessionInformation("1") == null
+            registry.getAllSessions("rob", false)*.sessionId == ["2"]
+            registry.getAllSessions("luke", false).isEmpty()
+            registry.allPrincipals == ["rob"]
+        when:
+            registry.removeSessionInformation("2")
+        then:
+            registry.allPrincipals.isEmpty()
+    }
+
+    def "registerNewSession replaces existing session"() {
+        when:
+            registry.registerNewSession("1", "rob")
+            registry.registerNewSession("1", "luke")
+        then:
+            registry.getAllSessions("rob", true).isEmpty()
+            registry.getAllSessions("luke", true)*.sessionId == ["1"]
+            registry.allPrincipals == ["luke"]
+    }
+
+    def "getAllSessions includeExpiredSessions"() {
+        setup:
+            registry.registerNewSession("1", "rob")
+            registry.registerNewSession("2", "rob")
+        when:
+            registry.getSessionInformation("1").expireNow()
+        then:
+            registry.getAllSessions("rob", false)*.sessionId == ["2"]
+            registry.getAllSessions("rob", true)*.sessionId == ["1", "2"]
+    }
+
+    def "refreshLastRequest honors lastRequestGranularity"() {
+        setup:
+            registry.registerNewSession("1", "rob")
+            SessionInformation info = registry.getSessionInformation("1")
+            info.lastRequest = System.currentTimeMillis() - 5000L
+            Date lastRequest = info.getLastRequest()
+        when:
+            registry.setLastRequestGranularity(10, TimeUnit.SECONDS)
+            registry.refreshLastRequest("1")
+        then: "within the granularity"
+            info.getLastRequest() == lastRequest
+        when:
+            registry.setLastRequestGranularity(1000, TimeUnit.MILLISECONDS)
+            registry.refreshLastRequest("1")
+        then: "older than the granularity"
+            info.getLastRequest().after(lastRequest)
+    }
+
+    def "invalid arguments"() {
+        when:
+            new StripedSessionRegistry(0)
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            registry.setLastRequestGranularity(-1, TimeUnit.SECONDS)
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            registry.setLastRequestGranularity(1, null)
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            registry.registerNewSession("1", null)
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            registry.refreshLastRequest("")
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    def "concurrent register and remove for the same principal"() {
+        setup:
+            ExecutorService executor = Executors.newFixedThreadPool(8)
+            List<Callable<Object>> tasks = (1..8).collect { int thread ->
+                { ->
+                    (1..500).each { int i ->
+                        String sessionId = "$thread-$i".toString()
+                        registry.registerNewSession(sessionId, "rob")
+                        if(i % 2 == 0) {
+                            registry.removeSessionInformation(sessionId)
+                        }
+                    }
+                } as Callable<Object>
+            }
+        when:
+            executor.invokeAll(tasks)*.get()
+        then:
+            registry.getAllSessions("rob", true).size() == 8 * 250
+        cleanup:
+            executor.shutdown()
+    }
+
+    def "concurrent register and remove for the same session id"() {
+        setup:
+            ExecutorService executor = Executors.newFixedThreadPool(8)
+            List<Callable<Object>> tasks = (1..8).collect { int thread ->
+                { ->
+                    (1..500).each { int i ->
+                        String sessionId = "session-$i".toString()
+                        if(thread % 2 == 0) {
+                            registry.registerNewSession(sessionId, "rob")
+                        } else {
+                            registry.removeSessionInformation(sessionId)
+                        }
+                    }
+                } as Callable<Object>
+            }
+        when:
+            executor.invokeAll(tasks)*.get()
+        then: 'every session id of the principal has a session and every session is known by its principal'
+            List<String> principalSessionIds = registry.principals.get("rob") as List ?: []
+            principalSessionIds.every { registry.getSessionInformation(it) != null }
+            registry.sessionIds.keySet().every { principalSessionIds.contains(it) }
+        cleanup:
+            executor.shutdown()
+    }
+
+    static class TestSessionDestroyedEvent extends SessionDestroyedEvent {
+        TestSessionDestroyedEvent(String id) {
+            super(id)
+        }
+
+        String getId() {
+            source
+        }
+
+        List<org.springframework.security.core.context.SecurityContext> getSecurityContexts() {
+            []
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.core.userdetails.cache
+
+import java.util.concurrent.TimeUnit
+
+import org.springframework.security.core.authority.AuthorityUtils
+import org.springframework.security.core.userdetails.User
+
+import spock.lang.Specification
+
+/**
+ *
+ * @author agent
+ */
+class ConcurrentMapUserCacheTests extends Specification {
+    ConcurrentMapUserCache cache = new ConcurrentMapUserCache(2, 1, TimeUnit.HOURS)
+
+    def "putUserInCache caches user"() {
+        setup:
+            User user = user("user")
+        when:
+            cache.putUserInCache(user)
+        then:
+            cache.getUserFromCache("user").is(user)
+            !cache.isUnknownUsername("user")
+            cache.getUserFromCache("other") == null
+    }
+
+    def "putUnknownUsername caches unknown username"() {
+        when:
+            cache.putUnknownUsername("unknown")
+        then:
+            cache.isUnknownUsername("unknown")
+            cache.getUserFromCache("unknown") == null
+            !cache.isUnknownUsername("other")
+    }
+
+    def "removeUserFromCache removes user and unknown username"() {
+        setup:
+            cache.putUserInCache(user("user"))
+            cache.putUnknownUsername("unknown")
+        when:
+            cache.removeUserFromCache("user")
+            cache.removeUserFromCache("unknown")
+        then:
+            cache.getUserFromCache("user") == null
+            !cache.isUnknownUsername("unknown")
+    }
+
+    def "entries expire after ttl"() {
+        setup:
+            cache = new ConcurrentMapUserCache(2, 1, TimeUnit.MILLISECONDS)
+            cache.putUserInCache(user("user"))
+            cache.putUnknownUsername("unknown")
+        when:
+            Thread.sleep(10)
+        then:
+            cache.getUserFromCache("user") == null
+            !cache.isUnknownUsername("unknown")
+    }
+
+    def "maxSize bounds the cache"() {
+        setup:
+            cache.putUserInCache(user("a"))
+            cache.putUserInCache(user("b"))
+        when:
+            cache.putUserInCache(user("c"))
+            cache.putUserInCache(user("a"))
+        then:
+            cache.getUserFromCache("a") != null
+            cache.getUserFromCache("b") != null
+            cache.getUserFromCache("c") == null
+    }
+
+    def "invalid arguments are rejected"() {
+        when:
+            new ConcurrentMapUserCache(maxSize, ttl, unit)
+        then:
+            thrown(IllegalArgumentException)
+        where:
+            maxSize | ttl | unit
+            0       | 1   | TimeUnit.SECONDS
+            1       | 0   | TimeUnit.SECONDS
+            1       | 1   | null
+    }
+
+    User user(String username) {
+        new User(username, "password", AuthorityUtils.createAuthorityList("ROLE_USER"))
+    }
+}
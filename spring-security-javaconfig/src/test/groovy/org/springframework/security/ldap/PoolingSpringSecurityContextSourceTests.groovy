@@ -0,0 +1,225 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.ldap
+
+import java.util.concurrent.TimeUnit
+
+import javax.naming.directory.DirContext
+
+import org.springframework.context.support.GenericApplicationContext
+import org.springframework.security.ldap.server.ApacheDSContainer
+
+import spock.lang.Shared
+import spock.lang.Specification
+
+/**
+ *
+ * @author agent
+ */
+class PoolingSpringSecurityContextSourceTests extends Specification {
+    @Shared ApacheDSContainer server
+    PoolingSpringSecurityContextSource contextSource
+
+    def setupSpec() {
+        server = new ApacheDSContainer("dc=springframework,dc=org", "classpath:/users.ldif")
+        server.port = 33401
+        server.applicationContext = new GenericApplicationContext()
+        server.afterPropertiesSet()
+    }
+
+    def cleanupSpec() {
+        server.destroy()
+    }
+
+    def setup() {
+        contextSource = new PoolingSpringSecurityContextSource("ldap://127.0.0.1:33401/dc=springframework,dc=org")
+        contextSource.userDn = "uid=admin,ou=system"
+        contextSource.password = "secret"
+        contextSource.afterPropertiesSet()
+    }
+
+    def cleanup() {
+        contextSource.destroy()
+    }
+
+    def "jndi pooling is disabled"() {
+        expect:
+            !contextSource.pooled
+    }
+
+    def "read only context is given back to the pool on close"() {
+        when:
+            DirContext context = contextSource.readOnlyContext
+        then:
+            contextSource.numActive == 1
+            contextSource.numIdle == 0
+            context.getAttributes("uid=user,ou=people").get("uid").get() == "user"
+        when:
+            context.close()
+        then:
+            contextSource.numActive == 0
+            contextSource.numIdle == 1
+    }
+
+    def "read only context is reused"() {
+        when:
+            search()
+            search()
+            search()
+        then:
+            contextSource.numIdle == 1
+    }
+
+    def "close twice gives back once"() {
+        setup:
+            DirContext context = contextSource.readOnlyContext
+        when:
+            context.close()
+            context.close()
+        then:
+            contextSource.numActive == 0
+            contextSource.numIdle == 1
+    }
+
+    def "closed context cannot be used"() {
+        setup:
+            DirContext context = contextSource.readOnlyContext
+            context.close()
+        when:
+            context.getAttributes("uid=user,ou=people")
+        then:
+            thrown(IllegalStateException)
+    }
+
+    def "concurrent contexts are pooled up to maxIdle"() {
+        setup:
+            contextSource.maxIdle = 2
+            List<DirContext> contexts = (1..3).collect { contextSource.readOnlyContext }
+        when:
+            contexts*.close()
+        then:
+            contextSource.numActive == 0
+            contextSource.numIdle == 2
+    }
+
+    def "maxIdle 0 disables pooling"() {
+        setup:
+            contextSource.maxIdle = 0
+        when:
+            search()
+        then:
+            contextSource.numIdle == 0
+    }
+
+    def "context idle longer than maxIdleTime is closed"() {
+        setup:
+            contextSource.setMaxIdleTime(1, TimeUnit.MILLISECONDS)
+            DirContext first = contextSource.readOnlyContext
+            DirContext second = contextSource.readOnlyContext
+            first.close()
+            second.close()
+            Thread.sleep(10)
+        when:
+            search()
+        then: 'both idle contexts were closed and a new one was created'
+            contextSource.numIdle == 1
+    }
+
+    def "minIdle contexts are kept after maxIdleTime"() {
+        setup:
+            contextSource.setMaxIdleTime(1, TimeUnit.MILLISECONDS)
+            contextSource.minIdle = 1
+            DirContext first = contextSource.readOnlyContext
+            DirContext second = contextSource.readOnlyContext
+            first.close()
+            second.close()
+            Thread.sleep(10)
+        when:
+            DirContext context = contextSource.readOnlyContext
+        then: 'the first idle context is closed and the last one is kept'
+            contextSource.numIdle == 0
+            context.getAttributes("uid=user,ou=people").get("uid").get() == "user"
+        cleanup:
+            context?.close()
+    }
+
+    def "validateOnBorrow validates idle contexts"() {
+        setup:
+            contextSource.validateOnBorrow = true
+        when:
+            search()
+            search()
+        then:
+            contextSource.numIdle == 1
+    }
+
+    def "context with changed environment is not pooled"() {
+        setup:
+            DirContext context = contextSource.readOnlyContext
+        when:
+            context.addToEnvironment("java.naming.ldap.derefAliases", "never")
+            context.close()
+        then:
+            contextSource.numIdle == 0
+    }
+
+    def "user binds are not pooled"() {
+        when:
+            DirContext context = contextSource.getContext("uid=user,ou=people,dc=springframework,dc=org", "password")
+            boolean jndiPooled = context.environment.containsKey("com.sun.jndi.ldap.connect.pool")
+            context.close()
+        then:
+            !jndiPooled
+            contextSource.numActive == 0
+            contextSource.numIdle == 0
+    }
+
+    def "destroy closes idle contexts and stops pooling"() {
+        setup:
+            search()
+        when:
+            contextSource.destroy()
+        then:
+            contextSource.numIdle == 0
+        when:
+            search()
+        then:
+            contextSource.numIdle == 0
+    }
+
+    def "maxIdle negative is not allowed"() {
+        when:
+            contextSource.maxIdle = -1
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    def "maxIdleTime 0 is not allowed"() {
+        when:
+            contextSource.setMaxIdleTime(0, TimeUnit.SECONDS)
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    private void search() {
+        DirContext context = contextSource.readOnlyContext
+        try {
+            context.getAttributes("uid=user,ou=people")
+        } finally {
+            context.close()
+        }
+    }
+}
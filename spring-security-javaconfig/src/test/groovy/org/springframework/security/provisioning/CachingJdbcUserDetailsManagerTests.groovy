@@ -0,0 +1,197 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.provisioning
+
+import java.util.concurrent.TimeUnit
+
+import org.springframework.dao.DataIntegrityViolationException
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType
+import org.springframework.security.core.authority.AuthorityUtils
+import org.springframework.security.core.userdetails.User
+import org.springframework.security.core.userdetails.UserDetails
+import org.springframework.security.core.userdetails.UsernameNotFoundException
+import org.springframework.security.core.userdetails.cache.ConcurrentMapUserCache
+
+import spock.lang.Specification
+
+/**
+ *
+ * @author agent
+ */
+class CachingJdbcUserDetailsManagerTests extends Specification {
+    EmbeddedDatabase dataSource
+    JdbcTemplate jdbcTemplate
+    CachingJdbcUserDetailsManager manager = new CachingJdbcUserDetailsManager()
+
+    def setup() {
+        dataSource = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.HSQL)
+            .addScript("classpath:org/springframework/security/core/userdetails/jdbc/users.ddl")
+            .build()
+        jdbcTemplate = new JdbcTemplate(dataSource)
+        manager.dataSource = dataSource
+        manager.afterPropertiesSet()
+        manager.createUser(new User("user", "password", AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN")))
+    }
+
+    def cleanup() {
+        dataSource.shutdown()
+    }
+
+    def "loadUserByUsername without cache reads database"() {
+        when:
+            jdbcTemplate.update("update users set password = 'changed' where username = 'user'")
+        then:
+            manager.loadUserByUsername("user").password == "changed"
+    }
+
+    def "loadUserByUsername reads through cache"() {
+        setup:
+            manager.userCache = new ConcurrentMapUserCache(10, 1, TimeUnit.HOURS)
+            manager.loadUserByUsername("user")
+        when:
+            jdbcTemplate.update("update users set password = 'changed' where username = 'user'")
+        then:
+            manager.loadUserByUsername("user").password == "password"
+    }
+
+    def "cached user credentials are not erased"() {
+        setup:
+            manager.userCache = new ConcurrentMapUserCache(10, 1, TimeUnit.HOURS)
+            manager.loadUserByUsername("user").eraseCredentials()
+        when:
+            UserDetails user = manager.loadUserByUsername("user")
+        then:
+            user.password == "password"
+        when:
+            user.eraseCredentials()
+        then:
+            manager.loadUserByUsername("user").password == "password"
+    }
+
+    def "unknown username is cached"() {
+        setup:
+            manager.userCache = new ConcurrentMapUserCache(10, 1, TimeUnit.HOURS)
+        when:
+            manager.loadUserByUsername("new")
+        then:
+            thrown(UsernameNotFoundException)
+        when:
+            jdbcTemplate.update("insert into users values ('new','password',true)")
+            jdbcTemplate.update("insert into authorities values ('new','ROLE_USER')")
+            manager.loadUserByUsername("new")
+        then:
+            thrown(UsernameNotFoundException)
+    }
+
+    def "createUser evicts unknown username"() {
+        setup:
+            manager.userCache = new ConcurrentMapUserCache(10, 1, TimeUnit.HOURS)
+        when:
+            manager.loadUserByUsername("new")
+        then:
+            thrown(UsernameNotFoundException)
+        when:
+            manager.createUser(new User("new", "password", AuthorityUtils.createAuthorityList("ROLE_USER")))
+        then:
+            manager.loadUserByUsername("new").username == "new"
+    }
+
+    def "updateUser evicts user"() {
+        setup:
+            manager.userCache = new ConcurrentMapUserCache(10, 1, TimeUnit.HOURS)
+            manager.loadUserByUsername("user")
+        when:
+            manager.updateUser(new User("user", "changed", AuthorityUtils.createAuthorityList("ROLE_USER")))
+            UserDetails user = manager.loadUserByUsername("user")
+        then:
+            user.password == "changed"
+            AuthorityUtils.authorityListToSet(user.authorities) == ["ROLE_USER"] as Set
+    }
+
+    def "usersWithAuthoritiesByUsernameQuery loads user and authorities"() {
+        setup:
+            manager.usersWithAuthoritiesByUsernameQuery = CachingJdbcUserDetailsManager.DEF_USERS_WITH_AUTHORITIES_BY_USERNAME_QUERY
+            manager.rolePrefix = "PREFIX_"
+        when:
+            UserDetails user = manager.loadUserByUsername("user")
+        then:
+            user.username == "user"
+            user.password == "password"
+            user.enabled
+            AuthorityUtils.authorityListToSet(user.authorities) == ["PREFIX_ROLE_USER", "PREFIX_ROLE_ADMIN"] as Set
+    }
+
+    def "usersWithAuthoritiesByUsernameQuery unknown user"() {
+        setup:
+            manager.usersWithAuthoritiesByUsernameQuery = CachingJdbcUserDetailsManager.DEF_USERS_WITH_AUTHORITIES_BY_USERNAME_QUERY
+        when:
+            manager.loadUserByUsername("unknown")
+        then:
+            thrown(UsernameNotFoundException)
+    }
+
+    def "usersWithAuthoritiesByUsernameQuery user without authorities"() {
+        setup:
+            manager.usersWithAuthoritiesByUsernameQuery = CachingJdbcUserDetailsManager.DEF_USERS_WITH_AUTHORITIES_BY_USERNAME_QUERY
+            jdbcTemplate.update("insert into users values ('noauthorities','password',true)")
+        when:
+            manager.loadUserByUsername("noauthorities")
+        then:
+            thrown(UsernameNotFoundException)
+    }
+
+    def "createUsers writes users and authorities in batches"() {
+        setup:
+            manager.batchSize = 3
+            List<User> users = (1..10).collect { new User("user" + it, "password", AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_" + it)) }
+        when:
+            int created = manager.createUsers(users.iterator())
+        then:
+            created == 10
+            jdbcTemplate.queryForInt("select count(*) from users") == 11
+            jdbcTemplate.queryForInt("select count(*) from authorities") == 22
+            AuthorityUtils.authorityListToSet(manager.loadUserByUsername("user7").authorities) == ["ROLE_USER", "ROLE_7"] as Set
+    }
+
+    def "createUsers rolls back on failure"() {
+        setup:
+            manager.batchSize = 2
+            List<User> users = ["a", "b", "c", "user"].collect { new User(it, "password", AuthorityUtils.createAuthorityList("ROLE_USER")) }
+        when:
+            manager.createUsers(users.iterator())
+        then:
+            thrown(DataIntegrityViolationException)
+            jdbcTemplate.queryForInt("select count(*) from users") == 1
+            jdbcTemplate.queryForInt("select count(*) from authorities") == 2
+    }
+
+    def "createUsers evicts unknown usernames"() {
+        setup:
+            manager.userCache = new ConcurrentMapUserCache(10, 1, TimeUnit.HOURS)
+        when:
+            manager.loadUserByUsername("new")
+        then:
+            thrown(UsernameNotFoundException)
+        when:
+            manager.createUsers([new User("new", "password", AuthorityUtils.createAuthorityList("ROLE_USER"))].iterator())
+        then:
+            manager.loadUserByUsername("new").username == "new"
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.expression
+
+import static org.springframework.security.access.AccessDecisionVoter.*
+
+import java.util.concurrent.TimeUnit
+
+import org.springframework.expression.spel.standard.SpelExpressionParser
+import org.springframework.mock.web.MockFilterChain
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.security.access.AccessDecisionVoter
+import org.springframework.security.access.ConfigAttribute
+import org.springframework.security.access.SecurityConfig
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.Authentication
+import org.springframework.security.core.authority.AuthorityUtils
+import org.springframework.security.web.FilterInvocation
+
+import spock.lang.Specification
+
+/**
+ * @author agent
+ *
+ */
+class CachingWebExpressionVoterTests extends Specification {
+    AccessDecisionVoter<FilterInvocation> delegate = Mock()
+    WebExpressionDecisionCache decisionCache = new WebExpressionDecisionCache(100, 1, TimeUnit.MINUTES)
+    CachingWebExpressionVoter voter = new CachingWebExpressionVoter(delegate, decisionCache)
+    FilterInvocation fi = new FilterInvocation(new MockHttpServletRequest(), new MockHttpServletResponse(), new MockFilterChain())
+
+    def "votes are cached by attribute and authorities"() {
+        setup:
+            ConfigAttribute attribute = expression("hasRole('ROLE_USER')")
+            ConfigAttribute other = expression("hasRole('ROLE_USER')")
+        when:
+            int first = voter.vote(user("ROLE_USER","ROLE_OTHER"), fi, [attribute])
+            int second = voter.vote(user("ROLE_OTHER","ROLE_USER"), fi, [attribute])
+        then:
+            1 * delegate.supports(attribute) >> true
+            1 * delegate.vote(_, fi, [attribute]) >> ACCESS_GRANTED
+            first == ACCESS_GRANTED
+            second == ACCESS_GRANTED
+            decisionCache.hitCount == 1
+            decisionCache.missCount == 1
+        when: "different authorities"
+            int third = voter.vote(user("ROLE_ADMIN"), fi, [attribute])
+        then:
+            1 * delegate.vote(_, fi, [attribute]) >> ACCESS_DENIED
+            third == ACCESS_DENIED
+            decisionCache.missCount == 2
+        when: "different attribute with the same expression"
+            voter.vote(user("ROLE_USER","ROLE_OTHER"), fi, [other])
+        then:
+            1 * delegate.supports(other) >> true
+            1 * delegate.vote(_, fi, [other]) >> ACCESS_GRANTED
+    }
+
+    def "expressions that do not only depend on the authorities are not cached"() {
+        setup:
+            ConfigAttribute attribute = expression("hasIpAddress('127.0.0.1')")
+        when:
+            voter.vote(user("ROLE_USER"), fi, [attribute])
+            voter.vote(user("ROLE_USER"), fi, [attribute])
+        then:
+            1 * delegate.supports(attribute) >> true
+            2 * delegate.vote(_, fi, [attribute]) >> ACCESS_GRANTED
+            decisionCache.size() == 0
+            decisionCache.missCount == 0
+    }
+
+    def "unsupported attributes are not cached"() {
+        setup:
+            List<ConfigAttribute> attributes = SecurityConfig.createList("permitAll")
+        when:
+            voter.vote(user("ROLE_USER"), fi, attributes)
+            voter.vote(user("ROLE_USER"), fi, attributes)
+        then:
+            1 * delegate.supports(attributes[0]) >> false
+            2 * delegate.vote(_, fi, attributes) >> ACCESS_ABSTAIN
+            decisionCache.size() == 0
+    }
+
+    def "supports delegates"() {
+        setup:
+            ConfigAttribute attribute = expression("permitAll")
+        when:
+            boolean supportsAttribute = voter.supports(attribute)
+            boolean supportsClass = voter.supports(FilterInvocation)
+        then:
+            1 * delegate.supports(attribute) >> true
+            1 * delegate.supports(FilterInvocation) >> true
+            supportsAttribute
+            supportsClass
+    }
+
+    def "constructor null arguments"() {
+        when:
+            new CachingWebExpressionVoter(null, decisionCache)
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            new CachingWebExpressionVoter(delegate, null)
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    private static ConfigAttribute expression(String expression) {
+        CompiledWebExpressionConfigAttribute.parse(expression, new SpelExpressionParser())
+    }
+
+    private static Authentication user(String... authorities) {
+        new UsernamePasswordAuthenticationToken("user", "password", AuthorityUtils.createAuthorityList(authorities))
+    }
+}
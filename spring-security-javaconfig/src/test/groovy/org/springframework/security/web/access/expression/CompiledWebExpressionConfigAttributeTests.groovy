@@ -0,0 +1,112 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.expression
+
+import org.springframework.expression.spel.standard.SpelExpressionParser
+import org.springframework.mock.web.MockFilterChain
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.security.access.expression.SecurityExpressionHandler
+import org.springframework.security.authentication.AnonymousAuthenticationToken
+import org.springframework.security.authentication.RememberMeAuthenticationToken
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.Authentication
+import org.springframework.security.core.authority.AuthorityUtils
+import org.springframework.security.web.FilterInvocation
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * @author agent
+ *
+ */
+class CompiledWebExpressionConfigAttributeTests extends Specification {
+    static final Map<String,Authentication> AUTHENTICATIONS = [
+        user : new UsernamePasswordAuthenticationToken("user", "password", AuthorityUtils.createAuthorityList("ROLE_USER")),
+        admin : new UsernamePasswordAuthenticationToken("admin", "password", AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN")),
+        anonymous : new AnonymousAuthenticationToken("key", "anonymous", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")),
+        rememberMe : new RememberMeAuthenticationToken("key", "user", AuthorityUtils.createAuthorityList("ROLE_USER"))
+    ]
+
+    SecurityExpressionHandler<FilterInvocation> expressionHandler = new DefaultWebSecurityExpressionHandler()
+
+    @Unroll
+    def "compile('#expression') is evaluated the same as SpEL"() {
+        setup:
+            CompiledWebExpressionConfigAttribute compiled = CompiledWebExpressionConfigAttribute.compile(expression, expressionHandler.expressionParser)
+            CompiledWebExpressionConfigAttribute parsed = CompiledWebExpressionConfigAttribute.parse(expression, expressionHandler.expressionParser)
+        expect:
+            compiled.compiled
+            !parsed.compiled
+            AUTHENTICATIONS.each { name, authentication ->
+                FilterInvocation fi = filterInvocation()
+                assert compiled.evaluate(authentication, fi, expressionHandler) == parsed.evaluate(authentication, fi, expressionHandler), "$expression $name"
+            }
+        where:
+            expression << ["permitAll", "denyAll", "anonymous", "authenticated", "rememberMe", "fullyAuthenticated",
+                "isAuthenticated()", "!anonymous", "!fullyAuthenticated", "hasRole('ROLE_ADMIN')", "hasAuthority('ROLE_USER')",
+                "!hasRole('ROLE_ADMIN')", "hasAnyAuthority('ROLE_ADMIN','ROLE_ANONYMOUS')", "hasAnyRole('ROLE_X', 'ROLE_USER')",
+                "hasIpAddress('127.0.0.1')", "hasIpAddress('192.168.1.0/24')", "!hasIpAddress('127.0.0.1')"]
+    }
+
+    @Unroll
+    def "compile('#expression') uses SpEL"() {
+        when:
+            CompiledWebExpressionConfigAttribute compiled = CompiledWebExpressionConfigAttribute.compile(expression, expressionHandler.expressionParser)
+        then:
+            !compiled.compiled
+            compiled.evaluate(AUTHENTICATIONS.admin, filterInvocation(), expressionHandler) == expected
+        where:
+            expression                                            | expected
+            "hasRole('ROLE_USER') and hasRole('ROLE_ADMIN')"      | true
+            "principal == 'admin'"                                | true
+            "hasRole('ROLE_''X')"                                 | false
+            "!!hasRole('ROLE_USER')"                              | true
+    }
+
+    def "compile does not create EvaluationContext"() {
+        setup:
+            SecurityExpressionHandler<FilterInvocation> expressionHandler = Mock()
+            CompiledWebExpressionConfigAttribute compiled = CompiledWebExpressionConfigAttribute.compile("hasRole('ROLE_USER')", new SpelExpressionParser())
+        when:
+            boolean result = compiled.evaluate(AUTHENTICATIONS.user, filterInvocation(), expressionHandler)
+        then:
+            result
+            0 * expressionHandler._
+    }
+
+    def "parse invalid expression"() {
+        when:
+            CompiledWebExpressionConfigAttribute.parse("hasRole(", new SpelExpressionParser())
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    def "getAttribute is null and toString is the expression"() {
+        when:
+            CompiledWebExpressionConfigAttribute compiled = CompiledWebExpressionConfigAttribute.compile("permitAll", new SpelExpressionParser())
+        then:
+            compiled.attribute == null
+            compiled.toString() == "permitAll"
+    }
+
+    private static FilterInvocation filterInvocation() {
+        MockHttpServletRequest request = new MockHttpServletRequest()
+        request.remoteAddr = "127.0.0.1"
+        new FilterInvocation(request, new MockHttpServletResponse(), new MockFilterChain())
+    }
+}
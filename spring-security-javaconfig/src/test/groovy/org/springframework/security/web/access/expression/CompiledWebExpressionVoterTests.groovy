@@ -0,0 +1,67 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.expression
+
+import static org.springframework.security.access.AccessDecisionVoter.*
+
+import org.springframework.expression.spel.standard.SpelExpressionParser
+import org.springframework.mock.web.MockFilterChain
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.security.access.SecurityConfig
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.Authentication
+import org.springframework.security.core.authority.AuthorityUtils
+import org.springframework.security.web.FilterInvocation
+
+import spock.lang.Specification
+
+/**
+ * @author agent
+ *
+ */
+class CompiledWebExpressionVoterTests extends Specification {
+    CompiledWebExpressionVoter voter = new CompiledWebExpressionVoter()
+    Authentication user = new UsernamePasswordAuthenticationToken("user", "password", AuthorityUtils.createAuthorityList("ROLE_USER"))
+    FilterInvocation fi = new FilterInvocation(new MockHttpServletRequest(), new MockHttpServletResponse(), new MockFilterChain())
+
+    def "vote"() {
+        expect:
+            voter.vote(user, fi, [attribute("hasRole('ROLE_USER')")]) == ACCESS_GRANTED
+            voter.vote(user, fi, [attribute("hasRole('ROLE_ADMIN')")]) == ACCESS_DENIED
+            voter.vote(user, fi, [attribute("principal == 'user'")]) == ACCESS_GRANTED
+            voter.vote(user, fi, SecurityConfig.createList("ROLE_USER")) == ACCESS_ABSTAIN
+    }
+
+    def "supports"() {
+        expect:
+            voter.supports(attribute("permitAll"))
+            !voter.supports(new SecurityConfig("ROLE_USER"))
+            voter.supports(FilterInvocation)
+            !voter.supports(Object)
+    }
+
+    def "setExpressionHandler null"() {
+        when:
+            voter.expressionHandler = null
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    private static CompiledWebExpressionConfigAttribute attribute(String expression) {
+        CompiledWebExpressionConfigAttribute.compile(expression, new SpelExpressionParser())
+    }
+}
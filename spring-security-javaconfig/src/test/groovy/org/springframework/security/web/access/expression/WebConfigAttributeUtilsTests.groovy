@@ -0,0 +1,100 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.expression
+
+import org.springframework.expression.spel.standard.SpelExpressionParser
+import org.springframework.security.access.ConfigAttribute
+import org.springframework.security.access.SecurityConfig
+import org.springframework.security.web.access.vote.GrantedAuthorityIndex
+import org.springframework.security.web.access.vote.RoleBitSetConfigAttribute
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * @author agent
+ *
+ */
+class WebConfigAttributeUtilsTests extends Specification {
+    static SpelExpressionParser parser = new SpelExpressionParser()
+
+    @Unroll
+    def "isAuthenticationOnly('#expression') == #expected"() {
+        expect:
+            WebConfigAttributeUtils.isAuthenticationOnly(new WebExpressionConfigAttribute(parser.parseExpression(expression))) == expected
+            WebConfigAttributeUtils.isAuthenticationOnly(CompiledWebExpressionConfigAttribute.parse(expression, parser)) == expected
+            WebConfigAttributeUtils.isAuthenticationOnly(CompiledWebExpressionConfigAttribute.compile(expression, parser)) == expected
+        where:
+            expression                                            | expected
+            "permitAll"                                           | true
+            "authenticated"                                       | true
+            "hasRole('ROLE_USER')"                                | true
+            "hasRole('ROLE_USER') or hasAnyAuthority('A','B')"    | true
+            "!fullyAuthenticated and isRememberMe()"              | true
+            "hasIpAddress('127.0.0.1')"                           | false
+            "hasRole('ROLE_USER') and hasIpAddress('127.0.0.1')"  | false
+            "request.method == 'GET'"                             | false
+            "hasRole(#role)"                                      | false
+            "hasRole('ROLE_A','ROLE_B')"                          | false
+            "isPermitAll()"                                       | false
+            "@bean.check(authentication)"                         | false
+    }
+
+    @Unroll
+    def "isAuthoritiesOnly('#expression') == #expected"() {
+        expect:
+            WebConfigAttributeUtils.isAuthoritiesOnly(new WebExpressionConfigAttribute(parser.parseExpression(expression))) == expected
+            WebConfigAttributeUtils.isAuthoritiesOnly(CompiledWebExpressionConfigAttribute.parse(expression, parser)) == expected
+            WebConfigAttributeUtils.isAuthoritiesOnly(CompiledWebExpressionConfigAttribute.compile(expression, parser)) == expected
+        where:
+            expression                                          | expected
+            "permitAll"                                         | true
+            "denyAll()"                                         | true
+            "hasRole('ROLE_USER')"                              | true
+            "hasAnyRole('ROLE_USER','ROLE_ADMIN')"              | true
+            "hasAuthority('READ') and !hasAuthority('WRITE')"   | true
+            "(hasRole('ROLE_A') or hasRole('ROLE_B')) and true" | true
+            "hasIpAddress('127.0.0.1')"                         | false
+            "authenticated"                                     | false
+            "isAnonymous()"                                     | false
+            "hasRole('ROLE_USER') and principal.enabled"        | false
+            "hasRole(principal.username)"                       | false
+            "@bean.check(authentication)"                       | false
+            "hasRole('ROLE_USER') or hasIpAddress('10.0.0.1')"  | false
+    }
+
+    @Unroll
+    def "isAuthenticationOnly(SecurityConfig('#attribute')) == #expected"() {
+        expect:
+            WebConfigAttributeUtils.isAuthenticationOnly(new SecurityConfig(attribute)) == expected
+        where:
+            attribute                        | expected
+            "ROLE_USER"                      | true
+            "IS_AUTHENTICATED_FULLY"         | true
+            "IS_AUTHENTICATED_REMEMBERED"    | true
+            "IS_AUTHENTICATED_ANONYMOUSLY"   | true
+            "CUSTOM_CHECK"                   | false
+            "hasRole('ROLE_USER')"           | false
+    }
+
+    def "isAuthenticationOnly with other ConfigAttribute types"() {
+        expect:
+            WebConfigAttributeUtils.isAuthenticationOnly(new RoleBitSetConfigAttribute(new GrantedAuthorityIndex(["ROLE_USER"]), ["ROLE_USER"]))
+            !WebConfigAttributeUtils.isAuthenticationOnly({ "ROLE_USER" } as ConfigAttribute)
+            !WebConfigAttributeUtils.isAuthenticationOnly(null)
+            !WebConfigAttributeUtils.isAuthoritiesOnly(new SecurityConfig("ROLE_USER"))
+    }
+}
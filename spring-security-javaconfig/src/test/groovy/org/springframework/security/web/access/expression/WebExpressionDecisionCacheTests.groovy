@@ -0,0 +1,169 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.expression
+
+import static org.springframework.security.access.AccessDecisionVoter.*
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import org.springframework.security.access.ConfigAttribute
+import org.springframework.security.access.SecurityConfig
+import org.springframework.security.core.GrantedAuthority
+import org.springframework.security.core.authority.AuthorityUtils
+
+import spock.lang.Specification
+
+/**
+ * @author agent
+ *
+ */
+class WebExpressionDecisionCacheTests extends Specification {
+    ConfigAttribute attribute = new SecurityConfig("hasRole('ROLE_USER')")
+    List<GrantedAuthority> authorities = AuthorityUtils.createAuthorityList("ROLE_USER")
+
+    def "get and put"() {
+        setup:
+            WebExpressionDecisionCache cache = new WebExpressionDecisionCache(10, 1, TimeUnit.MINUTES)
+        expect:
+            cache.get(attribute, authorities) == null
+        when:
+            cache.put(attribute, authorities, ACCESS_GRANTED)
+        then:
+            cache.get(attribute, AuthorityUtils.createAuthorityList("ROLE_USER")) == ACCESS_GRANTED
+            cache.get(new SecurityConfig("hasRole('ROLE_USER')"), authorities) == null
+            cache.hitCount == 1
+            cache.missCount == 2
+            cache.size() == 1
+        when:
+            cache.clear()
+        then:
+            cache.size() == 0
+            cache.hitCount == 1
+    }
+
+    def "authorities are compared without regard to order"() {
+        setup:
+            WebExpressionDecisionCache cache = new WebExpressionDecisionCache(10, 1, TimeUnit.MINUTES)
+            cache.put(attribute, AuthorityUtils.createAuthorityList("A", "B"), ACCESS_GRANTED)
+        expect:
+            cache.get(attribute, AuthorityUtils.createAuthorityList("B", "A")) == ACCESS_GRANTED
+            cache.get(attribute, AuthorityUtils.createAuthorityList("A")) == null
+            cache.get(attribute, AuthorityUtils.createAuthorityList("A", "B", "C")) == null
+    }
+
+    def "cached authorities are copied"() {
+        setup:
+            WebExpressionDecisionCache cache = new WebExpressionDecisionCache(10, 1, TimeUnit.MINUTES)
+            List<GrantedAuthority> mutable = new ArrayList<GrantedAuthority>(AuthorityUtils.createAuthorityList("A"))
+            cache.put(attribute, mutable, ACCESS_GRANTED)
+        when:
+            mutable.addAll(AuthorityUtils.createAuthorityList("B"))
+        then:
+            cache.get(attribute, AuthorityUtils.createAuthorityList("A")) == ACCESS_GRANTED
+    }
+
+    def "least recently used votes are evicted to three quarters of maxSize"() {
+        setup:
+            WebExpressionDecisionCache cache = new WebExpressionDecisionCache(4, 1, TimeUnit.MINUTES)
+            ["A","B","C","D"].each {
+                cache.put(attribute, AuthorityUtils.createAuthorityList(it), ACCESS_GRANTED)
+                Thread.sleep(2)
+            }
+        when:
+            cache.get(attribute, AuthorityUtils.createAuthorityList("A"))
+            Thread.sleep(2)
+            cache.put(attribute, AuthorityUtils.createAuthorityList("E"), ACCESS_DENIED)
+        then:
+            cache.size() == 3
+            cache.get(attribute, AuthorityUtils.createAuthorityList("A")) == ACCESS_GRANTED
+            cache.get(attribute, AuthorityUtils.createAuthorityList("B")) == null
+            cache.get(attribute, AuthorityUtils.createAuthorityList("C")) == null
+            cache.get(attribute, AuthorityUtils.createAuthorityList("D")) == ACCESS_GRANTED
+            cache.get(attribute, AuthorityUtils.createAuthorityList("E")) == ACCESS_DENIED
+    }
+
+    def "eviction leaves room for a quarter of maxSize"() {
+        setup:
+            WebExpressionDecisionCache cache = new WebExpressionDecisionCache(8, 1, TimeUnit.MINUTES)
+        when:
+            (1..9).each { cache.put(attribute, AuthorityUtils.createAuthorityList("ROLE_" + it), ACCESS_GRANTED) }
+        then:
+            cache.size() == 6
+        when:
+            (10..11).each { cache.put(attribute, AuthorityUtils.createAuthorityList("ROLE_" + it), ACCESS_GRANTED) }
+        then: "no votes are evicted until maxSize is exceeded again"
+            cache.size() == 8
+    }
+
+    def "expired votes are evicted first"() {
+        setup:
+            WebExpressionDecisionCache cache = new WebExpressionDecisionCache(2, 50, TimeUnit.MILLISECONDS)
+            cache.put(attribute, AuthorityUtils.createAuthorityList("A"), ACCESS_GRANTED)
+            cache.put(attribute, AuthorityUtils.createAuthorityList("B"), ACCESS_GRANTED)
+        when:
+            Thread.sleep(100)
+            cache.put(attribute, AuthorityUtils.createAuthorityList("C"), ACCESS_DENIED)
+        then:
+            cache.size() == 1
+            cache.get(attribute, AuthorityUtils.createAuthorityList("C")) == ACCESS_DENIED
+    }
+
+    def "concurrent puts stay bounded"() {
+        setup:
+            WebExpressionDecisionCache cache = new WebExpressionDecisionCache(10, 1, TimeUnit.MINUTES)
+            CountDownLatch start = new CountDownLatch(1)
+            List<Thread> threads = (0..<4).collect { t ->
+                Thread.start {
+                    start.await()
+                    1000.times { i -> cache.put(attribute, AuthorityUtils.createAuthorityList("ROLE_" + t + "_" + i), ACCESS_GRANTED) }
+                }
+            }
+        when:
+            start.countDown()
+            threads*.join()
+            cache.put(attribute, authorities, ACCESS_GRANTED)
+        then:
+            cache.size() <= 10
+            cache.get(attribute, authorities) == ACCESS_GRANTED
+    }
+
+    def "expired vote is not used"() {
+        setup:
+            WebExpressionDecisionCache cache = new WebExpressionDecisionCache(10, 1, TimeUnit.NANOSECONDS)
+            cache.put(attribute, authorities, ACCESS_GRANTED)
+        when:
+            Thread.sleep(1)
+        then:
+            cache.get(attribute, authorities) == null
+            cache.size() == 0
+    }
+
+    def "invalid arguments"() {
+        when:
+            new WebExpressionDecisionCache(0, 1, TimeUnit.MINUTES)
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            new WebExpressionDecisionCache(1, 0, TimeUnit.MINUTES)
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            new WebExpressionDecisionCache(1, 1, null)
+        then:
+            thrown(IllegalArgumentException)
+    }
+}
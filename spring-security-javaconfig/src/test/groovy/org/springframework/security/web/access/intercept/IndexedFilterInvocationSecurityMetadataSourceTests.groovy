@@ -0,0 +1,96 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.intercept
+
+import org.springframework.mock.web.MockFilterChain
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.security.access.ConfigAttribute
+import org.springframework.security.access.SecurityConfig
+import org.springframework.security.web.FilterInvocation
+import org.springframework.security.web.util.AntPathRequestMatcher
+import org.springframework.security.web.util.AnyRequestMatcher
+import org.springframework.security.web.util.RegexRequestMatcher
+import org.springframework.security.web.util.RequestMatcher
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * @author agent
+ *
+ */
+class IndexedFilterInvocationSecurityMetadataSourceTests extends Specification {
+    static final List<ConfigAttribute> ADMIN = SecurityConfig.createList("ROLE_ADMIN")
+    static final List<ConfigAttribute> USER = SecurityConfig.createList("ROLE_USER")
+    static final List<ConfigAttribute> ANONYMOUS = SecurityConfig.createList("ROLE_ANONYMOUS")
+    static final List<ConfigAttribute> AUTHENTICATED = SecurityConfig.createList("IS_AUTHENTICATED_FULLY")
+
+    LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> requestMap = [
+        (new AntPathRequestMatcher("/admin/**", "POST")) : ADMIN,
+        (new AntPathRequestMatcher("/admin/users/**")) : USER,
+        (new RegexRequestMatcher("/admin/.*", "GET")) : ANONYMOUS,
+        (new AntPathRequestMatcher("/admin/**")) : ADMIN,
+        (new AnyRequestMatcher()) : AUTHENTICATED
+    ]
+
+    @Unroll
+    def "getAttributes uses first match for #method #path"() {
+        setup:
+            IndexedFilterInvocationSecurityMetadataSource indexed = new IndexedFilterInvocationSecurityMetadataSource(requestMap)
+            DefaultFilterInvocationSecurityMetadataSource linear = new DefaultFilterInvocationSecurityMetadataSource(requestMap)
+            FilterInvocation invocation = filterInvocation(path, method)
+        expect:
+            indexed.getAttributes(invocation) == expected
+            linear.getAttributes(invocation) == expected
+        where:
+            method | path              | expected
+            "POST" | "/admin/users/1"  | ADMIN
+            "GET"  | "/admin/users/1"  | USER
+            "GET"  | "/admin/other"    | ANONYMOUS
+            "PUT"  | "/admin/other"    | ADMIN
+            "GET"  | "/other"          | AUTHENTICATED
+    }
+
+    def "getAttributes returns null when nothing matches"() {
+        setup:
+            IndexedFilterInvocationSecurityMetadataSource indexed =
+                new IndexedFilterInvocationSecurityMetadataSource([(new AntPathRequestMatcher("/admin/**")) : ADMIN])
+        expect:
+            indexed.getAttributes(filterInvocation("/other", "GET")) == null
+    }
+
+    def "getAllConfigAttributes"() {
+        setup:
+            IndexedFilterInvocationSecurityMetadataSource indexed = new IndexedFilterInvocationSecurityMetadataSource(requestMap)
+        expect:
+            indexed.allConfigAttributes as Set == (ADMIN + USER + ANONYMOUS + AUTHENTICATED) as Set
+    }
+
+    def "supports FilterInvocation"() {
+        setup:
+            IndexedFilterInvocationSecurityMetadataSource indexed = new IndexedFilterInvocationSecurityMetadataSource(requestMap)
+        expect:
+            indexed.supports(FilterInvocation)
+            !indexed.supports(Object)
+    }
+
+    private static FilterInvocation filterInvocation(String path, String method) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method:method)
+        request.servletPath = path
+        new FilterInvocation(request, new MockHttpServletResponse(), new MockFilterChain())
+    }
+}
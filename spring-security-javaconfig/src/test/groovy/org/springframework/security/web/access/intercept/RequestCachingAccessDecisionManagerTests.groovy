@@ -0,0 +1,160 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.intercept
+
+import org.springframework.mock.web.MockFilterChain
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.expression.spel.standard.SpelExpressionParser
+import org.springframework.security.access.AccessDecisionManager
+import org.springframework.security.access.AccessDeniedException
+import org.springframework.security.access.ConfigAttribute
+import org.springframework.security.access.SecurityConfig
+import org.springframework.security.authentication.TestingAuthenticationToken
+import org.springframework.security.core.Authentication
+import org.springframework.security.web.FilterInvocation
+import org.springframework.security.web.access.expression.CompiledWebExpressionConfigAttribute
+import org.springframework.security.web.access.vote.GrantedAuthorityIndex
+import org.springframework.security.web.access.vote.RoleBitSetConfigAttribute
+
+import spock.lang.Specification
+
+/**
+ * @author agent
+ *
+ */
+class RequestCachingAccessDecisionManagerTests extends Specification {
+    AccessDecisionManager delegate = Mock()
+    RequestCachingAccessDecisionManager manager = new RequestCachingAccessDecisionManager(delegate)
+    Authentication user = new TestingAuthenticationToken("user", "password", "ROLE_USER")
+    List<ConfigAttribute> attributes = SecurityConfig.createList("ROLE_USER")
+    MockHttpServletRequest request = new MockHttpServletRequest()
+
+    def "granted access is remembered for the request"() {
+        when:
+            manager.decide(user, filterInvocation(), attributes)
+            manager.decide(user, filterInvocation(), attributes)
+        then:
+            1 * delegate.decide(user, _, attributes)
+        when: "a different request"
+            request = new MockHttpServletRequest()
+            manager.decide(user, filterInvocation(), attributes)
+        then:
+            1 * delegate.decide(user, _, attributes)
+    }
+
+    def "different mapping, Authentication or AccessDecisionManager are decided by the delegate"() {
+        setup:
+            List<ConfigAttribute> otherAttributes = SecurityConfig.createList("ROLE_USER")
+            Authentication otherUser = new TestingAuthenticationToken("user", "password", "ROLE_USER")
+            AccessDecisionManager otherDelegate = Mock()
+        when:
+            manager.decide(user, filterInvocation(), attributes)
+            manager.decide(user, filterInvocation(), otherAttributes)
+            manager.decide(otherUser, filterInvocation(), attributes)
+            new RequestCachingAccessDecisionManager(otherDelegate).decide(user, filterInvocation(), attributes)
+        then:
+            1 * delegate.decide(user, _, attributes)
+            1 * delegate.decide(user, _, otherAttributes)
+            1 * delegate.decide(otherUser, _, attributes)
+            1 * otherDelegate.decide(user, _, attributes)
+    }
+
+    def "denied access is not remembered"() {
+        when:
+            manager.decide(user, filterInvocation(), attributes)
+        then:
+            1 * delegate.decide(user, _, attributes) >> { throw new AccessDeniedException("denied") }
+            thrown(AccessDeniedException)
+        when:
+            manager.decide(user, filterInvocation(), attributes)
+        then:
+            1 * delegate.decide(user, _, attributes) >> { throw new AccessDeniedException("denied") }
+            thrown(AccessDeniedException)
+    }
+
+    def "request dependent expressions are decided by the delegate"() {
+        setup:
+            List<ConfigAttribute> ipAttributes = [CompiledWebExpressionConfigAttribute.compile("hasIpAddress('127.0.0.1')", new SpelExpressionParser())]
+        when:
+            manager.decide(user, filterInvocation(), ipAttributes)
+            manager.decide(user, filterInvocation(), ipAttributes)
+        then:
+            2 * delegate.decide(user, _, ipAttributes)
+    }
+
+    def "authentication only expressions are remembered"() {
+        setup:
+            List<ConfigAttribute> roleAttributes = [CompiledWebExpressionConfigAttribute.parse("hasRole('ROLE_USER') and !isAnonymous()", new SpelExpressionParser())]
+        when:
+            manager.decide(user, filterInvocation(), roleAttributes)
+            manager.decide(user, filterInvocation(), roleAttributes)
+        then:
+            1 * delegate.decide(user, _, roleAttributes)
+    }
+
+    def "attributes of custom voters are decided by the delegate"() {
+        setup:
+            List<ConfigAttribute> customAttributes = SecurityConfig.createList("CUSTOM_CHECK")
+        when:
+            manager.decide(user, filterInvocation(), customAttributes)
+            manager.decide(user, filterInvocation(), customAttributes)
+        then:
+            2 * delegate.decide(user, _, customAttributes)
+    }
+
+    def "role bit set attributes are remembered"() {
+        setup:
+            List<ConfigAttribute> roleAttributes = [new RoleBitSetConfigAttribute(new GrantedAuthorityIndex(["ROLE_USER"]), ["ROLE_USER"])]
+        when:
+            manager.decide(user, filterInvocation(), roleAttributes)
+            manager.decide(user, filterInvocation(), roleAttributes)
+        then:
+            1 * delegate.decide(user, _, roleAttributes)
+    }
+
+    def "objects other than FilterInvocation are decided by the delegate"() {
+        setup:
+            Object object = new Object()
+        when:
+            manager.decide(user, object, attributes)
+            manager.decide(user, object, attributes)
+        then:
+            2 * delegate.decide(user, object, attributes)
+    }
+
+    def "supports delegates"() {
+        when:
+            boolean supportsAttribute = manager.supports(attributes[0])
+            boolean supportsClass = manager.supports(FilterInvocation)
+        then:
+            1 * delegate.supports(attributes[0]) >> true
+            1 * delegate.supports(FilterInvocation) >> true
+            supportsAttribute
+            supportsClass
+    }
+
+    def "null delegate"() {
+        when:
+            new RequestCachingAccessDecisionManager(null)
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    private FilterInvocation filterInvocation() {
+        new FilterInvocation(request, new MockHttpServletResponse(), new MockFilterChain())
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.access.vote
+
+import static org.springframework.security.access.AccessDecisionVoter.*
+
+import org.springframework.mock.web.MockFilterChain
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.security.access.ConfigAttribute
+import org.springframework.security.access.SecurityConfig
+import org.springframework.security.access.vote.RoleVoter
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.Authentication
+import org.springframework.security.core.authority.AuthorityUtils
+import org.springframework.security.web.FilterInvocation
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * @author agent
+ *
+ */
+class RoleBitSetVoterTests extends Specification {
+    GrantedAuthorityIndex authorityIndex = new GrantedAuthorityIndex(["ROLE_USER","ROLE_ADMIN","ROLE_DBA","ROLE_USER"])
+    RoleBitSetVoter voter = new RoleBitSetVoter()
+    FilterInvocation fi = new FilterInvocation(new MockHttpServletRequest(), new MockHttpServletResponse(), new MockFilterChain())
+
+    @Unroll
+    def "vote #roles with #authorities matches RoleVoter"() {
+        setup:
+            Authentication authentication = authentication(authorities as String[])
+        expect:
+            voter.vote(authentication, fi, [attribute(roles)]) == expected
+            new RoleVoter().vote(authentication, fi, SecurityConfig.createList(roles as String[])) == expected
+        where:
+            roles                      | authorities                     | expected
+            ["ROLE_USER"]              | ["ROLE_USER"]                   | ACCESS_GRANTED
+            ["ROLE_USER"]              | ["ROLE_ADMIN"]                  | ACCESS_DENIED
+            ["ROLE_ADMIN","ROLE_DBA"]  | ["ROLE_USER","ROLE_DBA"]        | ACCESS_GRANTED
+            ["ROLE_ADMIN","ROLE_DBA"]  | ["ROLE_USER","ROLE_OTHER"]      | ACCESS_DENIED
+            ["ROLE_USER"]              | []                              | ACCESS_DENIED
+    }
+
+    def "vote abstains without RoleBitSetConfigAttribute"() {
+        expect:
+            voter.vote(authentication("ROLE_USER"), fi, SecurityConfig.createList("ROLE_USER")) == ACCESS_ABSTAIN
+            voter.vote(authentication("ROLE_USER"), fi, []) == ACCESS_ABSTAIN
+    }
+
+    def "vote on object other than FilterInvocation"() {
+        expect:
+            voter.vote(authentication("ROLE_ADMIN"), new Object(), [attribute(["ROLE_ADMIN"])]) == ACCESS_GRANTED
+    }
+
+    def "authorities BitSet reused for the same request and Authentication"() {
+        setup:
+            Authentication user = Spy(UsernamePasswordAuthenticationToken, constructorArgs: ["user", "password", AuthorityUtils.createAuthorityList("ROLE_USER")])
+        when:
+            voter.vote(user, fi, [attribute(["ROLE_ADMIN"])])
+            int result = voter.vote(user, fi, [attribute(["ROLE_USER"])])
+        then:
+            result == ACCESS_GRANTED
+            1 * user.getAuthorities()
+        when: "different Authentication"
+            result = voter.vote(authentication("ROLE_ADMIN"), fi, [attribute(["ROLE_ADMIN"])])
+        then:
+            result == ACCESS_GRANTED
+        when: "different GrantedAuthorityIndex"
+            GrantedAuthorityIndex otherIndex = new GrantedAuthorityIndex(["ROLE_OTHER","ROLE_USER"])
+            result = voter.vote(user, fi, [new RoleBitSetConfigAttribute(otherIndex, ["ROLE_USER"])])
+        then:
+            result == ACCESS_GRANTED
+            1 * user.getAuthorities()
+    }
+
+    def "supports"() {
+        expect:
+            voter.supports(attribute(["ROLE_USER"]))
+            !voter.supports(new SecurityConfig("ROLE_USER"))
+            voter.supports(FilterInvocation)
+            voter.supports(Object)
+    }
+
+    def "RoleBitSetConfigAttribute is ignored by RoleVoter"() {
+        setup:
+            ConfigAttribute attribute = attribute(["ROLE_USER"])
+        expect:
+            attribute.attribute == null
+            attribute.toString() == "[ROLE_USER]"
+            !new RoleVoter().supports(attribute)
+    }
+
+    def "RoleBitSetConfigAttribute requires roles of the GrantedAuthorityIndex"() {
+        when:
+            new RoleBitSetConfigAttribute(authorityIndex, ["ROLE_UNKNOWN"])
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            new RoleBitSetConfigAttribute(authorityIndex, [])
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    def "GrantedAuthorityIndex assigns dense ids"() {
+        expect:
+            authorityIndex.size() == 3
+            authorityIndex.getBitSet(["ROLE_DBA","ROLE_UNKNOWN"]) == bitSet(2)
+            authorityIndex.getGrantedAuthorityBitSet(AuthorityUtils.createAuthorityList("ROLE_USER","ROLE_ADMIN")) == bitSet(0,1)
+    }
+
+    private RoleBitSetConfigAttribute attribute(List<String> roles) {
+        new RoleBitSetConfigAttribute(authorityIndex, roles)
+    }
+
+    private static Authentication authentication(String... authorities) {
+        new UsernamePasswordAuthenticationToken("user", "password", AuthorityUtils.createAuthorityList(authorities))
+    }
+
+    private static BitSet bitSet(int... ids) {
+        BitSet result = new BitSet()
+        ids.each { result.set(it) }
+        result
+    }
+}
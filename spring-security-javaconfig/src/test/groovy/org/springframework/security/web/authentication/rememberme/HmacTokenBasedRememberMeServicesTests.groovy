@@ -0,0 +1,132 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.authentication.rememberme
+
+import javax.servlet.http.Cookie
+
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.security.authentication.TestingAuthenticationToken
+import org.springframework.security.core.Authentication
+import org.springframework.security.core.authority.AuthorityUtils
+import org.springframework.security.crypto.codec.Base64
+
+import spock.lang.Specification
+
+/**
+ *
+ * @author agent
+ */
+class HmacTokenBasedRememberMeServicesTests extends Specification {
+    HmacTokenBasedRememberMeServices services = new HmacTokenBasedRememberMeServices("key")
+
+    def setup() {
+        services.afterPropertiesSet()
+    }
+
+    def "autoLogin restores authorities from cookie"() {
+        setup:
+            Cookie cookie = login(new TestingAuthenticationToken("user", "password", "ROLE_USER", "SCOPE:read,write"))
+        when:
+            Authentication authentication = autoLogin(cookie)
+        then:
+            authentication.name == "user"
+            authentication.principal.username == "user"
+            AuthorityUtils.authorityListToSet(authentication.authorities) == ["ROLE_USER", "SCOPE:read,write"] as Set
+    }
+
+    def "autoLogin with tampered authorities fails"() {
+        setup:
+            Cookie cookie = login(new TestingAuthenticationToken("user", "password", "ROLE_USER"))
+            String[] tokens = new String(Base64.decode(cookie.value.bytes)).split(":")
+            tokens[2] = "ROLE_ADMIN"
+        when:
+            Authentication authentication = autoLogin(new Cookie(cookie.name, new String(Base64.encode(tokens.join(":").bytes))))
+        then:
+            authentication == null
+    }
+
+    def "autoLogin with different key fails"() {
+        setup:
+            services = new HmacTokenBasedRememberMeServices("other")
+            services.afterPropertiesSet()
+            Cookie cookie = login(new TestingAuthenticationToken("user", "password", "ROLE_USER"))
+            services = new HmacTokenBasedRememberMeServices("key")
+            services.afterPropertiesSet()
+        expect:
+            autoLogin(cookie) == null
+    }
+
+    def "empty key"() {
+        when:
+            new HmacTokenBasedRememberMeServices("")
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    def "autoLogin with expired cookie fails"() {
+        setup:
+            String content = "user:" + (System.currentTimeMillis() - 1000) + ":ROLE_USER"
+            String value = content + ":" + services.makeTokenSignature(content)
+        expect:
+            autoLogin(new Cookie(AbstractRememberMeServices.SPRING_SECURITY_REMEMBER_ME_COOKIE_KEY, new String(Base64.encode(value.bytes)))) == null
+    }
+
+    def "autoLogin caches verified cookie"() {
+        setup:
+            Cookie cookie = login(new TestingAuthenticationToken("user", "password", "ROLE_USER"))
+            autoLogin(cookie)
+            def verified = services.verifiedCookies.values().iterator().next()
+        when:
+            Authentication authentication = autoLogin(cookie)
+        then:
+            authentication.name == "user"
+            services.verifiedCookies.size() == 1
+            services.verifiedCookies.values().iterator().next().is(verified)
+    }
+
+    def "maxCacheSize 0 disables cache"() {
+        setup:
+            services.maxCacheSize = 0
+            Cookie cookie = login(new TestingAuthenticationToken("user", "password", "ROLE_USER"))
+        when:
+            Authentication authentication = autoLogin(cookie)
+        then:
+            authentication.name == "user"
+            services.verifiedCookies.isEmpty()
+    }
+
+    def "autoLogin does not use UserDetailsService"() {
+        when:
+            services.userDetailsService.loadUserByUsername("user")
+        then:
+            thrown(org.springframework.security.core.userdetails.UsernameNotFoundException)
+    }
+
+    Cookie login(Authentication authentication) {
+        MockHttpServletRequest request = new MockHttpServletRequest()
+        request.setParameter(AbstractRememberMeServices.DEFAULT_PARAMETER, "true")
+        MockHttpServletResponse response = new MockHttpServletResponse()
+        services.loginSuccess(request, response, authentication)
+        response.getCookie(AbstractRememberMeServices.SPRING_SECURITY_REMEMBER_ME_COOKIE_KEY)
+    }
+
+    Authentication autoLogin(Cookie cookie) {
+        MockHttpServletRequest request = new MockHttpServletRequest()
+        request.cookies = [cookie] as Cookie[]
+        services.autoLogin(request, new MockHttpServletResponse())
+    }
+}
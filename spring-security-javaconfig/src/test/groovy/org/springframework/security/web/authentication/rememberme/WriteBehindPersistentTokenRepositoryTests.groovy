@@ -0,0 +1,217 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.authentication.rememberme
+
+import java.util.concurrent.TimeUnit
+
+import spock.lang.Specification
+
+/**
+ *
+ * @author agent
+ */
+class WriteBehindPersistentTokenRepositoryTests extends Specification {
+    PersistentTokenRepository delegate = Mock()
+    WriteBehindPersistentTokenRepository repository = new WriteBehindPersistentTokenRepository(delegate)
+    PersistentRememberMeToken token = new PersistentRememberMeToken("user", "series", "token", new Date(1000))
+
+    def setup() {
+        repository.setFlushInterval(1, TimeUnit.HOURS)
+    }
+
+    def "getTokenForSeries is cached"() {
+        when:
+            PersistentRememberMeToken first = repository.getTokenForSeries("series")
+            PersistentRememberMeToken second = repository.getTokenForSeries("series")
+        then:
+            1 * delegate.getTokenForSeries("series") >> token
+            first == token
+            second == token
+    }
+
+    def "getTokenForSeries does not cache unknown series"() {
+        when:
+            repository.getTokenForSeries("series")
+            repository.getTokenForSeries("series")
+        then:
+            2 * delegate.getTokenForSeries("series") >> null
+    }
+
+    def "createNewToken is written immediately and cached"() {
+        when:
+            repository.createNewToken(token)
+        then:
+            1 * delegate.createNewToken(token)
+        when:
+            PersistentRememberMeToken result = repository.getTokenForSeries("series")
+        then:
+            0 * delegate.getTokenForSeries(_)
+            result == token
+    }
+
+    def "updateToken is written behind and coalesced"() {
+        setup:
+            repository.createNewToken(token)
+        when:
+            repository.updateToken("series", "updated", new Date(2000))
+            repository.updateToken("series", "updated2", new Date(3000))
+        then:
+            0 * delegate.updateToken(_, _, _)
+        when:
+            PersistentRememberMeToken result = repository.getTokenForSeries("series")
+        then:
+            result.username == "user"
+            result.tokenValue == "updated2"
+            result.date == new Date(3000)
+        when:
+            repository.flush()
+        then:
+            1 * delegate.updateToken("series", "updated2", new Date(3000))
+        when:
+            repository.flush()
+        then:
+            0 * delegate.updateToken(_, _, _)
+    }
+
+    def "updateToken is written once batchSize is reached"() {
+        setup:
+            repository.batchSize = 2
+            repository.createNewToken(token)
+            repository.createNewToken(new PersistentRememberMeToken("user", "series2", "token", new Date(1000)))
+        when:
+            repository.updateToken("series", "updated", new Date(2000))
+        then:
+            0 * delegate.updateToken(_, _, _)
+        when:
+            repository.updateToken("series2", "updated", new Date(2000))
+        then:
+            1 * delegate.updateToken("series", "updated", new Date(2000))
+            1 * delegate.updateToken("series2", "updated", new Date(2000))
+    }
+
+    def "updateToken is written once flushInterval elapsed"() {
+        setup:
+            repository.setFlushInterval(0, TimeUnit.SECONDS)
+            repository.createNewToken(token)
+        when:
+            repository.updateToken("series", "updated", new Date(2000))
+        then:
+            1 * delegate.updateToken("series", "updated", new Date(2000))
+    }
+
+    def "updateToken of unknown series is written immediately"() {
+        when:
+            repository.updateToken("unknown", "updated", new Date(2000))
+        then:
+            1 * delegate.getTokenForSeries("unknown") >> null
+            1 * delegate.updateToken("unknown", "updated", new Date(2000))
+    }
+
+    def "removeUserTokens discards pending updates"() {
+        setup:
+            repository.createNewToken(token)
+            repository.updateToken("series", "updated", new Date(2000))
+        when:
+            repository.removeUserTokens("user")
+            repository.flush()
+        then:
+            1 * delegate.removeUserTokens("user")
+            0 * delegate.updateToken(_, _, _)
+        when:
+            repository.getTokenForSeries("series")
+        then:
+            1 * delegate.getTokenForSeries("series") >> null
+    }
+
+    def "destroy writes pending updates"() {
+        setup:
+            repository.createNewToken(token)
+            repository.updateToken("series", "updated", new Date(2000))
+        when:
+            repository.destroy()
+        then:
+            1 * delegate.updateToken("series", "updated", new Date(2000))
+    }
+
+    def "maxCacheSize bounds the cache"() {
+        setup:
+            repository.maxCacheSize = 1
+            repository.createNewToken(token)
+        when:
+            repository.createNewToken(new PersistentRememberMeToken("user", "series2", "token", new Date(1000)))
+            repository.getTokenForSeries("series")
+        then:
+            1 * delegate.getTokenForSeries("series") >> token
+    }
+
+    def "getTokenForSeries reads the delegate again after cacheTtl"() {
+        setup:
+            repository.setCacheTtl(1, TimeUnit.NANOSECONDS)
+        when:
+            repository.getTokenForSeries("series")
+            Thread.sleep(1)
+            repository.getTokenForSeries("series")
+        then:
+            2 * delegate.getTokenForSeries("series") >> token
+    }
+
+    def "getTokenForSeries with stale presented value reads the delegate again"() {
+        setup:
+            PersistentRememberMeToken rotated = new PersistentRememberMeToken("user", "series", "rotated", new Date(2000))
+            delegate.getTokenForSeries("series") >>> [token, rotated]
+            repository.getTokenForSeries("series")
+        when:
+            PersistentRememberMeToken result = repository.getTokenForSeries("series", "rotated")
+        then:
+            result == rotated
+            repository.getTokenForSeries("series") == rotated
+    }
+
+    def "getTokenForSeries with matching presented value is cached"() {
+        setup:
+            repository.createNewToken(token)
+        when:
+            PersistentRememberMeToken result = repository.getTokenForSeries("series", "token")
+        then:
+            0 * delegate.getTokenForSeries(_)
+            result == token
+    }
+
+    def "getTokenForSeries with presented value does not read a pending series again"() {
+        setup:
+            repository.createNewToken(token)
+            repository.updateToken("series", "updated", new Date(2000))
+        when:
+            PersistentRememberMeToken result = repository.getTokenForSeries("series", "token")
+        then:
+            0 * delegate.getTokenForSeries(_)
+            result.tokenValue == "updated"
+    }
+
+    def "cacheTtl must be positive"() {
+        when:
+            repository.setCacheTtl(0, TimeUnit.SECONDS)
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    def "null delegate is rejected"() {
+        when:
+            new WriteBehindPersistentTokenRepository(null)
+        then:
+            thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.context
+
+import java.util.concurrent.TimeUnit
+
+import javax.servlet.http.Cookie
+
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.security.authentication.AnonymousAuthenticationToken
+import org.springframework.security.authentication.TestingAuthenticationToken
+import org.springframework.security.core.authority.AuthorityUtils
+import org.springframework.security.core.context.SecurityContext
+import org.springframework.security.core.context.SecurityContextImpl
+
+import spock.lang.Specification
+
+/**
+ *
+ * @author agent
+ */
+class SignedCookieSecurityContextRepositoryTests extends Specification {
+    SignedCookieSecurityContextRepository repo = new SignedCookieSecurityContextRepository("key")
+    MockHttpServletRequest request = new MockHttpServletRequest(contextPath: "/app")
+    MockHttpServletResponse response = new MockHttpServletResponse()
+
+    def "saved SecurityContext is loaded"() {
+        when:
+            Cookie cookie = save(context("user", "ROLE_USER", "ROLE_ADMIN"))
+            SecurityContext loaded = load(cookie)
+        then:
+            cookie.name == SignedCookieSecurityContextRepository.DEFAULT_COOKIE_NAME
+            cookie.path == "/app"
+            cookie.httpOnly
+            !cookie.secure
+            cookie.maxAge == 1800
+            loaded.authentication.name == "user"
+            loaded.authentication.authenticated
+            AuthorityUtils.authorityListToSet(loaded.authentication.authorities) == ["ROLE_USER", "ROLE_ADMIN"] as Set
+            repo.containsContext(request)
+    }
+
+    def "cookie value is URL safe Base64 without padding"() {
+        setup:
+            String[] authorities = (1..20).collect { "ROLE_" + it }
+        when:
+            List<Cookie> cookies = (1..10).collect { save(context("user" + it, authorities)) }
+        then:
+            cookies.every { it.value ==~ /[A-Za-z0-9_\-]+\.[A-Za-z0-9_\-]+/ }
+            cookies.every { load(it).authentication.name.startsWith("user") }
+    }
+
+    def "compressed SecurityContext is loaded"() {
+        setup:
+            repo.compress = true
+            String[] authorities = (1..100).collect { "ROLE_" + it }
+        when:
+            Cookie cookie = save(context("user", authorities))
+            SecurityContext loaded = load(cookie)
+        then:
+            AuthorityUtils.authorityListToSet(loaded.authentication.authorities) == authorities as Set
+    }
+
+    def "tampered cookie is ignored"() {
+        setup:
+            Cookie cookie = save(context("user", "ROLE_USER"))
+            Cookie other = save(context("admin", "ROLE_ADMIN"))
+        when:
+            Cookie tampered = new Cookie(cookie.name, other.value.split("\\.")[0] + "." + cookie.value.split("\\.")[1])
+        then:
+            load(tampered).authentication == null
+            load(new Cookie(cookie.name, "invalid")).authentication == null
+            load(new Cookie(cookie.name, "!!!.!!!")).authentication == null
+            !repo.containsContext(request)
+    }
+
+    def "cookie signed with rotated key is verified"() {
+        setup:
+            Cookie cookie = save(context("user", "ROLE_USER"))
+        when:
+            repo.keys = ["new", "key"]
+        then:
+            load(cookie).authentication.name == "user"
+            save(context("user", "ROLE_USER")).value != cookie.value
+        when:
+            repo.keys = ["new"]
+        then:
+            load(cookie).authentication == null
+    }
+
+    def "expired cookie is ignored"() {
+        setup:
+            repo.setMaxAge(1, TimeUnit.MILLISECONDS)
+            Cookie cookie = save(context("user", "ROLE_USER"))
+        when:
+            Thread.sleep(10)
+        then:
+            load(cookie).authentication == null
+    }
+
+    def "cached cookie is not verified again"() {
+        setup:
+            Cookie cookie = save(context("user", "ROLE_USER"))
+            load(cookie)
+            def verified = repo.verifiedCookies[cookie.value]
+        when:
+            SecurityContext loaded = load(cookie)
+        then:
+            loaded.authentication.name == "user"
+            repo.verifiedCookies.size() == 1
+            repo.verifiedCookies[cookie.value].is(verified)
+    }
+
+    def "cookie larger than maxCookieSize is not written"() {
+        setup:
+            repo.maxCookieSize = 100
+        when:
+            Cookie cookie = save(context("user", (1..100).collect { "ROLE_" + it } as String[]))
+        then:
+            cookie == null
+    }
+
+    def "unchanged SecurityContext is not written again"() {
+        setup:
+            Cookie cookie = save(context("user", "ROLE_USER"))
+            request.cookies = [cookie] as Cookie[]
+            HttpRequestResponseHolder holder = new HttpRequestResponseHolder(request, new MockHttpServletResponse())
+            SecurityContext context = repo.loadContext(holder)
+        when:
+            repo.saveContext(context, holder.request, holder.response)
+        then:
+            holder.response.response.getCookie(cookie.name) == null
+    }
+
+    def "anonymous SecurityContext removes cookie"() {
+        setup:
+            Cookie cookie = save(context("user", "ROLE_USER"))
+            request.cookies = [cookie] as Cookie[]
+            HttpRequestResponseHolder holder = new HttpRequestResponseHolder(request, new MockHttpServletResponse())
+            repo.loadContext(holder)
+            SecurityContext anonymous = new SecurityContextImpl(authentication: new AnonymousAuthenticationToken("key", "anonymous", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")))
+        when:
+            repo.saveContext(anonymous, holder.request, holder.response)
+        then:
+            holder.response.response.getCookie(cookie.name).maxAge == 0
+    }
+
+    def "empty keys is rejected"() {
+        when:
+            new SignedCookieSecurityContextRepository()
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    Cookie save(SecurityContext context) {
+        MockHttpServletResponse response = new MockHttpServletResponse()
+        HttpRequestResponseHolder holder = new HttpRequestResponseHolder(new MockHttpServletRequest(contextPath: "/app"), response)
+        repo.loadContext(holder)
+        repo.saveContext(context, holder.request, holder.response)
+        response.getCookie(SignedCookieSecurityContextRepository.DEFAULT_COOKIE_NAME)
+    }
+
+    SecurityContext load(Cookie cookie) {
+        request.cookies = [cookie] as Cookie[]
+        repo.loadContext(new HttpRequestResponseHolder(request, response))
+    }
+
+    SecurityContext context(String name, String... authorities) {
+        new SecurityContextImpl(authentication: new TestingAuthenticationToken(name, "password", authorities))
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.context
+
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.mock.web.MockHttpSession
+import org.springframework.security.authentication.TestingAuthenticationToken
+import org.springframework.security.core.context.SecurityContext
+import org.springframework.security.core.context.SecurityContextImpl
+
+import spock.lang.Specification
+
+/**
+ *
+ * @author agent
+ */
+class WriteAvoidingHttpSessionSecurityContextRepositoryTests extends Specification {
+    WriteAvoidingHttpSessionSecurityContextRepository repo = new WriteAvoidingHttpSessionSecurityContextRepository()
+    MockHttpSession session = Spy(MockHttpSession)
+    MockHttpServletRequest request = new MockHttpServletRequest(session: session)
+    MockHttpServletResponse response = new MockHttpServletResponse()
+
+    def "unchanged SecurityContext is not written"() {
+        setup:
+            session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, context("user"))
+            HttpRequestResponseHolder holder = new HttpRequestResponseHolder(request, response)
+            repo.loadContext(holder)
+        when:
+            repo.saveContext(context("user"), holder.request, holder.response)
+        then:
+            0 * session.setAttribute(_, _)
+            repo.avoidedSessionWrites == 1
+            holder.request.is(request)
+    }
+
+    def "changed SecurityContext is written"() {
+        setup:
+            session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, context("user"))
+            HttpRequestResponseHolder holder = new HttpRequestResponseHolder(request, response)
+            repo.loadContext(holder)
+            SecurityContext changed = context("admin")
+        when:
+            repo.saveContext(changed, holder.request, holder.response)
+        then:
+            1 * session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, changed)
+            repo.avoidedSessionWrites == 0
+    }
+
+    def "new SecurityContext is written"() {
+        setup:
+            request.session = null
+            HttpRequestResponseHolder holder = new HttpRequestResponseHolder(request, response)
+            repo.loadContext(holder)
+            SecurityContext context = context("user")
+        when:
+            repo.saveContext(context, holder.request, holder.response)
+        then:
+            request.getSession(false).getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY) == context
+            repo.avoidedSessionWrites == 0
+    }
+
+    def "unchanged SecurityContext with custom key is not written"() {
+        setup:
+            repo.springSecurityContextKey = "custom"
+            session.setAttribute("custom", context("user"))
+            HttpRequestResponseHolder holder = new HttpRequestResponseHolder(request, response)
+            repo.loadContext(holder)
+        when:
+            repo.saveContext(context("user"), holder.request, holder.response)
+        then:
+            0 * session.setAttribute(_, _)
+            repo.avoidedSessionWrites == 1
+    }
+
+    def "SecurityContext that cannot be serialized is written"() {
+        setup:
+            session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, context(new Object()))
+            HttpRequestResponseHolder holder = new HttpRequestResponseHolder(request, response)
+            repo.loadContext(holder)
+            SecurityContext context = context(new Object())
+        when:
+            repo.saveContext(context, holder.request, holder.response)
+        then:
+            1 * session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, context)
+            repo.avoidedSessionWrites == 0
+    }
+
+    SecurityContext context(Object principal) {
+        new SecurityContextImpl(authentication: new TestingAuthenticationToken(principal, "password", "ROLE_USER"))
+    }
+}
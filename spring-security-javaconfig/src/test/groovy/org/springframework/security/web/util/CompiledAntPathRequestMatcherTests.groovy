@@ -0,0 +1,115 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.util;
+
+import org.springframework.mock.web.MockHttpServletRequest
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * @author agent
+ *
+ */
+class CompiledAntPathRequestMatcherTests extends Specification {
+    static final List<String> PATTERNS = ["/**", "**", "/a/**", "/A/B/**", "/a/*", "/a/*/", "/a/*/c", "/a/**/c",
+        "/a/**/b/**/c", "/**/*.css", "/**/a*b?.js", "/a", "/a/", "a/**", "*", "/*", "/a/**/**/c", "/a/b*/**",
+        "/**/c", "/a/{id}", "/a/{id:[0-9]+}/**", "/ a /b", "/a/*.*"]
+
+    static final List<String> PATHS = ["/", "", "/a", "/a/", "/A/b", "/a/b", "/a/b/", "/a/b/c", "/a/x/b/y/c",
+        "/a/b/c/d", "/static/app.css", "/app.css", "/x/axbz.js", "/x/ab.js", "a/b", "//a//b", "/a/ b /c",
+        "/a/123", "/a/12/x", "/a/b.c", "/a/b\nc", "/a/b\n", "/abc"]
+
+    @Unroll
+    def "matches the same requests as AntPathRequestMatcher for #pattern"() {
+        setup:
+            AntPathRequestMatcher expected = new AntPathRequestMatcher(pattern)
+            CompiledAntPathRequestMatcher compiled = new CompiledAntPathRequestMatcher(pattern)
+        expect:
+            PATHS.each { path ->
+                assert compiled.matches(request(path)) == expected.matches(request(path)), "$pattern $path"
+            }
+            compiled.pattern == expected.pattern
+        where:
+            pattern << PATTERNS
+    }
+
+    def "servletPath and pathInfo are combined"() {
+        setup:
+            MockHttpServletRequest request = request("/app")
+            request.pathInfo = "/users/1"
+        expect:
+            new CompiledAntPathRequestMatcher("/app/users/*").matches(request)
+            !new CompiledAntPathRequestMatcher("/users/*").matches(request)
+    }
+
+    def "http method is honored"() {
+        setup:
+            CompiledAntPathRequestMatcher matcher = new CompiledAntPathRequestMatcher("/a/**", "POST")
+        expect:
+            !matcher.matches(request("/a/b"))
+            matcher.matches(request("/a/b", "POST"))
+            !matcher.matches(request("/a/b", "PROPFIND"))
+    }
+
+    def "request path is reused across matchers"() {
+        setup:
+            MockHttpServletRequest request = request("/a/b")
+        when:
+            new CompiledAntPathRequestMatcher("/a/*").matches(request)
+            def requestPath = request.getAttribute(CompiledAntPathRequestMatcher.name + ".REQUEST_PATH")
+            new CompiledAntPathRequestMatcher("/x/*").matches(request)
+        then:
+            requestPath != null
+            request.getAttribute(CompiledAntPathRequestMatcher.name + ".REQUEST_PATH").is(requestPath)
+    }
+
+    def "request path is recalculated when forwarded"() {
+        setup:
+            CompiledAntPathRequestMatcher matcher = new CompiledAntPathRequestMatcher("/forward/*")
+            MockHttpServletRequest request = request("/a/b")
+        when:
+            boolean original = matcher.matches(request)
+            request.servletPath = "/forward/b"
+        then:
+            !original
+            matcher.matches(request)
+    }
+
+    def "equals and hashCode"() {
+        expect:
+            new CompiledAntPathRequestMatcher("/A/**", "GET") == new CompiledAntPathRequestMatcher("/a/**", "GET")
+            new CompiledAntPathRequestMatcher("/A/**", "GET").hashCode() == new CompiledAntPathRequestMatcher("/a/**", "GET").hashCode()
+            new CompiledAntPathRequestMatcher("/a/**", "GET") != new CompiledAntPathRequestMatcher("/a/**")
+            new CompiledAntPathRequestMatcher("/a/**") != new CompiledAntPathRequestMatcher("/b/**")
+    }
+
+    def "RequestMatcherIndex uses the compiled pattern"() {
+        setup:
+            RequestMatcherIndex<String> index = new RequestMatcherIndex<String>()
+                .add(new CompiledAntPathRequestMatcher("/a/**"), "a")
+                .add(new CompiledAntPathRequestMatcher("/b/**"), "b")
+        expect:
+            index.getFirstMatch(request("/b/1")) == "b"
+            index.getFirstMatch(request("/c/1")) == null
+    }
+
+    private static MockHttpServletRequest request(String path, String method = "GET") {
+        MockHttpServletRequest request = new MockHttpServletRequest(method:method)
+        request.servletPath = path
+        request
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.security.web.util;
+
+import javax.servlet.http.HttpServletRequest
+
+import org.springframework.mock.web.MockHttpServletRequest
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * @author agent
+ *
+ */
+class RequestMatcherIndexTests extends Specification {
+    RequestMatcherIndex<String> index = new RequestMatcherIndex<String>()
+
+    def "empty index matches nothing"() {
+        expect:
+            index.getFirstMatch(request("/a")) == null
+    }
+
+    @Unroll
+    def "first match in order is used for #path"() {
+        setup:
+            index
+                .add(new AntPathRequestMatcher("/api/tenant1/**"), "tenant1")
+                .add(new AntPathRequestMatcher("/api/*/admin/**"), "admin")
+                .add(new AntPathRequestMatcher("/api/tenant2/**"), "tenant2")
+                .add(new RegexRequestMatcher("/api/.*", null), "regex")
+                .add(new AntPathRequestMatcher("/API/TENANT3/**"), "tenant3")
+                .add(new AntPathRequestMatcher("/**"), "any")
+        expect:
+            index.getFirstMatch(request(path)) == expected
+        where:
+            path                     | expected
+            "/api/tenant1/admin/x"   | "tenant1"
+            "/api/tenant2/admin/x"   | "admin"
+            "/api/tenant2/x"         | "tenant2"
+            "/api/tenant3/x"         | "regex"
+            "/API/tenant1"           | "tenant1"
+            "/other"                 | "any"
+            "/"                      | "any"
+    }
+
+    def "literal prefix after wildcard is not used"() {
+        setup:
+            index
+                .add(new AntPathRequestMatcher("/static/*.css"), "css")
+                .add(new AntPathRequestMatcher("/static/**"), "static")
+        expect:
+            index.getFirstMatch(request("/static/a.css")) == "css"
+            index.getFirstMatch(request("/static/a.js")) == "static"
+            index.getFirstMatch(request("/static")) == "static"
+            index.getFirstMatch(request("/other")) == null
+    }
+
+    def "OrRequestMatcher indexed beneath each delegate"() {
+        setup:
+            index
+                .add(new OrRequestMatcher([new AntPathRequestMatcher("/a/**"), new AntPathRequestMatcher("/b/**")]), "or")
+                .add(new AntPathRequestMatcher("/b/**"), "b")
+        expect:
+            index.getFirstMatch(request("/a/1")) == "or"
+            index.getFirstMatch(request("/b/1")) == "or"
+            index.getFirstMatch(request("/c/1")) == null
+    }
+
+    def "http method is honored"() {
+        setup:
+            index
+                .add(new AntPathRequestMatcher("/a/**", "POST"), "post")
+                .add(new AntPathRequestMatcher("/a/**"), "any")
+        expect:
+            index.getFirstMatch(request("/a/1")) == "any"
+            index.getFirstMatch(request("/a/1", "POST")) == "post"
+    }
+
+    def "http method specific mappings preserve order"() {
+        setup:
+            index
+                .add(new AntPathRequestMatcher("/a/**"), "any")
+                .add(new AntPathRequestMatcher("/a/b/**", "GET"), "get")
+                .add(new AntPathRequestMatcher("/a/b/**"), "b")
+                .add(new CompiledAntPathRequestMatcher("/a/b/c/**", "POST"), "post")
+        expect:
+            index.getFirstMatch(request("/a/b/c")) == "any"
+            index.getFirstMatch(request("/b/c", "GET")) == null
+        when:
+            index = new RequestMatcherIndex<String>()
+                .add(new AntPathRequestMatcher("/a/b/**", "GET"), "get")
+                .add(new AntPathRequestMatcher("/a/b/**"), "b")
+                .add(new CompiledAntPathRequestMatcher("/a/b/c/**", "POST"), "post")
+        then:
+            index.getFirstMatch(request("/a/b/c", "GET")) == "get"
+            index.getFirstMatch(request("/a/b/c", "POST")) == "b"
+            index.getFirstMatch(request("/a/b/c", "PUT")) == "b"
+            index.getFirstMatch(request("/a/x", "POST")) == null
+        when:
+            index = new RequestMatcherIndex<String>()
+                .add(new CompiledAntPathRequestMatcher("/a/b/c/**", "POST"), "post")
+                .add(new AntPathRequestMatcher("/a/b/**"), "b")
+        then:
+            index.getFirstMatch(request("/a/b/c", "POST")) == "post"
+            index.getFirstMatch(request("/a/b/c", "GET")) == "b"
+    }
+
+    def "servletPath and pathInfo are combined"() {
+        setup:
+            index.add(new AntPathRequestMatcher("/app/users/**"), "users")
+            MockHttpServletRequest request = request("/app")
+            request.pathInfo = "/users/1"
+        expect:
+            index.getFirstMatch(request) == "users"
+    }
+
+    def "custom RequestMatcher consulted in order"() {
+        setup:
+            RequestMatcher custom = Mock()
+            index
+                .add(new AntPathRequestMatcher("/a/**"), "a")
+                .add(custom, "custom")
+                .add(new AntPathRequestMatcher("/b/**"), "b")
+        when:
+            String result = index.getFirstMatch(request("/b/1"))
+        then:
+            result == "custom"
+            1 * custom.matches(_ as HttpServletRequest) >> true
+    }
+
+    def "many mappings"() {
+        setup:
+            index.add(new AntPathRequestMatcher("/a/**"), "a")
+            (1..100).each { index.add(new AntPathRequestMatcher("/tenant$it/**"), "tenant$it".toString()) }
+        when:
+            String result = index.getFirstMatch(request("/tenant50/x"))
+        then:
+            result == "tenant50"
+            index.size() == 101
+    }
+
+    private static MockHttpServletRequest request(String path, String method = "GET") {
+        MockHttpServletRequest request = new MockHttpServletRequest(method:method)
+        request.servletPath = path
+        request
+    }
+}